@@ -0,0 +1,191 @@
+package com.wavefront.benchmarks;
+
+import net.razorvine.pickle.Pickler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Generates reproducible input for benchmarks. Shapes are modelled after typical proxy traffic:
+ * metric names are dot-delimited paths from a limited vocabulary, tag keys come from a small
+ * fixed set, and tag values are drawn from a configurable number of distinct values per key.
+ * The same seed always produces the same corpus, so results are comparable between runs.
+ */
+public class Corpus {
+  private static final String[] NAME_SEGMENTS = {"cpu", "mem", "disk", "net", "jvm", "http",
+      "requests", "latency", "errors", "gc", "heap", "used", "free", "total", "count", "p99",
+      "bytes", "packets", "rx", "tx", "queue", "size", "pool", "active", "idle", "threads"};
+  private static final String[] TAG_KEYS = {"env", "region", "az", "cluster", "service",
+      "application", "shard", "version", "instance", "pod", "namespace", "container", "team",
+      "tier", "zone", "rack"};
+  private static final String[] SPAN_NAMES = {"checkout", "getAlerts", "authorize", "query",
+      "render", "publish", "consume", "GET /api/v2/chart", "POST /report"};
+
+  private final Random random;
+  private final int tagsPerLine;
+  private final int tagCardinality;
+  private final double quotedRatio;
+
+  /**
+   * @param seed           random seed.
+   * @param tagsPerLine    number of point tags or span annotations per line.
+   * @param tagCardinality number of distinct values per tag key.
+   * @param quotedRatio    fraction of tags (0..1) that use quoted values, with some of those
+   *                       containing escaped quotes.
+   */
+  public Corpus(long seed, int tagsPerLine, int tagCardinality, double quotedRatio) {
+    this.random = new Random(seed);
+    this.tagsPerLine = Math.min(tagsPerLine, TAG_KEYS.length);
+    this.tagCardinality = tagCardinality;
+    this.quotedRatio = quotedRatio;
+  }
+
+  public String metricName() {
+    int segments = 2 + random.nextInt(4);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < segments; i++) {
+      if (i > 0) sb.append('.');
+      sb.append(NAME_SEGMENTS[random.nextInt(NAME_SEGMENTS.length)]);
+    }
+    return sb.toString();
+  }
+
+  public String source() {
+    return "host-" + random.nextInt(Math.max(tagCardinality, 1)) + ".prod.example.com";
+  }
+
+  public long timestampSeconds() {
+    return 1_600_000_000L + random.nextInt(86_400);
+  }
+
+  public double value() {
+    return random.nextInt(4) == 0 ? random.nextInt(1000) : random.nextDouble() * 10_000;
+  }
+
+  /**
+   * @return "key=value" pairs separated by spaces, with a share of quoted values.
+   */
+  public String tags() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < tagsPerLine; i++) {
+      if (i > 0) sb.append(' ');
+      sb.append(TAG_KEYS[i]).append('=');
+      String value = TAG_KEYS[i] + "-" + random.nextInt(Math.max(tagCardinality, 1));
+      if (random.nextDouble() < quotedRatio) {
+        sb.append('"').append(value);
+        if (random.nextInt(4) == 0) sb.append(" \\\"quoted\\\"");
+        sb.append('"');
+      } else {
+        sb.append(value);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return line in Wavefront data format.
+   */
+  public String metricLine() {
+    return metricName() + " " + value() + " " + timestampSeconds() + " source=" + source() +
+        " " + tags();
+  }
+
+  /**
+   * @param centroids number of centroids in the histogram.
+   * @return histogram line in Wavefront data format.
+   */
+  public String histogramLine(int centroids) {
+    StringBuilder sb = new StringBuilder("!M ").append(timestampSeconds());
+    double mean = 0;
+    for (int i = 0; i < centroids; i++) {
+      mean += 0.1 + random.nextDouble() * 10;
+      sb.append(" #").append(1 + random.nextInt(100)).append(' ').append(mean);
+    }
+    return sb.append(' ').append(metricName()).append(" source=").append(source()).append(' ').
+        append(tags()).toString();
+  }
+
+  /**
+   * @return span line in Wavefront tracing data format.
+   */
+  public String spanLine() {
+    String name = SPAN_NAMES[random.nextInt(SPAN_NAMES.length)];
+    return (name.indexOf(' ') >= 0 ? "\"" + name + "\"" : name) + " source=" + source() +
+        " spanId=" + uuid() + " traceId=" + uuid() + " " + tags() + " " +
+        (timestampSeconds() * 1000) + " " + random.nextInt(5000);
+  }
+
+  /**
+   * @return JSON log line.
+   */
+  public String logLine() {
+    StringBuilder sb = new StringBuilder("{\"message\": \"");
+    int words = 5 + random.nextInt(30);
+    for (int i = 0; i < words; i++) {
+      if (i > 0) sb.append(' ');
+      sb.append(NAME_SEGMENTS[random.nextInt(NAME_SEGMENTS.length)]);
+    }
+    sb.append("\", \"source\": \"").append(source()).
+        append("\", \"timestamp\": ").append(timestampSeconds() * 1000);
+    for (int i = 0; i < tagsPerLine; i++) {
+      sb.append(", \"").append(TAG_KEYS[i]).append("\": \"").append(TAG_KEYS[i]).append('-').
+          append(random.nextInt(Math.max(tagCardinality, 1))).append('"');
+    }
+    return sb.append('}').toString();
+  }
+
+  /**
+   * @return line in Graphite plaintext format with Wavefront-style tags.
+   */
+  public String graphiteLine() {
+    return metricName() + " " + value() + " " + timestampSeconds() + " source=" + source() +
+        " " + tags();
+  }
+
+  /**
+   * @return line in OpenTSDB telnet format.
+   */
+  public String openTsdbLine() {
+    return "put " + metricName() + " " + timestampSeconds() + " " + value() + " host=" + source() +
+        " " + tags();
+  }
+
+  /**
+   * @param points number of points in the payload.
+   * @return Graphite pickle protocol payload: [(path, (timestamp, value)), ...]
+   */
+  public byte[] picklePayload(int points) {
+    List<Object[]> data = new ArrayList<>(points);
+    for (int i = 0; i < points; i++) {
+      data.add(new Object[] {metricName(),
+          new Object[] {timestampSeconds(), value()}});
+    }
+    try {
+      return new Pickler().dumps(data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @param count     number of lines.
+   * @param generator line generator.
+   * @return array of generated lines.
+   */
+  public String[] lines(int count, Supplier<String> generator) {
+    String[] lines = new String[count];
+    for (int i = 0; i < count; i++) {
+      lines[i] = generator.get();
+    }
+    return lines;
+  }
+
+  private String uuid() {
+    return new UUID(random.nextLong(), random.nextLong()).toString();
+  }
+}
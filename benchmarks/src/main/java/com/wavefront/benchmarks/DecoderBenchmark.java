@@ -0,0 +1,167 @@
+package com.wavefront.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+
+import com.wavefront.common.MetricMangler;
+import com.wavefront.ingester.GraphiteDecoder;
+import com.wavefront.ingester.IngesterContext;
+import com.wavefront.ingester.OpenTSDBDecoder;
+import com.wavefront.ingester.PickleProtocolDecoder;
+import com.wavefront.ingester.ReportLogDecoder;
+import com.wavefront.ingester.ReportMetricDecoder;
+import com.wavefront.ingester.SpanDecoder;
+import com.wavefront.ingester.StringInterner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import wavefront.report.ReportLog;
+import wavefront.report.ReportMetric;
+import wavefront.report.ReportPoint;
+import wavefront.report.Span;
+
+/**
+ * Decoding throughput of line-based ingestion formats. Each invocation decodes the whole
+ * corpus, results are reported per line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark {
+  static final int LINES = 1000;
+  private static final String CUSTOMER = "customer";
+
+  @Param({"4", "16"})
+  int tagsPerLine;
+
+  @Param({"10", "10000"})
+  int tagCardinality;
+
+  @Param({"0", "0.2"})
+  double quotedRatio;
+
+  String[] metricLines;
+  String metricPayload;
+  String[] spanLines;
+  String[] logLines;
+  String[] graphiteLines;
+  String[] openTsdbLines;
+  byte[] picklePayload;
+
+  final ReportMetricDecoder metricDecoder = new ReportMetricDecoder(() -> "localhost",
+      ImmutableList.of());
+  final SpanDecoder spanDecoder = new SpanDecoder("localhost");
+  final ReportLogDecoder logDecoder = new ReportLogDecoder(() -> "localhost", null, null, null,
+      null, null);
+  final GraphiteDecoder graphiteDecoder = new GraphiteDecoder("localhost", ImmutableList.of());
+  final OpenTSDBDecoder openTsdbDecoder = new OpenTSDBDecoder("localhost", ImmutableList.of());
+  final PickleProtocolDecoder pickleDecoder = new PickleProtocolDecoder("localhost",
+      ImmutableList.of(), new MetricMangler(null, null, null), 2003);
+  final IngesterContext internContext = new IngesterContext.Builder().
+      withStringInterner(new StringInterner(1 << 16)).build();
+
+  @Setup
+  public void setup() {
+    Corpus corpus = new Corpus(42, tagsPerLine, tagCardinality, quotedRatio);
+    metricLines = corpus.lines(LINES, corpus::metricLine);
+    metricPayload = String.join("\n", metricLines);
+    spanLines = corpus.lines(LINES, corpus::spanLine);
+    logLines = corpus.lines(LINES, corpus::logLine);
+    graphiteLines = corpus.lines(LINES, corpus::graphiteLine);
+    openTsdbLines = corpus.lines(LINES, corpus::openTsdbLine);
+    picklePayload = corpus.picklePayload(LINES);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public List<ReportMetric> reportMetric() {
+    List<ReportMetric> out = new ArrayList<>(LINES);
+    for (String line : metricLines) {
+      metricDecoder.decode(line, out, CUSTOMER, null);
+    }
+    return out;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public List<ReportMetric> reportMetricInterned() {
+    List<ReportMetric> out = new ArrayList<>(LINES);
+    for (String line : metricLines) {
+      metricDecoder.decode(line, out, CUSTOMER, internContext);
+    }
+    return out;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public List<ReportMetric> reportMetricBatch() {
+    List<ReportMetric> out = new ArrayList<>(LINES);
+    metricDecoder.decodeBatch(metricPayload, out, CUSTOMER, null, parser -> {});
+    return out;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public List<Span> span() {
+    List<Span> out = new ArrayList<>(LINES);
+    for (String line : spanLines) {
+      spanDecoder.decode(line, out, CUSTOMER, null);
+    }
+    return out;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public List<ReportLog> reportLog() {
+    List<ReportLog> out = new ArrayList<>(LINES);
+    for (String line : logLines) {
+      logDecoder.decode(line, out, CUSTOMER, null);
+    }
+    return out;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public List<ReportPoint> graphite() {
+    List<ReportPoint> out = new ArrayList<>(LINES);
+    for (String line : graphiteLines) {
+      graphiteDecoder.decodeReportPoints(line, out, CUSTOMER);
+    }
+    return out;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public List<ReportPoint> openTsdb() {
+    List<ReportPoint> out = new ArrayList<>(LINES);
+    for (String line : openTsdbLines) {
+      openTsdbDecoder.decodeReportPoints(line, out, CUSTOMER);
+    }
+    return out;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public List<ReportPoint> pickle() {
+    List<ReportPoint> out = new ArrayList<>(LINES);
+    pickleDecoder.decode(picklePayload, out, CUSTOMER, null);
+    return out;
+  }
+}
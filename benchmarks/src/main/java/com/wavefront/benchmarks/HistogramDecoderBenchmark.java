@@ -0,0 +1,76 @@
+package com.wavefront.benchmarks;
+
+import com.wavefront.ingester.IngesterContext;
+import com.wavefront.ingester.ReportHistogramDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import wavefront.report.ReportHistogram;
+
+/**
+ * Histogram decoding throughput depending on the number of centroids, with and without
+ * centroid count limiting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistogramDecoderBenchmark {
+  static final int LINES = 1000;
+
+  @Param({"1", "20", "200"})
+  int centroids;
+
+  String[] lines;
+
+  final ReportHistogramDecoder decoder = new ReportHistogramDecoder("localhost");
+  final IngesterContext optimizingContext = new IngesterContext.Builder().
+      throwIfTooManyHistogramCentroids(100).withOptimizeHistograms(true).build();
+
+  @Setup
+  public void setup() {
+    Corpus corpus = new Corpus(42, 4, 100, 0);
+    lines = corpus.lines(LINES, () -> corpus.histogramLine(centroids));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public List<ReportHistogram> reportHistogram() {
+    List<ReportHistogram> out = new ArrayList<>(LINES);
+    for (String line : lines) {
+      decoder.decode(line, out, "customer", null);
+    }
+    return out;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public List<ReportHistogram> reportHistogramOptimized() {
+    List<ReportHistogram> out = new ArrayList<>(LINES);
+    for (String line : lines) {
+      try {
+        decoder.decode(line, out, "customer", optimizingContext);
+      } catch (RuntimeException e) {
+        // over the centroid limit
+      }
+    }
+    return out;
+  }
+}
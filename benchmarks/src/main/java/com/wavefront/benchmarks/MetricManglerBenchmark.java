@@ -0,0 +1,75 @@
+package com.wavefront.benchmarks;
+
+import com.wavefront.common.MetricMangler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting source and tags from Graphite metric names: index-based {@link MetricMangler} vs.
+ * the previous split-based implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricManglerBenchmark {
+  static final int NAMES = 1000;
+
+  /**
+   * Source fields, delimiters and remove fields.
+   */
+  @Param({"2;_;1", "2,3;_-;", ";;"})
+  String config;
+
+  @Param({"false", "true"})
+  boolean graphiteTags;
+
+  String[] names;
+  MetricMangler mangler;
+  LegacyMetricMangler legacyMangler;
+
+  @Setup
+  public void setup() {
+    String[] parts = config.split(";", -1);
+    mangler = new MetricMangler(parts[0], parts[1], parts[2]);
+    legacyMangler = new LegacyMetricMangler(parts[0], parts[1], parts[2]);
+    Corpus corpus = new Corpus(42, 0, 100, 0);
+    names = new String[NAMES];
+    for (int i = 0; i < NAMES; i++) {
+      String name = "hosts." + corpus.source().replace('.', '_') + "." + corpus.metricName();
+      names[i] = graphiteTags ? name + ";env=prod;region=us-west-2" : name;
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NAMES)
+  public void indexBased(Blackhole bh) {
+    for (String name : names) {
+      bh.consume(mangler.extractComponents(name));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NAMES)
+  public void splitBased(Blackhole bh) {
+    for (String name : names) {
+      bh.consume(legacyMangler.extractComponents(name));
+    }
+  }
+}
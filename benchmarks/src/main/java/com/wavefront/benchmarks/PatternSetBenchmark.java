@@ -0,0 +1,89 @@
+package com.wavefront.benchmarks;
+
+import com.wavefront.common.PatternMatchPredicate;
+import com.wavefront.common.PatternSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Matching metric names against allow/block lists of wildcard patterns: one predicate per
+ * pattern vs. a single {@link PatternSet}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternSetBenchmark {
+  static final int NAMES = 1000;
+
+  @Param({"10", "100", "1000"})
+  int patternCount;
+
+  String[] names;
+  List<Predicate<String>> predicates;
+  PatternSet patternSet;
+
+  @Setup
+  public void setup() {
+    Corpus corpus = new Corpus(42, 0, 100, 0);
+    names = corpus.lines(NAMES, corpus::metricName);
+    List<String> patterns = new ArrayList<>(patternCount);
+    for (int i = 0; i < patternCount; i++) {
+      String name = corpus.metricName();
+      switch (i % 3) {
+        case 0:
+          patterns.add(name.substring(0, name.lastIndexOf('.')) + ".*");
+          break;
+        case 1:
+          patterns.add("*" + name.substring(name.indexOf('.')));
+          break;
+        default:
+          patterns.add(name.replace(".", "*"));
+      }
+    }
+    predicates = new ArrayList<>(patternCount);
+    for (String pattern : patterns) {
+      predicates.add(PatternMatchPredicate.buildPredicate(pattern, false));
+    }
+    patternSet = PatternSet.compile(patterns, false);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NAMES)
+  public void predicates(Blackhole bh) {
+    for (String name : names) {
+      int matches = 0;
+      for (Predicate<String> predicate : predicates) {
+        if (predicate.test(name)) matches++;
+      }
+      bh.consume(matches);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NAMES)
+  public void patternSet(Blackhole bh) {
+    for (String name : names) {
+      bh.consume(patternSet.matches(name));
+    }
+  }
+}
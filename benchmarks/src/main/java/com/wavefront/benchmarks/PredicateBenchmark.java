@@ -0,0 +1,72 @@
+package com.wavefront.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+
+import com.wavefront.ingester.ReportMetricDecoder;
+import com.wavefront.predicates.Predicates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import wavefront.report.ReportMetric;
+
+/**
+ * Evaluation cost of typical preprocessor rule conditions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicateBenchmark {
+  static final int LINES = 1000;
+
+  @Param({
+      "{{env}} equals 'env-1'",
+      "({{metricName}} startsWith 'cpu') and ($value > 5000)",
+      "{{sourceName}} matches 'host-1*'",
+      "{{region}} regexMatch '^region-[0-9]+$'",
+      "({{metricName}} contains 'latency') or (({{az}} in ('az-1', 'az-2', 'az-3')) and " +
+          "{{cluster}}.isNotBlank())"
+  })
+  String expression;
+
+  List<ReportMetric> metrics;
+  Predicate<ReportMetric> predicate;
+
+  @Setup
+  public void setup() {
+    Corpus corpus = new Corpus(42, 8, 100, 0);
+    metrics = new ArrayList<>(LINES);
+    ReportMetricDecoder decoder = new ReportMetricDecoder(() -> "localhost", ImmutableList.of());
+    for (String line : corpus.lines(LINES, corpus::metricLine)) {
+      decoder.decode(line, metrics, "customer", null);
+    }
+    predicate = Predicates.fromPredicateEvalExpression(expression);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void evaluate(Blackhole bh) {
+    for (ReportMetric metric : metrics) {
+      bh.consume(predicate.test(metric));
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.wavefront.benchmarks;
+
+import com.google.common.util.concurrent.LockFreeRecyclableRateLimiter;
+import com.google.common.util.concurrent.RecyclableRateLimiter;
+import com.google.common.util.concurrent.RecyclableRateLimiterImpl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rate limiter operations when shared by many sender threads, as it is by all flush
+ * threads of a queue. The rate is high enough that acquire never has to sleep, so results
+ * measure contention on the limiter state only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(16)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+  @Param({"synchronized", "lockFree"})
+  String implementation;
+
+  RecyclableRateLimiter limiter;
+
+  @Setup
+  public void setup() {
+    limiter = implementation.equals("lockFree") ?
+        LockFreeRecyclableRateLimiter.create(1e12, 10) :
+        RecyclableRateLimiterImpl.create(1e12, 10);
+  }
+
+  @Benchmark
+  public double acquire() {
+    return limiter.acquire(10);
+  }
+
+  @Benchmark
+  public boolean tryAcquire() {
+    return limiter.tryAcquire(10);
+  }
+
+  @Benchmark
+  public boolean acquireAndRecycle() {
+    boolean acquired = limiter.tryAcquire(10);
+    if (acquired) {
+      limiter.recyclePermits(5);
+    }
+    return acquired;
+  }
+
+  @Benchmark
+  public boolean immediatelyAvailable() {
+    return limiter.immediatelyAvailable(10);
+  }
+}
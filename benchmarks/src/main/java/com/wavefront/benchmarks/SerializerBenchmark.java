@@ -0,0 +1,116 @@
+package com.wavefront.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import com.wavefront.ingester.ReportMetricDecoder;
+import com.wavefront.ingester.ReportMetricSerializer;
+import com.wavefront.ingester.SpanDecoder;
+import com.wavefront.ingester.SpanLogsSerializer;
+import com.wavefront.ingester.SpanSerializer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import wavefront.report.ReportMetric;
+import wavefront.report.Span;
+import wavefront.report.SpanLog;
+import wavefront.report.SpanLogs;
+
+/**
+ * Serialization throughput for entities that are sent out by the proxy in text form.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+  static final int LINES = 1000;
+
+  @Param({"4", "16"})
+  int tagsPerLine;
+
+  @Param({"0", "0.2"})
+  double quotedRatio;
+
+  List<ReportMetric> metrics;
+  List<Span> spans;
+  List<SpanLogs> spanLogs;
+
+  final ReportMetricSerializer metricSerializer = new ReportMetricSerializer();
+  final SpanSerializer spanSerializer = new SpanSerializer();
+  final SpanLogsSerializer spanLogsSerializer = new SpanLogsSerializer();
+
+  @Setup
+  public void setup() {
+    Corpus corpus = new Corpus(42, tagsPerLine, 100, quotedRatio);
+    metrics = new ArrayList<>(LINES);
+    ReportMetricDecoder metricDecoder = new ReportMetricDecoder(() -> "localhost",
+        ImmutableList.of());
+    for (String line : corpus.lines(LINES, corpus::metricLine)) {
+      metricDecoder.decode(line, metrics, "customer", null);
+    }
+    spans = new ArrayList<>(LINES);
+    SpanDecoder spanDecoder = new SpanDecoder("localhost");
+    for (String line : corpus.lines(LINES, corpus::spanLine)) {
+      spanDecoder.decode(line, spans, "customer", null);
+    }
+    spanLogs = new ArrayList<>(LINES);
+    for (Span span : spans) {
+      List<SpanLog> logs = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        logs.add(SpanLog.newBuilder().
+            setTimestamp(span.getStartMillis() * 1000 + i).
+            setFields(ImmutableMap.of("event", "error", "message", corpus.metricName())).
+            build());
+      }
+      spanLogs.add(SpanLogs.newBuilder().
+          setCustomer("customer").
+          setTraceId(span.getTraceId()).
+          setSpanId(span.getSpanId()).
+          setLogs(logs).
+          build());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void reportMetric(Blackhole bh) {
+    for (ReportMetric metric : metrics) {
+      bh.consume(metricSerializer.apply(metric));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void span(Blackhole bh) {
+    for (Span span : spans) {
+      bh.consume(spanSerializer.apply(span));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void spanLogs(Blackhole bh) {
+    for (SpanLogs logs : spanLogs) {
+      bh.consume(spanLogsSerializer.apply(logs));
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.wavefront.benchmarks;
+
+import com.wavefront.ingester.StringParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Raw tokenizer throughput, without any entity construction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringParserBenchmark {
+  static final int LINES = 1000;
+
+  @Param({"4", "16"})
+  int tagsPerLine;
+
+  @Param({"0", "0.2"})
+  double quotedRatio;
+
+  String[] lines;
+  String payload;
+  ByteBuf payloadBuf;
+
+  @Setup
+  public void setup() {
+    Corpus corpus = new Corpus(42, tagsPerLine, 100, quotedRatio);
+    lines = corpus.lines(LINES, corpus::metricLine);
+    payload = String.join("\n", lines);
+    payloadBuf = Unpooled.copiedBuffer(payload, UTF_8);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void tokenize(Blackhole bh) {
+    for (String line : lines) {
+      StringParser parser = new StringParser(line);
+      while (parser.nextToken()) {
+        bh.consume(parser.tokenEnd());
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void tokenizeAsStrings(Blackhole bh) {
+    for (String line : lines) {
+      StringParser parser = new StringParser(line);
+      while (parser.nextToken()) {
+        bh.consume(parser.tokenAsString());
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void tokenizeBatch(Blackhole bh) {
+    StringParser parser = new StringParser(payload);
+    while (parser.nextLine()) {
+      while (parser.nextToken()) {
+        bh.consume(parser.tokenEnd());
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void tokenizeByteBuf(Blackhole bh) {
+    StringParser parser = new StringParser(StringParser.asCharSequence(payloadBuf));
+    while (parser.nextLine()) {
+      while (parser.nextToken()) {
+        bh.consume(parser.tokenEnd());
+      }
+    }
+  }
+}
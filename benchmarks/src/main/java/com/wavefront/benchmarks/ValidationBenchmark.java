@@ -0,0 +1,134 @@
+package com.wavefront.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+
+import com.wavefront.api.agent.ValidationConfiguration;
+import com.wavefront.data.Validation;
+import com.wavefront.ingester.ReportMetricDecoder;
+import com.wavefront.ingester.SpanDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import wavefront.report.Annotation;
+import wavefront.report.ReportMetric;
+import wavefront.report.Span;
+
+/**
+ * Validation cost per entity, plus metric name/tag key character checks compared against the
+ * original range-comparison implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+  static final int LINES = 1000;
+
+  @Param({"4", "16"})
+  int tagsPerLine;
+
+  List<ReportMetric> metrics;
+  List<Span> spans;
+  String[] names;
+
+  final ValidationConfiguration config = new ValidationConfiguration().
+      setSpanAnnotationsCountLimit(100);
+
+  @Setup
+  public void setup() {
+    Corpus corpus = new Corpus(42, tagsPerLine, 100, 0);
+    metrics = new ArrayList<>(LINES);
+    ReportMetricDecoder metricDecoder = new ReportMetricDecoder(() -> "localhost",
+        ImmutableList.of());
+    for (String line : corpus.lines(LINES, corpus::metricLine)) {
+      metricDecoder.decode(line, metrics, "customer", null);
+    }
+    spans = new ArrayList<>(LINES);
+    SpanDecoder spanDecoder = new SpanDecoder("localhost");
+    for (String line : corpus.lines(LINES, corpus::spanLine)) {
+      spanDecoder.decode(line, spans, "customer", null);
+    }
+    List<String> allNames = new ArrayList<>();
+    for (ReportMetric metric : metrics) {
+      // a share of delta counters exercises the prefix path
+      allNames.add(allNames.size() % 10 == 0 ? "∆" + metric.getMetric() : metric.getMetric());
+      for (Annotation annotation : metric.getAnnotations()) {
+        allNames.add(annotation.getKey());
+      }
+    }
+    names = allNames.toArray(new String[0]);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void validateMetric() {
+    for (ReportMetric metric : metrics) {
+      Validation.validateMetric(metric, config);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LINES)
+  public void validateSpan() {
+    for (Span span : spans) {
+      Validation.validateSpan(span, config);
+    }
+  }
+
+  @Benchmark
+  public void charactersAreValid(Blackhole bh) {
+    for (String name : names) {
+      bh.consume(Validation.charactersAreValid(name));
+    }
+  }
+
+  @Benchmark
+  public void charactersAreValidLegacy(Blackhole bh) {
+    for (String name : names) {
+      bh.consume(legacyCharactersAreValid(name));
+    }
+  }
+
+  /**
+   * Range-comparison implementation of {@link Validation#charactersAreValid(String)}, kept
+   * as the baseline for the lookup table version.
+   */
+  static boolean legacyCharactersAreValid(String input) {
+    // Legal characters are 44-57 (,-./ and numbers), 65-90 (upper), 97-122 (lower), 95 (_)
+    int l = input.length();
+    if (l == 0) {
+      return false;
+    }
+    boolean isTildaPrefixed = input.charAt(0) == 126;
+    boolean isDeltaPrefixed = (input.charAt(0) == 0x2206) || (input.charAt(0) == 0x0394);
+    boolean isDeltaTildaPrefixed = isDeltaPrefixed && input.charAt(1) == 126;
+    for (int i = 0; i < l; i++) {
+      char cur = input.charAt(i);
+      if (!(44 <= cur && cur <= 57) && !(65 <= cur && cur <= 90) && !(97 <= cur && cur <= 122) &&
+          cur != 95) {
+        if (!((i==0 && (isDeltaPrefixed || isTildaPrefixed)) || (i == 1 && isDeltaTildaPrefixed))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,47 @@
+package com.google.common.util.concurrent;
+
+import com.wavefront.common.NamedThreadFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs blocking {@link RecyclableRateLimiter#acquire(int)} calls for limiters that don't
+ * implement {@link RecyclableRateLimiter#acquireAsync(int)} natively, on dedicated daemon threads
+ * rather than on the common fork-join pool.
+ */
+final class BlockingAcquireExecutor {
+  private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new NamedThreadFactory("rate-limiter-acquire").newThread(runnable);
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private BlockingAcquireExecutor() {
+  }
+
+  /**
+   * Acquires permits on a pooled thread. If the returned future is cancelled while waiting,
+   * the permits are recycled as soon as they are acquired.
+   *
+   * @param limiter rate limiter to acquire permits from.
+   * @param permits number of permits to request.
+   * @return future with the wait time in seconds
+   */
+  static CompletableFuture<Double> acquireAsync(RecyclableRateLimiter limiter, int permits) {
+    CompletableFuture<Double> result = new CompletableFuture<>();
+    EXECUTOR.execute(() -> {
+      try {
+        double wait = limiter.acquire(permits);
+        if (!result.complete(wait)) {
+          // cancelled while waiting, nobody is going to use these permits
+          limiter.recyclePermits(permits);
+        }
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+}
@@ -0,0 +1,277 @@
+package com.google.common.util.concurrent;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.wavefront.api.agent.AgentConfiguration;
+import com.wavefront.data.ReportableEntityType;
+
+import javax.annotation.Nullable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A two-level rate limiter: a parent budget shared by all entity types, split into weighted
+ * child buckets, one per {@link ReportableEntityType}. Every granted permit is taken from both
+ * a child bucket and the parent budget, so the combined rate never exceeds the parent's.
+ *
+ * When a child bucket is exhausted, {@code tryAcquire} may borrow permits accumulated in an
+ * idle sibling's bucket, so that capacity unused by one entity type (i.e. spans) can absorb
+ * bursts of another (i.e. points). Permits are only borrowed from a sibling that can grant them
+ * immediately, so a busy sibling never ends up waiting for permits it lent.
+ *
+ * Child buckets are obtained with {@link #get(ReportableEntityType)} and implement
+ * {@link RecyclableRateLimiter}, so they can be used anywhere a regular limiter is expected.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class HierarchicalRateLimiter {
+  private final RateLimiter.SleepingStopwatch stopwatch;
+  private final LockFreeRecyclableRateLimiter parent;
+  private final Map<ReportableEntityType, LockFreeRecyclableRateLimiter> buckets =
+      new EnumMap<>(ReportableEntityType.class);
+  private final Map<ReportableEntityType, ChildRateLimiter> children =
+      new EnumMap<>(ReportableEntityType.class);
+
+  /**
+   * Create a new hierarchical rate limiter, splitting the parent rate between entity types
+   * proportionally to their weights.
+   *
+   * @param permitsPerSecond parent rate, in permits per second.
+   * @param weights          relative weights of entity types. types without a weight don't get
+   *                         a child bucket.
+   * @param maxBurstSeconds  time window (in seconds) to accumulate unused permits for.
+   * @return rate limiter
+   */
+  public static HierarchicalRateLimiter create(double permitsPerSecond,
+                                               Map<ReportableEntityType, Double> weights,
+                                               double maxBurstSeconds) {
+    return new HierarchicalRateLimiter(RateLimiter.SleepingStopwatch.createFromSystemTimer(),
+        permitsPerSecond, weights, maxBurstSeconds);
+  }
+
+  @VisibleForTesting
+  HierarchicalRateLimiter(RateLimiter.SleepingStopwatch stopwatch, double permitsPerSecond,
+                          Map<ReportableEntityType, Double> weights, double maxBurstSeconds) {
+    this(stopwatch, permitsPerSecond, weights, maxBurstSeconds, TimerWheel.getDefault());
+  }
+
+  @VisibleForTesting
+  HierarchicalRateLimiter(RateLimiter.SleepingStopwatch stopwatch, double permitsPerSecond,
+                          Map<ReportableEntityType, Double> weights, double maxBurstSeconds,
+                          TimerWheel timerWheel) {
+    checkArgument(!weights.isEmpty(), "At least one entity type is required");
+    double totalWeight = 0;
+    for (double weight : weights.values()) {
+      checkArgument(weight > 0, "Weights must be positive");
+      totalWeight += weight;
+    }
+    this.stopwatch = stopwatch;
+    this.parent = new LockFreeRecyclableRateLimiter(stopwatch, permitsPerSecond,
+        maxBurstSeconds, timerWheel);
+    for (Map.Entry<ReportableEntityType, Double> entry : weights.entrySet()) {
+      buckets.put(entry.getKey(), new LockFreeRecyclableRateLimiter(stopwatch,
+          permitsPerSecond * entry.getValue() / totalWeight, maxBurstSeconds, timerWheel));
+      children.put(entry.getKey(), new ChildRateLimiter(entry.getKey()));
+    }
+  }
+
+  /**
+   * Returns the rate limiter for the specified entity type.
+   *
+   * @param entityType entity type.
+   * @return rate limiter for the entity type's child bucket
+   * @throws IllegalArgumentException if the entity type doesn't have a child bucket.
+   */
+  public RecyclableRateLimiter get(ReportableEntityType entityType) {
+    ChildRateLimiter child = children.get(entityType);
+    checkArgument(child != null, "No rate limit configured for %s", entityType);
+    return child;
+  }
+
+  /**
+   * @return parent rate, in permits per second.
+   */
+  public double getRate() {
+    return parent.getRate();
+  }
+
+  /**
+   * Updates the parent rate, scaling all child buckets proportionally to keep their weights.
+   *
+   * @param rate new rate per second.
+   */
+  public void setRate(double rate) {
+    checkArgument(rate > 0.0 && !Double.isNaN(rate), "rate must be positive");
+    double scale = rate / parent.getRate();
+    parent.setRate(rate);
+    for (RecyclableRateLimiter bucket : buckets.values()) {
+      bucket.setRate(bucket.getRate() * scale);
+    }
+  }
+
+  /**
+   * Applies per-proxy rate limits from a new {@link AgentConfiguration}, if the backend sets
+   * them: child buckets get their entity type's rate limit and the parent budget becomes the
+   * sum of all child rates. Entity types without a configured limit keep their current rate.
+   *
+   * @param config agent configuration received from the backend.
+   */
+  public void update(AgentConfiguration config) {
+    if (!config.getCollectorSetsRateLimit()) return;
+    double total = 0;
+    for (Map.Entry<ReportableEntityType, LockFreeRecyclableRateLimiter> entry :
+        buckets.entrySet()) {
+      Number rateLimit = getRateLimit(config, entry.getKey());
+      if (rateLimit != null && rateLimit.doubleValue() > 0 &&
+          rateLimit.doubleValue() != entry.getValue().getRate()) {
+        entry.getValue().setRate(rateLimit.doubleValue());
+      }
+      total += entry.getValue().getRate();
+    }
+    if (total != parent.getRate()) {
+      parent.setRate(total);
+    }
+  }
+
+  @Nullable
+  private static Number getRateLimit(AgentConfiguration config, ReportableEntityType entityType) {
+    switch (entityType) {
+      case POINT:
+      case DELTA_COUNTER:
+        return config.getCollectorRateLimit();
+      case HISTOGRAM:
+        return config.getHistogramRateLimit();
+      case SOURCE_TAG:
+        return config.getSourceTagsRateLimit();
+      case TRACE:
+        return config.getSpanRateLimit();
+      case TRACE_SPAN_LOGS:
+        return config.getSpanLogsRateLimit();
+      case EVENT:
+        return config.getEventsRateLimit();
+      case LOGS:
+        return config.getLogsRateLimit();
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * A view of a single child bucket, which also draws from the parent budget.
+   */
+  private class ChildRateLimiter implements RecyclableRateLimiter {
+    private final ReportableEntityType entityType;
+    private final LockFreeRecyclableRateLimiter bucket;
+
+    private ChildRateLimiter(ReportableEntityType entityType) {
+      this.entityType = entityType;
+      this.bucket = buckets.get(entityType);
+    }
+
+    @Override
+    public double getRate() {
+      return bucket.getRate();
+    }
+
+    /**
+     * Updates the rate of this child bucket only. The parent budget is not affected.
+     *
+     * @param rate new rate per second
+     */
+    @Override
+    public void setRate(double rate) {
+      bucket.setRate(rate);
+    }
+
+    /**
+     * Reserves permits in both the child bucket and the parent budget at the same instant, and
+     * waits until both reservations can be used, same as {@link #acquireAsync(int)}.
+     *
+     * @param permits number of permits to request
+     * @return time spent sleeping to enforce rate, in seconds
+     */
+    @Override
+    public double acquire(int permits) {
+      if (tryAcquire(permits)) return 0;
+      long waitMicros = Math.max(bucket.reserve(permits), parent.reserve(permits));
+      stopwatch.sleepMicrosUninterruptibly(waitMicros);
+      return 1.0 * waitMicros / SECONDS.toMicros(1L);
+    }
+
+    /**
+     * Reserves permits in both the child bucket and the parent budget right away, so the
+     * returned future completes once both reservations can be used. Cancelling it returns
+     * both reservations back to the pool.
+     *
+     * @param permits number of permits to request
+     * @return future with the wait time in seconds
+     */
+    @Override
+    public CompletableFuture<Double> acquireAsync(int permits) {
+      if (tryAcquire(permits)) {
+        return CompletableFuture.completedFuture(0.0);
+      }
+      CompletableFuture<Double> bucketWait = bucket.acquireAsync(permits);
+      CompletableFuture<Double> parentWait = parent.acquireAsync(permits);
+      CompletableFuture<Double> result = bucketWait.thenCombine(parentWait, Math::max);
+      result.whenComplete((wait, throwable) -> {
+        if (result.isCancelled()) {
+          release(bucketWait, bucket, permits);
+          release(parentWait, parent, permits);
+        }
+      });
+      return result;
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+      if (tryAcquire(bucket, permits)) return true;
+      for (Map.Entry<ReportableEntityType, LockFreeRecyclableRateLimiter> entry :
+          buckets.entrySet()) {
+        if (entry.getKey() != entityType && entry.getValue().immediatelyAvailable(permits)) {
+          return tryAcquire(entry.getValue(), permits);
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Recycled permits are returned to this child bucket, even if they were borrowed.
+     *
+     * @param permits number of permits to return
+     */
+    @Override
+    public void recyclePermits(int permits) {
+      bucket.recyclePermits(permits);
+      parent.recyclePermits(permits);
+    }
+
+    @Override
+    public boolean immediatelyAvailable(int permits) {
+      if (!parent.immediatelyAvailable(permits)) return false;
+      for (RecyclableRateLimiter candidate : buckets.values()) {
+        if (candidate.immediatelyAvailable(permits)) return true;
+      }
+      return false;
+    }
+
+    /**
+     * Cancels a reservation, or recycles its permits if it has already been granted.
+     */
+    private void release(CompletableFuture<Double> reservation, RecyclableRateLimiter source,
+                         int permits) {
+      if (!reservation.cancel(false) && !reservation.isCompletedExceptionally()) {
+        source.recyclePermits(permits);
+      }
+    }
+
+    private boolean tryAcquire(RecyclableRateLimiter source, int permits) {
+      if (!source.tryAcquire(permits)) return false;
+      if (parent.tryAcquire(permits)) return true;
+      source.recyclePermits(permits);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package com.google.common.util.concurrent;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A lock-free implementation of {@link RecyclableRateLimiter}, with the same semantics as
+ * {@link RecyclableRateLimiterImpl}: permits are granted at a stable rate, unused permits
+ * accumulate over a burst window, a request that exceeds the stored permits is granted
+ * immediately and the next request pays for it, and unused permits can be recycled.
+ *
+ * Instead of tracking stored permits and the next free ticket separately under a lock, the
+ * entire state is packed into a single atomic value, the "theoretical arrival time": the point
+ * in time at which all permits granted so far would have been produced at the stable rate.
+ * If it's in the future, the difference is the wait time for the next request; if it's in the
+ * past, the difference (capped at the burst window) divided by the stable interval is the
+ * number of stored permits. All operations are a single compare-and-swap on that value.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class LockFreeRecyclableRateLimiter implements RecyclableRateLimiter {
+  private final RateLimiter.SleepingStopwatch stopwatch;
+  private final double maxBurstMicros;
+
+  /**
+   * The interval between two unit requests, at our stable rate.
+   */
+  private volatile double stableIntervalMicros;
+
+  /**
+   * Theoretical arrival time in microseconds, stored as raw double bits.
+   */
+  private final AtomicLong arrivalTime;
+
+  private final TimerWheel.Waiters waiters;
+
+  /**
+   * Create a new rate limiter instance with specified burst window.
+   *
+   * @param permitsPerSecond the rate of the returned rate limiter, in permits per second.
+   * @param maxBurstSeconds  time window (in seconds) to accumulate unused permits for.
+   * @return rate limiter
+   */
+  public static RecyclableRateLimiter create(double permitsPerSecond, double maxBurstSeconds) {
+    return new LockFreeRecyclableRateLimiter(
+        RateLimiter.SleepingStopwatch.createFromSystemTimer(),
+        permitsPerSecond,
+        maxBurstSeconds);
+  }
+
+  LockFreeRecyclableRateLimiter(RateLimiter.SleepingStopwatch stopwatch, double permitsPerSecond,
+                                double maxBurstSeconds) {
+    this(stopwatch, permitsPerSecond, maxBurstSeconds, TimerWheel.getDefault());
+  }
+
+  @VisibleForTesting
+  LockFreeRecyclableRateLimiter(RateLimiter.SleepingStopwatch stopwatch, double permitsPerSecond,
+                                double maxBurstSeconds, TimerWheel timerWheel) {
+    checkArgument(maxBurstSeconds >= 0.0, "maxBurstSeconds must not be negative");
+    this.stopwatch = stopwatch;
+    this.maxBurstMicros = maxBurstSeconds * SECONDS.toMicros(1L);
+    setRate(permitsPerSecond);
+    // start with no stored permits
+    this.arrivalTime = new AtomicLong(Double.doubleToRawLongBits(stopwatch.readMicros()));
+    this.waiters = new TimerWheel.Waiters(timerWheel);
+  }
+
+  @Override
+  public double getRate() {
+    return SECONDS.toMicros(1L) / stableIntervalMicros;
+  }
+
+  /**
+   * Updates the rate. Stored permits are scaled proportionally, so that they still represent
+   * the same amount of time; the wait time for the next request is preserved.
+   *
+   * @param rate new rate per second
+   */
+  @Override
+  public void setRate(double rate) {
+    checkArgument(rate > 0.0 && !Double.isNaN(rate), "rate must be positive");
+    this.stableIntervalMicros = SECONDS.toMicros(1L) / rate;
+  }
+
+  @Override
+  public double acquire(int permits) {
+    checkPermits(permits);
+    long nowMicros = stopwatch.readMicros();
+    long waitMicros = reserve(permits, nowMicros, false);
+    stopwatch.sleepMicrosUninterruptibly(waitMicros);
+    return 1.0 * waitMicros / SECONDS.toMicros(1L);
+  }
+
+  @Override
+  public CompletableFuture<Double> acquireAsync(int permits) {
+    checkPermits(permits);
+    long waitMicros = reserve(permits, stopwatch.readMicros(), false);
+    return waiters.await(waitMicros, () -> recyclePermits(permits));
+  }
+
+  /**
+   * Reserves permits without waiting for them, so that reservations with several limiters can
+   * be made at the same instant and waited for together.
+   *
+   * @param permits number of permits to reserve.
+   * @return time in microseconds until the reserved permits can be used
+   */
+  long reserve(int permits) {
+    checkPermits(permits);
+    return reserve(permits, stopwatch.readMicros(), false);
+  }
+
+  @Override
+  public boolean tryAcquire(int permits) {
+    checkPermits(permits);
+    return reserve(permits, stopwatch.readMicros(), true) == 0;
+  }
+
+  @Override
+  public void recyclePermits(int permits) {
+    long nowMicros = stopwatch.readMicros();
+    while (true) {
+      long bits = arrivalTime.get();
+      double interval = stableIntervalMicros;
+      double updated = max(Double.longBitsToDouble(bits) - permits * interval,
+          nowMicros - maxBurstMicros);
+      if (arrivalTime.compareAndSet(bits, Double.doubleToRawLongBits(updated))) return;
+    }
+  }
+
+  @Override
+  public boolean immediatelyAvailable(int permits) {
+    return getAvailablePermits() >= permits;
+  }
+
+  /**
+   * @return number of currently stored permits.
+   */
+  double getAvailablePermits() {
+    long nowMicros = stopwatch.readMicros();
+    double base = base(Double.longBitsToDouble(arrivalTime.get()), nowMicros);
+    return base < nowMicros ? (nowMicros - base) / stableIntervalMicros : 0.0;
+  }
+
+  /**
+   * Reserves permits and returns the time the caller has to wait before using them.
+   *
+   * @param permits     number of permits to reserve.
+   * @param nowMicros   current time.
+   * @param onlyIfReady don't reserve anything if the caller would have to wait.
+   * @return wait time in microseconds, or -1 if nothing was reserved
+   */
+  private long reserve(int permits, long nowMicros, boolean onlyIfReady) {
+    while (true) {
+      long bits = arrivalTime.get();
+      double interval = stableIntervalMicros;
+      double base = base(Double.longBitsToDouble(bits), nowMicros);
+      long waitMicros = max((long) (base - nowMicros), 0L);
+      if (onlyIfReady && waitMicros > 0) return -1;
+      double updated = base + permits * interval;
+      if (arrivalTime.compareAndSet(bits, Double.doubleToRawLongBits(updated))) {
+        return waitMicros;
+      }
+    }
+  }
+
+  /**
+   * Caps stored permits at the burst window.
+   */
+  private double base(double arrivalTime, long nowMicros) {
+    return max(arrivalTime, nowMicros - maxBurstMicros);
+  }
+
+  private static void checkPermits(int permits) {
+    checkArgument(permits > 0, "Requested permits (%s) must be positive", permits);
+  }
+}
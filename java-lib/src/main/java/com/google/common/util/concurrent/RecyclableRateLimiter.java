@@ -2,6 +2,8 @@ package com.google.common.util.concurrent;
 
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * A rate limiter that allows to "return" unused permits back to the pool to handle retries
  * gracefully and allow precise control over outgoing "successful" rate, plus allows accumulating
@@ -42,6 +44,25 @@ public interface RecyclableRateLimiter {
     return acquire(1);
   }
 
+  /**
+   * Reserves the requested number of permits without blocking the calling thread. The returned
+   * future completes once the permits can be used, after all waiters that were enqueued earlier.
+   * Cancelling the future before it completes returns reserved permits back to the pool.
+   *
+   * The default implementation blocks a dedicated pooled thread in {@link #acquire(int)} if
+   * permits are not immediately available, so cancelling the future only returns the permits
+   * once that wait is over; implementations should override it with a non-blocking one.
+   *
+   * @param permits number of permits to request
+   * @return future with the wait time in seconds
+   */
+  default CompletableFuture<Double> acquireAsync(int permits) {
+    if (tryAcquire(permits)) {
+      return CompletableFuture.completedFuture(0.0);
+    }
+    return BlockingAcquireExecutor.acquireAsync(this, permits);
+  }
+
   /**
    * Acquires the requested number of permits only if can be acquired without wait.
    *
@@ -2,6 +2,8 @@ package com.google.common.util.concurrent;
 
 import com.google.common.math.LongMath;
 
+import java.util.concurrent.CompletableFuture;
+
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -45,6 +47,8 @@ public class RecyclableRateLimiterImpl extends RateLimiter implements Recyclable
 
   private final Object mutex;
 
+  private final TimerWheel.Waiters waiters = new TimerWheel.Waiters(TimerWheel.getDefault());
+
   /**
    * Create a new rate limiter instance with specified burst window.
    *
@@ -67,6 +71,11 @@ public class RecyclableRateLimiterImpl extends RateLimiter implements Recyclable
     this.setRate(permitsPerSecond);
   }
 
+  @Override
+  public CompletableFuture<Double> acquireAsync(int permits) {
+    return waiters.await(reserve(permits), () -> recyclePermits(permits));
+  }
+
   double getAvailablePermits() {
     synchronized (mutex) {
       resync(stopwatch.readMicros());
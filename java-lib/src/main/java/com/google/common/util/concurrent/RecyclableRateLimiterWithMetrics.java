@@ -4,8 +4,11 @@ import com.wavefront.common.LazySupplier;
 import com.wavefront.common.TaggedMetricName;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Histogram;
 
 import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 /**
@@ -27,7 +30,8 @@ public class RecyclableRateLimiterWithMetrics implements RecyclableRateLimiter {
     this(delegate, LazySupplier.of(() -> new RateLimiterMetricsContainer(
         Metrics.newCounter(new TaggedMetricName(prefix, "permits-granted")),
         Metrics.newCounter(new TaggedMetricName(prefix, "permits-denied")),
-        Metrics.newCounter(new TaggedMetricName(prefix, "permits-retried"))
+        Metrics.newCounter(new TaggedMetricName(prefix, "permits-retried")),
+        Metrics.newHistogram(new TaggedMetricName(prefix, "queue-wait-millis"), false)
     )));
   }
 
@@ -56,6 +60,24 @@ public class RecyclableRateLimiterWithMetrics implements RecyclableRateLimiter {
     double result = delegate.acquire(permits);
     Counter granted = metrics.get().permitsGrantedCounter;
     if (granted != null) granted.inc(permits);
+    Histogram queueWait = metrics.get().queueWaitHistogram;
+    if (queueWait != null) queueWait.update((long) (result * 1000));
+    return result;
+  }
+
+  @Override
+  public CompletableFuture<Double> acquireAsync(int permits) {
+    long startNanos = System.nanoTime();
+    CompletableFuture<Double> result = delegate.acquireAsync(permits);
+    result.whenComplete((waitSeconds, throwable) -> {
+      if (throwable != null) return;
+      Counter granted = metrics.get().permitsGrantedCounter;
+      if (granted != null) granted.inc(permits);
+      Histogram queueWait = metrics.get().queueWaitHistogram;
+      if (queueWait != null) {
+        queueWait.update(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+      }
+    });
     return result;
   }
 
@@ -88,12 +110,15 @@ public class RecyclableRateLimiterWithMetrics implements RecyclableRateLimiter {
     private Counter permitsGrantedCounter;
     private Counter permitsDeniedCounter;
     private Counter permitsRecycledCounter;
+    private Histogram queueWaitHistogram;
     private RateLimiterMetricsContainer(@Nullable Counter permitsGrantedCounter,
                                         @Nullable Counter permitsDeniedCounter,
-                                        @Nullable Counter permitsRecycledCounter) {
+                                        @Nullable Counter permitsRecycledCounter,
+                                        @Nullable Histogram queueWaitHistogram) {
       this.permitsGrantedCounter = permitsGrantedCounter;
       this.permitsDeniedCounter = permitsDeniedCounter;
       this.permitsRecycledCounter = permitsRecycledCounter;
+      this.queueWaitHistogram = queueWaitHistogram;
     }
   }
 }
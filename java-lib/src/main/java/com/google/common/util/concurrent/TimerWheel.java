@@ -0,0 +1,268 @@
+package com.google.common.util.concurrent;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timer wheel for completing rate limiter waiters without parking a thread per waiter.
+ * Tasks are hashed into slots by their deadline tick, and a single timer thread visits one slot
+ * per tick, so scheduling and expiring are O(1) regardless of the number of pending waiters.
+ * Tasks run in order of their deadline ticks, and tasks that fall into the same tick run in the
+ * order they were scheduled.
+ *
+ * The timer thread parks while nothing is scheduled, so the wheel may fall far behind the
+ * clock: when it's idle, it simply jumps to the current tick, and otherwise it never walks more
+ * than one revolution of the wheel to catch up.
+ *
+ * Tasks run on the timer thread, so they must be short: completing a future is fine, heavy
+ * dependent stages should use the {@code *Async} variants.
+ */
+final class TimerWheel {
+  private static final Logger logger = Logger.getLogger(TimerWheel.class.getCanonicalName());
+  private static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final int DEFAULT_WHEEL_SIZE = 512;
+
+  private static final class Holder {
+    private static final TimerWheel INSTANCE = startTimerThread(
+        new TimerWheel(System::nanoTime, DEFAULT_TICK_NANOS, DEFAULT_WHEEL_SIZE));
+  }
+
+  private final LongSupplier nanoTime;
+  private final long tickNanos;
+  private final long startNanos;
+  private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger scheduled = new AtomicInteger();
+  private final ArrayDeque<Timeout>[] slots;
+  private final int mask;
+  private volatile Thread timerThread;
+  /**
+   * Next tick to process. Only accessed by the timer thread.
+   */
+  private long currentTick = 0;
+  /**
+   * Number of tasks in the slots. Only accessed by the timer thread.
+   */
+  private int slotted = 0;
+  /**
+   * Number of slots visited so far, for tests. Only accessed by the timer thread.
+   */
+  private long slotsVisited = 0;
+
+  private static final class Timeout {
+    private final long deadlineTick;
+    private final Runnable task;
+
+    private Timeout(long deadlineTick, Runnable task) {
+      this.deadlineTick = deadlineTick;
+      this.task = task;
+    }
+  }
+
+  /**
+   * @param nanoTime  time source.
+   * @param tickNanos duration of a tick.
+   * @param wheelSize number of slots, rounded up to a power of two.
+   */
+  @SuppressWarnings("unchecked")
+  @VisibleForTesting
+  TimerWheel(LongSupplier nanoTime, long tickNanos, int wheelSize) {
+    this.nanoTime = nanoTime;
+    this.tickNanos = tickNanos;
+    this.startNanos = nanoTime.getAsLong();
+    int size = Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1;
+    this.slots = new ArrayDeque[size];
+    for (int i = 0; i < size; i++) {
+      slots[i] = new ArrayDeque<>();
+    }
+    this.mask = size - 1;
+  }
+
+  /**
+   * @return shared timer wheel with 1ms resolution, served by a daemon thread.
+   */
+  static TimerWheel getDefault() {
+    return Holder.INSTANCE;
+  }
+
+  private static TimerWheel startTimerThread(TimerWheel wheel) {
+    Thread thread = new Thread(() -> {
+      while (true) {
+        // nothing to do, wait until something is scheduled
+        if (wheel.scheduled.get() == 0) {
+          LockSupport.park(wheel);
+        } else {
+          LockSupport.parkNanos(wheel, wheel.tickNanos);
+        }
+        wheel.advance();
+      }
+    }, "rate-limiter-timer");
+    thread.setDaemon(true);
+    wheel.timerThread = thread;
+    thread.start();
+    return wheel;
+  }
+
+  /**
+   * Schedules a task to run after the specified delay. Can be called from any thread.
+   *
+   * @param delayNanos delay, in nanoseconds.
+   * @param task       task to run.
+   */
+  void schedule(long delayNanos, Runnable task) {
+    long deadlineTick = (nanoTime.getAsLong() - startNanos + Math.max(delayNanos, 0) +
+        tickNanos - 1) / tickNanos;
+    pending.add(new Timeout(deadlineTick, task));
+    Thread thread = timerThread;
+    if (scheduled.getAndIncrement() == 0 && thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * Runs all tasks that are due. Must only be called from the timer thread.
+   *
+   * @return number of tasks that ran
+   */
+  @VisibleForTesting
+  int advance() {
+    long nowTick = (nanoTime.getAsLong() - startNanos) / tickNanos;
+    if (slotted == 0 && currentTick < nowTick) {
+      // the wheel was idle, there's nothing to expire in between
+      currentTick = nowTick;
+    }
+    Timeout timeout;
+    while ((timeout = pending.poll()) != null) {
+      slots[(int) (Math.max(timeout.deadlineTick, currentTick) & mask)].add(timeout);
+      slotted++;
+    }
+    int count;
+    if (nowTick - currentTick > mask) {
+      count = catchUp(nowTick);
+    } else {
+      count = 0;
+      for (; currentTick <= nowTick; currentTick++) {
+        ArrayDeque<Timeout> slot = slots[(int) (currentTick & mask)];
+        if (slot.isEmpty()) continue;
+        slotsVisited++;
+        Iterator<Timeout> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+          timeout = iterator.next();
+          // entries for later rounds of the wheel stay in the slot
+          if (timeout.deadlineTick > currentTick) continue;
+          iterator.remove();
+          run(timeout);
+          count++;
+        }
+      }
+    }
+    slotted -= count;
+    scheduled.addAndGet(-count);
+    return count;
+  }
+
+  /**
+   * Runs all tasks that are due when the wheel is more than one revolution behind, visiting
+   * each slot once instead of walking every elapsed tick.
+   *
+   * @param nowTick current tick.
+   * @return number of tasks that ran
+   */
+  private int catchUp(long nowTick) {
+    List<Timeout> due = new ArrayList<>();
+    for (ArrayDeque<Timeout> slot : slots) {
+      if (slot.isEmpty()) continue;
+      slotsVisited++;
+      Iterator<Timeout> iterator = slot.iterator();
+      while (iterator.hasNext()) {
+        Timeout timeout = iterator.next();
+        if (timeout.deadlineTick > nowTick) continue;
+        iterator.remove();
+        due.add(timeout);
+      }
+    }
+    // stable sort: tasks with the same deadline share a slot and keep their order
+    due.sort(Comparator.comparingLong(timeout -> timeout.deadlineTick));
+    due.forEach(TimerWheel::run);
+    currentTick = nowTick + 1;
+    return due.size();
+  }
+
+  private static void run(Timeout timeout) {
+    try {
+      timeout.task.run();
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Timer task failed", e);
+    }
+  }
+
+  @VisibleForTesting
+  long slotsVisited() {
+    return slotsVisited;
+  }
+
+  /**
+   * Keeps waiters of a single rate limiter in FIFO order: a waiter never completes before
+   * waiters that were enqueued ahead of it, even if permits were recycled in between.
+   */
+  static final class Waiters {
+    private final TimerWheel wheel;
+    private final LongSupplier nanoTime;
+    private final AtomicLong lastDeadlineNanos;
+
+    /**
+     * @param wheel timer wheel to schedule completions with.
+     */
+    Waiters(TimerWheel wheel) {
+      this.wheel = wheel;
+      this.nanoTime = wheel.nanoTime;
+      this.lastDeadlineNanos = new AtomicLong(nanoTime.getAsLong());
+    }
+
+    /**
+     * Returns a future that completes once reserved permits can be used.
+     *
+     * @param waitMicros time until the reserved permits can be used.
+     * @param onCancel   called if the future is cancelled before it completes, i.e. to
+     *                   recycle the reserved permits.
+     * @return future with the wait time in seconds
+     */
+    CompletableFuture<Double> await(long waitMicros, Runnable onCancel) {
+      long nowNanos = nanoTime.getAsLong();
+      long deadlineNanos = nowNanos + TimeUnit.MICROSECONDS.toNanos(waitMicros);
+      long last;
+      do {
+        last = lastDeadlineNanos.get();
+        if (last - deadlineNanos > 0) {
+          // queue behind waiters that are still pending
+          deadlineNanos = last;
+        }
+      } while (!lastDeadlineNanos.compareAndSet(last, deadlineNanos));
+      long delayNanos = deadlineNanos - nowNanos;
+      if (delayNanos <= 0) {
+        return CompletableFuture.completedFuture(0.0);
+      }
+      double waitSeconds = 1.0 * delayNanos / TimeUnit.SECONDS.toNanos(1);
+      CompletableFuture<Double> future = new CompletableFuture<>();
+      future.whenComplete((value, throwable) -> {
+        if (future.isCancelled()) onCancel.run();
+      });
+      wheel.schedule(delayNanos, () -> future.complete(waitSeconds));
+      return future;
+    }
+  }
+}
@@ -1,8 +1,11 @@
 package com.wavefront.api.agent;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.annotation.Nullable;
 
 /**
@@ -88,6 +91,12 @@ public class ValidationConfiguration {
    */
   private int logAnnotationsCountLimit = 100;
 
+  /**
+   * Incremented on every change, so that consumers can cache settings derived from this
+   * configuration and detect when they need to be refreshed. Not serialized.
+   */
+  private final AtomicInteger version = new AtomicInteger();
+
   public int getMetricLengthLimit() {
     return metricLengthLimit;
   }
@@ -142,73 +151,95 @@ public class ValidationConfiguration {
     return logAnnotationsCountLimit;
   }
 
+  /**
+   * @return a counter that changes every time any of the limits is updated.
+   */
+  @JsonIgnore
+  public int getVersion() {
+    return version.get();
+  }
+
   public ValidationConfiguration setMetricLengthLimit(int value) {
     this.metricLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setHistogramLengthLimit(int value) {
     this.histogramLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setSpanLengthLimit(int value) {
     this.spanLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setHostLengthLimit(int value) {
     this.hostLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setAnnotationsKeyLengthLimit(int value) {
     this.annotationsKeyLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setAnnotationsValueLengthLimit(int value) {
     this.annotationsValueLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setAnnotationsCountLimit(int value) {
     this.annotationsCountLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setSpanAnnotationsKeyLengthLimit(int value) {
     this.spanAnnotationsKeyLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setSpanAnnotationsValueLengthLimit(int value) {
     this.spanAnnotationsValueLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setSpanAnnotationsCountLimit(int value) {
     this.spanAnnotationsCountLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setLogLengthLimit(int value) {
     this.logLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setLogAnnotationsKeyLengthLimit(int value) {
     this.logAnnotationsKeyLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setLogAnnotationsValueLengthLimit(int value) {
     this.logAnnotationsValueLengthLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
   public ValidationConfiguration setLogAnnotationsCountLimit(int value) {
     this.logAnnotationsCountLimit = value;
+    version.incrementAndGet();
     return this;
   }
 
@@ -228,5 +259,6 @@ public class ValidationConfiguration {
     this.logAnnotationsKeyLengthLimit = other.getLogAnnotationsKeyLengthLimit();
     this.logAnnotationsValueLengthLimit = other.getLogAnnotationsValueLengthLimit();
     this.logAnnotationsCountLimit = other.getLogAnnotationsCountLimit();
+    version.incrementAndGet();
   }
 }
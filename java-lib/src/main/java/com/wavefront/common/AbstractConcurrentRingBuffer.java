@@ -0,0 +1,172 @@
+package com.wavefront.common;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sequencing logic shared by lock-free evicting ring buffers.
+ *
+ * Every appended value is assigned a monotonically increasing sequence number, which maps to
+ * slot {@code sequence % capacity}, so once the buffer is full each append evicts the oldest
+ * value. Each slot additionally records the sequence number of the value it holds (or a
+ * marker while a write is in progress), which allows readers to take snapshots
+ * without blocking writers: values that are overwritten or not yet published while a snapshot
+ * is being taken are skipped.
+ *
+ * In single-writer mode sequence numbers are claimed without compare-and-swap, so only one
+ * thread at a time may append to the buffer. Multi-writer mode allows any number of threads
+ * to append concurrently. A writer that gets delayed for long enough may be lapped by other
+ * writers: if a newer value already claimed its slot, the delayed value is dropped (it would
+ * have been evicted anyway), and if the delayed writer is still storing its value, the newer
+ * writer waits for it to finish, so that values in a slot are never written out of order.
+ */
+@ThreadSafe
+abstract class AbstractConcurrentRingBuffer {
+  private static final long EMPTY = -1L;
+
+  protected final int capacity;
+  private final boolean multiWriter;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLongArray sequences;
+
+  /**
+   * @param capacity    desired capacity.
+   * @param multiWriter whether values can be appended from multiple threads concurrently.
+   */
+  AbstractConcurrentRingBuffer(int capacity, boolean multiWriter) {
+    Preconditions.checkArgument(capacity > 0, "Capacity must be positive");
+    this.capacity = capacity;
+    this.multiWriter = multiWriter;
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, EMPTY);
+    }
+  }
+
+  /**
+   * Returns buffer's capacity (i.e. max number of elements this buffer can hold).
+   *
+   * @return buffer's capacity
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns number of elements in the buffer. In multi-writer mode this includes values
+   * that are still being written.
+   *
+   * @return number of elements
+   */
+  public int size() {
+    return (int) Math.min(tail.get(), capacity);
+  }
+
+  /**
+   * Returns total number of values ever appended to the buffer, including evicted ones.
+   *
+   * @return number of appended values
+   */
+  public long count() {
+    return tail.get();
+  }
+
+  /**
+   * @return whether values can be appended from multiple threads concurrently.
+   */
+  public boolean isMultiWriter() {
+    return multiWriter;
+  }
+
+  /**
+   * Claims the next sequence number and marks its slot as being written. Unless the returned
+   * sequence number is negative, which means that the value has already been evicted by
+   * concurrent writers and must not be stored, must be followed by {@link #endWrite(long)}
+   * once the value is stored in slot {@link #slot(long)}.
+   *
+   * @return claimed sequence number, or -1 if the value must be dropped
+   */
+  protected final long beginWrite() {
+    if (!multiWriter) {
+      long sequence = tail.get();
+      sequences.set(slot(sequence), writing(sequence));
+      return sequence;
+    }
+    long sequence = tail.getAndIncrement();
+    int slot = slot(sequence);
+    while (true) {
+      long current = sequences.get(slot);
+      if (current < EMPTY) {
+        if (-current - 2 > sequence) return -1;
+        // an older value is still being stored in this slot
+        Thread.yield();
+      } else if (current > sequence) {
+        return -1;
+      } else if (sequences.compareAndSet(slot, current, writing(sequence))) {
+        return sequence;
+      }
+    }
+  }
+
+  /**
+   * Publishes the value stored for the specified sequence number.
+   *
+   * @param sequence sequence number returned by {@link #beginWrite()}.
+   */
+  protected final void endWrite(long sequence) {
+    sequences.lazySet(slot(sequence), sequence);
+    if (!multiWriter) {
+      tail.lazySet(sequence + 1);
+    }
+  }
+
+  /**
+   * @param sequence sequence number.
+   * @return marker for a slot in which the value with the specified sequence number is being
+   * stored.
+   */
+  private static long writing(long sequence) {
+    return -sequence - 2;
+  }
+
+  /**
+   * @return sequence number of the first value that has not been claimed yet.
+   */
+  protected final long tail() {
+    return tail.get();
+  }
+
+  /**
+   * @param sequence sequence number.
+   * @return index of the slot that holds the value with the specified sequence number.
+   */
+  protected final int slot(long sequence) {
+    return (int) (sequence % capacity);
+  }
+
+  /**
+   * Checks whether the slot currently holds a published value with the specified sequence
+   * number. Readers should call this both before and after reading the slot, and discard
+   * the value if either check fails.
+   *
+   * @param sequence sequence number.
+   * @return true if the value is published and not overwritten
+   */
+  protected final boolean isPublished(long sequence) {
+    return sequences.get(slot(sequence)) == sequence;
+  }
+
+  /**
+   * Pre-fills the buffer so that it's at full capacity. Must be called from the constructor
+   * of a subclass after all slots are initialized.
+   */
+  protected final void markFull() {
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+    tail.set(capacity);
+  }
+}
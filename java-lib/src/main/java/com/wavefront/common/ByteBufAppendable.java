@@ -0,0 +1,131 @@
+package com.wavefront.common;
+
+import java.nio.ByteBuffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+/**
+ * {@link Appendable} that encodes characters as UTF-8 directly into a {@link ByteBuf}, so that
+ * text serializers can write wire-ready bytes without building an intermediate String.
+ *
+ * Unlike most {@link Appendable} implementations, never throws {@link java.io.IOException}.
+ * Writing past the capacity of a non-expandable buffer throws
+ * {@link IndexOutOfBoundsException}.
+ *
+ * Surrogate pairs may be split across calls, e.g. when characters are appended one by one: a
+ * trailing high surrogate is held back until the next character arrives. Call {@link #finish()}
+ * once done to write out a dangling high surrogate. Lone surrogates are replaced with '?', same
+ * as {@link ByteBufUtil#writeUtf8}.
+ */
+public final class ByteBufAppendable implements Appendable {
+  private static final String NULL = "null";
+
+  private final ByteBuf buf;
+  // high surrogate waiting for its low surrogate, or 0 if none
+  private char pendingHighSurrogate = 0;
+
+  /**
+   * @param buf buffer to write to, starting at its writer index.
+   */
+  public ByteBufAppendable(ByteBuf buf) {
+    this.buf = buf;
+  }
+
+  /**
+   * Wraps the remaining space of a {@link ByteBuffer} for writing. Once done, call
+   * {@link #advance(ByteBuffer, ByteBuf)} to move the position of the original buffer past the
+   * written bytes.
+   *
+   * @param buffer buffer to wrap.
+   * @return empty ByteBuf sharing the content of the buffer between its position and limit.
+   */
+  public static ByteBuf wrap(ByteBuffer buffer) {
+    return Unpooled.wrappedBuffer(buffer).clear();
+  }
+
+  /**
+   * Moves the position of the buffer past the bytes written through its wrapper.
+   *
+   * @param buffer  buffer previously passed to {@link #wrap(ByteBuffer)}.
+   * @param wrapper wrapper returned by {@link #wrap(ByteBuffer)}.
+   */
+  public static void advance(ByteBuffer buffer, ByteBuf wrapper) {
+    buffer.position(buffer.position() + wrapper.writerIndex());
+  }
+
+  /**
+   * @return the underlying buffer.
+   */
+  public ByteBuf buffer() {
+    return buf;
+  }
+
+  @Override
+  public ByteBufAppendable append(CharSequence csq) {
+    if (csq == null) csq = NULL;
+    return append(csq, 0, csq.length());
+  }
+
+  @Override
+  public ByteBufAppendable append(CharSequence csq, int start, int end) {
+    if (csq == null) csq = NULL;
+    if (pendingHighSurrogate != 0 && start < end) {
+      append(csq.charAt(start++));
+    }
+    if (start < end && Character.isHighSurrogate(csq.charAt(end - 1))) {
+      // hold back the high surrogate, its low surrogate may be appended next
+      pendingHighSurrogate = csq.charAt(--end);
+    }
+    ByteBufUtil.writeUtf8(buf, csq, start, end);
+    return this;
+  }
+
+  @Override
+  public ByteBufAppendable append(char c) {
+    if (pendingHighSurrogate != 0) {
+      char high = pendingHighSurrogate;
+      pendingHighSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        int codePoint = Character.toCodePoint(high, c);
+        buf.writeByte(0xf0 | (codePoint >> 18));
+        buf.writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+        buf.writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+        buf.writeByte(0x80 | (codePoint & 0x3f));
+        return this;
+      }
+      buf.writeByte('?');
+    }
+    if (c < 0x80) {
+      buf.writeByte(c);
+    } else if (c < 0x800) {
+      buf.writeByte(0xc0 | (c >> 6));
+      buf.writeByte(0x80 | (c & 0x3f));
+    } else if (Character.isHighSurrogate(c)) {
+      pendingHighSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      // a lone surrogate can't be encoded, same replacement as ByteBufUtil.writeUtf8
+      buf.writeByte('?');
+    } else {
+      buf.writeByte(0xe0 | (c >> 12));
+      buf.writeByte(0x80 | ((c >> 6) & 0x3f));
+      buf.writeByte(0x80 | (c & 0x3f));
+    }
+    return this;
+  }
+
+  /**
+   * Writes out a high surrogate left over at the end of the appended text, which can't be
+   * encoded without its low surrogate, as '?'.
+   *
+   * @return this instance
+   */
+  public ByteBufAppendable finish() {
+    if (pendingHighSurrogate != 0) {
+      pendingHighSurrogate = 0;
+      buf.writeByte('?');
+    }
+    return this;
+  }
+}
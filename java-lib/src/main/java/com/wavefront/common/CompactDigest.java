@@ -0,0 +1,387 @@
+package com.wavefront.common;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.tdunning.math.stats.AVLTreeDigest;
+import com.tdunning.math.stats.TDigest;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A compact t-digest that keeps centroids in primitive arrays, similar to t-digest's
+ * {@code MergingDigest}: incoming values are appended to a small buffer, which is sorted and
+ * merged into the centroid arrays once it fills up. Centroids with equal means are always
+ * combined, and merging of centroids with different means only starts once there are too many
+ * of them, using the same size limits as {@code MergingDigest}. {@link #compress()} releases the buffer, so a digest that is no longer updated only
+ * holds its centroids.
+ *
+ * Only one thread at a time may update the digest, while any number of threads can read it
+ * concurrently. Reads see all values added before the most recent update became visible.
+ */
+public final class CompactDigest {
+  private static final AtomicLongFieldUpdater<CompactDigest> SIZE_UPDATER =
+      AtomicLongFieldUpdater.newUpdater(CompactDigest.class, "size");
+  private static final double[] NO_MEANS = new double[0];
+  private static final int[] NO_COUNTS = new int[0];
+  private static final int BUFFER_FACTOR = 2;
+  private static final int MIN_BUFFER_SIZE = 16;
+  private static final int MAX_CENTROIDS_FACTOR = 2;
+
+  private final double compression;
+  private final int bufferSize;
+  private volatile State state = new State(NO_MEANS, NO_COUNTS, 0, null, null);
+  private volatile long size = 0;
+  /**
+   * Number of values in the buffer of the current state. Only accessed by the writer.
+   */
+  private int buffered = 0;
+
+  /**
+   * Centroids merged so far and the buffer for values that haven't been merged yet. The buffer
+   * is never reused once the state is replaced, so readers can safely scan it: buffered values
+   * are visible to readers as soon as their count is non-zero.
+   */
+  private static final class State {
+    private final double[] means;
+    private final int[] counts;
+    private final long weight;
+    @Nullable
+    private final double[] bufferMeans;
+    @Nullable
+    private final AtomicIntegerArray bufferCounts;
+
+    private State(double[] means, int[] counts, long weight, @Nullable double[] bufferMeans,
+                  @Nullable AtomicIntegerArray bufferCounts) {
+      this.means = means;
+      this.counts = counts;
+      this.weight = weight;
+      this.bufferMeans = bufferMeans;
+      this.bufferCounts = bufferCounts;
+    }
+  }
+
+  /**
+   * Receives centroids of a digest.
+   */
+  @FunctionalInterface
+  public interface CentroidConsumer {
+    /**
+     * @param mean  centroid mean.
+     * @param count number of values in the centroid.
+     */
+    void accept(double mean, int count);
+  }
+
+  /**
+   * @param compression compression factor, same meaning as for t-digest implementations.
+   */
+  public CompactDigest(double compression) {
+    Preconditions.checkArgument(compression > 0, "Compression must be positive");
+    this.compression = compression;
+    this.bufferSize = Math.max(MIN_BUFFER_SIZE, (int) (BUFFER_FACTOR * compression));
+  }
+
+  /**
+   * Adds a value to the digest.
+   *
+   * @param value value to add.
+   * @throws IllegalArgumentException if value is NaN.
+   */
+  public void add(double value) {
+    add(value, 1);
+  }
+
+  /**
+   * Adds a value with the specified weight to the digest. Non-positive weights are ignored.
+   *
+   * @param mean  value to add.
+   * @param count number of times the value was observed.
+   * @throws IllegalArgumentException if value is NaN.
+   */
+  public void add(double mean, int count) {
+    if (Double.isNaN(mean)) {
+      throw new IllegalArgumentException("Cannot add NaN");
+    }
+    if (count <= 0) return;
+    State current = state;
+    if (current.bufferCounts == null) {
+      current = new State(current.means, current.counts, current.weight, new double[bufferSize],
+          new AtomicIntegerArray(bufferSize));
+      state = current;
+    } else if (buffered == bufferSize) {
+      current = merge(current, true);
+      state = current;
+      buffered = 0;
+    }
+    current.bufferMeans[buffered] = mean;
+    // publishes the mean along with the count
+    current.bufferCounts.lazySet(buffered, count);
+    buffered++;
+    SIZE_UPDATER.lazySet(this, size + count);
+  }
+
+  /**
+   * Adds all centroids of another digest to this digest.
+   *
+   * @param other digest to add.
+   */
+  public void add(CompactDigest other) {
+    other.forEachCentroid(this::add);
+  }
+
+  /**
+   * Adds centroids in their serialized form (as used by {@code ReportHistogram} and
+   * {@code Histogram}) to the digest. Extra elements in the longer list are ignored.
+   *
+   * @param means  centroid means.
+   * @param counts centroid counts.
+   */
+  public void add(List<Double> means, List<Integer> counts) {
+    int n = Math.min(means.size(), counts.size());
+    for (int i = 0; i < n; i++) {
+      add(means.get(i), counts.get(i));
+    }
+  }
+
+  /**
+   * Merges buffered values into centroids and releases the buffer. Should be called by the
+   * writer once the digest is not going to be updated for a while.
+   */
+  public void compress() {
+    State current = state;
+    if (current.bufferCounts != null) {
+      state = merge(current, false);
+      buffered = 0;
+    }
+  }
+
+  /**
+   * @return total number of values in the digest.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of centroids the digest would have if compressed now.
+   *
+   * @return number of centroids
+   */
+  public int centroidCount() {
+    int[] count = new int[1];
+    forEachCentroid((mean, weight) -> count[0]++);
+    return count[0];
+  }
+
+  /**
+   * Passes all centroids, sorted by mean, to the consumer. Adjacent centroids with the same
+   * mean are combined.
+   *
+   * @param consumer receives centroid means and counts.
+   */
+  public void forEachCentroid(CentroidConsumer consumer) {
+    State current = state;
+    double[] means = current.means;
+    int[] counts = current.counts;
+    int n = counts.length;
+    if (current.bufferCounts != null && current.bufferCounts.get(0) != 0) {
+      // merge a copy of the buffer, so that the state of the digest isn't affected
+      int bufferLength = current.bufferCounts.length();
+      means = new double[n + bufferLength];
+      counts = new int[n + bufferLength];
+      System.arraycopy(current.means, 0, means, 0, n);
+      System.arraycopy(current.counts, 0, counts, 0, n);
+      long weight = current.weight;
+      for (int i = 0; i < bufferLength; i++) {
+        int count = current.bufferCounts.get(i);
+        if (count == 0) break;
+        means[n] = current.bufferMeans[i];
+        counts[n++] = count;
+        weight += count;
+      }
+      sort(means, counts, 0, n);
+      n = compress(means, counts, n, weight, compression);
+    }
+    int i = 0;
+    while (i < n) {
+      double mean = means[i];
+      long count = counts[i++];
+      while (i < n && means[i] == mean) {
+        count += counts[i++];
+      }
+      consumer.accept(mean, (int) Math.min(count, Integer.MAX_VALUE));
+    }
+  }
+
+  /**
+   * Appends all centroids, sorted by mean, to their serialized form (as used by
+   * {@code ReportHistogram} and {@code Histogram}).
+   *
+   * @param means  list to append centroid means to.
+   * @param counts list to append centroid counts to.
+   */
+  public void appendTo(List<Double> means, List<Integer> counts) {
+    forEachCentroid((mean, count) -> {
+      means.add(mean);
+      counts.add(count);
+    });
+  }
+
+  /**
+   * Copies the content of this digest into a regular {@link TDigest}.
+   *
+   * @return new digest
+   */
+  public TDigest toTDigest() {
+    TDigest digest = new AVLTreeDigest(compression);
+    forEachCentroid(digest::add);
+    return digest;
+  }
+
+  /**
+   * Merges the buffer of the specified state into its centroids.
+   *
+   * @param current     state to merge.
+   * @param keepBuffer  whether the new state should have an empty buffer allocated.
+   * @return new state
+   */
+  private State merge(State current, boolean keepBuffer) {
+    int n = current.counts.length;
+    double[] means = new double[n + buffered];
+    int[] counts = new int[n + buffered];
+    System.arraycopy(current.means, 0, means, 0, n);
+    System.arraycopy(current.counts, 0, counts, 0, n);
+    long weight = current.weight;
+    for (int i = 0; i < buffered; i++) {
+      means[n + i] = current.bufferMeans[i];
+      counts[n + i] = current.bufferCounts.get(i);
+      weight += counts[n + i];
+    }
+    sort(means, counts, 0, n + buffered);
+    int centroids = compress(means, counts, n + buffered, weight, compression);
+    if (centroids < means.length) {
+      means = Arrays.copyOf(means, centroids);
+      counts = Arrays.copyOf(counts, centroids);
+    }
+    if (keepBuffer) {
+      return new State(means, counts, weight, new double[bufferSize],
+          new AtomicIntegerArray(bufferSize));
+    }
+    return new State(means, counts, weight, null, null);
+  }
+
+  /**
+   * Merges adjacent sorted centroids in place. Centroids with equal means are always combined,
+   * which is lossless, so digests with few distinct values stay exact. If there are still more
+   * than {@code MAX_CENTROIDS_FACTOR * compression} centroids, adjacent centroids are merged as
+   * long as they stay within the size limits of {@code MergingDigest}.
+   *
+   * @return number of centroids after merging
+   */
+  @VisibleForTesting
+  static int compress(double[] means, int[] counts, int n, long totalWeight,
+                      double compression) {
+    if (n == 0) return 0;
+    int last = 0;
+    long lastCount = counts[0];
+    for (int i = 1; i < n; i++) {
+      if (means[i] == means[last] && lastCount + counts[i] <= Integer.MAX_VALUE) {
+        lastCount += counts[i];
+      } else {
+        counts[last++] = (int) lastCount;
+        means[last] = means[i];
+        lastCount = counts[i];
+      }
+    }
+    counts[last] = (int) lastCount;
+    n = last + 1;
+    if (n <= MAX_CENTROIDS_FACTOR * compression) return n;
+
+    double weightSoFar = 0;
+    double limit = totalWeight * integratedQ(1, compression);
+    last = 0;
+    lastCount = counts[0];
+    for (int i = 1; i < n; i++) {
+      long proposed = lastCount + counts[i];
+      if (weightSoFar + proposed <= limit && proposed <= Integer.MAX_VALUE) {
+        lastCount = proposed;
+        means[last] += (means[i] - means[last]) * counts[i] / lastCount;
+      } else {
+        counts[last] = (int) lastCount;
+        weightSoFar += lastCount;
+        limit = totalWeight * integratedQ(
+            integratedLocation(weightSoFar / totalWeight, compression) + 1, compression);
+        last++;
+        means[last] = means[i];
+        lastCount = counts[i];
+      }
+    }
+    counts[last] = (int) lastCount;
+    return last + 1;
+  }
+
+  private static double integratedLocation(double q, double compression) {
+    return compression * (Math.asin(2 * q - 1) + Math.PI / 2) / Math.PI;
+  }
+
+  private static double integratedQ(double k, double compression) {
+    return (Math.sin(Math.min(k, compression) * Math.PI / compression - Math.PI / 2) + 1) / 2;
+  }
+
+  /**
+   * Sorts centroids by mean.
+   */
+  @VisibleForTesting
+  static void sort(double[] means, int[] counts, int from, int to) {
+    while (to - from > 16) {
+      int mid = (from + to) >>> 1;
+      double pivot = median(means[from], means[mid], means[to - 1]);
+      int i = from;
+      int j = to - 1;
+      while (i <= j) {
+        while (means[i] < pivot) i++;
+        while (means[j] > pivot) j--;
+        if (i <= j) {
+          swap(means, counts, i++, j--);
+        }
+      }
+      // recurse into the smaller half to bound stack depth
+      if (j + 1 - from < to - i) {
+        sort(means, counts, from, j + 1);
+        from = i;
+      } else {
+        sort(means, counts, i, to);
+        to = j + 1;
+      }
+    }
+    for (int i = from + 1; i < to; i++) {
+      double mean = means[i];
+      int count = counts[i];
+      int j = i - 1;
+      while (j >= from && means[j] > mean) {
+        means[j + 1] = means[j];
+        counts[j + 1] = counts[j];
+        j--;
+      }
+      means[j + 1] = mean;
+      counts[j + 1] = count;
+    }
+  }
+
+  private static double median(double a, double b, double c) {
+    return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+  }
+
+  private static void swap(double[] means, int[] counts, int i, int j) {
+    double mean = means[i];
+    means[i] = means[j];
+    means[j] = mean;
+    int count = counts[i];
+    counts[i] = counts[j];
+    counts[j] = count;
+  }
+}
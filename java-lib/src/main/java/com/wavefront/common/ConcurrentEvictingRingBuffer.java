@@ -0,0 +1,89 @@
+package com.wavefront.common;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free ring buffer that evicts the oldest value on overflow. Unlike
+ * {@link SynchronizedEvictingRingBuffer}, appending doesn't take locks, and reads take a
+ * snapshot of the buffer without blocking writers. Values can't be removed from the buffer, only
+ * evicted by newer values.
+ *
+ * @param <T> type of objects stored
+ */
+@ThreadSafe
+public class ConcurrentEvictingRingBuffer<T> extends AbstractConcurrentRingBuffer {
+  private final AtomicReferenceArray<T> values;
+
+  /**
+   * Creates a buffer that allows values to be appended from multiple threads concurrently.
+   *
+   * @param capacity desired capacity.
+   */
+  public ConcurrentEvictingRingBuffer(int capacity) {
+    this(capacity, true);
+  }
+
+  /**
+   * @param capacity    desired capacity.
+   * @param multiWriter whether values can be appended from multiple threads concurrently.
+   *                    if false, only one thread at a time may append to the buffer, which
+   *                    makes appends cheaper.
+   */
+  public ConcurrentEvictingRingBuffer(int capacity, boolean multiWriter) {
+    super(capacity, multiWriter);
+    this.values = new AtomicReferenceArray<>(capacity);
+  }
+
+  /**
+   * @param capacity     desired capacity.
+   * @param multiWriter  whether values can be appended from multiple threads concurrently.
+   *                     if false, only one thread at a time may append to the buffer, which
+   *                     makes appends cheaper.
+   * @param defaultValue pre-fill the buffer with this default value.
+   */
+  public ConcurrentEvictingRingBuffer(int capacity, boolean multiWriter,
+                                      @Nullable T defaultValue) {
+    this(capacity, multiWriter);
+    for (int i = 0; i < capacity; i++) {
+      values.set(i, defaultValue);
+    }
+    markFull();
+  }
+
+  /**
+   * Adds a value to the buffer, evicting the oldest value if the buffer is full.
+   *
+   * @param value value to add.
+   */
+  public void add(@Nullable T value) {
+    long sequence = beginWrite();
+    if (sequence < 0) return;
+    values.lazySet(slot(sequence), value);
+    endWrite(sequence);
+  }
+
+  /**
+   * Returns a snapshot of the buffer's content, from the oldest value to the most recent one.
+   * Values that are being overwritten or written while the snapshot is taken are omitted.
+   *
+   * @return unmodifiable list of values
+   */
+  public List<T> toList() {
+    long end = tail();
+    long start = Math.max(0, end - capacity);
+    List<T> result = new ArrayList<>((int) (end - start));
+    for (long sequence = start; sequence < end; sequence++) {
+      if (!isPublished(sequence)) continue;
+      T value = values.get(slot(sequence));
+      if (isPublished(sequence)) {
+        result.add(value);
+      }
+    }
+    return Collections.unmodifiableList(result);
+  }
+}
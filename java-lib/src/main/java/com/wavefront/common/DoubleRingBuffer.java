@@ -0,0 +1,266 @@
+package com.wavefront.common;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free ring buffer of primitive {@code double} values that evicts the oldest value on
+ * overflow. Stores values without boxing, appending doesn't take locks, and reads take a
+ * snapshot of the buffer without blocking writers.
+ *
+ * In single-writer mode, the buffer also keeps a sliding sum of its values: every append adds
+ * the new value and subtracts the evicted one, with Neumaier compensation, so the sum of all
+ * values in the buffer (see {@link #sum()}) is computed in constant time. NaNs and infinities
+ * are counted rather than summed, and the sliding sum is recomputed from the stored values
+ * every {@code capacity} appends, so a non-finite value or a huge outlier only affects the sum
+ * while it is in the buffer. Sums of fewer values than the buffer holds, and all sums in multi-writer mode, are
+ * computed from the stored values.
+ *
+ * @see ConcurrentEvictingRingBuffer
+ */
+@ThreadSafe
+public class DoubleRingBuffer extends AbstractConcurrentRingBuffer {
+  /**
+   * Values are stored as raw long bits, since there is no atomic array of doubles.
+   */
+  private final AtomicLongArray values;
+  /**
+   * Sum of all values in the buffer as raw long bits, published by the writer after every
+   * append. Only maintained in single-writer mode.
+   */
+  @Nullable
+  private final AtomicLong windowSum;
+  /**
+   * Sliding sum of finite values, its compensation, number of non-finite values in the buffer
+   * and number of appends since the sum was last recomputed. Only accessed by the writer thread.
+   */
+  private double sum = 0;
+  private double compensation = 0;
+  private int nanCount = 0;
+  private int positiveInfinityCount = 0;
+  private int negativeInfinityCount = 0;
+  private int appendsSinceRecompute = 0;
+
+  /**
+   * Creates a buffer that allows values to be appended from multiple threads concurrently.
+   *
+   * @param capacity desired capacity.
+   */
+  public DoubleRingBuffer(int capacity) {
+    this(capacity, true);
+  }
+
+  /**
+   * @param capacity    desired capacity.
+   * @param multiWriter whether values can be appended from multiple threads concurrently.
+   *                    if false, only one thread at a time may append to the buffer, which
+   *                    makes appends cheaper.
+   */
+  public DoubleRingBuffer(int capacity, boolean multiWriter) {
+    super(capacity, multiWriter);
+    this.values = new AtomicLongArray(capacity);
+    this.windowSum = multiWriter ? null : new AtomicLong(Double.doubleToRawLongBits(0));
+  }
+
+  /**
+   * @param capacity     desired capacity.
+   * @param multiWriter  whether values can be appended from multiple threads concurrently.
+   *                     if false, only one thread at a time may append to the buffer, which
+   *                     makes appends cheaper.
+   * @param defaultValue pre-fill the buffer with this default value.
+   */
+  public DoubleRingBuffer(int capacity, boolean multiWriter, double defaultValue) {
+    this(capacity, multiWriter);
+    long bits = Double.doubleToRawLongBits(defaultValue);
+    for (int i = 0; i < capacity; i++) {
+      values.set(i, bits);
+    }
+    markFull();
+    if (windowSum != null) {
+      recompute(capacity);
+    }
+  }
+
+  /**
+   * Adds a value to the buffer, evicting the oldest value if the buffer is full.
+   *
+   * @param value value to add.
+   */
+  public void add(double value) {
+    long sequence = beginWrite();
+    if (sequence < 0) return;
+    int slot = slot(sequence);
+    double evicted = sequence >= capacity ? Double.longBitsToDouble(values.get(slot)) : 0;
+    values.lazySet(slot, Double.doubleToRawLongBits(value));
+    endWrite(sequence);
+    if (windowSum != null) {
+      accumulate(value, 1);
+      accumulate(evicted, -1);
+      if (++appendsSinceRecompute >= capacity || !Double.isFinite(sum + compensation)) {
+        recompute((int) Math.min(sequence + 1, capacity));
+      } else {
+        publishSum();
+      }
+    }
+  }
+
+  /**
+   * Returns a snapshot of the buffer's content, from the oldest value to the most recent one.
+   * Values that are being overwritten or written while the snapshot is taken are omitted.
+   *
+   * @return array of values
+   */
+  public double[] toArray() {
+    long end = tail();
+    long start = Math.max(0, end - capacity);
+    double[] result = new double[(int) (end - start)];
+    int size = 0;
+    for (long sequence = start; sequence < end; sequence++) {
+      if (!isPublished(sequence)) continue;
+      long bits = values.get(slot(sequence));
+      if (isPublished(sequence)) {
+        result[size++] = Double.longBitsToDouble(bits);
+      }
+    }
+    return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  /**
+   * Returns the sum of all values in the buffer. Takes constant time in single-writer mode.
+   *
+   * @return sum of values
+   */
+  public double sum() {
+    return sum(capacity);
+  }
+
+  /**
+   * Returns the sum of the specified number of most recent values. If the buffer holds fewer
+   * values, returns the sum of all values in the buffer. Takes constant time in single-writer
+   * mode if the window covers all values in the buffer, and time proportional to the window
+   * otherwise.
+   *
+   * @param window number of most recent values to sum up.
+   * @return sum of values
+   * @throws IllegalArgumentException if window is negative or exceeds capacity.
+   */
+  public double sum(int window) {
+    Preconditions.checkArgument(window >= 0 && window <= capacity,
+        "Window must be between 0 and " + capacity);
+    if (windowSum == null) {
+      double[] snapshot = toArray();
+      return compensatedSum(snapshot, Math.max(0, snapshot.length - window), snapshot.length);
+    }
+    if (window == 0) return 0;
+    if (window >= size()) {
+      return Double.longBitsToDouble(windowSum.get());
+    }
+    while (true) {
+      long end = tail();
+      double[] recent = new double[window];
+      boolean complete = true;
+      for (int i = 0; i < window && complete; i++) {
+        long sequence = end - window + i;
+        long bits = values.get(slot(sequence));
+        complete = isPublished(sequence);
+        recent[i] = Double.longBitsToDouble(bits);
+      }
+      if (complete) {
+        return compensatedSum(recent, 0, window);
+      }
+      // the oldest value in the window is being evicted, retry once the writer is done
+      Thread.yield();
+    }
+  }
+
+  /**
+   * Adds a value to or removes it from the sliding sum.
+   *
+   * @param value value to add or remove.
+   * @param sign  1 to add the value, -1 to remove it.
+   */
+  private void accumulate(double value, int sign) {
+    if (Double.isNaN(value)) {
+      nanCount += sign;
+    } else if (value == Double.POSITIVE_INFINITY) {
+      positiveInfinityCount += sign;
+    } else if (value == Double.NEGATIVE_INFINITY) {
+      negativeInfinityCount += sign;
+    } else {
+      addToSum(sign * value);
+    }
+  }
+
+  /**
+   * Adds a finite value to the sliding sum (Neumaier's variant of Kahan summation).
+   */
+  private void addToSum(double value) {
+    double t = sum + value;
+    if (Math.abs(sum) >= Math.abs(value)) {
+      compensation += (sum - t) + value;
+    } else {
+      compensation += (value - t) + sum;
+    }
+    sum = t;
+  }
+
+  /**
+   * Recomputes the sliding sum from the stored values and publishes it.
+   *
+   * @param size number of values in the buffer.
+   */
+  private void recompute(int size) {
+    sum = 0;
+    compensation = 0;
+    nanCount = 0;
+    positiveInfinityCount = 0;
+    negativeInfinityCount = 0;
+    appendsSinceRecompute = 0;
+    for (int i = 0; i < size; i++) {
+      accumulate(Double.longBitsToDouble(values.get(i)), 1);
+    }
+    publishSum();
+  }
+
+  private void publishSum() {
+    double result;
+    if (nanCount > 0 || (positiveInfinityCount > 0 && negativeInfinityCount > 0)) {
+      result = Double.NaN;
+    } else if (positiveInfinityCount > 0) {
+      result = Double.POSITIVE_INFINITY;
+    } else if (negativeInfinityCount > 0) {
+      result = Double.NEGATIVE_INFINITY;
+    } else {
+      result = sum + compensation;
+    }
+    windowSum.lazySet(Double.doubleToRawLongBits(result));
+  }
+
+  private static double compensatedSum(double[] values, int from, int to) {
+    double sum = 0;
+    double compensation = 0;
+    for (int i = from; i < to; i++) {
+      if (!Double.isFinite(values[i])) {
+        // the result is not finite either, no need for compensation
+        double naive = 0;
+        for (int j = from; j < to; j++) {
+          naive += values[j];
+        }
+        return naive;
+      }
+      double t = sum + values[i];
+      if (Math.abs(sum) >= Math.abs(values[i])) {
+        compensation += (sum - t) + values[i];
+      } else {
+        compensation += (values[i] - t) + sum;
+      }
+      sum = t;
+    }
+    return sum + compensation;
+  }
+}
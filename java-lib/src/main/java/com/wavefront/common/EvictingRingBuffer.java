@@ -13,8 +13,6 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.RandomAccess;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * A basic ring buffer with an ability to evict values on overflow.
@@ -175,11 +173,10 @@ public class EvictingRingBuffer<T> extends AbstractCollection<T>
     } else if (tailPtr > headPtr) {
       return Collections.unmodifiableList(buffer.subList(headPtr + 1, tailPtr + 1));
     } else {
-      return Collections.unmodifiableList(
-          Stream.concat(
-              buffer.subList(headPtr + 1, bufferSize).stream(),
-              buffer.subList(0, tailPtr + 1).stream()).
-              collect(Collectors.toList()));
+      List<T> result = new ArrayList<>(size());
+      result.addAll(buffer.subList(headPtr + 1, bufferSize));
+      result.addAll(buffer.subList(0, tailPtr + 1));
+      return Collections.unmodifiableList(result);
     }
   }
 
@@ -191,9 +188,7 @@ public class EvictingRingBuffer<T> extends AbstractCollection<T>
     } else if (tailPtr > headPtr) {
       return buffer.subList(headPtr + 1, tailPtr + 1).toArray();
     } else {
-      return Stream.concat(
-          buffer.subList(headPtr + 1, bufferSize).stream(),
-          buffer.subList(0, tailPtr + 1).stream()).toArray();
+      return toList().toArray();
     }
   }
 
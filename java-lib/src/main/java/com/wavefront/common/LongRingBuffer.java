@@ -0,0 +1,160 @@
+package com.wavefront.common;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free ring buffer of primitive {@code long} values that evicts the oldest value on
+ * overflow. Stores values without boxing, appending doesn't take locks, and reads take a
+ * snapshot of the buffer without blocking writers.
+ *
+ * In single-writer mode, the buffer also keeps running totals, so that the sum of any number
+ * of most recent values (see {@link #sum(int)}) is computed in constant time. In multi-writer
+ * mode the order in which concurrent values are appended is not known up front, so sums are
+ * computed from a snapshot instead.
+ *
+ * @see ConcurrentEvictingRingBuffer
+ */
+@ThreadSafe
+public class LongRingBuffer extends AbstractConcurrentRingBuffer {
+  private final AtomicLongArray values;
+  /**
+   * For each slot, the sum of all values appended before the one stored in it. Only maintained
+   * in single-writer mode.
+   */
+  @Nullable
+  private final AtomicLongArray totals;
+  /**
+   * Sum of all values appended so far (wraps around on overflow, which still yields correct
+   * differences). Only accessed by the writer thread.
+   */
+  private long total = 0;
+
+  /**
+   * Creates a buffer that allows values to be appended from multiple threads concurrently.
+   *
+   * @param capacity desired capacity.
+   */
+  public LongRingBuffer(int capacity) {
+    this(capacity, true);
+  }
+
+  /**
+   * @param capacity    desired capacity.
+   * @param multiWriter whether values can be appended from multiple threads concurrently.
+   *                    if false, only one thread at a time may append to the buffer, which
+   *                    makes appends cheaper.
+   */
+  public LongRingBuffer(int capacity, boolean multiWriter) {
+    super(capacity, multiWriter);
+    this.values = new AtomicLongArray(capacity);
+    this.totals = multiWriter ? null : new AtomicLongArray(capacity);
+  }
+
+  /**
+   * @param capacity     desired capacity.
+   * @param multiWriter  whether values can be appended from multiple threads concurrently.
+   *                     if false, only one thread at a time may append to the buffer, which
+   *                     makes appends cheaper.
+   * @param defaultValue pre-fill the buffer with this default value.
+   */
+  public LongRingBuffer(int capacity, boolean multiWriter, long defaultValue) {
+    this(capacity, multiWriter);
+    for (int i = 0; i < capacity; i++) {
+      values.set(i, defaultValue);
+      if (totals != null) {
+        totals.set(i, total);
+      }
+      total += defaultValue;
+    }
+    markFull();
+  }
+
+  /**
+   * Adds a value to the buffer, evicting the oldest value if the buffer is full.
+   *
+   * @param value value to add.
+   */
+  public void add(long value) {
+    long sequence = beginWrite();
+    if (sequence < 0) return;
+    int slot = slot(sequence);
+    values.lazySet(slot, value);
+    if (totals != null) {
+      totals.lazySet(slot, total);
+      total += value;
+    }
+    endWrite(sequence);
+  }
+
+  /**
+   * Returns a snapshot of the buffer's content, from the oldest value to the most recent one.
+   * Values that are being overwritten or written while the snapshot is taken are omitted.
+   *
+   * @return array of values
+   */
+  public long[] toArray() {
+    long end = tail();
+    long start = Math.max(0, end - capacity);
+    long[] result = new long[(int) (end - start)];
+    int size = 0;
+    for (long sequence = start; sequence < end; sequence++) {
+      if (!isPublished(sequence)) continue;
+      long value = values.get(slot(sequence));
+      if (isPublished(sequence)) {
+        result[size++] = value;
+      }
+    }
+    return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  /**
+   * Returns the sum of all values in the buffer.
+   *
+   * @return sum of values
+   */
+  public long sum() {
+    return sum(capacity);
+  }
+
+  /**
+   * Returns the sum of the specified number of most recent values. If the buffer holds fewer
+   * values, returns the sum of all values in the buffer. Takes constant time in single-writer
+   * mode.
+   *
+   * @param window number of most recent values to sum up.
+   * @return sum of values
+   * @throws IllegalArgumentException if window is negative or exceeds capacity.
+   */
+  public long sum(int window) {
+    Preconditions.checkArgument(window >= 0 && window <= capacity,
+        "Window must be between 0 and " + capacity);
+    if (totals == null) {
+      long[] snapshot = toArray();
+      long sum = 0;
+      for (int i = Math.max(0, snapshot.length - window); i < snapshot.length; i++) {
+        sum += snapshot[i];
+      }
+      return sum;
+    }
+    while (true) {
+      long end = tail();
+      if (end == 0 || window == 0) return 0;
+      long first = Math.max(0, end - window);
+      long last = end - 1;
+      if (isPublished(first) && isPublished(last)) {
+        long firstTotal = totals.get(slot(first));
+        long lastTotal = totals.get(slot(last)) + values.get(slot(last));
+        if (isPublished(first) && isPublished(last)) {
+          return lastTotal - firstTotal;
+        }
+      }
+      // the oldest value in the window is being evicted, retry once the writer is done
+      Thread.yield();
+    }
+  }
+}
@@ -1,12 +1,11 @@
 package com.wavefront.common;
 
 import com.google.common.base.Splitter;
+import com.google.common.primitives.Ints;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -30,23 +29,36 @@ import javax.annotation.Nullable;
  * </ul>
  * This code was originally mostly contained in GraphiteFormatter class and moved into a single
  * re-usable class.
+ *
+ * Components are extracted in a single pass over segment boundaries, without splitting the
+ * metric name into strings; results are assembled in per-thread buffers.
  * @author Mike McLaughlin (mike@wavefront.com)
  */
 public class MetricMangler {
 
+  /**
+   * Segment boundaries and output buffer, reused between calls on the same thread.
+   */
+  private static final class Buffers {
+    // start and end offsets of each segment
+    private int[] bounds = new int[64];
+    private final StringBuilder sb = new StringBuilder(128);
+  }
+
+  private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
   // Fields to extract and assemble, in order, as the host name
-  private final List<Integer> hostIndices = new ArrayList<>();
+  private final int[] hostIndices;
   private int maxField = 0;
 
-  // Lookup set for which indices are hostname related
-  private final Set<Integer> hostIndexSet = new HashSet<>();
+  // Lookup mask for which indices are hostname related
+  private final boolean[] hostMask;
 
-  // Characters which should be interpreted as dots
-  @Nullable
-  private final String delimiters;
+  // Lookup table for characters which should be interpreted as dots
+  private final boolean[] delimiterTable;
 
   // Fields to remove
-  private final Set<Integer> removeIndexSet = new HashSet<>();
+  private final boolean[] removeMask;
 
   /**
    * Constructor.
@@ -61,6 +73,7 @@ public class MetricMangler {
   public MetricMangler(@Nullable String sourceFields,
                        @Nullable String delimiters,
                        @Nullable String removeFields) {
+    List<Integer> hostIndices = new ArrayList<>();
     if (sourceFields != null) {
       // Store ordered field indices and lookup set
       Iterable<String> fields = Splitter.on(",").omitEmptyStrings().trimResults().split(sourceFields);
@@ -71,14 +84,16 @@ public class MetricMangler {
             throw new IllegalArgumentException("Can't define a field of index 0 or less; indices must be 1-based");
           }
           hostIndices.add(fieldIndex - 1);
-          hostIndexSet.add(fieldIndex - 1);
           if (fieldIndex > maxField) {
             maxField = fieldIndex;
           }
         }
       }
     }
+    this.hostIndices = Ints.toArray(hostIndices);
+    this.hostMask = toMask(hostIndices);
 
+    List<Integer> removeIndices = new ArrayList<>();
     if (removeFields != null) {
       Iterable<String> fields = Splitter.on(",").omitEmptyStrings().trimResults().split(removeFields);
       for (String field : fields) {
@@ -87,13 +102,36 @@ public class MetricMangler {
           if (fieldIndex <= 0) {
             throw new IllegalArgumentException("Can't define a field to remove of index 0 or less; indices must be 1-based");
           }
-          removeIndexSet.add(fieldIndex - 1);
+          removeIndices.add(fieldIndex - 1);
         }
       }
     }
+    this.removeMask = toMask(removeIndices);
 
-    // Store as-is; going to loop through chars anyway
-    this.delimiters = delimiters;
+    int maxDelimiter = -1;
+    if (delimiters != null) {
+      for (int i = 0; i < delimiters.length(); i++) {
+        maxDelimiter = Math.max(maxDelimiter, delimiters.charAt(i));
+      }
+    }
+    this.delimiterTable = new boolean[maxDelimiter + 1];
+    if (delimiters != null) {
+      for (int i = 0; i < delimiters.length(); i++) {
+        delimiterTable[delimiters.charAt(i)] = true;
+      }
+    }
+  }
+
+  private static boolean[] toMask(List<Integer> indices) {
+    int max = -1;
+    for (int index : indices) {
+      max = Math.max(max, index);
+    }
+    boolean[] mask = new boolean[max + 1];
+    for (int index : indices) {
+      mask[index] = true;
+    }
+    return mask;
   }
 
   /**
@@ -119,54 +157,61 @@ public class MetricMangler {
    *                                  maximum source component index
    */
   public MetricComponents extractComponents(final String metric) {
-    final String[] segments = metric.split("\\.");
+    final Buffers buffers = BUFFERS.get();
+    final int segments = findSegments(metric, buffers);
+    final int[] bounds = buffers.bounds;
     final MetricComponents rtn = new MetricComponents();
 
     // Is the metric name long enough?
-    if (segments.length < maxField) {
+    if (segments < maxField) {
       throw new IllegalArgumentException(
           String.format("Metric data |%s| provided was incompatible with format.", metric));
     }
 
     // Assemble the newly shorn metric name, in original order
-    StringBuilder buf = new StringBuilder();
-    for (int i = 0; i < segments.length; i++) {
-      final String segment = segments[i];
-      if (!hostIndexSet.contains(i) && !removeIndexSet.contains(i)) {
+    final StringBuilder buf = buffers.sb;
+    buf.setLength(0);
+    boolean unchanged = true;
+    for (int i = 0; i < segments; i++) {
+      int start = bounds[i * 2];
+      int end = bounds[i * 2 + 1];
+      if (isSet(hostMask, i) || isSet(removeMask, i)) {
+        unchanged = false;
+      } else {
         if (buf.length() > 0) {
           buf.append('.');
+        } else if (i > 0) {
+          // leading empty segments are dropped
+          unchanged = false;
         }
-        buf.append(segment);
+        buf.append(metric, start, end);
       }
     }
-    rtn.metric = buf.toString();
+    // trailing empty segments are dropped as well
+    unchanged &= segments == 0 ? metric.isEmpty() : bounds[segments * 2 - 1] == metric.length();
 
     // Extract Graphite 1.1+ tags, if present
-    if (rtn.metric.indexOf(";") > 0) {
-      final String[] annotationSegments = rtn.metric.split(";");
-      rtn.annotations = Arrays.copyOfRange(annotationSegments, 1, annotationSegments.length);
-      rtn.metric = annotationSegments[0];
+    int tagsStart = buf.indexOf(";");
+    if (tagsStart > 0) {
+      rtn.annotations = splitTags(buf, tagsStart);
+      rtn.metric = buf.substring(0, tagsStart);
+    } else {
+      rtn.metric = unchanged ? metric : buf.toString();
     }
 
     // Loop over host components in configured order, and replace all delimiters with dots
-    if (hostIndices != null && !hostIndices.isEmpty()) {
-      buf = new StringBuilder();
-      for (int f = 0; f < hostIndices.size(); f++) {
-        char[] segmentChars = segments[hostIndices.get(f)].toCharArray();
-        if (delimiters != null && !delimiters.isEmpty()) {
-          for (int i = 0; i < segmentChars.length; i++) {
-            for (int c = 0; c < delimiters.length(); c++) {
-              if (segmentChars[i] == delimiters.charAt(c)) {
-                segmentChars[i] = '.'; // overwrite it
-              }
-            }
-          }
-        }
+    if (hostIndices.length > 0) {
+      buf.setLength(0);
+      for (int f = 0; f < hostIndices.length; f++) {
         if (f > 0) {
           // join host segments with dot, if you're after the first one
           buf.append('.');
         }
-        buf.append(segmentChars);
+        int end = bounds[hostIndices[f] * 2 + 1];
+        for (int i = bounds[hostIndices[f] * 2]; i < end; i++) {
+          char c = metric.charAt(i);
+          buf.append(c < delimiterTable.length && delimiterTable[c] ? '.' : c);
+        }
       }
       rtn.source = buf.toString();
     } else {
@@ -175,4 +220,67 @@ public class MetricMangler {
 
     return rtn;
   }
+
+  private static boolean isSet(boolean[] mask, int index) {
+    return index < mask.length && mask[index];
+  }
+
+  /**
+   * Finds segment boundaries, with the same semantics as {@code metric.split("\\.")}: trailing
+   * empty segments are ignored, unless there are no dots at all.
+   *
+   * @return number of segments
+   */
+  private static int findSegments(String metric, Buffers buffers) {
+    int[] bounds = buffers.bounds;
+    int segments = 0;
+    int start = 0;
+    int length = metric.length();
+    for (int i = 0; i <= length; i++) {
+      if (i == length || metric.charAt(i) == '.') {
+        if (segments * 2 + 2 > bounds.length) {
+          bounds = buffers.bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[segments * 2] = start;
+        bounds[segments * 2 + 1] = i;
+        segments++;
+        start = i + 1;
+      }
+    }
+    if (segments == 1) return 1;
+    while (segments > 0 && bounds[segments * 2 - 2] == bounds[segments * 2 - 1]) {
+      segments--;
+    }
+    return segments;
+  }
+
+  /**
+   * Splits tags after the metric name, with the same semantics as {@code split(";")}.
+   */
+  private static String[] splitTags(CharSequence metric, int tagsStart) {
+    int end = metric.length();
+    // trailing empty tags are ignored
+    while (end > tagsStart && metric.charAt(end - 1) == ';') {
+      end--;
+    }
+    int count = 0;
+    for (int i = tagsStart; i < end; i++) {
+      if (metric.charAt(i) == ';') count++;
+    }
+    String[] tags = new String[count];
+    int start = tagsStart + 1;
+    for (int t = 0; t < count; t++) {
+      int next = t == count - 1 ? end : indexOf(metric, ';', start);
+      tags[t] = metric.subSequence(start, next).toString();
+      start = next + 1;
+    }
+    return tags;
+  }
+
+  private static int indexOf(CharSequence s, char c, int from) {
+    for (int i = from; i < s.length(); i++) {
+      if (s.charAt(i) == c) return i;
+    }
+    return -1;
+  }
 }
@@ -0,0 +1,230 @@
+package com.wavefront.common;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import dk.brics.automaton.RunAutomaton;
+
+/**
+ * A set of wildcard patterns (same syntax as {@link PatternMatchPredicate}) matched in a single
+ * pass over the input: instead of running every pattern's automaton in turn, the automata are
+ * combined into one DFA whose states remember which patterns are still alive and which of them
+ * accept, so matching is O(length of input) regardless of the number of patterns.
+ *
+ * The combined DFA is built lazily, only for states and transitions that are actually reached
+ * by inputs, since building it eagerly may blow up for large sets of patterns with multiple
+ * wildcards. Once {@code maxStates} states are cached, new transitions are computed on the fly
+ * without caching them. Instances are thread-safe.
+ */
+public final class PatternSet {
+  private static final int DEFAULT_MAX_STATES = 10_000;
+
+  private final RunAutomaton[] automata;
+  private final boolean caseInsensitive;
+  private final int maxStates;
+  /**
+   * Start of every character class, merged from all automata.
+   */
+  private final char[] points;
+  /**
+   * Character classes for ASCII characters, to avoid a binary search for the common case.
+   */
+  private final int[] asciiClasses = new int[128];
+  private final State initialState;
+  private final Map<State, State> states = new HashMap<>();
+
+  /**
+   * A state of the combined DFA: the set of pattern automata that are still alive, with their
+   * current states.
+   */
+  private static final class State {
+    /**
+     * (pattern id, automaton state) pairs, ordered by pattern id.
+     */
+    private final int[] components;
+    /**
+     * Ids of patterns that accept in this state.
+     */
+    private final int[] accepted;
+    /**
+     * Cached transitions per character class. Published racily: a reader that sees null
+     * computes the transition under the lock.
+     */
+    private final State[] next;
+
+    private State(int[] components, int[] accepted, int classes) {
+      this.components = components;
+      this.accepted = accepted;
+      this.next = new State[classes];
+    }
+
+    private boolean isDead() {
+      return components.length == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof State && Arrays.equals(components, ((State) o).components);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(components);
+    }
+  }
+
+  private PatternSet(List<String> patterns, boolean caseInsensitive, int maxStates) {
+    this.caseInsensitive = caseInsensitive;
+    this.maxStates = maxStates;
+    this.automata = new RunAutomaton[patterns.size()];
+    TreeSet<Character> allPoints = new TreeSet<>();
+    allPoints.add('\u0000');
+    for (int i = 0; i < automata.length; i++) {
+      String pattern = patterns.get(i).trim();
+      automata[i] = PatternMatchPredicate.makeAutomaton(caseInsensitive ?
+          pattern.toLowerCase() : pattern);
+      for (char point : automata[i].getCharIntervals()) {
+        allPoints.add(point);
+      }
+    }
+    this.points = new char[allPoints.size()];
+    int index = 0;
+    for (char point : allPoints) {
+      points[index++] = point;
+    }
+    for (char c = 0; c < asciiClasses.length; c++) {
+      asciiClasses[c] = findClass(c);
+    }
+    int[] components = new int[automata.length * 2];
+    for (int i = 0; i < automata.length; i++) {
+      components[i * 2] = i;
+      components[i * 2 + 1] = automata[i].getInitialState();
+    }
+    this.initialState = intern(newState(components));
+  }
+
+  /**
+   * Compiles a set of wildcard patterns.
+   *
+   * @param patterns        patterns to compile. pattern ids are indexes in this list.
+   * @param caseInsensitive whether matching should ignore case.
+   * @return pattern set
+   */
+  public static PatternSet compile(List<String> patterns, boolean caseInsensitive) {
+    return new PatternSet(patterns, caseInsensitive, DEFAULT_MAX_STATES);
+  }
+
+  @VisibleForTesting
+  static PatternSet compile(List<String> patterns, boolean caseInsensitive, int maxStates) {
+    return new PatternSet(patterns, caseInsensitive, maxStates);
+  }
+
+  /**
+   * @return number of patterns in the set.
+   */
+  public int size() {
+    return automata.length;
+  }
+
+  /**
+   * Returns ids of all patterns that match the input.
+   *
+   * @param input string to match.
+   * @return ids of matching patterns, empty if none match
+   */
+  public BitSet matches(String input) {
+    BitSet result = new BitSet(automata.length);
+    for (int id : run(input).accepted) {
+      result.set(id);
+    }
+    return result;
+  }
+
+  /**
+   * Checks whether any pattern matches the input.
+   *
+   * @param input string to match.
+   * @return true if at least one pattern matches
+   */
+  public boolean matchesAny(String input) {
+    return run(input).accepted.length > 0;
+  }
+
+  /**
+   * @return number of cached states of the combined DFA.
+   */
+  @VisibleForTesting
+  int getCachedStates() {
+    synchronized (states) {
+      return states.size();
+    }
+  }
+
+  private State run(String input) {
+    if (caseInsensitive) input = input.toLowerCase();
+    State state = initialState;
+    for (int i = 0; i < input.length() && !state.isDead(); i++) {
+      char c = input.charAt(i);
+      int cls = c < asciiClasses.length ? asciiClasses[c] : findClass(c);
+      State next = state.next[cls];
+      state = next == null ? step(state, cls) : next;
+    }
+    return state;
+  }
+
+  private int findClass(char c) {
+    int index = Arrays.binarySearch(points, c);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  /**
+   * Computes (and caches, unless the cache is full) a transition of the combined DFA.
+   */
+  private State step(State state, int cls) {
+    // all automata have the same transitions for every character in a class, use the first one
+    char c = points[cls];
+    int[] components = new int[state.components.length];
+    int length = 0;
+    for (int i = 0; i < state.components.length; i += 2) {
+      int next = automata[state.components[i]].step(state.components[i + 1], c);
+      if (next != -1) {
+        components[length++] = state.components[i];
+        components[length++] = next;
+      }
+    }
+    State next = newState(Arrays.copyOf(components, length));
+    synchronized (states) {
+      State cached = states.get(next);
+      if (cached == null) {
+        if (states.size() >= maxStates) return next;
+        cached = intern(next);
+      }
+      state.next[cls] = cached;
+      return cached;
+    }
+  }
+
+  private State newState(int[] components) {
+    int[] accepted = new int[components.length / 2];
+    int count = 0;
+    for (int i = 0; i < components.length; i += 2) {
+      if (automata[components[i]].isAccept(components[i + 1])) {
+        accepted[count++] = components[i];
+      }
+    }
+    return new State(components, Arrays.copyOf(accepted, count), points.length);
+  }
+
+  private State intern(State state) {
+    synchronized (states) {
+      State existing = states.putIfAbsent(state, state);
+      return existing == null ? state : existing;
+    }
+  }
+}
@@ -1,9 +1,10 @@
 package com.wavefront.common;
 
-import org.apache.commons.lang.StringUtils;
 import wavefront.report.Annotation;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 
@@ -13,11 +14,64 @@ import java.util.Map;
  * @author vasily@wavefront.com
  */
 public abstract class SerializerUtils {
-  private static final String DOUBLE_QUOTE = "\"";
+  private static final char DOUBLE_QUOTE = '"';
   private static final String ESCAPED_DOUBLE_QUOTE = "\\\"";
 
+  /**
+   * Scratch space for formatting numbers for appendables other than StringBuilder.
+   */
+  private static final ThreadLocal<StringBuilder> NUMBER_BUFFER =
+      ThreadLocal.withInitial(() -> new StringBuilder(24));
+
+  /**
+   * Writes a value to an {@link Appendable} that is known not to throw {@link IOException},
+   * such as {@link StringBuilder} or {@link ByteBufAppendable}.
+   *
+   * @param out      Appendable to write to.
+   * @param value    value to write.
+   * @param appender writes the value.
+   * @return Appendable instance
+   * @throws UncheckedIOException if the appendable does throw.
+   */
+  public static <A extends Appendable, T> A appendUnchecked(A out, T value,
+                                                            Appender<T> appender) {
+    try {
+      appender.append(out, value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out;
+  }
+
   public static StringBuilder appendQuoted(StringBuilder sb, String raw) {
-    return sb.append(DOUBLE_QUOTE).append(escapeQuotes(raw)).append(DOUBLE_QUOTE);
+    return appendUnchecked(sb, raw, SerializerUtils::appendQuoted);
+  }
+
+  /**
+   * Append a double-quoted string, escaping double quotes in place.
+   *
+   * @param out Appendable to write to.
+   * @param raw String to quote.
+   * @return Appendable instance
+   */
+  public static <T extends Appendable> T appendQuoted(T out, @Nullable CharSequence raw)
+      throws IOException {
+    out.append(DOUBLE_QUOTE);
+    if (raw == null) {
+      out.append("null");
+    } else {
+      int len = raw.length();
+      int start = 0;
+      for (int i = 0; i < len; i++) {
+        if (raw.charAt(i) == DOUBLE_QUOTE) {
+          out.append(raw, start, i).append(ESCAPED_DOUBLE_QUOTE);
+          start = i + 1;
+        }
+      }
+      out.append(raw, start, len);
+    }
+    out.append(DOUBLE_QUOTE);
+    return out;
   }
 
   /**
@@ -28,14 +82,26 @@ public abstract class SerializerUtils {
    * @return StringBuilder instance
    */
   public static StringBuilder appendTagMap(StringBuilder sb, @Nullable Map<String, String> tags) {
+    return appendUnchecked(sb, tags, SerializerUtils::appendTagMap);
+  }
+
+  /**
+   * Append a {@code Map<String, String>} as double-quoted key-value pairs.
+   *
+   * @param out  Appendable to write to.
+   * @param tags Map of tags.
+   * @return Appendable instance
+   */
+  public static <T extends Appendable> T appendTagMap(T out, @Nullable Map<String, String> tags)
+      throws IOException {
     if (tags != null) {
       for (Map.Entry<String, String> entry : tags.entrySet()) {
-        sb.append(' ');
-        appendQuoted(sb, entry.getKey()).append('=');
-        appendQuoted(sb, entry.getValue());
+        out.append(' ');
+        appendQuoted(out, entry.getKey()).append('=');
+        appendQuoted(out, entry.getValue());
       }
     }
-    return sb;
+    return out;
   }
 
   /**
@@ -47,14 +113,27 @@ public abstract class SerializerUtils {
    */
   public static StringBuilder appendAnnotations(StringBuilder sb,
                                                 @Nullable List<Annotation> annotations) {
+    return appendUnchecked(sb, annotations, SerializerUtils::appendAnnotations);
+  }
+
+  /**
+   * Append a {@code List<Annotation>} as double-quoted key-value pairs.
+   *
+   * @param out         Appendable to write to.
+   * @param annotations List of annotations.
+   * @return Appendable instance
+   */
+  public static <T extends Appendable> T appendAnnotations(T out,
+                                                           @Nullable List<Annotation> annotations)
+      throws IOException {
     if (annotations != null) {
       for (Annotation annotation : annotations) {
-        sb.append(' ');
-        appendQuoted(sb, annotation.getKey()).append('=');
-        appendQuoted(sb, annotation.getValue());
+        out.append(' ');
+        appendQuoted(out, annotation.getKey()).append('=');
+        appendQuoted(out, annotation.getValue());
       }
     }
-    return sb;
+    return out;
   }
 
   /**
@@ -78,7 +157,49 @@ public abstract class SerializerUtils {
     return sb;
   }
 
-  private static String escapeQuotes(String raw) {
-    return StringUtils.replace(raw, DOUBLE_QUOTE, ESCAPED_DOUBLE_QUOTE);
+  /**
+   * Append a number in the same format as {@link StringBuilder#append(double)}.
+   *
+   * @param out   Appendable to write to.
+   * @param value Value to append.
+   * @return Appendable instance
+   */
+  public static <T extends Appendable> T appendNumber(T out, double value) throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(value);
+    } else {
+      StringBuilder buffer = NUMBER_BUFFER.get();
+      buffer.setLength(0);
+      out.append(buffer.append(value));
+    }
+    return out;
+  }
+
+  /**
+   * Append a number in the same format as {@link StringBuilder#append(long)}.
+   *
+   * @param out   Appendable to write to.
+   * @param value Value to append.
+   * @return Appendable instance
+   */
+  public static <T extends Appendable> T appendNumber(T out, long value) throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(value);
+    } else {
+      StringBuilder buffer = NUMBER_BUFFER.get();
+      buffer.setLength(0);
+      out.append(buffer.append(value));
+    }
+    return out;
+  }
+
+  /**
+   * Writes a value to an {@link Appendable}.
+   *
+   * @param <T> type of the value.
+   */
+  @FunctionalInterface
+  public interface Appender<T> {
+    void append(Appendable out, T value) throws IOException;
   }
 }
@@ -10,6 +10,7 @@ import java.util.function.Predicate;
 
 /**
  * A thread-safe implementation of a basic ring buffer with an ability to evict values on overflow.
+ * For a lock-free alternative that doesn't support removal, see {@link ConcurrentEvictingRingBuffer}.
  *
  * @param <T> type of objects stored
  *
@@ -0,0 +1,459 @@
+package com.wavefront.data;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.RateLimiter;
+
+import com.wavefront.api.agent.ValidationConfiguration;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricName;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import wavefront.report.Annotation;
+import wavefront.report.Histogram;
+import wavefront.report.ReportHistogram;
+import wavefront.report.ReportLog;
+import wavefront.report.ReportMetric;
+import wavefront.report.ReportPoint;
+import wavefront.report.Span;
+import wavefront.report.SpanLog;
+import wavefront.report.SpanLogs;
+
+/**
+ * Validation rules compiled from a specific version of {@link ValidationConfiguration}: limits
+ * are copied into primitive fields and error counters are bound to static fields, so the
+ * per-entity checks don't have to go through getters and metric lookups. Each counter is only
+ * registered on its first increment, so error metrics that never occur are not reported.
+ *
+ * @see Validation
+ */
+final class CompiledValidator {
+  private static final LazyCounter SOURCE_MISSING = pointCounter("sourceMissing");
+  private static final LazyCounter SOURCE_TOO_LONG = pointCounter("sourceTooLong");
+  private static final LazyCounter METRIC_NAME_TOO_LONG = pointCounter("metricNameTooLong");
+  private static final LazyCounter HISTOGRAM_NAME_TOO_LONG = pointCounter("histogramNameTooLong");
+  private static final LazyCounter BAD_CHARS = pointCounter("badchars");
+  private static final LazyCounter TOO_MANY_POINT_TAGS = pointCounter("tooManyPointTags");
+  private static final LazyCounter POINT_TAG_TOO_LONG = pointCounter("pointTagTooLong");
+  private static final LazyCounter POINT_TAG_KEY_TOO_LONG = pointCounter("pointTagKeyTooLong");
+  private static final LazyCounter POINT_TAG_VALUE_EMPTY = pointCounter("pointTagValueEmpty");
+  private static final LazyCounter POINT_TAG_VALUE_TOO_LONG = pointCounter("pointTagValueTooLong");
+  private static final LazyCounter SPAN_SOURCE_MISSING = pointCounter("spanSourceMissing");
+  private static final LazyCounter SPAN_SOURCE_TOO_LONG = pointCounter("spanSourceTooLong");
+  private static final LazyCounter SPAN_NAME_TOO_LONG = pointCounter("spanNameTooLong");
+  private static final LazyCounter SPAN_NAME_BAD_CHARS = pointCounter("spanNameBadChars");
+  private static final LazyCounter SPAN_TOO_MANY_ANNOTATIONS =
+      pointCounter("spanTooManyAnnotations");
+  private static final LazyCounter SPAN_ANNOTATION_KEY_TOO_LONG =
+      pointCounter("spanAnnotationKeyTooLong");
+  private static final LazyCounter SPAN_ANNOTATION_KEY_BAD_CHARS =
+      pointCounter("spanAnnotationKeyBadChars");
+  private static final LazyCounter SPAN_ANNOTATION_VALUE_EMPTY =
+      pointCounter("spanAnnotationValueEmpty");
+  private static final LazyCounter SPAN_ANNOTATION_VALUE_TRUNCATED =
+      pointCounter("spanAnnotationValueTruncated");
+  private static final LazyCounter LOG_SOURCE_MISSING = logCounter("logSourceMissing");
+  private static final LazyCounter LOG_SOURCE_TOO_LONG = logCounter("logSourceTooLong");
+  private static final LazyCounter LOG_MESSAGE_TOO_LONG = logCounter("logMessageTooLong");
+  private static final LazyCounter TOO_MANY_LOG_TAGS = logCounter("tooManyLogTags");
+  private static final LazyCounter LOG_ANNOTATION_KEY_TOO_LONG =
+      logCounter("logAnnotationKeyTooLong");
+  private static final LazyCounter LOG_ANNOTATION_KEY_BAD_CHARS =
+      logCounter("logAnnotationKeyBadChars");
+  private static final LazyCounter LOG_ANNOTATION_VALUE_EMPTY =
+      logCounter("logAnnotationValueEmpty");
+  private static final LazyCounter LOG_ANNOTATION_VALUE_TOO_LONG =
+      logCounter("logAnnotationValueTooLong");
+
+  private static final int KEY_VALID = 0;
+  private static final int KEY_TOO_LONG = 1;
+  private static final int KEY_ILLEGAL_CHARS = 2;
+
+  @SuppressWarnings("UnstableApiUsage")
+  private static final RateLimiter blockedLoggingRateLimiter = RateLimiter.create(1);
+  private static final Logger logger = Logger.getLogger(Validation.class.getCanonicalName());
+
+  /**
+   * Weak, so that validators cached per configuration don't keep it alive.
+   */
+  private final WeakReference<ValidationConfiguration> config;
+  private final int version;
+
+  private final int metricLengthLimit;
+  private final int histogramLengthLimit;
+  private final int spanLengthLimit;
+  private final int logLengthLimit;
+  private final int hostLengthLimit;
+  private final int annotationsCountLimit;
+  private final int annotationsKeyLengthLimit;
+  private final int annotationsValueLengthLimit;
+  private final int spanAnnotationsCountLimit;
+  private final int spanAnnotationsKeyLengthLimit;
+  private final int spanAnnotationsValueLengthLimit;
+  private final int logAnnotationsKeyLengthLimit;
+  private final int logAnnotationsValueLengthLimit;
+  private final int logAnnotationsCountLimit;
+
+  CompiledValidator(ValidationConfiguration config) {
+    this.config = new WeakReference<>(config);
+    // read the version first: if the config changes while we copy the limits, we'll simply
+    // be recompiled on the next call
+    this.version = config.getVersion();
+    this.metricLengthLimit = config.getMetricLengthLimit();
+    this.histogramLengthLimit = config.getHistogramLengthLimit();
+    this.spanLengthLimit = config.getSpanLengthLimit();
+    this.logLengthLimit = config.getLogLengthLimit();
+    this.hostLengthLimit = config.getHostLengthLimit();
+    this.annotationsCountLimit = config.getAnnotationsCountLimit();
+    this.annotationsKeyLengthLimit = config.getAnnotationsKeyLengthLimit();
+    this.annotationsValueLengthLimit = config.getAnnotationsValueLengthLimit();
+    this.spanAnnotationsCountLimit = config.getSpanAnnotationsCountLimit();
+    this.spanAnnotationsKeyLengthLimit = config.getSpanAnnotationsKeyLengthLimit();
+    this.spanAnnotationsValueLengthLimit = config.getSpanAnnotationsValueLengthLimit();
+    this.logAnnotationsKeyLengthLimit = config.getLogAnnotationsKeyLengthLimit();
+    this.logAnnotationsValueLengthLimit = config.getLogAnnotationsValueLengthLimit();
+    this.logAnnotationsCountLimit = config.getLogAnnotationsCountLimit();
+  }
+
+  /**
+   * @return true if this validator reflects the current state of the specified configuration.
+   */
+  boolean isCompiledFrom(ValidationConfiguration config) {
+    return this.config.get() == config && this.version == config.getVersion();
+  }
+
+  void validatePoint(ReportPoint point) {
+    final String metric = point.getMetric();
+    Object value = point.getValue();
+    boolean isHistogram = value instanceof Histogram;
+
+    validateHost(point.getHost());
+    if (isHistogram) {
+      validateHistogramName(metric);
+    } else {
+      validateMetricName(metric);
+    }
+    final Map<String, String> annotations = point.getAnnotations();
+    if (annotations != null) {
+      validateTagCount(annotations.size());
+      for (Map.Entry<String, String> tag : annotations.entrySet()) {
+        validateTag(tag.getKey(), tag.getValue());
+      }
+    }
+    if (!(value instanceof Double || value instanceof Long || isHistogram)) {
+      throw new DataValidationException("WF-403: Value is not a long/double/histogram object: " +
+          value);
+    }
+    if (isHistogram) {
+      validateHistogramValue((Histogram) value);
+    } else if (isDelta(metric) && ((Number) value).doubleValue() <= 0) {
+      throw new DeltaCounterValueException("WF-404: Delta metrics cannot be non-positive");
+    }
+  }
+
+  void validateMetric(ReportMetric point) {
+    final String metric = point.getMetric();
+    validateHost(point.getHost());
+    validateMetricName(metric);
+    validateTags(point.getAnnotations());
+    if (isDelta(metric) && point.getValue() <= 0) {
+      throw new DeltaCounterValueException("WF-404: Delta metrics cannot be non-positive");
+    }
+  }
+
+  void validateHistogram(ReportHistogram histogram) {
+    validateHost(histogram.getHost());
+    validateHistogramName(histogram.getMetric());
+    validateTags(histogram.getAnnotations());
+    validateHistogramValue(histogram.getValue());
+  }
+
+  void validateSpan(Span span, @Nullable Consumer<SpanLogs> spanLogsReporter) {
+    final String source = span.getSource();
+    final String spanName = span.getName();
+
+    if (StringUtils.isBlank(source)) {
+      SPAN_SOURCE_MISSING.inc();
+      throw new DataValidationException("WF-426: Span source/host name is required");
+    }
+    if (source.length() > hostLengthLimit) {
+      SPAN_SOURCE_TOO_LONG.inc();
+      throw new DataValidationException("WF-427: Span source/host name is too long (" +
+          source.length() + " characters, max: " + hostLengthLimit + "): " + source);
+    }
+    if (spanName.length() > spanLengthLimit) {
+      SPAN_NAME_TOO_LONG.inc();
+      throw new DataValidationException("WF-428: Span name is too long (" + spanName.length() +
+          " characters, max: " + spanLengthLimit + "): " + spanName);
+    }
+    if (spanName.indexOf('*') >= 0) {
+      SPAN_NAME_BAD_CHARS.inc();
+      throw new DataValidationException("WF-415: Span name has illegal character *: " + spanName);
+    }
+    final List<Annotation> annotations = span.getAnnotations();
+    if (annotations == null) return;
+    if (annotations.size() > spanAnnotationsCountLimit) {
+      SPAN_TOO_MANY_ANNOTATIONS.inc();
+      throw new DataValidationException("WF-430: Span has too many annotations (" +
+          annotations.size() + ", max " + spanAnnotationsCountLimit + ")");
+    }
+    Map<String, String> annotationsWithOversizedValue = null;
+    for (Annotation annotation : annotations) {
+      final String tagK = annotation.getKey();
+      final String tagV = annotation.getValue();
+      switch (checkKey(tagK, spanAnnotationsKeyLengthLimit)) {
+        case KEY_TOO_LONG:
+          SPAN_ANNOTATION_KEY_TOO_LONG.inc();
+          throw new DataValidationException("WF-432: Span annotation key is too long (" +
+              tagK.length() + " characters, max: " + spanAnnotationsKeyLengthLimit + "): " +
+              tagK);
+        case KEY_ILLEGAL_CHARS:
+          SPAN_ANNOTATION_KEY_BAD_CHARS.inc();
+          throw new DataValidationException("WF-416: Span annotation key has illegal " +
+              "character(s): " + tagK);
+      }
+      if (StringUtils.isBlank(tagV)) {
+        SPAN_ANNOTATION_VALUE_EMPTY.inc();
+        throw new EmptyTagValueException("WF-434: Span annotation value for " + tagK +
+            " is empty or missing ");
+      }
+      if (tagV.length() > spanAnnotationsValueLengthLimit) {
+        //noinspection UnstableApiUsage
+        if (blockedLoggingRateLimiter.tryAcquire()) {
+          logger.warning("WF-433: Span annotation value for " + tagK + " is too long (" +
+              tagV.length() + " characters, max: " + spanAnnotationsValueLengthLimit +
+              "), value will be truncated: " + tagV);
+        }
+        // trim the tag value to the allowed limit
+        annotation.setValue(tagV.substring(0, spanAnnotationsValueLengthLimit));
+        if (spanLogsReporter != null) {
+          if (annotationsWithOversizedValue == null) {
+            annotationsWithOversizedValue = new HashMap<>();
+          }
+          annotationsWithOversizedValue.put(tagK, tagV);
+        }
+        SPAN_ANNOTATION_VALUE_TRUNCATED.inc();
+      }
+    }
+    // put annotations with oversized values into spanLogs and send them to Wavefront
+    if (annotationsWithOversizedValue != null) {
+      if (!annotations.stream().filter(x -> x.getKey().equals("_spanLogs")).
+          peek(x -> x.setValue(Boolean.toString(true))).findAny().isPresent()) {
+        span.getAnnotations().add(new Annotation("_spanLogs", Boolean.toString(true)));
+      }
+      SpanLog spanLog = SpanLog.newBuilder().
+          setTimestamp(-1).
+          setFields(annotationsWithOversizedValue).
+          build();
+      SpanLogs spanLogs = SpanLogs.newBuilder().
+          setCustomer(span.getCustomer()).
+          setTraceId(span.getTraceId()).
+          setSpanId(span.getSpanId()).
+          setSpanSecondaryId(AnnotationUtils.getValue(annotations, "_spanSecondaryId")).
+          setLogs(ImmutableList.of(spanLog)).
+          build();
+      spanLogsReporter.accept(spanLogs);
+    }
+  }
+
+  void validateLog(ReportLog log) {
+    final String source = log.getHost();
+    final String message = log.getMessage();
+
+    if (StringUtils.isBlank(source)) {
+      LOG_SOURCE_MISSING.inc();
+      throw new DataValidationException(Validation.LOG_SOURCE_REQUIRED_ERROR);
+    }
+    if (source.length() > hostLengthLimit) {
+      LOG_SOURCE_TOO_LONG.inc();
+      throw new DataValidationException(String.format(Validation.LOG_SOURCE_TOO_LONG_ERROR,
+          source.length(), hostLengthLimit, source));
+    }
+    if (message.length() > logLengthLimit) {
+      LOG_MESSAGE_TOO_LONG.inc();
+      throw new DataValidationException(String.format(Validation.LOG_MESSAGE_TOO_LONG_ERROR,
+          message.length(), logLengthLimit, message));
+    }
+    final List<Annotation> annotations = log.getAnnotations();
+    if (annotations == null) return;
+    if (annotations.size() > logAnnotationsCountLimit) {
+      TOO_MANY_LOG_TAGS.inc();
+      throw new DataValidationException(String.format(
+          Validation.LOG_TOO_MANY_ANNOTATIONS_ERROR, annotations.size(),
+          logAnnotationsCountLimit));
+    }
+    for (Annotation tag : annotations) {
+      final String tagK = tag.getKey();
+      final String tagV = tag.getValue();
+      if (tagK.length() > logAnnotationsKeyLengthLimit) {
+        LOG_ANNOTATION_KEY_TOO_LONG.inc();
+        throw new DataValidationException(String.format(Validation.LOG_TAG_KEY_TOO_LONG_ERROR,
+            tagK.length(), logAnnotationsKeyLengthLimit, tagK));
+      }
+      if (!Validation.logCharactersAreValid(tagK)) {
+        LOG_ANNOTATION_KEY_BAD_CHARS.inc();
+        throw new DataValidationException(String.format(
+            Validation.LOG_TAG_KEY_ILLEGAL_CHAR_ERROR, tagK));
+      }
+      if (StringUtils.isBlank(tagV)) {
+        LOG_ANNOTATION_VALUE_EMPTY.inc();
+        throw new EmptyTagValueException(String.format(
+            Validation.LOG_ANNOTATION_NO_VALUE_ERROR, tagK));
+      }
+      if (tagV.length() > logAnnotationsValueLengthLimit) {
+        LOG_ANNOTATION_VALUE_TOO_LONG.inc();
+        throw new DataValidationException(String.format(
+            Validation.LOG_ANNOTATION_VALUE_TOO_LONG_ERROR, tagV.length(),
+            logAnnotationsValueLengthLimit, tagV));
+      }
+    }
+  }
+
+  private void validateHost(String host) {
+    if (StringUtils.isBlank(host)) {
+      SOURCE_MISSING.inc();
+      throw new DataValidationException("WF-406: Source/host name is required");
+    }
+    if (host.length() > hostLengthLimit) {
+      SOURCE_TOO_LONG.inc();
+      throw new DataValidationException("WF-407: Source/host name is too long (" + host.length() +
+          " characters, max: " + hostLengthLimit + "): " + host);
+    }
+  }
+
+  private void validateMetricName(String metric) {
+    if (metric.length() > metricLengthLimit) {
+      METRIC_NAME_TOO_LONG.inc();
+      throw new DataValidationException("WF-408: Metric name is too long (" + metric.length() +
+          " characters, max: " + metricLengthLimit + "): " + metric);
+    }
+    validateMetricChars(metric);
+  }
+
+  private void validateHistogramName(String metric) {
+    if (metric.length() > histogramLengthLimit) {
+      HISTOGRAM_NAME_TOO_LONG.inc();
+      throw new DataValidationException("WF-409: Histogram name is too long (" +
+          metric.length() + " characters, max: " + histogramLengthLimit + "): " + metric);
+    }
+    validateMetricChars(metric);
+  }
+
+  private static void validateMetricChars(String metric) {
+    if (checkKey(metric, Integer.MAX_VALUE) != KEY_VALID) {
+      BAD_CHARS.inc();
+      throw new DataValidationException("WF-400: Point metric has illegal character(s): " +
+          metric);
+    }
+  }
+
+  private void validateTagCount(int count) {
+    if (count > annotationsCountLimit) {
+      TOO_MANY_POINT_TAGS.inc();
+      throw new DataValidationException("WF-410: Too many point tags (" + count +
+          ", max " + annotationsCountLimit + "): ");
+    }
+  }
+
+  private void validateTags(@Nullable List<Annotation> annotations) {
+    if (annotations == null) return;
+    validateTagCount(annotations.size());
+    for (Annotation tag : annotations) {
+      validateTag(tag.getKey(), tag.getValue());
+    }
+  }
+
+  private void validateTag(String tagK, String tagV) {
+    // Each tag of the form "k=v" must be < 256
+    if (tagK.length() + tagV.length() >= 255) {
+      POINT_TAG_TOO_LONG.inc();
+      throw new DataValidationException("WF-411: Point tag (key+value) too long (" +
+          (tagK.length() + tagV.length() + 1) + " characters, max: 255): " + tagK + "=" + tagV);
+    }
+    switch (checkKey(tagK, annotationsKeyLengthLimit)) {
+      case KEY_TOO_LONG:
+        POINT_TAG_KEY_TOO_LONG.inc();
+        throw new DataValidationException("WF-412: Point tag key is too long (" + tagK.length() +
+            " characters, max: " + annotationsKeyLengthLimit + "): " + tagK);
+      case KEY_ILLEGAL_CHARS:
+        BAD_CHARS.inc();
+        throw new DataValidationException("WF-401: Point tag key has illegal character(s): " +
+            tagK);
+    }
+    if (StringUtils.isBlank(tagV)) {
+      POINT_TAG_VALUE_EMPTY.inc();
+      throw new EmptyTagValueException("WF-414: Point tag value for " + tagK +
+          " is empty or missing");
+    }
+    if (tagV.length() > annotationsValueLengthLimit) {
+      POINT_TAG_VALUE_TOO_LONG.inc();
+      throw new DataValidationException("WF-413: Point tag value is too long (" +
+          tagV.length() + " characters, max: " + annotationsValueLengthLimit + "): " + tagV);
+    }
+  }
+
+  private static void validateHistogramValue(Histogram histogram) {
+    if (histogram.getCounts().size() == 0 || histogram.getBins().size() == 0 ||
+        histogram.getCounts().stream().allMatch(i -> i == 0)) {
+      throw new EmptyHistogramException("WF-405: Empty histogram");
+    }
+  }
+
+  private static boolean isDelta(String metric) {
+    char first = metric.charAt(0);
+    return first == 0x2206 || first == 0x0394;
+  }
+
+  /**
+   * Checks length and character validity of a metric name or tag key.
+   *
+   * @param key         metric name or tag key.
+   * @param lengthLimit max allowed length.
+   * @return one of KEY_VALID, KEY_TOO_LONG or KEY_ILLEGAL_CHARS.
+   */
+  private static int checkKey(String key, int lengthLimit) {
+    if (key.length() > lengthLimit) return KEY_TOO_LONG;
+    return Validation.charactersAreValid(key) ? KEY_VALID : KEY_ILLEGAL_CHARS;
+  }
+
+  private static LazyCounter pointCounter(String name) {
+    return new LazyCounter(new MetricName("point", "", name));
+  }
+
+  private static LazyCounter logCounter(String name) {
+    return new LazyCounter(new MetricName("log", "", name));
+  }
+
+  /**
+   * Error counter that is registered with the metrics registry on first use.
+   */
+  private static final class LazyCounter {
+    private final MetricName name;
+    @Nullable
+    private volatile Counter counter;
+
+    LazyCounter(MetricName name) {
+      this.name = name;
+    }
+
+    void inc() {
+      Counter result = counter;
+      if (result == null) {
+        // the registry returns the existing counter if another thread got here first
+        result = Metrics.newCounter(name);
+        counter = result;
+      }
+      result.inc();
+    }
+  }
+}
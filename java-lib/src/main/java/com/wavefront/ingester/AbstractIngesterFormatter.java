@@ -50,6 +50,14 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
 
   protected interface FormatterElement<T> {
     void consume(StringParser parser, T target);
+
+    /**
+     * Context-aware version of {@link #consume(StringParser, Object)}, for elements that can
+     * make use of settings such as {@link IngesterContext#getStringInterner()}.
+     */
+    default void consume(StringParser parser, T target, @Nullable IngesterContext ctx) {
+      consume(parser, target);
+    }
   }
 
   /**
@@ -177,19 +185,26 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
 
     @Override
     public void consume(StringParser parser, T target) {
-      String text = parser.next();
-      if (!isAllowedLiteral(text)) throw new ParseException("'" + text +
-          "' is not allowed here!");
-      if (textConsumer != null) textConsumer.accept(target, text);
+      consume(parser, target, null);
     }
 
-    private boolean isAllowedLiteral(String literal) {
-      if (literals == null) return true;
+    @Override
+    public void consume(StringParser parser, T target, @Nullable IngesterContext ctx) {
+      parser.nextToken();
+      if (literals == null) {
+        if (textConsumer != null) textConsumer.accept(target, parser.tokenAsString(interner(ctx)));
+        return;
+      }
       for (String allowedLiteral : literals) {
-        if (isCaseSensitive && literal.equals(allowedLiteral)) return true;
-        if (!isCaseSensitive && literal.equalsIgnoreCase(allowedLiteral)) return true;
+        if (parser.tokenEquals(allowedLiteral, isCaseSensitive)) {
+          // case-sensitive match is identical to the literal, no need to materialize the token
+          if (textConsumer != null) {
+            textConsumer.accept(target, isCaseSensitive ? allowedLiteral : parser.tokenAsString());
+          }
+          return;
+        }
       }
-      return false;
+      parser.fail(ParseError.LITERAL_NOT_ALLOWED);
     }
   }
 
@@ -202,48 +217,51 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
 
     @Override
     public void consume(StringParser parser, T target) {
-      String token = parser.next();
-      if (token == null)
-        throw new ParseException("Value is missing");
-      try {
-        valueConsumer.accept(target, Double.parseDouble(token));
-      } catch (NumberFormatException nef) {
-        throw new ParseException("Invalid value: " + token);
+      if (!parser.nextToken()) {
+        parser.fail(ParseError.MISSING_VALUE);
+      } else if (!parser.tokenIsDouble()) {
+        parser.fail(ParseError.INVALID_VALUE);
+      } else {
+        valueConsumer.accept(target, parser.tokenAsDouble());
       }
     }
   }
 
   public static class Centroids<T extends SpecificRecordBase> implements FormatterElement<T> {
-    private static final String WEIGHT = "#";
-
     @Override
     public void consume(StringParser parser, T target) {
       List<Integer> counts = new ArrayList<>();
       List<Double> bins = new ArrayList<>();
 
-      while (WEIGHT.equals(parser.peek())) {
-        parser.next(); // skip the # token
-        counts.add(parse(parser.next(), "centroid weight", true).intValue());
-        bins.add(parse(parser.next(), "centroid value", false).doubleValue());
+      while (parser.peekToken() && parser.tokenIsWeight()) {
+        parser.nextToken(); // skip the # token
+        if (!parser.nextToken()) {
+          parser.fail(ParseError.MISSING_CENTROID_WEIGHT);
+          return;
+        } else if (!parser.tokenIsInt()) {
+          parser.fail(ParseError.INVALID_CENTROID_WEIGHT);
+          return;
+        }
+        counts.add(parser.tokenAsInt());
+        if (!parser.nextToken()) {
+          parser.fail(ParseError.MISSING_CENTROID_VALUE);
+          return;
+        } else if (!parser.tokenIsDouble()) {
+          parser.fail(ParseError.INVALID_CENTROID_VALUE);
+          return;
+        }
+        bins.add(parser.tokenAsDouble());
+      }
+      if (parser.hasError()) return;
+      if (counts.size() == 0) {
+        parser.fail(ParseError.EMPTY_HISTOGRAM);
+        return;
       }
-
-      if (counts.size() == 0) throw new ParseException("Empty histogram (no centroids)");
 
       Histogram histogram = (Histogram) target.get("value");
       histogram.setCounts(counts);
       histogram.setBins(bins);
     }
-
-    private static Number parse(@Nullable String toParse, String name, boolean asInteger) {
-      if (toParse == null) {
-        throw new ParseException("Unexpected end of line, expected: " + name);
-      }
-      try {
-        return asInteger ? Integer.parseInt(toParse) : Double.parseDouble(toParse);
-      } catch (NumberFormatException nef) {
-        throw new ParseException("Expected: " + name + ", got: " + toParse);
-      }
-    }
   }
 
   public static class Timestamp<T extends SpecificRecordBase> implements FormatterElement<T> {
@@ -274,8 +292,8 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
     @Override
     public void consume(StringParser parser, T target) {
       List<String> list = new ArrayList<>();
-      while (parser.hasNext()) {
-        list.add(parser.next());
+      while (parser.nextToken()) {
+        list.add(parser.tokenAsString());
       }
       stringListConsumer.accept(target, list);
     }
@@ -303,6 +321,12 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
 
     @Override
     public void consume(StringParser parser, T target) {
+      consume(parser, target, null);
+    }
+
+    @Override
+    public void consume(StringParser parser, T target, @Nullable IngesterContext ctx) {
+      StringInterner interner = interner(ctx);
       Map<String, String> stringMap = null;
       if (stringMapProvider != null) {
         stringMap = stringMapProvider.apply(target);
@@ -311,9 +335,9 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
         stringMap = Maps.newHashMap();
       }
       int i = 0;
-      while (parser.hasNext() && (limit == null || i < limit) &&
-          (predicate == null || predicate.test(parser.peek()))) {
-        parseKeyValuePair(parser, stringMap::put);
+      while (parser.peekToken() && (limit == null || i < limit) &&
+          (predicate == null || predicate.test(parser.tokenAsString(interner)))) {
+        parseKeyValuePair(parser, interner, stringMap::put);
         i++;
       }
       stringMapConsumer.accept(target, stringMap);
@@ -330,8 +354,8 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
     @Override
     public void consume(StringParser parser, T target) {
       Map<String, List<String>> multimap = new HashMap<>();
-      while (parser.hasNext()) {
-        parseKeyValuePair(parser, (k, v) -> {
+      while (parser.peekToken()) {
+        parseKeyValuePair(parser, null, (k, v) -> {
           multimap.computeIfAbsent(k, x -> new ArrayList<>()).add(v);
         });
       }
@@ -362,6 +386,12 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
 
     @Override
     public void consume(StringParser parser, T target) {
+      consume(parser, target, null);
+    }
+
+    @Override
+    public void consume(StringParser parser, T target, @Nullable IngesterContext ctx) {
+      StringInterner interner = interner(ctx);
       List<Annotation> annotations = null;
       if (annotationListProvider != null) {
         annotations = annotationListProvider.apply(target);
@@ -371,22 +401,29 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
       }
       List<Annotation> annotationList = annotations;
       int i = 0;
-      while (parser.hasNext() && (limit == null || i < limit) &&
-          (predicate == null || predicate.test(parser.peek()))) {
-        parseKeyValuePair(parser, (k, v) -> annotationList.add(new Annotation(k, v)));
+      while (parser.peekToken() && (limit == null || i < limit) &&
+          (predicate == null || predicate.test(parser.tokenAsString(interner)))) {
+        parseKeyValuePair(parser, interner, (k, v) -> annotationList.add(new Annotation(k, v)));
         i++;
       }
       annotationListConsumer.accept(target, annotationList);
     }
   }
 
+  /**
+   * Boxed version of {@link #timestampInMilliseconds(double)}.
+   */
+  public static long timestampInMilliseconds(Double timestamp) {
+    return timestampInMilliseconds(timestamp.doubleValue());
+  }
+
   /**
    * Infers timestamp resolution and normalizes it to milliseconds
    * @param timestamp timestamp in seconds, milliseconds, microseconds or nanoseconds
    * @return timestamp in milliseconds
    */
-  public static long timestampInMilliseconds(Double timestamp) {
-    long timestampLong = timestamp.longValue();
+  public static long timestampInMilliseconds(double timestamp) {
+    long timestampLong = (long) timestamp;
     if (timestampLong < 1_000_000_000_000L) {
       // less than 13 digits: treat it as seconds
       return (long)(1000 * timestamp);
@@ -402,45 +439,51 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
     }
   }
 
+  @Nullable
   private static Long parseTimestamp(StringParser parser, boolean optional, boolean raw) {
-    String peek = parser.peek();
-    if (peek == null || !Character.isDigit(peek.charAt(0))) {
-      if (optional) {
-        return null;
-      } else {
-        throw new ParseException("Expected timestamp, found " +
-            (peek == null ? "end of line" : peek));
+    if (!parser.peekToken() || !parser.tokenStartsWithDigit()) {
+      if (!optional) {
+        parser.fail(ParseError.MISSING_TIMESTAMP);
       }
+      return null;
     }
-    try {
-      Double timestamp = Double.parseDouble(peek);
-      parser.next();
-      if (raw) {
-        // as-is
-        return timestamp.longValue();
-      }
-      return timestampInMilliseconds(timestamp);
-    } catch (NumberFormatException nfe) {
-      throw new ParseException("Invalid timestamp value: " + peek);
+    if (!parser.tokenIsDouble()) {
+      parser.fail(ParseError.INVALID_TIMESTAMP);
+      return null;
     }
+    double timestamp = parser.tokenAsDouble();
+    parser.nextToken();
+    if (raw) {
+      // as-is
+      return (long) timestamp;
+    }
+    return timestampInMilliseconds(timestamp);
+  }
+
+  @Nullable
+  private static StringInterner interner(@Nullable IngesterContext ctx) {
+    return ctx == null ? null : ctx.getStringInterner();
   }
 
-  private static void parseKeyValuePair(StringParser parser,
+  private static void parseKeyValuePair(StringParser parser, @Nullable StringInterner interner,
                                         BiConsumer<String, String> kvConsumer) {
-    String annotationKey = parser.next();
-    String op = parser.next();
-    if (op == null) {
-      throw new ParseException("Tag keys and values must be separated by '=', " +
-          "nothing found after '" + annotationKey + "'");
-    }
-    if (!op.equals("=")) {
-      throw new ParseException("Tag keys and values must be separated by '=', found " + op);
-    }
-    String annotationValue = parser.next();
-    if (annotationValue == null) {
-      throw new ParseException("Value missing for " + annotationKey);
-    }
-    kvConsumer.accept(annotationKey, annotationValue);
+    parser.nextToken();
+    String annotationKey = parser.tokenAsString(interner);
+    int keyStart = parser.tokenStart();
+    int keyEnd = parser.tokenEnd();
+    if (!parser.nextToken()) {
+      parser.fail(ParseError.MISSING_TAG_SEPARATOR, keyStart, keyEnd);
+      return;
+    }
+    if (!parser.tokenIsEquals()) {
+      parser.fail(ParseError.INVALID_TAG_SEPARATOR);
+      return;
+    }
+    if (!parser.nextToken()) {
+      parser.fail(ParseError.MISSING_TAG_VALUE, keyStart, keyEnd);
+      return;
+    }
+    kvConsumer.accept(annotationKey, parser.tokenAsString());
   }
 
   /**
@@ -675,7 +718,80 @@ public abstract class AbstractIngesterFormatter<T extends SpecificRecordBase> {
     return drive(input, defaultHostNameSupplier, customerId, null, null, null, null, null, null);
   }
 
-  public abstract T drive(String input, @Nullable Supplier<String> defaultHostNameSupplier,
-                          String customerId, @Nullable List<String> customSourceTags, @Nullable List<String> customLogTimestampTags,
-                          @Nullable List<String> customLogMessageTags, List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext);
+  public T drive(String input, @Nullable Supplier<String> defaultHostNameSupplier,
+                 String customerId, @Nullable List<String> customSourceTags, @Nullable List<String> customLogTimestampTags,
+                 @Nullable List<String> customLogMessageTags, List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
+    return drive((CharSequence) input, defaultHostNameSupplier, customerId, customSourceTags,
+        customLogTimestampTags, customLogMessageTags, customLogApplicationTags,
+        customLogServiceTags, ingesterContext);
+  }
+
+  /**
+   * Parses a line from any {@link CharSequence}, such as a slice of a larger payload or a
+   * {@link io.netty.buffer.ByteBuf} wrapped with {@link StringParser#asCharSequence}, without
+   * converting the whole line to a String first.
+   */
+  public T drive(CharSequence input, @Nullable Supplier<String> defaultHostNameSupplier,
+                 String customerId, @Nullable List<String> customSourceTags, @Nullable List<String> customLogTimestampTags,
+                 @Nullable List<String> customLogMessageTags, List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
+    return drive(new StringParser(input), defaultHostNameSupplier, customerId, customSourceTags,
+        customLogTimestampTags, customLogMessageTags, customLogApplicationTags,
+        customLogServiceTags, ingesterContext);
+  }
+
+  /**
+   * Parses the current line of the supplied parser. Allows reusing a single parser instance
+   * across all lines of a multi-line payload (see {@link StringParser#nextLine()}).
+   *
+   * @throws ParseException if the line is malformed.
+   */
+  public T drive(StringParser parser, @Nullable Supplier<String> defaultHostNameSupplier,
+                 String customerId, @Nullable List<String> customSourceTags, @Nullable List<String> customLogTimestampTags,
+                 @Nullable List<String> customLogMessageTags, List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
+    T result = tryDrive(parser, defaultHostNameSupplier, customerId, customSourceTags,
+        customLogTimestampTags, customLogMessageTags, customLogApplicationTags,
+        customLogServiceTags, ingesterContext);
+    parser.throwIfFailed();
+    return result;
+  }
+
+  /**
+   * Parses the current line of the supplied parser without throwing on malformed input: returns
+   * null instead, with the {@link ParseError} code and the offset of the offending token
+   * recorded in the parser. The human-readable message is only built when requested with
+   * {@link StringParser#getErrorMessage()}.
+   *
+   * @return parsed entity or null if the line is malformed.
+   */
+  @Nullable
+  public abstract T tryDrive(StringParser parser, @Nullable Supplier<String> defaultHostNameSupplier,
+                             String customerId, @Nullable List<String> customSourceTags, @Nullable List<String> customLogTimestampTags,
+                             @Nullable List<String> customLogMessageTags, List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext);
+
+  /**
+   * Feeds the current line of the parser to all formatter elements.
+   *
+   * @return false if the line is malformed (the error is recorded in the parser).
+   */
+  protected boolean consumeElements(StringParser parser, T target) {
+    return consumeElements(parser, target, null);
+  }
+
+  /**
+   * Feeds the current line of the parser to all formatter elements, applying settings from
+   * the ingester context where supported.
+   *
+   * @return false if the line is malformed (the error is recorded in the parser).
+   */
+  protected boolean consumeElements(StringParser parser, T target,
+                                    @Nullable IngesterContext ingesterContext) {
+    for (FormatterElement<T> element : elements) {
+      element.consume(parser, target, ingesterContext);
+      if (parser.hasError()) return false;
+    }
+    if (parser.peekToken()) {
+      parser.fail(ParseError.EXTRA_INPUT);
+    }
+    return !parser.hasError();
+  }
 }
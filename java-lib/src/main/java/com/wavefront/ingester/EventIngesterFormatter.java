@@ -33,19 +33,16 @@ public class EventIngesterFormatter extends AbstractIngesterFormatter<ReportEven
   }
 
   @Override
-  public ReportEvent drive(String input, Supplier<String> defaultHostNameSupplier,
-                           String customerId, @Nullable List<String> customSourceTags,
-                           @Nullable List<String> customLogTimestampTags,
-                           @Nullable List<String> customLogMessageTags,
-                           List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
+  public ReportEvent tryDrive(StringParser parser, Supplier<String> defaultHostNameSupplier,
+                              String customerId, @Nullable List<String> customSourceTags,
+                              @Nullable List<String> customLogTimestampTags,
+                              @Nullable List<String> customLogMessageTags,
+                              List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
     final ReportEvent event = new ReportEvent();
-    StringParser parser = new StringParser(input);
     event.setHosts(new ArrayList<>());
     event.setAnnotations(new HashMap<>());
 
-    for (FormatterElement<ReportEvent> element : elements) {
-      element.consume(parser, event);
-    }
+    if (!consumeElements(parser, event, ingesterContext)) return null;
 
     Iterator<Map.Entry<String, List<String>>> iter = event.getDimensions().entrySet().iterator();
     while (iter.hasNext()) {
@@ -1,39 +1,145 @@
 package com.wavefront.ingester;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.util.AttributeKey;
 
 /**
  * Given a raw graphite line, look for any host tag, and add it if implicit. Does not perform full
  * decoding, though.
+ *
+ * All source tag keys are looked up in a single pass over the line, dispatching on the first
+ * character of each key. Optionally, lines without a source tag can be passed through unchanged,
+ * with the default host published as a channel attribute ({@link #DEFAULT_HOST}), instead of
+ * appending a source tag to every such line. The decoder for the channel then needs to use
+ * {@link #defaultHostSupplier(Channel)} as its default host name supplier.
  */
 public class GraphiteHostAnnotator extends MessageToMessageDecoder<String> {
 
+  /**
+   * Default host for lines of the channel that don't have a source tag, set when
+   * {@code appendSource} is false.
+   */
+  public static final AttributeKey<String> DEFAULT_HOST =
+      AttributeKey.valueOf("graphiteDefaultHost");
+
+  private static final int[] NO_KEYS = new int[0];
+
   private final String hostName;
-  private final List<String> sourceTags = new ArrayList<>();
+  private final boolean appendSource;
+  private final String[] sourceTags;
+  /**
+   * Indexes of source tags by their first character, for ASCII characters.
+   */
+  private final int[][] tagsByFirstChar = new int[128][];
+  /**
+   * Indexes of source tags that start with a non-ASCII character.
+   */
+  private final int[] nonAsciiTags;
 
   public GraphiteHostAnnotator(String hostName, final List<String> customSourceTags) {
+    this(hostName, customSourceTags, true);
+  }
+
+  /**
+   * @param hostName         default host for lines without a source tag.
+   * @param customSourceTags additional tags to treat as source tags.
+   * @param appendSource     whether to append the default host to lines without a source tag.
+   *                         if false, such lines are passed through unchanged and the channel's
+   *                         decoder must use {@link #defaultHostSupplier(Channel)}.
+   */
+  public GraphiteHostAnnotator(String hostName, final List<String> customSourceTags,
+                               boolean appendSource) {
     this.hostName = hostName;
-    this.sourceTags.add("source=");
-    this.sourceTags.add("host=");
-    this.sourceTags.addAll(customSourceTags.stream().map(customTag -> customTag + "=").collect(Collectors.toList()));
+    this.appendSource = appendSource;
+    List<String> tags = new ArrayList<>();
+    tags.add("source=");
+    tags.add("host=");
+    customSourceTags.forEach(customTag -> tags.add(customTag + "="));
+    this.sourceTags = tags.toArray(new String[0]);
+    Arrays.fill(tagsByFirstChar, NO_KEYS);
+    int[] nonAscii = NO_KEYS;
+    for (int i = 0; i < sourceTags.length; i++) {
+      char first = sourceTags[i].charAt(0);
+      if (first < tagsByFirstChar.length) {
+        tagsByFirstChar[first] = append(tagsByFirstChar[first], i);
+      } else {
+        nonAscii = append(nonAscii, i);
+      }
+    }
+    this.nonAsciiTags = nonAscii;
+  }
+
+  /**
+   * Returns a default host name supplier for decoders of a channel with a
+   * {@link GraphiteHostAnnotator} that doesn't append source tags.
+   *
+   * @param channel channel to decode lines from.
+   * @return supplier of the channel's default host, or "unknown" if it's not set
+   */
+  public static Supplier<String> defaultHostSupplier(Channel channel) {
+    return () -> {
+      String host = channel.attr(DEFAULT_HOST).get();
+      return host == null ? "unknown" : host;
+    };
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+    super.handlerAdded(ctx);
+    if (!appendSource) {
+      ctx.channel().attr(DEFAULT_HOST).set(hostName);
+    }
   }
 
   // Decode from a possibly host-annotated graphite string to a definitely host-annotated graphite string.
   @Override
   protected void decode(ChannelHandlerContext ctx, String msg, List<Object> out) throws Exception {
-    for (String tag : sourceTags) {
-      int strIndex = msg.indexOf(tag);
-      // if a source tags is found and is followed by a non-whitespace tag value, add without change
-      if (strIndex > -1 && msg.length() - strIndex - tag.length() > 0 && msg.charAt(strIndex + tag.length()) > ' ') {
-        out.add(msg);
-        return;
+    if (!appendSource || hasSourceTag(msg)) {
+      out.add(msg);
+    } else {
+      out.add(msg + " source=\"" + hostName + "\"");
+    }
+  }
+
+  /**
+   * Checks whether a line has a source tag followed by a non-whitespace tag value. As with
+   * {@link String#indexOf}, only the first occurrence of each tag key is considered.
+   *
+   * @param msg line to check.
+   * @return true if a source tag with a value is present
+   */
+  boolean hasSourceTag(String msg) {
+    // tags whose first occurrence has no value, allocated only when there are any
+    BitSet skipped = null;
+    for (int i = 0; i < msg.length(); i++) {
+      char c = msg.charAt(i);
+      int[] candidates = c < tagsByFirstChar.length ? tagsByFirstChar[c] : nonAsciiTags;
+      for (int tag : candidates) {
+        String key = sourceTags[tag];
+        if (msg.startsWith(key, i) && (skipped == null || !skipped.get(tag))) {
+          int valueStart = i + key.length();
+          if (valueStart < msg.length() && msg.charAt(valueStart) > ' ') {
+            return true;
+          }
+          if (skipped == null) skipped = new BitSet(sourceTags.length);
+          skipped.set(tag);
+        }
       }
     }
-    out.add(msg + " source=\"" + hostName + "\"");
+    return false;
+  }
+
+  private static int[] append(int[] array, int value) {
+    int[] result = Arrays.copyOf(array, array.length + 1);
+    result[array.length] = value;
+    return result;
   }
 }
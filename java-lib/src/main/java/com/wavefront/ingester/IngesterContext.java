@@ -2,6 +2,8 @@ package com.wavefront.ingester;
 
 import com.wavefront.data.TooManyCentroidException;
 
+import javax.annotation.Nullable;
+
 public class IngesterContext {
   /**
    * Compress histogram limit when the count of centroid is larger then this ratio * accuracy.
@@ -25,12 +27,14 @@ public class IngesterContext {
   private int histogramCentroidsLimit;
   private int targetHistogramAccuracy;
   private boolean optimizeHistograms;
+  private StringInterner stringInterner;
 
   public static class Builder {
     private int histogramCentroidsLimit = Integer.MAX_VALUE;
     private int targetHistogramAccuracy = DEFAULT_HISTOGRAM_ACCURACY;
 
     private boolean optimizeHistograms = false;
+    private StringInterner stringInterner = null;
 
     public Builder withTargetHistogramAccuracy(int targetHistogramAccuracy) {
       this.targetHistogramAccuracy = targetHistogramAccuracy;
@@ -47,6 +51,16 @@ public class IngesterContext {
       return this;
     }
 
+    /**
+     * Share a single instance of metric names and tag keys across parsed entities.
+     *
+     * @param stringInterner string pool to use, or null to disable interning.
+     */
+    public Builder withStringInterner(@Nullable StringInterner stringInterner) {
+      this.stringInterner = stringInterner;
+      return this;
+    }
+
     public IngesterContext build() {
       return new IngesterContext(this);
     }
@@ -56,6 +70,7 @@ public class IngesterContext {
     this.histogramCentroidsLimit = builder.histogramCentroidsLimit;
     this.targetHistogramAccuracy = builder.targetHistogramAccuracy;
     this.optimizeHistograms = builder.optimizeHistograms;
+    this.stringInterner = builder.stringInterner;
   }
 
   public int getHistogramCentroidsLimit() {
@@ -81,4 +96,13 @@ public class IngesterContext {
   public void setOptimizeHistograms(boolean optimizeHistograms) {
     this.optimizeHistograms = optimizeHistograms;
   }
+
+  @Nullable
+  public StringInterner getStringInterner() {
+    return stringInterner;
+  }
+
+  public void setStringInterner(@Nullable StringInterner stringInterner) {
+    this.stringInterner = stringInterner;
+  }
 }
@@ -0,0 +1,48 @@
+package com.wavefront.ingester;
+
+/**
+ * Compact error codes for malformed input, recorded by {@link StringParser#fail(ParseError)}
+ * instead of throwing an exception. The human-readable message is only built with
+ * {@link #formatMessage(String)} when it is actually needed.
+ */
+public enum ParseError {
+  UNMATCHED_QUOTE("Unmatched quote character: (%s)"),
+  EXTRA_INPUT("Unexpected extra input: %s"),
+  LITERAL_NOT_ALLOWED("'%s' is not allowed here!"),
+  MISSING_VALUE("Value is missing"),
+  INVALID_VALUE("Invalid value: %s"),
+  MISSING_TIMESTAMP("Expected timestamp, found %s"),
+  INVALID_TIMESTAMP("Invalid timestamp value: %s"),
+  MISSING_CENTROID_WEIGHT("Unexpected end of line, expected: centroid weight"),
+  INVALID_CENTROID_WEIGHT("Expected: centroid weight, got: %s"),
+  MISSING_CENTROID_VALUE("Unexpected end of line, expected: centroid value"),
+  INVALID_CENTROID_VALUE("Expected: centroid value, got: %s"),
+  EMPTY_HISTOGRAM("Empty histogram (no centroids)"),
+  MISSING_TAG_SEPARATOR("Tag keys and values must be separated by '=', " +
+      "nothing found after '%s'"),
+  INVALID_TAG_SEPARATOR("Tag keys and values must be separated by '=', found %s"),
+  MISSING_TAG_VALUE("Value missing for %s"),
+  MISSING_SOURCE("source can't be null: %s"),
+  MISSING_SPAN_ID("spanId can't be null: %s"),
+  MISSING_TRACE_ID("traceId can't be null: %s"),
+  INVALID_JSON("Invalid JSON: %s"),
+  /**
+   * Entity rejected by an exception thrown while processing the line (see
+   * {@link StringParser#fail(RuntimeException)}).
+   */
+  INVALID_ENTITY("%s");
+
+  private final String template;
+
+  ParseError(String template) {
+    this.template = template;
+  }
+
+  /**
+   * @param context offending token or line.
+   * @return human-readable error message.
+   */
+  public String formatMessage(String context) {
+    return String.format(template, context);
+  }
+}
@@ -6,6 +6,8 @@ import com.wavefront.common.MetricMangler;
 
 import net.razorvine.pickle.Unpickler;
 
+import io.netty.buffer.Unpooled;
+
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -33,6 +35,8 @@ public class PickleProtocolDecoder implements ReportableEntityDecoder<byte[], Re
   private final MetricMangler metricMangler;
   private final ThreadLocal<Unpickler> unpicklerThreadLocal = ThreadLocal.withInitial(
       Unpickler::new);
+  private final ThreadLocal<PickleReader> readerThreadLocal = ThreadLocal.withInitial(
+      PickleReader::new);
 
   /**
    * Constructor.
@@ -53,6 +57,13 @@ public class PickleProtocolDecoder implements ReportableEntityDecoder<byte[], Re
 
   @Override
   public void decode(byte[] msg, List<ReportPoint> out, String customerId, IngesterContext ctx) {
+    int size = out.size();
+    if (readerThreadLocal.get().read(Unpooled.wrappedBuffer(msg), (path, timestamp, value) ->
+        out.add(toPoint(path, timestamp * 1000, value, customerId)))) {
+      return;
+    }
+    // unexpected input: discard partial results and fall back to the general purpose unpickler
+    out.subList(size, out.size()).clear();
     InputStream is = new ByteArrayInputStream(msg);
     Object dataRaw;
     try {
@@ -105,31 +116,34 @@ public class PickleProtocolDecoder implements ReportableEntityDecoder<byte[], Re
         continue;
       }
 
-      ReportPoint point = new ReportPoint();
-      MetricMangler.MetricComponents components =
-          this.metricMangler.extractComponents(o[0].toString());
-      point.setMetric(components.metric);
-      String host = components.source;
-      final Map<String, String> annotations = point.getAnnotations();
-      if (host == null && annotations != null) {
-        // iterate over the set of custom tags, breaking when one is found
-        for (final String tag : customSourceTags) {
-          host = annotations.remove(tag);
-          if (host != null) {
-            break;
-          }
-        }
-        if (host == null) {
-          host = this.defaultHostName;
+      out.add(toPoint(o[0].toString(), ts, value, customerId));
+    }
+  }
+
+  private ReportPoint toPoint(String path, long timestamp, double value, String customerId) {
+    ReportPoint point = new ReportPoint();
+    MetricMangler.MetricComponents components = this.metricMangler.extractComponents(path);
+    point.setMetric(components.metric);
+    String host = components.source;
+    final Map<String, String> annotations = point.getAnnotations();
+    if (host == null && annotations != null) {
+      // iterate over the set of custom tags, breaking when one is found
+      for (final String tag : customSourceTags) {
+        host = annotations.remove(tag);
+        if (host != null) {
+          break;
         }
       }
-      point.setHost(host);
-      point.setTable(customerId);
-      point.setTimestamp(ts);
-      point.setValue(value);
-      point.setAnnotations(Collections.emptyMap());
-      out.add(point);
+      if (host == null) {
+        host = this.defaultHostName;
+      }
     }
+    point.setHost(host);
+    point.setTable(customerId);
+    point.setTimestamp(timestamp);
+    point.setValue(value);
+    point.setAnnotations(Collections.emptyMap());
+    return point;
   }
 
   @Override
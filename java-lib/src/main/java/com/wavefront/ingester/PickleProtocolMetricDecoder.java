@@ -6,6 +6,8 @@ import com.wavefront.common.MetricMangler;
 
 import net.razorvine.pickle.Unpickler;
 
+import io.netty.buffer.Unpooled;
+
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,6 +33,8 @@ public class PickleProtocolMetricDecoder implements ReportableEntityDecoder<byte
   private final MetricMangler metricMangler;
   private final ThreadLocal<Unpickler> unpicklerThreadLocal = ThreadLocal.withInitial(
       Unpickler::new);
+  private final ThreadLocal<PickleReader> readerThreadLocal = ThreadLocal.withInitial(
+      PickleReader::new);
 
   /**
    * Constructor.
@@ -51,6 +55,13 @@ public class PickleProtocolMetricDecoder implements ReportableEntityDecoder<byte
 
   @Override
   public void decode(byte[] msg, List<ReportMetric> out, String customerId, IngesterContext ctx) {
+    int size = out.size();
+    if (readerThreadLocal.get().read(Unpooled.wrappedBuffer(msg), (path, timestamp, value) ->
+        out.add(toMetric(path, timestamp * 1000, value, customerId)))) {
+      return;
+    }
+    // unexpected input: discard partial results and fall back to the general purpose unpickler
+    out.subList(size, out.size()).clear();
     InputStream is = new ByteArrayInputStream(msg);
     Object dataRaw;
     try {
@@ -103,23 +114,26 @@ public class PickleProtocolMetricDecoder implements ReportableEntityDecoder<byte
         continue;
       }
 
-      ReportMetric point = new ReportMetric();
-      MetricMangler.MetricComponents components =
-          this.metricMangler.extractComponents(o[0].toString());
-      point.setMetric(components.metric);
-      String host = components.source;
-      if (host == null) {
-        host = AbstractIngesterFormatter.getHost(point.getAnnotations(), customSourceTags);
-      }
-      if (host == null) {
-        host = this.defaultHostName;
-      }
-      point.setHost(host);
-      point.setCustomer(customerId);
-      point.setTimestamp(ts);
-      point.setValue(value);
-      point.setAnnotations(Collections.emptyList());
-      out.add(point);
+      out.add(toMetric(o[0].toString(), ts, value, customerId));
+    }
+  }
+
+  private ReportMetric toMetric(String path, long timestamp, double value, String customerId) {
+    ReportMetric point = new ReportMetric();
+    MetricMangler.MetricComponents components = this.metricMangler.extractComponents(path);
+    point.setMetric(components.metric);
+    String host = components.source;
+    if (host == null) {
+      host = AbstractIngesterFormatter.getHost(point.getAnnotations(), customSourceTags);
+    }
+    if (host == null) {
+      host = this.defaultHostName;
     }
+    point.setHost(host);
+    point.setCustomer(customerId);
+    point.setTimestamp(timestamp);
+    point.setValue(value);
+    point.setAnnotations(Collections.emptyList());
+    return point;
   }
 }
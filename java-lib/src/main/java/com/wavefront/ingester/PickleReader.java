@@ -0,0 +1,322 @@
+package com.wavefront.ingester;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Streaming reader for Graphite pickle protocol payloads: {@code [(path, (timestamp, value)),
+ * ...]}. Handles the opcode subset that Python's pickle (protocols 1 to 4) produces for such
+ * payloads directly from a {@link ByteBuf}, and emits entries as soon as they are appended to
+ * the list, without building Python objects for the payload.
+ *
+ * Anything outside of that subset (other opcodes, other shapes, malformed or truncated input)
+ * makes {@link #read} return false, so the caller can fall back to a general purpose unpickler.
+ * Entries emitted before that are not retracted, the caller has to discard them.
+ *
+ * Not thread-safe, instances are meant to be reused by a single thread.
+ */
+final class PickleReader {
+
+  /**
+   * Receives entries in the order they appear in the list.
+   */
+  interface EntryConsumer {
+    /**
+     * @param path      metric path.
+     * @param timestamp timestamp in seconds, truncated if it was a float.
+     * @param value     metric value.
+     */
+    void accept(String path, long timestamp, double value);
+  }
+
+  // opcodes, see Lib/pickletools.py
+  private static final int MARK = '(';
+  private static final int STOP = '.';
+  private static final int NONE = 'N';
+  private static final int BININT = 'J';
+  private static final int BININT1 = 'K';
+  private static final int BININT2 = 'M';
+  private static final int LONG1 = 0x8a;
+  private static final int BINFLOAT = 'G';
+  private static final int BINSTRING = 'T';
+  private static final int SHORT_BINSTRING = 'U';
+  private static final int BINUNICODE = 'X';
+  private static final int SHORT_BINUNICODE = 0x8c;
+  private static final int EMPTY_LIST = ']';
+  private static final int APPEND = 'a';
+  private static final int APPENDS = 'e';
+  private static final int TUPLE = 't';
+  private static final int TUPLE2 = 0x86;
+  private static final int BINGET = 'h';
+  private static final int LONG_BINGET = 'j';
+  private static final int BINPUT = 'q';
+  private static final int LONG_BINPUT = 'r';
+  private static final int MEMOIZE = 0x94;
+  private static final int PROTO = 0x80;
+  private static final int FRAME = 0x95;
+
+  // kinds of stack slots
+  private static final byte K_MARK = 1;
+  private static final byte K_LIST = 2;
+  private static final byte K_NONE = 3;
+  private static final byte K_INT = 4;
+  private static final byte K_FLOAT = 5;
+  private static final byte K_STRING = 6;
+  // (timestamp, value), (timestamp, None)
+  private static final byte K_PAIR = 7;
+  private static final byte K_PAIR_NONE = 8;
+  // (path, (timestamp, value)), (path, (timestamp, None))
+  private static final byte K_ENTRY = 9;
+  private static final byte K_ENTRY_NONE = 10;
+
+  /**
+   * A slot is a kind, an optional string and two primitives: an integer (ints, timestamps) and
+   * a double (floats, values).
+   */
+  private final Slots stack = new Slots();
+  private final Slots memo = new Slots();
+
+  private static final class Slots {
+    private byte[] kinds = new byte[64];
+    private String[] strings = new String[64];
+    private long[] longs = new long[64];
+    private double[] doubles = new double[64];
+    private int size;
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > kinds.length) {
+        int newCapacity = Math.max(capacity, kinds.length * 2);
+        kinds = Arrays.copyOf(kinds, newCapacity);
+        strings = Arrays.copyOf(strings, newCapacity);
+        longs = Arrays.copyOf(longs, newCapacity);
+        doubles = Arrays.copyOf(doubles, newCapacity);
+      }
+    }
+
+    private void set(int index, byte kind, String string, long l, double d) {
+      ensureCapacity(index + 1);
+      kinds[index] = kind;
+      strings[index] = string;
+      longs[index] = l;
+      doubles[index] = d;
+    }
+
+    private void push(byte kind, String string, long l, double d) {
+      set(size++, kind, string, l, d);
+    }
+
+    private void clear() {
+      Arrays.fill(kinds, 0, size, (byte) 0);
+      Arrays.fill(strings, 0, size, null);
+      size = 0;
+    }
+  }
+
+  /**
+   * Reads a payload and emits its entries. Entries with a None value are skipped.
+   *
+   * @param buf      buffer with the payload. the reader index is advanced.
+   * @param consumer consumer for entries.
+   * @return true if the entire payload was read, false if it uses unsupported opcodes or has an
+   *         unexpected shape
+   */
+  boolean read(ByteBuf buf, EntryConsumer consumer) {
+    try {
+      return readInternal(buf, consumer);
+    } catch (IndexOutOfBoundsException e) {
+      // truncated input
+      return false;
+    } finally {
+      stack.clear();
+      memo.clear();
+    }
+  }
+
+  private boolean readInternal(ByteBuf buf, EntryConsumer consumer) {
+    while (true) {
+      int opcode = buf.readUnsignedByte();
+      switch (opcode) {
+        case PROTO:
+          buf.skipBytes(1);
+          break;
+        case FRAME:
+          buf.skipBytes(8);
+          break;
+        case STOP:
+          return stack.size == 1 && stack.kinds[0] == K_LIST;
+        case MARK:
+          stack.push(K_MARK, null, 0, 0);
+          break;
+        case EMPTY_LIST:
+          stack.push(K_LIST, null, 0, 0);
+          break;
+        case NONE:
+          stack.push(K_NONE, null, 0, 0);
+          break;
+        case BININT:
+          stack.push(K_INT, null, buf.readIntLE(), 0);
+          break;
+        case BININT1:
+          stack.push(K_INT, null, buf.readUnsignedByte(), 0);
+          break;
+        case BININT2:
+          stack.push(K_INT, null, buf.readUnsignedShortLE(), 0);
+          break;
+        case LONG1:
+          int length = buf.readUnsignedByte();
+          if (length > 8) return false;
+          long value = 0;
+          for (int i = 0; i < length; i++) {
+            value |= (long) buf.readUnsignedByte() << (8 * i);
+          }
+          if (length > 0 && length < 8) {
+            // sign-extend
+            value = value << (64 - 8 * length) >> (64 - 8 * length);
+          }
+          stack.push(K_INT, null, value, 0);
+          break;
+        case BINFLOAT:
+          stack.push(K_FLOAT, null, 0, buf.readDouble());
+          break;
+        case SHORT_BINSTRING:
+          stack.push(K_STRING, readString(buf, buf.readUnsignedByte(),
+              StandardCharsets.ISO_8859_1), 0, 0);
+          break;
+        case BINSTRING:
+          stack.push(K_STRING, readString(buf, readLength(buf), StandardCharsets.ISO_8859_1),
+              0, 0);
+          break;
+        case SHORT_BINUNICODE:
+          stack.push(K_STRING, readString(buf, buf.readUnsignedByte(), StandardCharsets.UTF_8),
+              0, 0);
+          break;
+        case BINUNICODE:
+          stack.push(K_STRING, readString(buf, readLength(buf), StandardCharsets.UTF_8), 0, 0);
+          break;
+        case TUPLE2:
+          if (!makeTuple()) return false;
+          break;
+        case TUPLE:
+          // MARK a b TUPLE, as produced by protocol 1
+          int mark = stack.size - 3;
+          if (mark < 0 || stack.kinds[mark] != K_MARK) return false;
+          if (!makeTuple()) return false;
+          moveTop(mark);
+          break;
+        case APPEND:
+          if (!append(stack.size - 1, consumer)) return false;
+          break;
+        case APPENDS:
+          int start = stack.size - 1;
+          while (start >= 0 && stack.kinds[start] != K_MARK) {
+            start--;
+          }
+          if (start < 1 || stack.kinds[start - 1] != K_LIST) return false;
+          for (int i = start + 1; i < stack.size; i++) {
+            if (!emit(i, consumer)) return false;
+          }
+          stack.size = start;
+          break;
+        case BINPUT:
+          if (!put(buf.readUnsignedByte())) return false;
+          break;
+        case LONG_BINPUT:
+          if (!put(readLength(buf))) return false;
+          break;
+        case MEMOIZE:
+          // memo indexes are assigned sequentially
+          if (!put(memo.size)) return false;
+          break;
+        case BINGET:
+          if (!get(buf.readUnsignedByte())) return false;
+          break;
+        case LONG_BINGET:
+          if (!get(readLength(buf))) return false;
+          break;
+        default:
+          return false;
+      }
+    }
+  }
+
+  /**
+   * Combines the top two slots into (timestamp, value) or (path, (timestamp, value)).
+   */
+  private boolean makeTuple() {
+    int first = stack.size - 2;
+    if (first < 0) return false;
+    byte a = stack.kinds[first];
+    byte b = stack.kinds[first + 1];
+    if ((a == K_INT || a == K_FLOAT) && (b == K_INT || b == K_FLOAT || b == K_NONE)) {
+      long timestamp = a == K_INT ? stack.longs[first] : (long) stack.doubles[first];
+      double value = b == K_INT ? stack.longs[first + 1] : stack.doubles[first + 1];
+      stack.size = first;
+      stack.push(b == K_NONE ? K_PAIR_NONE : K_PAIR, null, timestamp, value);
+      return true;
+    } else if (a == K_STRING && (b == K_PAIR || b == K_PAIR_NONE)) {
+      String path = stack.strings[first];
+      long timestamp = stack.longs[first + 1];
+      double value = stack.doubles[first + 1];
+      stack.size = first;
+      stack.push(b == K_PAIR ? K_ENTRY : K_ENTRY_NONE, path, timestamp, value);
+      return true;
+    }
+    return false;
+  }
+
+  private void moveTop(int index) {
+    int top = stack.size - 1;
+    stack.set(index, stack.kinds[top], stack.strings[top], stack.longs[top],
+        stack.doubles[top]);
+    stack.size = index + 1;
+  }
+
+  private boolean append(int index, EntryConsumer consumer) {
+    if (index < 1 || stack.kinds[index - 1] != K_LIST || !emit(index, consumer)) return false;
+    stack.size = index;
+    return true;
+  }
+
+  private boolean emit(int index, EntryConsumer consumer) {
+    if (stack.kinds[index] == K_ENTRY) {
+      consumer.accept(stack.strings[index], stack.longs[index], stack.doubles[index]);
+      return true;
+    }
+    return stack.kinds[index] == K_ENTRY_NONE;
+  }
+
+  private boolean put(long index) {
+    // pickle assigns memo indexes sequentially, anything else is unexpected
+    if (stack.size == 0 || index > memo.size) return false;
+    int top = stack.size - 1;
+    memo.set((int) index, stack.kinds[top], stack.strings[top], stack.longs[top],
+        stack.doubles[top]);
+    memo.size = Math.max(memo.size, (int) index + 1);
+    return true;
+  }
+
+  private boolean get(long index) {
+    if (index < 0 || index >= memo.size || memo.kinds[(int) index] == 0) return false;
+    int i = (int) index;
+    // lists can't be shared, we don't keep their contents
+    if (memo.kinds[i] == K_LIST || memo.kinds[i] == K_MARK) return false;
+    stack.push(memo.kinds[i], memo.strings[i], memo.longs[i], memo.doubles[i]);
+    return true;
+  }
+
+  private static long readLength(ByteBuf buf) {
+    return buf.readUnsignedIntLE();
+  }
+
+  private static String readString(ByteBuf buf, long length, Charset charset) {
+    if (length > buf.readableBytes()) {
+      throw new IndexOutOfBoundsException();
+    }
+    String result = buf.toString(buf.readerIndex(), (int) length, charset);
+    buf.skipBytes((int) length);
+    return result;
+  }
+}
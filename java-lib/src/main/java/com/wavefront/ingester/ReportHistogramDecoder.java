@@ -54,7 +54,20 @@ public class ReportHistogramDecoder implements ReportableEntityDecoder<String, R
   @Override
   public void decode(String msg, List<ReportHistogram> out, String customerId,
                      @Nullable IngesterContext ctx) {
-    ReportHistogram histogram = FORMAT.drive(msg, defaultHostNameSupplier, customerId, null,null, null, null, null, ctx);
+    StringParser parser = new StringParser(msg);
+    decodeLine(parser, out, customerId, ctx);
+    parser.throwIfFailed();
+  }
+
+  @Override
+  public boolean supportsBatch() {
+    return true;
+  }
+
+  @Override
+  public void decodeLine(StringParser parser, List<ReportHistogram> out, String customerId,
+                         @Nullable IngesterContext ctx) {
+    ReportHistogram histogram = FORMAT.tryDrive(parser, defaultHostNameSupplier, customerId, null,null, null, null, null, ctx);
     if (histogram != null) {
       Histogram value = histogram.getValue();
       if (ctx != null) {
@@ -5,7 +5,6 @@ import java.util.List;
 import java.util.function.Supplier;
 
 import com.wavefront.common.Clock;
-import com.wavefront.data.ParseException;
 
 import wavefront.report.ReportHistogram;
 
@@ -34,23 +33,17 @@ public class ReportHistogramIngesterFormatter extends AbstractIngesterFormatter<
   }
 
   @Override
-  public ReportHistogram drive(String input, Supplier<String> defaultHostNameSupplier,
-                               String customerId, @Nullable List<String> customSourceTags,
-                               @Nullable List<String> customLogTimestampTags,
-                               @Nullable List<String> customLogMessageTags,
-                               List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
+  public ReportHistogram tryDrive(StringParser parser, Supplier<String> defaultHostNameSupplier,
+                                  String customerId, @Nullable List<String> customSourceTags,
+                                  @Nullable List<String> customLogTimestampTags,
+                                  @Nullable List<String> customLogMessageTags,
+                                  List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
     ReportHistogram histogram = new ReportHistogram();
     histogram.setCustomer(customerId);
     // if the point has a timestamp, this would be overriden
     histogram.setTimestamp(Clock.now());
-    final StringParser parser = new StringParser(input);
 
-    for (FormatterElement<ReportHistogram> element : elements) {
-      element.consume(parser, histogram);
-    }
-    if (parser.hasNext()) {
-      throw new ParseException("Unexpected extra input: " + parser.next());
-    }
+    if (!consumeElements(parser, histogram, ingesterContext)) return null;
 
     String host = AbstractIngesterFormatter.getHost(histogram.getAnnotations(), customSourceTags);
     if (host == null) {
@@ -1,18 +1,24 @@
 package com.wavefront.ingester;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.function.Function;
 
 import org.apache.commons.lang.time.DateUtils;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.wavefront.common.ByteBufAppendable;
 import com.wavefront.data.DataValidationException;
 
+import io.netty.buffer.ByteBuf;
 import wavefront.report.Histogram;
 import wavefront.report.ReportHistogram;
 
 import static com.wavefront.common.SerializerUtils.appendAnnotations;
+import static com.wavefront.common.SerializerUtils.appendNumber;
 import static com.wavefront.common.SerializerUtils.appendQuoted;
+import static com.wavefront.common.SerializerUtils.appendUnchecked;
 
 /**
  * Convert a {@link ReportHistogram} to its string representation in a canonical format
@@ -27,9 +33,9 @@ public class ReportHistogramSerializer implements Function<ReportHistogram, Stri
     return histogramToString(point);
   }
 
-  private static void appendCompactedCentroids(StringBuilder sb,
+  private static void appendCompactedCentroids(Appendable out,
                                                List<Double> bins,
-                                               List<Integer> counts) {
+                                               List<Integer> counts) throws IOException {
     int numCentroids = Math.min(bins.size(), counts.size());
     Double accumulatedValue = null;
     int accumulatedCount = 0;
@@ -37,8 +43,7 @@ public class ReportHistogramSerializer implements Function<ReportHistogram, Stri
       double value = bins.get(i);
       int count = counts.get(i);
       if (accumulatedValue != null && value != accumulatedValue) {
-        sb.append('#').append(accumulatedCount).append(' ');
-        sb.append(accumulatedValue).append(' ');
+        appendCentroid(out, accumulatedValue, accumulatedCount);
         accumulatedValue = value;
         accumulatedCount = count;
       } else {
@@ -49,39 +54,82 @@ public class ReportHistogramSerializer implements Function<ReportHistogram, Stri
       }
     }
     if (accumulatedValue != null) {
-      sb.append('#').append(accumulatedCount).append(' ');
-      sb.append(accumulatedValue).append(' ');
+      appendCentroid(out, accumulatedValue, accumulatedCount);
     }
   }
 
+  private static void appendCentroid(Appendable out, double value, int count)
+      throws IOException {
+    out.append('#');
+    appendNumber(out, count).append(' ');
+    appendNumber(out, value).append(' ');
+  }
+
   @VisibleForTesting
   public static String histogramToString(ReportHistogram point) {
+    return appendUnchecked(new StringBuilder(), point, ReportHistogramSerializer::appendHistogram)
+        .toString();
+  }
+
+  /**
+   * Writes the canonical representation of a histogram to an {@link Appendable}.
+   *
+   * @param out   Appendable to write to.
+   * @param point histogram to serialize.
+   * @return Appendable instance
+   */
+  public static <T extends Appendable> T appendHistogram(T out, ReportHistogram point)
+      throws IOException {
     Histogram h = point.getValue();
-    StringBuilder sb = new StringBuilder();
     // BinType
     switch (h.getDuration()) {
       case (int) DateUtils.MILLIS_PER_MINUTE:
-        sb.append("!M ");
+        out.append("!M ");
         break;
       case (int) DateUtils.MILLIS_PER_HOUR:
-        sb.append("!H ");
+        out.append("!H ");
         break;
       case (int) DateUtils.MILLIS_PER_DAY:
-        sb.append("!D ");
+        out.append("!D ");
         break;
       default:
         throw new DataValidationException("Unexpected histogram duration " + h.getDuration());
     }
     // Timestamp
-    sb.append(point.getTimestamp() / 1000).append(' ');
+    appendNumber(out, point.getTimestamp() / 1000).append(' ');
     // Centroids
-    appendCompactedCentroids(sb, h.getBins(), h.getCounts());
+    appendCompactedCentroids(out, h.getBins(), h.getCounts());
     // Metric
-    appendQuoted(sb, point.getMetric());
+    appendQuoted(out, point.getMetric());
     // Source
-    sb.append(" ").append("source=");
-    appendQuoted(sb, point.getHost());
-    appendAnnotations(sb, point.getAnnotations());
-    return sb.toString();
+    out.append(" source=");
+    appendQuoted(out, point.getHost());
+    appendAnnotations(out, point.getAnnotations());
+    return out;
+  }
+
+  /**
+   * Writes the canonical representation of a histogram to a {@link ByteBuf} as UTF-8.
+   *
+   * @param buf   buffer to write to.
+   * @param point histogram to serialize.
+   */
+  public static void writeHistogram(ByteBuf buf, ReportHistogram point) {
+    appendUnchecked(new ByteBufAppendable(buf), point, ReportHistogramSerializer::appendHistogram)
+        .finish();
+  }
+
+  /**
+   * Writes the canonical representation of a histogram to a {@link ByteBuffer} as UTF-8,
+   * starting at its current position.
+   *
+   * @param buffer buffer to write to.
+   * @param point  histogram to serialize.
+   * @throws IndexOutOfBoundsException if there is not enough room in the buffer.
+   */
+  public static void writeHistogram(ByteBuffer buffer, ReportHistogram point) {
+    ByteBuf wrapper = ByteBufAppendable.wrap(buffer);
+    writeHistogram(wrapper, point);
+    ByteBufAppendable.advance(buffer, wrapper);
   }
 }
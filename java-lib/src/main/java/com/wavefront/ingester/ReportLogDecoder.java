@@ -33,9 +33,22 @@ public class ReportLogDecoder implements ReportableEntityDecoder<String, ReportL
 
     @Override
     public void decode(String msg, List<ReportLog> out, String customerId, @Nullable IngesterContext ctx) {
-        ReportLog log = FORMAT.drive(msg, hostNameSupplier, "default", customSourceTags, customLogTimestampTags,
+        StringParser parser = new StringParser(msg);
+        decodeLine(parser, out, customerId, ctx);
+        parser.throwIfFailed();
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    @Override
+    public void decodeLine(StringParser parser, List<ReportLog> out, String customerId,
+                           @Nullable IngesterContext ctx) {
+        ReportLog log = FORMAT.tryDrive(parser, hostNameSupplier, "default", customSourceTags, customLogTimestampTags,
                 customLogMessageTags, customApplicationTags, customServiceTags, ctx);
-        if (out != null) {
+        if (log != null && !parser.hasError() && out != null) {
             out.add(log);
         }
     }
@@ -35,14 +35,14 @@ public class ReportLogIngesterFormatter extends AbstractIngesterFormatter<Report
     }
 
     @Override
-    public ReportLog drive(String logJson, @Nullable Supplier<String> defaultHostNameSupplier,
-                           String customerId, @Nullable List<String> customSourceTags, @Nullable List<String> customLogTimestampTags,
-                           @Nullable List<String> customLogMessageTags, List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
+    public ReportLog tryDrive(StringParser parser, @Nullable Supplier<String> defaultHostNameSupplier,
+                              String customerId, @Nullable List<String> customSourceTags, @Nullable List<String> customLogTimestampTags,
+                              @Nullable List<String> customLogMessageTags, List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
         final ReportLog log = new ReportLog();
         List<Annotation> annotations = new ArrayList<>();
 
         try {
-            Map<String, Object> tagMap = new ObjectMapper().readValue(logJson, new TypeReference<Map<String,Object>>(){});
+            Map<String, Object> tagMap = new ObjectMapper().readValue(parser.getLine(), new TypeReference<Map<String,Object>>(){});
             for (Map.Entry<String, Object> tagKV : tagMap.entrySet()) {
                 String tagK = tagKV.getKey();
                 String tagV = (tagKV.getValue() == null)? "null" : tagKV.getValue().toString();
@@ -68,11 +68,8 @@ public class ReportLogIngesterFormatter extends AbstractIngesterFormatter<Report
             log.setService(service);
             return log;
         } catch (JsonProcessingException e) {
-            e.printStackTrace();
+            parser.failLine(ParseError.INVALID_JSON);
             return null;
         }
-
-
-
     }
 }
@@ -32,8 +32,21 @@ public class ReportMetricDecoder implements ReportableEntityDecoder<String, Repo
 
   @Override
   public void decode(String msg, List<ReportMetric> out, String customerId, IngesterContext ctx) {
-    ReportMetric point = FORMAT.drive(msg, hostNameSupplier, customerId, customSourceTags, null, null, null, null, null);
-    if (out != null) {
+    StringParser parser = new StringParser(msg);
+    decodeLine(parser, out, customerId, ctx);
+    parser.throwIfFailed();
+  }
+
+  @Override
+  public boolean supportsBatch() {
+    return true;
+  }
+
+  @Override
+  public void decodeLine(StringParser parser, List<ReportMetric> out, String customerId,
+                         IngesterContext ctx) {
+    ReportMetric point = FORMAT.tryDrive(parser, hostNameSupplier, customerId, customSourceTags, null, null, null, null, ctx);
+    if (point != null && out != null) {
       out.add(point);
     }
   }
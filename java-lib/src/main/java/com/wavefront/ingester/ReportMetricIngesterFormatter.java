@@ -1,7 +1,6 @@
 package com.wavefront.ingester;
 
 import com.wavefront.common.Clock;
-import com.wavefront.data.ParseException;
 
 import wavefront.report.ReportMetric;
 
@@ -34,22 +33,16 @@ public class ReportMetricIngesterFormatter extends AbstractIngesterFormatter<Rep
   }
 
   @Override
-  public ReportMetric drive(String input, Supplier<String> defaultHostNameSupplier,
-                            String customerId, @Nullable List<String> customSourceTags,
-                            @Nullable List<String> customLogTimestampTags, @Nullable List<String> customLogMessageTags,
-                            List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
+  public ReportMetric tryDrive(StringParser parser, Supplier<String> defaultHostNameSupplier,
+                               String customerId, @Nullable List<String> customSourceTags,
+                               @Nullable List<String> customLogTimestampTags, @Nullable List<String> customLogMessageTags,
+                               List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
     ReportMetric point = new ReportMetric();
     point.setCustomer(customerId);
     // if the point has a timestamp, this would be overriden
     point.setTimestamp(Clock.now());
-    final StringParser parser = new StringParser(input);
 
-    for (FormatterElement<ReportMetric> element : elements) {
-      element.consume(parser, point);
-    }
-    if (parser.hasNext()) {
-      throw new ParseException("Unexpected extra input: " + parser.next());
-    }
+    if (!consumeElements(parser, point, ingesterContext)) return null;
 
     String host = AbstractIngesterFormatter.getHost(point.getAnnotations(), customSourceTags);
     if (host == null) {
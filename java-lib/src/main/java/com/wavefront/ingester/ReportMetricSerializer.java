@@ -1,13 +1,19 @@
 package com.wavefront.ingester;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.function.Function;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.wavefront.common.ByteBufAppendable;
 
+import io.netty.buffer.ByteBuf;
 import wavefront.report.ReportMetric;
 
 import static com.wavefront.common.SerializerUtils.appendAnnotations;
+import static com.wavefront.common.SerializerUtils.appendNumber;
 import static com.wavefront.common.SerializerUtils.appendQuoted;
+import static com.wavefront.common.SerializerUtils.appendUnchecked;
 
 /**
  * Convert a {@link ReportMetric} to its string representation in a canonical format
@@ -24,13 +30,49 @@ public class ReportMetricSerializer implements Function<ReportMetric, String> {
 
   @VisibleForTesting
   public static String metricToString(ReportMetric point) {
-    StringBuilder sb = new StringBuilder(80);
-    appendQuoted(sb, point.getMetric()).
-        append(" ").append(point.getValue()).
-        append(" ").append(point.getTimestamp() / 1000).
-        append(" ").append("source=");
-    appendQuoted(sb, point.getHost());
-    appendAnnotations(sb, point.getAnnotations());
-    return sb.toString();
+    return appendUnchecked(new StringBuilder(80), point, ReportMetricSerializer::appendMetric)
+        .toString();
+  }
+
+  /**
+   * Writes the canonical representation of a metric to an {@link Appendable}.
+   *
+   * @param out   Appendable to write to.
+   * @param point metric to serialize.
+   * @return Appendable instance
+   */
+  public static <T extends Appendable> T appendMetric(T out, ReportMetric point)
+      throws IOException {
+    appendQuoted(out, point.getMetric()).append(' ');
+    appendNumber(out, point.getValue()).append(' ');
+    appendNumber(out, point.getTimestamp() / 1000).append(" source=");
+    appendQuoted(out, point.getHost());
+    appendAnnotations(out, point.getAnnotations());
+    return out;
+  }
+
+  /**
+   * Writes the canonical representation of a metric to a {@link ByteBuf} as UTF-8.
+   *
+   * @param buf   buffer to write to.
+   * @param point metric to serialize.
+   */
+  public static void writeMetric(ByteBuf buf, ReportMetric point) {
+    appendUnchecked(new ByteBufAppendable(buf), point, ReportMetricSerializer::appendMetric)
+        .finish();
+  }
+
+  /**
+   * Writes the canonical representation of a metric to a {@link ByteBuffer} as UTF-8,
+   * starting at its current position.
+   *
+   * @param buffer buffer to write to.
+   * @param point  metric to serialize.
+   * @throws IndexOutOfBoundsException if there is not enough room in the buffer.
+   */
+  public static void writeMetric(ByteBuffer buffer, ReportMetric point) {
+    ByteBuf wrapper = ByteBufAppendable.wrap(buffer);
+    writeMetric(wrapper, point);
+    ByteBufAppendable.advance(buffer, wrapper);
   }
 }
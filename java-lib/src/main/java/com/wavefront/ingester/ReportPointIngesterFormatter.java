@@ -6,7 +6,6 @@ import java.util.Map;
 import java.util.function.Supplier;
 
 import com.wavefront.common.Clock;
-import com.wavefront.data.ParseException;
 
 import wavefront.report.ReportPoint;
 
@@ -37,23 +36,17 @@ public class ReportPointIngesterFormatter extends AbstractIngesterFormatter<Repo
   }
 
   @Override
-  public ReportPoint drive(String input, Supplier<String> defaultHostNameSupplier,
-                           String customerId, @Nullable List<String> customSourceTags,
-                           @Nullable List<String> customLogTimestampTags,
-                           @Nullable List<String> customLogMessageTags,
-                           List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
+  public ReportPoint tryDrive(StringParser parser, Supplier<String> defaultHostNameSupplier,
+                              String customerId, @Nullable List<String> customSourceTags,
+                              @Nullable List<String> customLogTimestampTags,
+                              @Nullable List<String> customLogMessageTags,
+                              List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
     ReportPoint point = new ReportPoint();
     point.setTable(customerId);
     // if the point has a timestamp, this would be overriden
     point.setTimestamp(Clock.now());
-    final StringParser parser = new StringParser(input);
 
-    for (FormatterElement<ReportPoint> element : elements) {
-      element.consume(parser, point);
-    }
-    if (parser.hasNext()) {
-      throw new ParseException("Unexpected extra input: " + parser.next());
-    }
+    if (!consumeElements(parser, point, ingesterContext)) return null;
 
     String host = null;
     Map<String, String> annotations = point.getAnnotations();
@@ -1,14 +1,20 @@
 package com.wavefront.ingester;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.wavefront.common.ByteBufAppendable;
+import io.netty.buffer.ByteBuf;
 import org.apache.commons.lang.time.DateUtils;
 import wavefront.report.ReportPoint;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.function.Function;
 
+import static com.wavefront.common.SerializerUtils.appendNumber;
 import static com.wavefront.common.SerializerUtils.appendQuoted;
 import static com.wavefront.common.SerializerUtils.appendTagMap;
+import static com.wavefront.common.SerializerUtils.appendUnchecked;
 
 /**
  * DEPRECATED: use {@link ReportMetricSerializer} instead.
@@ -26,9 +32,9 @@ public class ReportPointSerializer implements Function<ReportPoint, String> {
     return pointToString(point);
   }
 
-  private static void appendCompactedCentroids(StringBuilder sb,
+  private static void appendCompactedCentroids(Appendable out,
                                                List<Double> bins,
-                                               List<Integer> counts) {
+                                               List<Integer> counts) throws IOException {
     int numCentroids = Math.min(bins.size(), counts.size());
     Double accumulatedValue = null;
     int accumulatedCount = 0;
@@ -36,8 +42,7 @@ public class ReportPointSerializer implements Function<ReportPoint, String> {
       double value = bins.get(i);
       int count = counts.get(i);
       if (accumulatedValue != null && value != accumulatedValue) {
-        sb.append('#').append(accumulatedCount).append(' ');
-        sb.append(accumulatedValue).append(' ');
+        appendCentroid(out, accumulatedValue, accumulatedCount);
         accumulatedValue = value;
         accumulatedCount = count;
       } else {
@@ -48,52 +53,100 @@ public class ReportPointSerializer implements Function<ReportPoint, String> {
       }
     }
     if (accumulatedValue != null) {
-      sb.append('#').append(accumulatedCount).append(' ');
-      sb.append(accumulatedValue).append(' ');
+      appendCentroid(out, accumulatedValue, accumulatedCount);
     }
   }
 
+  private static void appendCentroid(Appendable out, double value, int count)
+      throws IOException {
+    out.append('#');
+    appendNumber(out, count).append(' ');
+    appendNumber(out, value).append(' ');
+  }
+
   @VisibleForTesting
   public static String pointToString(ReportPoint point) {
-    if (point.getValue() instanceof Number || point.getValue() instanceof String) {
-      StringBuilder sb = new StringBuilder(80);
-      appendQuoted(sb, point.getMetric()).
-          append(" ").append(point.getValue()).
-          append(" ").append(point.getTimestamp() / 1000).
-          append(" ").append("source=");
-      appendQuoted(sb, point.getHost());
-      appendTagMap(sb, point.getAnnotations());
-      return sb.toString();
-    } else if (point.getValue() instanceof wavefront.report.Histogram) {
-      wavefront.report.Histogram h = (wavefront.report.Histogram) point.getValue();
-      StringBuilder sb = new StringBuilder();
+    return appendUnchecked(new StringBuilder(80), point, ReportPointSerializer::appendPoint)
+        .toString();
+  }
+
+  /**
+   * Writes the canonical representation of a point to an {@link Appendable}.
+   *
+   * @param out   Appendable to write to.
+   * @param point point to serialize.
+   * @return Appendable instance
+   */
+  public static <T extends Appendable> T appendPoint(T out, ReportPoint point)
+      throws IOException {
+    Object value = point.getValue();
+    if (value instanceof Number || value instanceof String) {
+      appendQuoted(out, point.getMetric()).append(' ');
+      if (value instanceof Double) {
+        appendNumber(out, (double) (Double) value);
+      } else if (value instanceof Long) {
+        appendNumber(out, (long) (Long) value);
+      } else {
+        out.append(value.toString());
+      }
+      out.append(' ');
+      appendNumber(out, point.getTimestamp() / 1000).append(" source=");
+      appendQuoted(out, point.getHost());
+      appendTagMap(out, point.getAnnotations());
+      return out;
+    } else if (value instanceof wavefront.report.Histogram) {
+      wavefront.report.Histogram h = (wavefront.report.Histogram) value;
       // BinType
       switch (h.getDuration()) {
         case (int) DateUtils.MILLIS_PER_MINUTE:
-          sb.append("!M ");
+          out.append("!M ");
           break;
         case (int) DateUtils.MILLIS_PER_HOUR:
-          sb.append("!H ");
+          out.append("!H ");
           break;
         case (int) DateUtils.MILLIS_PER_DAY:
-          sb.append("!D ");
+          out.append("!D ");
           break;
         default:
           throw new RuntimeException("Unexpected histogram duration " + h.getDuration());
       }
       // Timestamp
-      sb.append(point.getTimestamp() / 1000).append(' ');
+      appendNumber(out, point.getTimestamp() / 1000).append(' ');
       // Centroids
-      appendCompactedCentroids(sb, h.getBins(), h.getCounts());
+      appendCompactedCentroids(out, h.getBins(), h.getCounts());
       // Metric
-      appendQuoted(sb, point.getMetric());
+      appendQuoted(out, point.getMetric());
       // Source
-      sb.append(" ").append("source=");
-      appendQuoted(sb, point.getHost());
-      appendTagMap(sb, point.getAnnotations());
-      return sb.toString();
+      out.append(" source=");
+      appendQuoted(out, point.getHost());
+      appendTagMap(out, point.getAnnotations());
+      return out;
     }
     throw new RuntimeException("Unsupported value class: " +
-        point.getValue().getClass().getCanonicalName());
+        value.getClass().getCanonicalName());
+  }
+
+  /**
+   * Writes the canonical representation of a point to a {@link ByteBuf} as UTF-8.
+   *
+   * @param buf   buffer to write to.
+   * @param point point to serialize.
+   */
+  public static void writePoint(ByteBuf buf, ReportPoint point) {
+    appendUnchecked(new ByteBufAppendable(buf), point, ReportPointSerializer::appendPoint).finish();
+  }
+
+  /**
+   * Writes the canonical representation of a point to a {@link ByteBuffer} as UTF-8, starting
+   * at its current position.
+   *
+   * @param buffer buffer to write to.
+   * @param point  point to serialize.
+   * @throws IndexOutOfBoundsException if there is not enough room in the buffer.
+   */
+  public static void writePoint(ByteBuffer buffer, ReportPoint point) {
+    ByteBuf wrapper = ByteBufAppendable.wrap(buffer);
+    writePoint(wrapper, point);
+    ByteBufAppendable.advance(buffer, wrapper);
   }
 }
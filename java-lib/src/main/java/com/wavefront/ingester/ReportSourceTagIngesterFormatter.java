@@ -25,16 +25,13 @@ public class ReportSourceTagIngesterFormatter extends AbstractIngesterFormatter<
   }
 
   @Override
-  public ReportSourceTag drive(String input, @Nullable Supplier<String> defaultHostNameSupplier,
-                               String customerId, @Nullable List<String> customerSourceTags,
-                               @Nullable List<String> customLogTimestampTags,
-                               @Nullable List<String> customLogMessageTags,
-                               List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
+  public ReportSourceTag tryDrive(StringParser parser, @Nullable Supplier<String> defaultHostNameSupplier,
+                                  String customerId, @Nullable List<String> customerSourceTags,
+                                  @Nullable List<String> customLogTimestampTags,
+                                  @Nullable List<String> customLogMessageTags,
+                                  List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
     ReportSourceTag sourceTag = new ReportSourceTag();
-    StringParser parser = new StringParser(input);
-    for (FormatterElement<ReportSourceTag> element : elements) {
-      element.consume(parser, sourceTag);
-    }
+    if (!consumeElements(parser, sourceTag, ingesterContext)) return null;
 
     if (sourceTag.getAnnotations() == null || sourceTag.getAnnotations().isEmpty()) {
       if (!(sourceTag.getOperation() == SourceOperationType.SOURCE_DESCRIPTION &&
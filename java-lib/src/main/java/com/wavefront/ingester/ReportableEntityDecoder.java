@@ -1,7 +1,10 @@
 package com.wavefront.ingester;
 
+import io.netty.buffer.ByteBuf;
+
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A decoder for input data. A more generic version of {@link Decoder},
@@ -42,4 +45,73 @@ public interface ReportableEntityDecoder<T, E> {
   default void decode(T msg, List<E> out) {
     decode(msg, out, "dummy");
   }
+
+  /**
+   * Whether this decoder parses text lines directly, i.e. supports {@link #decodeLine} and
+   * {@link #decodeBatch}. False by default, decoders that implement {@link #decodeLine} opt in.
+   *
+   * @return true if batch decoding is supported
+   */
+  default boolean supportsBatch() {
+    return false;
+  }
+
+  /**
+   * Decode a single line the parser is currently positioned at. Malformed input is not thrown
+   * but recorded in the parser (see {@link StringParser#getError()}). Must be implemented by
+   * decoders that support batch decoding (see {@link #supportsBatch()}).
+   *
+   * @param parser     Parser positioned at the line to decode.
+   * @param out        List to output the parsed entities.
+   * @param customerId The customer id to use as the table for the resulting entities.
+   * @param ctx        The ingester context with extra params for decoding.
+   * @throws UnsupportedOperationException if the decoder doesn't support batch decoding.
+   */
+  default void decodeLine(StringParser parser, List<E> out, String customerId,
+                          @Nullable IngesterContext ctx) {
+    throw new UnsupportedOperationException("Batch decoding is not supported");
+  }
+
+  /**
+   * Decode all lines of a multi-line payload in one pass, reusing a single parser instance.
+   * Blank lines are skipped. Lines that fail to parse do not interrupt decoding: the parser,
+   * positioned at the offending line, is passed to {@code errorHandler} instead, and exposes
+   * the error code, offset and message ({@link StringParser#getError()},
+   * {@link StringParser#getErrorOffset()}, {@link StringParser#getErrorMessage()}).
+   *
+   * @param payload      Payload to parse, one entity per line.
+   * @param out          List to output the parsed entities.
+   * @param customerId   The customer id to use as the table for the resulting entities.
+   * @param ctx          The ingester context with extra params for decoding.
+   * @param errorHandler Consumer for the lines that could not be parsed.
+   * @throws UnsupportedOperationException if the decoder doesn't support batch decoding.
+   */
+  default void decodeBatch(CharSequence payload, List<E> out, String customerId,
+                           @Nullable IngesterContext ctx, Consumer<StringParser> errorHandler) {
+    if (!supportsBatch()) {
+      throw new UnsupportedOperationException("Batch decoding is not supported");
+    }
+    StringParser parser = new StringParser(payload);
+    while (parser.nextLine()) {
+      try {
+        decodeLine(parser, out, customerId, ctx);
+      } catch (RuntimeException e) {
+        parser.fail(e);
+      }
+      if (parser.hasError()) {
+        errorHandler.accept(parser);
+      }
+    }
+  }
+
+  /**
+   * Decode all lines of a multi-line payload in one pass directly from a {@link ByteBuf}.
+   * Reader index of the buffer is not modified.
+   *
+   * @see #decodeBatch(CharSequence, List, String, IngesterContext, Consumer)
+   */
+  default void decodeBatch(ByteBuf payload, List<E> out, String customerId,
+                           @Nullable IngesterContext ctx, Consumer<StringParser> errorHandler) {
+    decodeBatch(StringParser.asCharSequence(payload), out, customerId, ctx, errorHandler);
+  }
 }
@@ -38,8 +38,21 @@ public class SpanDecoder implements ReportableEntityDecoder<String, Span> {
 
   @Override
   public void decode(String msg, List<Span> out, String customerId, IngesterContext ctx) {
-    Span span = FORMAT.drive(msg, hostNameSupplier, customerId, null, null, null, null, null, ctx);
-    if (out != null) {
+    StringParser parser = new StringParser(msg);
+    decodeLine(parser, out, customerId, ctx);
+    parser.throwIfFailed();
+  }
+
+  @Override
+  public boolean supportsBatch() {
+    return true;
+  }
+
+  @Override
+  public void decodeLine(StringParser parser, List<Span> out, String customerId,
+                         IngesterContext ctx) {
+    Span span = FORMAT.tryDrive(parser, hostNameSupplier, customerId, null, null, null, null, null, ctx);
+    if (span != null && out != null) {
       out.add(span);
     }
   }
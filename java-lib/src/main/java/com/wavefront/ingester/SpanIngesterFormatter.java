@@ -8,7 +8,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.function.Supplier;
 
-import com.wavefront.data.ParseException;
 
 /**
  * Builder for Span formatter.
@@ -33,20 +32,14 @@ public class SpanIngesterFormatter extends AbstractIngesterFormatter<Span> {
   }
 
   @Override
-  public Span drive(String input, @Nullable Supplier<String> defaultHostNameSupplier,
-                    String customerId, @Nullable List<String> customSourceTags,
-                    @Nullable List<String> customLogTimestampTags,
-                    @Nullable List<String> customLogMessageTags,
-                    List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
+  public Span tryDrive(StringParser parser, @Nullable Supplier<String> defaultHostNameSupplier,
+                       String customerId, @Nullable List<String> customSourceTags,
+                       @Nullable List<String> customLogTimestampTags,
+                       @Nullable List<String> customLogMessageTags,
+                       List<String> customLogApplicationTags, List<String> customLogServiceTags, @Nullable IngesterContext ingesterContext) {
     Span span = new Span();
     span.setCustomer(customerId);
-    StringParser parser = new StringParser(input);
-    for (FormatterElement<Span> element : elements) {
-      element.consume(parser, span);
-    }
-    if (parser.hasNext()) {
-      throw new ParseException("Unexpected extra input: " + parser.next());
-    }
+    if (!consumeElements(parser, span, ingesterContext)) return null;
     List<Annotation> annotations = span.getAnnotations();
     if (annotations != null) {
       boolean hasTrueSource = false;
@@ -81,13 +74,16 @@ public class SpanIngesterFormatter extends AbstractIngesterFormatter<Span> {
       span.setSource(defaultHostNameSupplier.get());
     }
     if (span.getSource() == null) {
-      throw new IllegalArgumentException("source can't be null: " + input);
+      parser.failLine(ParseError.MISSING_SOURCE);
+      return null;
     }
     if (span.getSpanId() == null) {
-      throw new IllegalArgumentException("spanId can't be null: " + input);
+      parser.failLine(ParseError.MISSING_SPAN_ID);
+      return null;
     }
     if (span.getTraceId() == null) {
-      throw new IllegalArgumentException("traceId can't be null: " + input);
+      parser.failLine(ParseError.MISSING_TRACE_ID);
+      return null;
     }
     return span;
   }
@@ -1,12 +1,18 @@
 package com.wavefront.ingester;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.wavefront.common.ByteBufAppendable;
+import io.netty.buffer.ByteBuf;
 import wavefront.report.Span;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.function.Function;
 
 import static com.wavefront.common.SerializerUtils.appendAnnotations;
+import static com.wavefront.common.SerializerUtils.appendNumber;
 import static com.wavefront.common.SerializerUtils.appendQuoted;
+import static com.wavefront.common.SerializerUtils.appendUnchecked;
 
 /**
  * Convert a {@link Span} to its string representation in a canonical format (quoted name and annotations).
@@ -22,27 +28,58 @@ public class SpanSerializer implements Function<Span, String> {
 
   @VisibleForTesting
   static String spanToString(Span span) {
-    StringBuilder sb = new StringBuilder();
-    appendQuoted(sb, span.getName());
-    sb.append(' ');
+    return appendUnchecked(new StringBuilder(), span, SpanSerializer::appendSpan).toString();
+  }
+
+  /**
+   * Writes the canonical representation of a span to an {@link Appendable}.
+   *
+   * @param out  Appendable to write to.
+   * @param span span to serialize.
+   * @return Appendable instance
+   */
+  public static <T extends Appendable> T appendSpan(T out, Span span) throws IOException {
+    appendQuoted(out, span.getName());
+    out.append(' ');
     if (span.getSource() != null) {
-      sb.append("source=");
-      appendQuoted(sb, span.getSource()).append(' ');
+      out.append("source=");
+      appendQuoted(out, span.getSource()).append(' ');
     }
     if (span.getSpanId() != null) {
-      sb.append("spanId=");
-      appendQuoted(sb, span.getSpanId()).append(' ');
+      out.append("spanId=");
+      appendQuoted(out, span.getSpanId()).append(' ');
     }
     if (span.getTraceId() != null) {
-      sb.append("traceId=");
-      appendQuoted(sb, span.getTraceId());
+      out.append("traceId=");
+      appendQuoted(out, span.getTraceId());
     }
-    appendAnnotations(sb, span.getAnnotations()).
-        append(' ').
-        append(span.getStartMillis()).
-        append(' ').
-        append(span.getDuration());
-    return sb.toString();
+    appendAnnotations(out, span.getAnnotations()).append(' ');
+    appendNumber(out, span.getStartMillis()).append(' ');
+    appendNumber(out, span.getDuration());
+    return out;
   }
-}
 
+  /**
+   * Writes the canonical representation of a span to a {@link ByteBuf} as UTF-8.
+   *
+   * @param buf  buffer to write to.
+   * @param span span to serialize.
+   */
+  public static void writeSpan(ByteBuf buf, Span span) {
+    appendUnchecked(new ByteBufAppendable(buf), span, SpanSerializer::appendSpan).finish();
+  }
+
+  /**
+   * Writes the canonical representation of a span to a {@link ByteBuffer} as UTF-8, starting
+   * at its current position.
+   *
+   * @param buffer buffer to write to.
+   * @param span   span to serialize.
+   * @throws IndexOutOfBoundsException if there is not enough room in the buffer.
+   */
+  public static void writeSpan(ByteBuffer buffer, Span span) {
+    ByteBuf wrapper = ByteBufAppendable.wrap(buffer);
+    writeSpan(wrapper, span);
+    ByteBufAppendable.advance(buffer, wrapper);
+  }
+}
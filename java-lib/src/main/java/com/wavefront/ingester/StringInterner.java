@@ -0,0 +1,176 @@
+package com.wavefront.ingester;
+
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import io.netty.util.AsciiString;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Bounded pool of canonical String instances for metric names and tag keys. Lookups are done
+ * directly against a region of the input, so a hit does not allocate at all, and repeated names
+ * share a single instance, which reduces retained heap and makes subsequent equals() checks
+ * mostly identity comparisons.
+ *
+ * The pool is a fixed-size direct-mapped table: a colliding entry simply replaces the previous
+ * one, so memory usage stays bounded regardless of cardinality. Slots are written without
+ * synchronization, which is safe since Strings are immutable; a racing thread may only see a
+ * stale entry and count a miss. Can be shared between threads and decoders.
+ */
+public class StringInterner {
+  /**
+   * Strings longer than that are unlikely to repeat and are not worth keeping in the pool.
+   */
+  public static final int DEFAULT_MAX_LENGTH = 256;
+
+  private final String[] table;
+  private final int mask;
+  private final int maxLength;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param capacity max number of pooled strings, rounded up to a power of 2.
+   */
+  public StringInterner(int capacity) {
+    this(capacity, DEFAULT_MAX_LENGTH);
+  }
+
+  /**
+   * @param capacity  max number of pooled strings, rounded up to a power of 2.
+   * @param maxLength strings longer than that are returned as is.
+   */
+  public StringInterner(int capacity, int maxLength) {
+    Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30,
+        "capacity must be between 1 and 2^30");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) size <<= 1;
+    this.table = new String[size];
+    this.mask = size - 1;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Returns a pooled instance equal to the specified region of the input, materializing it only
+   * if it's not in the pool yet.
+   *
+   * @param input source character sequence.
+   * @param start start offset (inclusive).
+   * @param end   end offset (exclusive).
+   * @return canonical instance.
+   */
+  public String intern(@Nonnull CharSequence input, int start, int end) {
+    int len = end - start;
+    if (len > maxLength) {
+      return materialize(input, start, end);
+    }
+    // same as String.hashCode(), so that both intern() methods map to the same slot
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + input.charAt(i);
+    }
+    int slot = spread(hash) & mask;
+    String candidate = table[slot];
+    if (candidate != null && candidate.length() == len && regionEquals(candidate, input, start)) {
+      hits.increment();
+      return candidate;
+    }
+    misses.increment();
+    String value = materialize(input, start, end);
+    table[slot] = value;
+    return value;
+  }
+
+  /**
+   * Returns a pooled instance equal to the specified string. If there is none, the string
+   * itself is added to the pool.
+   *
+   * @param value string to intern.
+   * @return canonical instance.
+   */
+  public String intern(@Nonnull String value) {
+    if (value.length() > maxLength) {
+      return value;
+    }
+    int slot = spread(value.hashCode()) & mask;
+    String candidate = table[slot];
+    if (value.equals(candidate)) {
+      hits.increment();
+      return candidate;
+    }
+    misses.increment();
+    table[slot] = value;
+    return value;
+  }
+
+  /**
+   * @return number of lookups that returned a pooled instance.
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return number of lookups that had to add a new instance to the pool.
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return max number of pooled strings.
+   */
+  public int getCapacity() {
+    return table.length;
+  }
+
+  /**
+   * Exposes hit and miss counts as gauges in the default metrics registry.
+   *
+   * @param group metric group to register gauges in.
+   * @return this instance.
+   */
+  public StringInterner registerMetrics(String group) {
+    Metrics.newGauge(new MetricName(group, "", "intern-hits"), new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return getHits();
+      }
+    });
+    Metrics.newGauge(new MetricName(group, "", "intern-misses"), new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return getMisses();
+      }
+    });
+    return this;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static String materialize(CharSequence input, int start, int end) {
+    if (input instanceof String) {
+      return ((String) input).substring(start, end);
+    } else if (input instanceof AsciiString) {
+      return ((AsciiString) input).toString(start, end);
+    }
+    return input.subSequence(start, end).toString();
+  }
+
+  private static boolean regionEquals(String candidate, CharSequence input, int start) {
+    if (input instanceof String) {
+      return ((String) input).regionMatches(start, candidate, 0, candidate.length());
+    }
+    for (int i = 0; i < candidate.length(); i++) {
+      if (candidate.charAt(i) != input.charAt(start + i)) return false;
+    }
+    return true;
+  }
+}
@@ -3,29 +3,176 @@ package com.wavefront.ingester;
 import com.google.common.base.Preconditions;
 import com.wavefront.data.ParseException;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.AsciiString;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * A lightweight parser custom-tailored to suit all of our supported line protocols.
  *
+ * Works directly on a {@link CharSequence} (a {@link String}, a slice of a larger payload or a
+ * Netty {@link ByteBuf} wrapped with {@link #asCharSequence(ByteBuf)}). Tokens are tracked as
+ * offsets into the input: {@link #nextToken()} and the {@code token*} accessors allow consuming
+ * delimiters, literals and numeric values without allocating a String per token, while
+ * {@link #peek()} and {@link #next()} materialize tokens as Strings when the caller actually
+ * needs them.
+ *
+ * A single instance can also walk a multi-line payload with {@link #nextLine()}, in which case
+ * tokenization is confined to the current line.
+ *
+ * Malformed input does not throw when using the token API: the first error on a line is recorded
+ * with {@link #fail(ParseError)} as a {@link ParseError} code and offset, tokenization stops, and
+ * the human-readable message is only built when {@link #getErrorMessage()} is called. The
+ * String API ({@link #peek()}, {@link #next()}, {@link #hasNext()}) throws {@link ParseException}
+ * as before.
+ *
  * @author vasily@wavefront.com
  */
 public class StringParser {
   private static final String EQ_TOKEN = "=";
   private static final String WEIGHT_TOKEN = "#";
+  private static final String END_OF_LINE = "end of line";
+
+  private static final int TYPE_EOL = 0;
+  private static final int TYPE_EQ = 1;
+  private static final int TYPE_WEIGHT = 2;
+  private static final int TYPE_TEXT = 3;
+  private static final int TYPE_QUOTED = 4;
+  private static final int TYPE_QUOTED_ESCAPED = 5;
+
+  private static final int NUMBER_UNKNOWN = 0;
+  private static final int NUMBER_VALID = 1;
+  private static final int NUMBER_INVALID = 2;
+
+  // largest integer that can be represented exactly as a double
+  private static final long MAX_EXACT_DOUBLE_MANTISSA = 1L << 53;
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+      1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
 
   private int currentIndex = 0;
-  private final String input;
-  private String peek = null;
+  private final CharSequence input;
+  private final int length;
+  private int lineStart;
+  private int lineEnd;
+  private int nextLineStart = 0;
+
+  // current token state: offsets are [tokenStart, tokenEnd), quotes excluded
+  private boolean pending = false;
+  private int tokenType = TYPE_EOL;
+  private int tokenStart = 0;
+  private int tokenEnd = 0;
+  private char quoteChar = 0;
+  private String tokenString = null;
+  // pool tokenString was obtained from, if any
+  private StringInterner tokenInterner = null;
+  private int tokenDoubleState = NUMBER_UNKNOWN;
+  private double tokenDouble;
+  private int tokenIntState = NUMBER_UNKNOWN;
+  private int tokenInt;
+
+  // first error recorded for the current line
+  private ParseError error = null;
+  private int errorType;
+  private int errorStart;
+  private int errorEnd;
+  private char errorQuoteChar;
+  private RuntimeException errorCause;
 
   /**
    * @param input string to parse at instance creation
    */
   public StringParser(@Nonnull String input) {
+    this((CharSequence) input);
+  }
+
+  /**
+   * @param input character sequence to parse at instance creation
+   */
+  public StringParser(@Nonnull CharSequence input) {
     Preconditions.checkNotNull(input);
     this.input = input;
+    this.length = input.length();
     this.currentIndex = 0;
+    this.lineStart = 0;
+    this.lineEnd = length;
+  }
+
+  /**
+   * Wraps readable bytes of a {@link ByteBuf} as a {@link CharSequence} suitable for parsing.
+   * Pure ASCII content (which covers the vast majority of line protocol traffic) is exposed
+   * without decoding, and without copying for heap buffers; anything else is decoded as UTF-8.
+   * Reader index of the buffer is not modified.
+   *
+   * @param buf buffer to wrap.
+   * @return character sequence view of the buffer.
+   */
+  public static CharSequence asCharSequence(@Nonnull ByteBuf buf) {
+    int readerIndex = buf.readerIndex();
+    int readableBytes = buf.readableBytes();
+    if (buf.forEachByte(readerIndex, readableBytes, b -> b >= 0) != -1) {
+      return buf.toString(readerIndex, readableBytes, UTF_8);
+    }
+    if (buf.hasArray()) {
+      return new AsciiString(buf.array(), buf.arrayOffset() + readerIndex, readableBytes, false);
+    }
+    return new AsciiString(ByteBufUtil.getBytes(buf, readerIndex, readableBytes, true), false);
+  }
+
+  /**
+   * @return the input this parser was created with.
+   */
+  public CharSequence getInput() {
+    return input;
+  }
+
+  /**
+   * @return the line currently being parsed (the entire input unless {@link #nextLine()} is used).
+   */
+  public String getLine() {
+    if (lineStart == 0 && lineEnd == length) return input.toString();
+    return substring(lineStart, lineEnd);
+  }
+
+  /**
+   * Positions the parser at the beginning of the next non-blank line of the input, so a single
+   * instance can be reused to parse a multi-line payload in one pass. Lines are terminated with
+   * '\n' or "\r\n". Any error recorded for the previous line is cleared.
+   *
+   * @return true if a line is available, false if the end of input is reached.
+   */
+  public boolean nextLine() {
+    while (nextLineStart < length) {
+      int start = nextLineStart;
+      int end = indexOf('\n', start, length);
+      if (end == -1) {
+        end = length;
+        nextLineStart = length;
+      } else {
+        nextLineStart = end + 1;
+      }
+      if (end > start && input.charAt(end - 1) == '\r') end--;
+      int firstChar = start;
+      while (firstChar < end && Character.isWhitespace(input.charAt(firstChar))) {
+        firstChar++;
+      }
+      if (firstChar == end) continue;
+      lineStart = start;
+      lineEnd = end;
+      currentIndex = firstChar;
+      pending = false;
+      tokenType = TYPE_EOL;
+      resetTokenValue();
+      error = null;
+      errorCause = null;
+      return true;
+    }
+    return false;
   }
 
   /**
@@ -34,92 +181,581 @@ public class StringParser {
    * penalty for multiple peek() calls is negligible.
    *
    * @return next available token or null if end of line is reached
+   * @throws ParseException if the input is malformed
    */
   @Nullable
   public String peek() {
-    if (peek == null) {
-      peek = advance();
-    }
-    return peek;
+    peekToken();
+    throwIfFailed();
+    return tokenAsString();
   }
 
   /**
    * Checks whether there are more tokens available in the string.
    *
    * @return true if more tokens available
+   * @throws ParseException if the input is malformed
    */
   public boolean hasNext() {
-    return peek() != null;
+    peekToken();
+    throwIfFailed();
+    return tokenType != TYPE_EOL;
   }
 
   /**
    * Retrieves the next available token and advances further.
    *
    * @return next available token or null if end of line is reached
+   * @throws ParseException if the input is malformed
    */
   @Nullable
   public String next() {
-    String token = peek();
-    peek = null;
-    return token;
+    nextToken();
+    throwIfFailed();
+    return tokenAsString();
+  }
+
+  /**
+   * Advances to the next available token without materializing it. The token can then be
+   * inspected with {@code token*} methods.
+   *
+   * @return true if a token is available, false if end of line is reached or an error has
+   *         been recorded
+   */
+  public boolean nextToken() {
+    peekToken();
+    pending = false;
+    return tokenType != TYPE_EOL;
+  }
+
+  /**
+   * Locates the next available token without advancing further. The token can then be
+   * inspected with {@code token*} methods.
+   *
+   * @return true if a token is available, false if end of line is reached or an error has
+   *         been recorded
+   */
+  public boolean peekToken() {
+    if (!pending) {
+      advance();
+      pending = true;
+    }
+    return tokenType != TYPE_EOL;
+  }
+
+  /**
+   * @return start offset of the current token in the input (quotes excluded).
+   */
+  public int tokenStart() {
+    return tokenStart;
   }
 
+  /**
+   * @return end offset (exclusive) of the current token in the input (quotes excluded).
+   */
+  public int tokenEnd() {
+    return tokenEnd;
+  }
+
+  /**
+   * @return true if the current token is the '=' delimiter.
+   */
+  public boolean tokenIsEquals() {
+    return tokenType == TYPE_EQ;
+  }
+
+  /**
+   * @return true if the current token is the '#' centroid weight marker.
+   */
+  public boolean tokenIsWeight() {
+    return tokenType == TYPE_WEIGHT;
+  }
+
+  /**
+   * @return true if the current token starts with a digit.
+   */
+  public boolean tokenStartsWithDigit() {
+    if (tokenType == TYPE_EOL || tokenStart >= tokenEnd) return false;
+    return Character.isDigit(input.charAt(tokenStart));
+  }
+
+  /**
+   * Checks whether the current token is equal to the specified literal without materializing it.
+   *
+   * @param literal       literal to compare with.
+   * @param caseSensitive whether comparison should be case sensitive.
+   * @return true if the token matches.
+   */
+  public boolean tokenEquals(String literal, boolean caseSensitive) {
+    if (tokenType == TYPE_EOL) return false;
+    if (tokenString != null || tokenType == TYPE_QUOTED_ESCAPED) {
+      String token = tokenAsString();
+      return caseSensitive ? literal.equals(token) : literal.equalsIgnoreCase(token);
+    }
+    int len = tokenEnd - tokenStart;
+    if (len != literal.length()) return false;
+    if (input instanceof String) {
+      return ((String) input).regionMatches(!caseSensitive, tokenStart, literal, 0, len);
+    }
+    for (int i = 0; i < len; i++) {
+      char c1 = input.charAt(tokenStart + i);
+      char c2 = literal.charAt(i);
+      if (c1 == c2) continue;
+      if (caseSensitive) return false;
+      char u1 = Character.toUpperCase(c1);
+      char u2 = Character.toUpperCase(c2);
+      if (u1 != u2 && Character.toLowerCase(u1) != Character.toLowerCase(u2)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Materializes the current token as a String. The value is cached, so repeated calls
+   * do not allocate.
+   *
+   * @return current token or null if end of line is reached.
+   */
   @Nullable
-  private String advance() {
-    while (currentIndex < input.length() && Character.isWhitespace(input.charAt(currentIndex))) {
+  public String tokenAsString() {
+    if (tokenString == null) {
+      switch (tokenType) {
+        case TYPE_EOL:
+          return null;
+        case TYPE_EQ:
+          tokenString = EQ_TOKEN;
+          break;
+        case TYPE_WEIGHT:
+          tokenString = WEIGHT_TOKEN;
+          break;
+        case TYPE_QUOTED_ESCAPED:
+          tokenString = unescape(tokenStart, tokenEnd, quoteChar);
+          break;
+        default:
+          tokenString = substring(tokenStart, tokenEnd);
+      }
+    }
+    return tokenString;
+  }
+
+  /**
+   * Materializes the current token as a String, returning a pooled instance if an interner is
+   * provided. Unescaped tokens are looked up directly in the input, so a pool hit does not
+   * allocate. The pooled instance is cached, so repeated calls with the same interner don't
+   * look it up again.
+   *
+   * @param interner optional string pool.
+   * @return current token or null if end of line is reached.
+   */
+  @Nullable
+  public String tokenAsString(@Nullable StringInterner interner) {
+    if (interner == null || tokenType == TYPE_EOL || tokenType == TYPE_EQ ||
+        tokenType == TYPE_WEIGHT) {
+      return tokenAsString();
+    }
+    if (tokenString != null && tokenInterner == interner) {
+      return tokenString;
+    }
+    if (tokenString == null && tokenType != TYPE_QUOTED_ESCAPED) {
+      tokenString = interner.intern(input, tokenStart, tokenEnd);
+    } else {
+      tokenString = interner.intern(tokenAsString());
+    }
+    tokenInterner = interner;
+    return tokenString;
+  }
+
+  /**
+   * Checks whether the current token can be parsed with {@link #tokenAsDouble()}. Validation
+   * does not throw, so callers can reject malformed values without paying for an exception.
+   *
+   * @return true if the current token is a valid number.
+   */
+  public boolean tokenIsDouble() {
+    if (tokenDoubleState == NUMBER_UNKNOWN) {
+      tokenDoubleState = NUMBER_INVALID;
+      if (tokenType == TYPE_TEXT || tokenType == TYPE_QUOTED) {
+        double value = parseSimpleDecimal(input, tokenStart, tokenEnd);
+        if (!Double.isNaN(value)) {
+          tokenDouble = value;
+          tokenDoubleState = NUMBER_VALID;
+          return true;
+        }
+      }
+      if (tokenType >= TYPE_TEXT) {
+        String token = tokenAsString();
+        if (isFloatingPointLiteral(token)) {
+          tokenDouble = Double.parseDouble(token);
+          tokenDoubleState = NUMBER_VALID;
+        }
+      }
+    }
+    return tokenDoubleState == NUMBER_VALID;
+  }
+
+  /**
+   * Parses the current token as a double, without materializing it for plain decimal values.
+   *
+   * @return parsed value.
+   * @throws NumberFormatException if the token is not a valid number.
+   */
+  public double tokenAsDouble() {
+    if (!tokenIsDouble()) {
+      throw new NumberFormatException("For input string: \"" + tokenAsString() + "\"");
+    }
+    return tokenDouble;
+  }
+
+  /**
+   * Checks whether the current token can be parsed with {@link #tokenAsInt()}, without throwing.
+   *
+   * @return true if the current token is a valid integer.
+   */
+  public boolean tokenIsInt() {
+    if (tokenIntState == NUMBER_UNKNOWN) {
+      tokenIntState = NUMBER_INVALID;
+      if (tokenType >= TYPE_TEXT) {
+        CharSequence token = tokenType == TYPE_QUOTED_ESCAPED ? tokenAsString() : input;
+        int start = tokenType == TYPE_QUOTED_ESCAPED ? 0 : tokenStart;
+        int end = tokenType == TYPE_QUOTED_ESCAPED ? token.length() : tokenEnd;
+        boolean negative = false;
+        if (start < end && (token.charAt(start) == '-' || token.charAt(start) == '+')) {
+          negative = token.charAt(start) == '-';
+          start++;
+        }
+        if (start < end) {
+          long result = 0;
+          int i = start;
+          for (; i < end; i++) {
+            char ch = token.charAt(i);
+            if (ch < '0' || ch > '9') break;
+            result = result * 10 + (ch - '0');
+            if (result > Integer.MAX_VALUE + 1L) break;
+          }
+          if (negative) result = -result;
+          if (i == end && result >= Integer.MIN_VALUE && result <= Integer.MAX_VALUE) {
+            tokenInt = (int) result;
+            tokenIntState = NUMBER_VALID;
+          }
+        }
+      }
+    }
+    return tokenIntState == NUMBER_VALID;
+  }
+
+  /**
+   * Parses the current token as an int, without materializing it.
+   *
+   * @return parsed value.
+   * @throws NumberFormatException if the token is not a valid integer.
+   */
+  public int tokenAsInt() {
+    if (!tokenIsInt()) {
+      throw new NumberFormatException("For input string: \"" + tokenAsString() + "\"");
+    }
+    return tokenInt;
+  }
+
+  /**
+   * Records an error at the current token. Only the first error for a line is kept, and no
+   * further tokens are returned for the line once an error is recorded.
+   *
+   * @param error error code.
+   */
+  public void fail(ParseError error) {
+    if (this.error == null) {
+      fail(error, tokenType, tokenStart, tokenEnd);
+    }
+  }
+
+  /**
+   * Records an error for the specified region of the input. Only the first error for a line is
+   * kept, and no further tokens are returned for the line once an error is recorded.
+   *
+   * @param error error code.
+   * @param start start offset of the offending region in the input.
+   * @param end   end offset (exclusive) of the offending region in the input.
+   */
+  public void fail(ParseError error, int start, int end) {
+    if (this.error == null) {
+      fail(error, TYPE_TEXT, start, end);
+    }
+  }
+
+  /**
+   * Records an exception thrown while processing the current line as a
+   * {@link ParseError#INVALID_ENTITY} error.
+   *
+   * @param cause exception to record.
+   */
+  public void fail(RuntimeException cause) {
+    if (this.error == null) {
+      fail(ParseError.INVALID_ENTITY, TYPE_EOL, lineStart, lineStart);
+      this.errorCause = cause;
+    }
+  }
+
+  /**
+   * Records the whole current line as the offending region, for errors that can only be
+   * detected once the entire line has been processed.
+   *
+   * @param error error code.
+   */
+  public void failLine(ParseError error) {
+    fail(error, lineStart, lineEnd);
+  }
+
+  /**
+   * @return true if an error has been recorded for the current line.
+   */
+  public boolean hasError() {
+    return error != null;
+  }
+
+  /**
+   * @return error code recorded for the current line or null.
+   */
+  @Nullable
+  public ParseError getError() {
+    return error;
+  }
+
+  /**
+   * @return offset of the offending token relative to the beginning of the current line,
+   *         or -1 if no error has been recorded.
+   */
+  public int getErrorOffset() {
+    return error == null ? -1 : errorStart - lineStart;
+  }
+
+  /**
+   * @return exception recorded with {@link #fail(RuntimeException)}, if any.
+   */
+  @Nullable
+  public RuntimeException getErrorCause() {
+    return errorCause;
+  }
+
+  /**
+   * Builds a human-readable message for the recorded error. This is intentionally deferred
+   * until the message is actually needed.
+   *
+   * @return error message or null if no error has been recorded.
+   */
+  @Nullable
+  public String getErrorMessage() {
+    if (error == null) return null;
+    if (errorCause != null) return errorCause.getMessage();
+    String context;
+    if (errorType == TYPE_EOL) {
+      context = END_OF_LINE;
+    } else if (errorType == TYPE_QUOTED_ESCAPED) {
+      context = unescape(errorStart, errorEnd, errorQuoteChar);
+    } else {
+      context = substring(errorStart, errorEnd);
+    }
+    return error.formatMessage(context);
+  }
+
+  /**
+   * @throws ParseException if an error has been recorded for the current line.
+   */
+  public void throwIfFailed() {
+    if (error != null) {
+      if (errorCause != null) throw errorCause;
+      throw new ParseException(getErrorMessage());
+    }
+  }
+
+  private void fail(ParseError error, int type, int start, int end) {
+    this.error = error;
+    this.errorType = type;
+    this.errorStart = start;
+    this.errorEnd = end;
+    this.errorQuoteChar = quoteChar;
+    // stop tokenizing this line
+    this.currentIndex = lineEnd;
+    this.pending = true;
+    this.tokenType = TYPE_EOL;
+    resetTokenValue();
+  }
+
+  private void resetTokenValue() {
+    tokenString = null;
+    tokenInterner = null;
+    tokenDoubleState = NUMBER_UNKNOWN;
+    tokenIntState = NUMBER_UNKNOWN;
+  }
+
+  private void advance() {
+    resetTokenValue();
+    while (currentIndex < lineEnd && Character.isWhitespace(input.charAt(currentIndex))) {
       // skip whitespace if any
       currentIndex++;
     }
-    if (currentIndex >= input.length()) return null;
+    if (error != null || currentIndex >= lineEnd) {
+      tokenType = TYPE_EOL;
+      tokenStart = tokenEnd = lineEnd;
+      return;
+    }
     char currentChar = input.charAt(currentIndex);
     currentIndex++;
     if (currentChar == '\"' || currentChar == '\'') {
-      return parseAsQuoted(currentChar);
+      parseAsQuoted(currentChar);
     } else if (currentChar == '=') {
-      return EQ_TOKEN;
+      tokenType = TYPE_EQ;
+      tokenStart = currentIndex - 1;
+      tokenEnd = currentIndex;
     } else if (currentChar == '#') {
-      return WEIGHT_TOKEN;
+      tokenType = TYPE_WEIGHT;
+      tokenStart = currentIndex - 1;
+      tokenEnd = currentIndex;
     } else {
-      return parseAsNonQuoted();
+      parseAsNonQuoted();
     }
   }
 
-  private String parseAsQuoted(char quoteChar) {
-    int index = input.indexOf(quoteChar, currentIndex);
-    if (index == -1) throw new ParseException("Unmatched quote character: (" + quoteChar + ")");
+  private void parseAsQuoted(char quoteChar) {
     int startIndex = currentIndex;
-    currentIndex = index + 1;
-    if (input.charAt(index - 1) != '\\') {
-      // no escaped quotes, can return immediately
-      return input.substring(startIndex, index);
+    int index = indexOf(quoteChar, currentIndex, lineEnd);
+    boolean escaped = false;
+    while (index != -1 && input.charAt(index - 1) == '\\') {
+      escaped = true;
+      index = indexOf(quoteChar, index + 1, lineEnd);
     }
-    StringBuilder unquoted = new StringBuilder(index - startIndex + 16);
-    boolean escapedQuote = true;
-    while (escapedQuote) {
+    if (index == -1) {
+      fail(ParseError.UNMATCHED_QUOTE, startIndex - 1, startIndex);
+      return;
+    }
+    currentIndex = index + 1;
+    this.tokenType = escaped ? TYPE_QUOTED_ESCAPED : TYPE_QUOTED;
+    this.quoteChar = quoteChar;
+    this.tokenStart = startIndex;
+    this.tokenEnd = index;
+  }
+
+  private void parseAsNonQuoted() {
+    int indexOfSeparator = indexOfAnySeparator(currentIndex);
+    int endOfToken = indexOfSeparator == -1 ? lineEnd : indexOfSeparator;
+    tokenType = TYPE_TEXT;
+    tokenStart = currentIndex - 1;
+    tokenEnd = endOfToken;
+    currentIndex = endOfToken;
+  }
+
+  private String unescape(int start, int end, char quoteChar) {
+    // every quote character inside the token is preceded by a backslash, which is dropped
+    StringBuilder unquoted = new StringBuilder(end - start);
+    int startIndex = start;
+    int index = indexOf(quoteChar, startIndex, end);
+    while (index != -1) {
       unquoted.append(input, startIndex, index - 1);
       unquoted.append(quoteChar);
-      index = input.indexOf(quoteChar, currentIndex);
-      startIndex = currentIndex;
-      currentIndex = index + 1;
-      if (index == -1) throw new ParseException("Unmatched quote character: (" + quoteChar + ")");
-      escapedQuote = input.charAt(index - 1) == '\\';
+      startIndex = index + 1;
+      index = indexOf(quoteChar, startIndex, end);
     }
-    return unquoted.append(input, startIndex, index).toString();
+    return unquoted.append(input, startIndex, end).toString();
   }
 
-  private String parseAsNonQuoted() {
-    int indexOfSeparator = indexOfAnySeparator(input, currentIndex);
-    int endOfToken = indexOfSeparator == -1 ? input.length() : indexOfSeparator;
-    String result = input.substring(currentIndex - 1, endOfToken);
-    currentIndex = endOfToken;
-    return result;
+  private String substring(int start, int end) {
+    if (input instanceof String) {
+      return ((String) input).substring(start, end);
+    } else if (input instanceof AsciiString) {
+      return ((AsciiString) input).toString(start, end);
+    }
+    return input.subSequence(start, end).toString();
   }
 
-  private static int indexOfAnySeparator(String input, int startIndex) {
-    for (int i = startIndex; i < input.length(); i++) {
+  private int indexOf(char ch, int fromIndex, int toIndex) {
+    for (int i = fromIndex; i < toIndex; i++) {
+      if (input.charAt(i) == ch) return i;
+    }
+    return -1;
+  }
+
+  private int indexOfAnySeparator(int startIndex) {
+    for (int i = startIndex; i < lineEnd; i++) {
       char ch = input.charAt(i);
       if (ch == ' ' || ch == '=' || ch == '\t') return i;
     }
     return -1;
   }
+
+  /**
+   * Parses plain decimal numbers ([+-]digits[.digits]) that can be converted exactly, i.e.
+   * when the mantissa fits into 53 bits and the scale does not exceed 22 (both operands are then
+   * exact doubles and IEEE division guarantees a correctly rounded result).
+   *
+   * @return parsed value or NaN if the value should be parsed with {@link Double#parseDouble}.
+   */
+  private static double parseSimpleDecimal(CharSequence input, int start, int end) {
+    int i = start;
+    if (i >= end) return Double.NaN;
+    boolean negative = false;
+    char first = input.charAt(i);
+    if (first == '-' || first == '+') {
+      negative = first == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = -1;
+    for (; i < end; i++) {
+      char ch = input.charAt(i);
+      if (ch >= '0' && ch <= '9') {
+        mantissa = mantissa * 10 + (ch - '0');
+        if (mantissa > MAX_EXACT_DOUBLE_MANTISSA) return Double.NaN;
+        digits++;
+        if (scale >= 0) scale++;
+      } else if (ch == '.' && scale < 0) {
+        scale = 0;
+      } else {
+        return Double.NaN;
+      }
+    }
+    if (digits == 0 || scale >= POWERS_OF_TEN.length) return Double.NaN;
+    double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+    return negative ? -value : value;
+  }
+
+  /**
+   * Checks whether {@link Double#parseDouble} would accept the value (decimal notation with
+   * optional exponent and type suffix, NaN or Infinity, surrounding whitespace ignored), so
+   * that invalid values can be rejected without catching {@link NumberFormatException}.
+   * Hexadecimal notation is not supported.
+   */
+  private static boolean isFloatingPointLiteral(String s) {
+    int start = 0;
+    int end = s.length();
+    while (start < end && s.charAt(start) <= ' ') start++;
+    while (end > start && s.charAt(end - 1) <= ' ') end--;
+    int i = start;
+    if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) i++;
+    if (s.startsWith("NaN", i)) return i + 3 == end;
+    if (s.startsWith("Infinity", i)) return i + 8 == end;
+    int digits = 0;
+    while (i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+      i++;
+      digits++;
+    }
+    if (i < end && s.charAt(i) == '.') {
+      i++;
+      while (i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+        i++;
+        digits++;
+      }
+    }
+    if (digits == 0) return false;
+    if (i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+      i++;
+      if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) i++;
+      int exponentDigits = 0;
+      while (i < end && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+        i++;
+        exponentDigits++;
+      }
+      if (exponentDigits == 0) return false;
+    }
+    if (i < end && "fFdD".indexOf(s.charAt(i)) >= 0) i++;
+    return i == end;
+  }
 }
@@ -7,7 +7,6 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.util.TokenBuffer;
-import com.tdunning.math.stats.Centroid;
 import com.wavefront.common.MetricsToTimeseries;
 import com.wavefront.common.Pair;
 import com.wavefront.common.TaggedMetricName;
@@ -32,8 +31,9 @@ import org.apache.commons.lang.Validate;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
@@ -364,27 +364,30 @@ public abstract class JsonMetricsGenerator {
       final JsonGenerator json = context.json;
       json.writeStartObject();
       json.writeArrayFieldStart("bins");
+      List<Double> means = new ArrayList<>();
+      List<Integer> counts = new ArrayList<>();
       for (WavefrontHistogram.MinuteBin bin : hist.bins(clear)) {
-
-        final Collection<Centroid> centroids = bin.getDist().centroids();
+        means.clear();
+        counts.clear();
+        bin.getDigest().appendTo(means, counts);
 
         json.writeStartObject();
         // Count
-        json.writeNumberField("count", bin.getDist().size());
+        json.writeNumberField("count", bin.getDigest().size());
         // Start
         json.writeNumberField("startMillis", bin.getMinMillis());
         // Duration
         json.writeNumberField("durationMillis", 60 * 1000);
         // Means
         json.writeArrayFieldStart("means");
-        for (Centroid c : centroids) {
-          json.writeNumber(c.mean());
+        for (double mean : means) {
+          json.writeNumber(mean);
         }
         json.writeEndArray();
         // Counts
         json.writeArrayFieldStart("counts");
-        for (Centroid c : centroids) {
-          json.writeNumber(c.count());
+        for (int count : counts) {
+          json.writeNumber(count);
         }
         json.writeEndArray();
 
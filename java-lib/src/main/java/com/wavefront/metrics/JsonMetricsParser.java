@@ -1,17 +1,24 @@
 package com.wavefront.metrics;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
 
 import wavefront.report.Histogram;
 import wavefront.report.HistogramType;
@@ -28,8 +35,20 @@ import static com.wavefront.data.AnnotationUtils.toAnnotationList;
  * @author Andrew Kao (andrew@wavefront.com)
  */
 public class JsonMetricsParser {
-  private static final Pattern SIMPLE_NAMES = Pattern.compile("[^a-zA-Z0-9_.-]");
-  private static final Pattern TAGGED_METRIC = Pattern.compile("(.*)\\$[0-9-]+");
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  /**
+   * Weight of a cached metric key in addition to its length.
+   */
+  private static final int KEY_OVERHEAD = 64;
+  private static final long MAX_KEY_CACHE_WEIGHT = 4_000_000;
+  /**
+   * Sanitized metric keys. Collectors report the same keys over and over, so it's cheaper to
+   * look them up than to sanitize them every time.
+   */
+  private static final LoadingCache<String, String> METRIC_KEYS = Caffeine.newBuilder().
+      maximumWeight(MAX_KEY_CACHE_WEIGHT).
+      weigher((String key, String sanitized) -> key.length() + KEY_OVERHEAD).
+      build(JsonMetricsParser::sanitizeMetricKey);
 
   @Deprecated
   public static void report(String table, String path, JsonNode node,
@@ -68,13 +87,7 @@ public class JsonMetricsParser {
       }
     }
     for (Map.Entry<String, JsonNode> next : fields) {
-      String key;
-      Matcher taggedMetricMatcher = TAGGED_METRIC.matcher(next.getKey());
-      if (taggedMetricMatcher.matches()) {
-        key = SIMPLE_NAMES.matcher(taggedMetricMatcher.group(1)).replaceAll("_");
-      } else {
-        key = SIMPLE_NAMES.matcher(next.getKey()).replaceAll("_");
-      }
+      String key = METRIC_KEYS.get(next.getKey());
       String metric = path == null ? key : path + "." + key;
       JsonNode value = next.getValue();
       processValueNode(value, table, metric, host, timestamp, points, tags);
@@ -105,13 +118,7 @@ public class JsonMetricsParser {
       }
     }
     for (Map.Entry<String, JsonNode> next : fields) {
-      String key;
-      Matcher taggedMetricMatcher = TAGGED_METRIC.matcher(next.getKey());
-      if (taggedMetricMatcher.matches()) {
-        key = SIMPLE_NAMES.matcher(taggedMetricMatcher.group(1)).replaceAll("_");
-      } else {
-        key = SIMPLE_NAMES.matcher(next.getKey()).replaceAll("_");
-      }
+      String key = METRIC_KEYS.get(next.getKey());
       String metric = path == null ? key : path + "." + key;
       JsonNode value = next.getValue();
       processValueNode(value, table, metric, host, timestamp, metrics, histograms, tags);
@@ -171,24 +178,7 @@ public class JsonMetricsParser {
       }
     } else if (value.isObject()) {
       if /*wavefront histogram*/ (value.has("bins")) {
-        Iterator<JsonNode> binIt = ((ArrayNode) value.get("bins")).elements();
-        while (binIt.hasNext()) {
-          JsonNode bin = binIt.next();
-          List<Integer> counts = newArrayList();
-          bin.get("counts").elements().forEachRemaining(v -> counts.add(v.intValue()));
-          List<Double> means = newArrayList();
-          bin.get("means").elements().forEachRemaining(v -> means.add(v.doubleValue()));
-
-          histograms.add(makeHistogram(
-              table,
-              metric,
-              host,
-              tags,
-              bin.get("startMillis").longValue(),
-              bin.get("durationMillis").intValue(),
-              means,
-              counts));
-        }
+        processBins(value.get("bins"), table, metric, host, histograms, tags);
       } else {
         report(table, metric, value, metrics, histograms, host, timestamp, tags);
       }
@@ -198,6 +188,213 @@ public class JsonMetricsParser {
     }
   }
 
+  /**
+   * Streaming version of
+   * {@link #report(String, String, JsonNode, List, List, String, long, Map)}: reads an object
+   * from a token stream and emits metrics and histograms as it goes, without building a tree for
+   * the entire payload. Only histograms and objects that may turn out to be a value with tags
+   * are materialized. Duplicate keys are reported once per occurrence, and malformed histograms
+   * nested in a histogram object are not skipped, since the object is not known to be a
+   * histogram until its "bins" field is reached.
+   *
+   * @param table      customer.
+   * @param path       metric name prefix, or null.
+   * @param parser     parser positioned at the object or right before it. after returning, the
+   *                   parser is positioned at the end of the object.
+   * @param metrics    list to output metrics.
+   * @param histograms list to output histograms.
+   * @param host       source for all metrics and histograms.
+   * @param timestamp  timestamp for metrics.
+   * @param tags       tags for all metrics and histograms.
+   * @throws IOException if the input can't be read or is not valid JSON.
+   */
+  public static void reportStreaming(String table, @Nullable String path, JsonParser parser,
+                                     List<ReportMetric> metrics,
+                                     List<ReportHistogram> histograms, String host,
+                                     long timestamp, Map<String, String> tags)
+      throws IOException {
+    if (parser.currentToken() == null) {
+      parser.nextToken();
+    }
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      // nothing to report, same as for a non-object node
+      parser.skipChildren();
+      return;
+    }
+    reportObject(table, path, parser, metrics, histograms, host, timestamp, tags, false);
+  }
+
+  private static void reportObject(String table, @Nullable String path, JsonParser parser,
+                                   List<ReportMetric> metrics, List<ReportHistogram> histograms,
+                                   String host, long timestamp, Map<String, String> tags,
+                                   boolean nested) throws IOException {
+    int metricsStart = metrics.size();
+    int histogramsStart = histograms.size();
+    // the first fields are kept while the object may still be {"value": ..., "tags": ...}
+    String firstKey = null;
+    JsonNode firstValue = null;
+    JsonNode secondValue = null;
+    boolean buffering = true;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String key = parser.currentName();
+      parser.nextToken();
+      if /*wavefront histogram*/ (nested && key.equals("bins")) {
+        // discard whatever the other fields have produced
+        metrics.subList(metricsStart, metrics.size()).clear();
+        histograms.subList(histogramsStart, histograms.size()).clear();
+        JsonNode bins = MAPPER.readTree(parser);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          parser.nextToken();
+          parser.skipChildren();
+        }
+        processBins(bins, table, path, host, histograms, tags);
+        return;
+      }
+      if (buffering && secondValue == null && (key.equals("value") || key.equals("tags")) &&
+          !key.equals(firstKey)) {
+        if (firstKey == null) {
+          firstKey = key;
+          firstValue = MAPPER.readTree(parser);
+        } else {
+          secondValue = MAPPER.readTree(parser);
+        }
+        continue;
+      }
+      if (buffering) {
+        buffering = false;
+        flush(table, path, firstKey, firstValue, secondValue, metrics, histograms, host,
+            timestamp, tags);
+      }
+      String metric = metricName(path, key);
+      switch (parser.currentToken()) {
+        case VALUE_NUMBER_INT:
+        case VALUE_NUMBER_FLOAT:
+          metrics.add(makeMetric(table, metric, host, parser.getDoubleValue(), timestamp, tags));
+          break;
+        case VALUE_TRUE:
+        case VALUE_FALSE:
+          metrics.add(makeMetric(table, metric, host,
+              parser.getBooleanValue() ? 1.0 : 0.0, timestamp, tags));
+          break;
+        case START_OBJECT:
+          reportObject(table, metric, parser, metrics, histograms, host, timestamp, tags, true);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    if (!buffering) return;
+    if (secondValue != null) {
+      JsonNode valueNode = firstKey.equals("value") ? firstValue : secondValue;
+      JsonNode tagsNode = firstKey.equals("value") ? secondValue : firstValue;
+      Map<String, String> combinedTags = Maps.newHashMap(tags);
+      combinedTags.putAll(makeTags(tagsNode));
+      processValueNode(valueNode, table, path, host, timestamp, metrics, histograms,
+          combinedTags);
+    } else {
+      flush(table, path, firstKey, firstValue, null, metrics, histograms, host, timestamp,
+          tags);
+    }
+  }
+
+  /**
+   * Reports fields that turned out not to be a value with tags.
+   */
+  private static void flush(String table, @Nullable String path, @Nullable String firstKey,
+                            @Nullable JsonNode firstValue, @Nullable JsonNode secondValue,
+                            List<ReportMetric> metrics, List<ReportHistogram> histograms,
+                            String host, long timestamp, Map<String, String> tags) {
+    if (firstKey == null) return;
+    processValueNode(firstValue, table, metricName(path, firstKey), host, timestamp, metrics,
+        histograms, tags);
+    if (secondValue != null) {
+      String secondKey = firstKey.equals("value") ? "tags" : "value";
+      processValueNode(secondValue, table, metricName(path, secondKey), host, timestamp, metrics,
+          histograms, tags);
+    }
+  }
+
+  private static void processBins(JsonNode bins, String table, String metric, String host,
+                                  List<ReportHistogram> histograms, Map<String, String> tags) {
+    Iterator<JsonNode> binIt = ((ArrayNode) bins).elements();
+    while (binIt.hasNext()) {
+      JsonNode bin = binIt.next();
+      List<Integer> counts = newArrayList();
+      bin.get("counts").elements().forEachRemaining(v -> counts.add(v.intValue()));
+      List<Double> means = newArrayList();
+      bin.get("means").elements().forEachRemaining(v -> means.add(v.doubleValue()));
+
+      histograms.add(makeHistogram(
+          table,
+          metric,
+          host,
+          tags,
+          bin.get("startMillis").longValue(),
+          bin.get("durationMillis").intValue(),
+          means,
+          counts));
+    }
+  }
+
+  private static String metricName(@Nullable String path, String key) {
+    String sanitized = METRIC_KEYS.get(key);
+    return path == null ? sanitized : path + "." + sanitized;
+  }
+
+  /**
+   * Strips the "$&lt;digits&gt;" suffix of tagged metric keys and replaces characters other than
+   * letters, digits, '_', '.' and '-' with '_'.
+   *
+   * @param key key to sanitize.
+   * @return sanitized key
+   */
+  @VisibleForTesting
+  static String sanitizeMetricKey(String key) {
+    int end = key.length();
+    int dollar = key.lastIndexOf('$');
+    if (dollar >= 0 && dollar < end - 1) {
+      boolean tagged = true;
+      for (int i = dollar + 1; i < end && tagged; i++) {
+        char c = key.charAt(i);
+        tagged = (c >= '0' && c <= '9') || c == '-';
+      }
+      // as with "(.*)\\$[0-9-]+", the name itself can't span multiple lines
+      for (int i = 0; i < dollar && tagged; i++) {
+        char c = key.charAt(i);
+        tagged = c != '\n' && c != '\r' && c != '\u0085' && c != '\u2028' && c != '\u2029';
+      }
+      if (tagged) end = dollar;
+    }
+    return sanitize(key, end);
+  }
+
+  /**
+   * Replaces characters other than letters, digits, '_', '.' and '-' in the first {@code end}
+   * characters of a key with '_'. Surrogate pairs are replaced with a single '_'.
+   */
+  private static String sanitize(String key, int end) {
+    int i = 0;
+    while (i < end && isSimple(key.charAt(i))) {
+      i++;
+    }
+    if (i == end) {
+      return end == key.length() ? key : key.substring(0, end);
+    }
+    StringBuilder sb = new StringBuilder(end);
+    sb.append(key, 0, i);
+    while (i < end) {
+      int codePoint = key.codePointAt(i);
+      sb.append(isSimple(codePoint) ? (char) codePoint : '_');
+      i += Character.charCount(codePoint);
+    }
+    return sb.toString();
+  }
+
+  private static boolean isSimple(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+        c == '_' || c == '.' || c == '-';
+  }
+
   public static ReportPoint makeHistogramPoint(
       String customer,
       String metric,
@@ -307,7 +504,7 @@ public class JsonMetricsParser {
       Iterator<Map.Entry<String, JsonNode>> fields = tags.fields();
       while (fields.hasNext()) {
         Map.Entry<String, JsonNode> next = fields.next();
-        String key = SIMPLE_NAMES.matcher(next.getKey()).replaceAll("_");
+        String key = sanitize(next.getKey(), next.getKey().length());
         JsonNode value = next.getValue();
         if (value.isBoolean()) {
           builder.put(key, String.valueOf(value.booleanValue()));
@@ -0,0 +1,19 @@
+package com.wavefront.predicates;
+
+import static com.wavefront.predicates.PredicateEvalExpression.asDouble;
+
+/**
+ * An expression that returns a boolean value, such as a comparison or a logical operator.
+ * Evaluates directly to a boolean, without converting to and from a double.
+ */
+@FunctionalInterface
+public interface BooleanExpression extends PredicateEvalExpression {
+
+  @Override
+  boolean test(Object entity);
+
+  @Override
+  default double getValue(Object entity) {
+    return asDouble(test(entity));
+  }
+}
@@ -1,33 +1,302 @@
 package com.wavefront.predicates;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.annotations.VisibleForTesting;
+import com.wavefront.common.TaggedMetricName;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Histogram;
 
 /**
  * A pattern matcher that uses a cache of compiled patterns.
  *
+ * Patterns are compiled with RE2J whenever possible, which guarantees matching in linear time
+ * regardless of the input. Patterns that need java.util.regex features (backreferences,
+ * lookarounds, possessive quantifiers, nested character classes, etc.) fall back to
+ * java.util.regex with a budget of character accesses per match, so that catastrophic
+ * backtracking on a hostile input is aborted instead of pinning the calling thread. Matchers are
+ * reused per thread.
+ *
+ * An aborted match has no real result, so it's reported as no match by default, which is also
+ * what makes it exploitable: a crafted value can slip past a rule that blocks matching entities.
+ * Such callers should construct the matcher with {@code abortResult = true}, so that an aborted
+ * match counts as a match instead. Either way, aborts are counted in the
+ * {@code regex-cache.matches-aborted} metric, and the first abort for each pattern is logged.
+ *
+ * Other than for aborted matches, results are the same as with java.util.regex. RE2J differs
+ * from it in a few places, so those cases are not delegated to RE2J:
+ * <ul>
+ *   <li>{@code .} matches {@code \r}, U+0085, U+2028 and U+2029, and {@code $} only matches at
+ *   the very end of the input (or before {@code \n} in multiline mode);</li>
+ *   <li>{@code \s} doesn't match {@code \x0B}, and {@code \v} only matches {@code \x0B};</li>
+ *   <li>case-insensitive matching uses Unicode case folding, even without
+ *   {@link Pattern#UNICODE_CASE}, e.g. {@code (?i)k} matches the Kelvin sign.</li>
+ * </ul>
+ * Patterns that use {@code \v}, and case-insensitive patterns with non-ASCII characters or
+ * Unicode classes, always use java.util.regex. Inputs with control or non-ASCII characters
+ * (other than tab) are always matched with java.util.regex as well, which leaves printable ASCII
+ * inputs, i.e. virtually all metric names, sources and tags, on the RE2J fast path.
+ *
+ * The cache is bounded by total pattern length rather than entry count, so a few huge patterns
+ * can't crowd out everything else, and entries stay around long enough to survive idle gaps.
+ *
  * @author vasily@wavefront.com.
  */
 public class CachingRegexMatcher implements BiFunction<String, String, Boolean> {
-  private final LoadingCache<String, Pattern> patternCache;
+  private static final Counter cacheHits = Metrics.newCounter(
+      new TaggedMetricName("regex-cache", "hits"));
+  private static final Counter cacheMisses = Metrics.newCounter(
+      new TaggedMetricName("regex-cache", "misses"));
+  private static final Histogram compileMicros = Metrics.newHistogram(
+      new TaggedMetricName("regex-cache", "compile-micros"), false);
+  private static final Counter jdkFallbacks = Metrics.newCounter(
+      new TaggedMetricName("regex-cache", "jdk-fallbacks"));
+  private static final Counter matchesAborted = Metrics.newCounter(
+      new TaggedMetricName("regex-cache", "matches-aborted"));
+  private static final Logger logger =
+      Logger.getLogger(CachingRegexMatcher.class.getCanonicalName());
+
+  /**
+   * Weight of a cache entry in addition to the length of its pattern.
+   */
+  private static final int ENTRY_OVERHEAD = 64;
+  private static final long MAX_CACHE_WEIGHT = 4_000_000;
+  /**
+   * Character accesses allowed per match with java.util.regex, in addition to
+   * {@link #MAX_ACCESSES_PER_CHAR} per character of input.
+   */
+  private static final int MAX_ACCESSES = 1_000_000;
+  private static final int MAX_ACCESSES_PER_CHAR = 1_000;
+
+  private final LoadingCache<String, Predicate<String>> patternCache;
 
   public CachingRegexMatcher() {
     this(0);
   }
 
   public CachingRegexMatcher(int flags) {
-     this.patternCache = Caffeine.newBuilder().
-        maximumSize(10000).
-        expireAfterAccess(1, TimeUnit.MINUTES).
-        build(regex -> Pattern.compile(regex, flags));
+    this(flags, false);
+  }
+
+  /**
+   * @param flags       {@link Pattern} flags.
+   * @param abortResult result of a match aborted because it exceeded its budget: true for
+   *                    callers that block matching entities, so that a hostile value can't
+   *                    evade them by forcing an abort.
+   */
+  public CachingRegexMatcher(int flags, boolean abortResult) {
+    this.patternCache = Caffeine.newBuilder().
+        maximumWeight(MAX_CACHE_WEIGHT).
+        weigher((String regex, Predicate<String> compiled) -> regex.length() + ENTRY_OVERHEAD).
+        expireAfterAccess(30, TimeUnit.MINUTES).
+        build(regex -> {
+          cacheMisses.inc();
+          long start = System.nanoTime();
+          Predicate<String> compiled = compile(regex, flags, abortResult);
+          compileMicros.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+          return compiled;
+        });
   }
 
   @Override
   public Boolean apply(String s, String s2) {
-    return patternCache.get(s2).matcher(s).matches();
+    Predicate<String> compiled = patternCache.getIfPresent(s2);
+    if (compiled == null) {
+      compiled = patternCache.get(s2);
+    } else {
+      cacheHits.inc();
+    }
+    return compiled.test(s);
+  }
+
+  /**
+   * Compiles a regex into a predicate that checks whether the entire input matches, with RE2J
+   * if possible or with java.util.regex otherwise.
+   *
+   * @param regex regex to compile.
+   * @param flags {@link Pattern} flags. only {@link Pattern#CASE_INSENSITIVE},
+   *              {@link Pattern#MULTILINE} and {@link Pattern#DOTALL} are supported by RE2J.
+   * @return match predicate, which reports an aborted match as no match
+   * @throws java.util.regex.PatternSyntaxException if the regex is not valid.
+   */
+  static Predicate<String> compile(String regex, int flags) {
+    return compile(regex, flags, false);
+  }
+
+  /**
+   * Compiles a regex into a predicate that checks whether the entire input matches, with RE2J
+   * if possible or with java.util.regex otherwise.
+   *
+   * @param regex       regex to compile.
+   * @param flags       {@link Pattern} flags.
+   * @param abortResult result of a match aborted because it exceeded its budget.
+   * @return match predicate
+   * @throws java.util.regex.PatternSyntaxException if the regex is not valid.
+   */
+  static Predicate<String> compile(String regex, int flags, boolean abortResult) {
+    Predicate<String> jdk = jdkPredicate(Pattern.compile(regex, flags), abortResult);
+    if (isRe2Compatible(regex, flags)) {
+      try {
+        return re2Predicate(com.google.re2j.Pattern.compile(regex, re2Flags(flags)), jdk);
+      } catch (com.google.re2j.PatternSyntaxException e) {
+        // uses syntax that RE2J doesn't support
+      }
+    }
+    jdkFallbacks.inc();
+    return jdk;
+  }
+
+  @VisibleForTesting
+  static boolean isRe2(Predicate<String> compiled) {
+    return compiled instanceof Re2Predicate;
+  }
+
+  /**
+   * @param pattern compiled RE2J pattern.
+   * @param jdk     predicate for the same pattern, for inputs RE2J might match differently.
+   */
+  private static Predicate<String> re2Predicate(com.google.re2j.Pattern pattern,
+                                                Predicate<String> jdk) {
+    ThreadLocal<com.google.re2j.Matcher> matcher =
+        ThreadLocal.withInitial(() -> pattern.matcher(""));
+    return (Re2Predicate) input -> isPrintableAscii(input) ?
+        matcher.get().reset(input).matches() :
+        jdk.test(input);
+  }
+
+  private static Predicate<String> jdkPredicate(Pattern pattern, boolean abortResult) {
+    ThreadLocal<Matcher> matcher = ThreadLocal.withInitial(() -> pattern.matcher(""));
+    AtomicBoolean aborted = new AtomicBoolean();
+    return input -> {
+      try {
+        return matcher.get().reset(new BoundedCharSequence(input)).matches();
+      } catch (BudgetExceededException e) {
+        matchesAborted.inc();
+        if (!aborted.getAndSet(true)) {
+          logger.warning("Regex match aborted after too many steps, treating as " +
+              (abortResult ? "a match" : "no match") + " (further aborts are only counted): " +
+              pattern.pattern());
+        }
+        return abortResult;
+      }
+    };
+  }
+
+  /**
+   * @return true if the input only has printable ASCII characters and tabs, i.e. no line
+   *         terminators and nothing that case folding or {@code \s} treat differently in RE2J.
+   */
+  private static boolean isPrintableAscii(String input) {
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (c > '~' || (c < ' ' && c != '\t')) return false;
+    }
+    return true;
+  }
+
+  private interface Re2Predicate extends Predicate<String> {
+  }
+
+  private static boolean isRe2Compatible(String regex, int flags) {
+    if ((flags & ~(Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL)) != 0) {
+      return false;
+    }
+    // case folding may differ even for ASCII inputs, e.g. the Kelvin sign folds to 'k' in RE2J
+    boolean caseInsensitive = (flags & Pattern.CASE_INSENSITIVE) != 0 || regex.contains("(?");
+    // RE2 accepts nested classes and "&&" in classes, but treats them literally
+    boolean inClass = false;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c > '~') {
+        if (caseInsensitive) return false;
+      } else if (c == '\\') {
+        if (++i >= regex.length()) break;
+        char escaped = regex.charAt(i);
+        // \v is vertical whitespace in java.util.regex, but only \x0B in RE2J
+        if (escaped == 'v') return false;
+        if (caseInsensitive && (escaped == 'p' || escaped == 'P' ||
+            (escaped == 'x' && i + 1 < regex.length() && regex.charAt(i + 1) == '{'))) {
+          return false;
+        }
+      } else if (!inClass) {
+        if (c == '[') {
+          inClass = true;
+          // a leading ']' is a literal
+          if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') i++;
+          if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') i++;
+        }
+      } else if (c == ']') {
+        inClass = false;
+      } else if (c == '[' ||
+          (c == '&' && i + 1 < regex.length() && regex.charAt(i + 1) == '&')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int re2Flags(int flags) {
+    int result = 0;
+    if ((flags & Pattern.CASE_INSENSITIVE) != 0) {
+      result |= com.google.re2j.Pattern.CASE_INSENSITIVE;
+    }
+    if ((flags & Pattern.MULTILINE) != 0) {
+      result |= com.google.re2j.Pattern.MULTILINE;
+    }
+    if ((flags & Pattern.DOTALL) != 0) {
+      result |= com.google.re2j.Pattern.DOTALL;
+    }
+    return result;
+  }
+
+  /**
+   * Input wrapper that aborts a java.util.regex match after too many character accesses.
+   */
+  private static final class BoundedCharSequence implements CharSequence {
+    private final String input;
+    private long budget;
+
+    private BoundedCharSequence(String input) {
+      this.input = input;
+      this.budget = MAX_ACCESSES + (long) MAX_ACCESSES_PER_CHAR * input.length();
+    }
+
+    @Override
+    public int length() {
+      return input.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (--budget < 0) {
+        throw new BudgetExceededException();
+      }
+      return input.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return input.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return input;
+    }
+  }
+
+  private static final class BudgetExceededException extends RuntimeException {
+    private BudgetExceededException() {
+      super(null, null, false, false);
+    }
   }
 }
@@ -0,0 +1,38 @@
+package com.wavefront.predicates;
+
+import static com.wavefront.predicates.PredicateEvalExpression.isTrue;
+
+/**
+ * A numeric expression with a value that is known when the expression is parsed, such as a
+ * number literal or a sub-expression that has been folded into a constant.
+ */
+public final class ConstantExpression implements PredicateEvalExpression {
+  static final ConstantExpression TRUE = new ConstantExpression(1);
+  static final ConstantExpression FALSE = new ConstantExpression(0);
+
+  private final double value;
+  private final boolean booleanValue;
+
+  public ConstantExpression(double value) {
+    this.value = value;
+    this.booleanValue = isTrue(value);
+  }
+
+  /**
+   * @param value boolean value.
+   * @return constant expression for the boolean value.
+   */
+  static ConstantExpression of(boolean value) {
+    return value ? TRUE : FALSE;
+  }
+
+  @Override
+  public double getValue(Object entity) {
+    return value;
+  }
+
+  @Override
+  public boolean test(Object entity) {
+    return booleanValue;
+  }
+}
@@ -0,0 +1,22 @@
+package com.wavefront.predicates;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A string literal without placeholders, or a string sub-expression that has been folded into a
+ * constant.
+ */
+public final class ConstantStringExpression implements StringExpression {
+  private final String value;
+
+  public ConstantStringExpression(String value) {
+    this.value = value;
+  }
+
+  @Nonnull
+  @Override
+  public String getString(@Nullable Object entity) {
+    return value;
+  }
+}
@@ -2,8 +2,6 @@ package com.wavefront.predicates;
 
 import java.util.function.Predicate;
 
-import static com.wavefront.predicates.PredicateEvalExpression.isTrue;
-
 /**
  * {@link PredicateEvalExpression} to {@link Predicate<T>} adapter.
  *
@@ -18,6 +16,6 @@ public class ExpressionPredicate<T> implements Predicate<T> {
 
   @Override
   public boolean test(T t) {
-    return isTrue(wrapped.getValue(t));
+    return wrapped.test(t);
   }
 }
@@ -0,0 +1,189 @@
+package com.wavefront.predicates;
+
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import wavefront.report.Annotation;
+import wavefront.report.ReportHistogram;
+import wavefront.report.ReportLog;
+import wavefront.report.ReportMetric;
+import wavefront.report.ReportPoint;
+import wavefront.report.Span;
+
+/**
+ * Accessor for a named component of an entity: metric or span name, source, log message or a
+ * tag. The component is resolved for every supported entity type once, when the expression is
+ * parsed, so evaluation only has to dispatch on the entity type. Tags are looked up with a
+ * single pass over the annotation list, without allocating.
+ */
+final class FieldAccessor {
+  private final Field<Span> span;
+  private final Field<ReportMetric> metric;
+  private final Field<ReportHistogram> histogram;
+  private final Field<ReportPoint> point;
+  private final Field<ReportLog> log;
+
+  /**
+   * Component of a specific entity type.
+   */
+  private interface Field<T> {
+    @Nullable
+    String get(T entity);
+
+    boolean matches(T entity, PredicateMatchOp matchOp, BiPredicate<String, String> cmp,
+                    String arg);
+  }
+
+  /**
+   * @param name component name, i.e. "metricName", "sourceName" or a tag key.
+   */
+  FieldAccessor(String name) {
+    switch (name) {
+      case "spanName":
+        span = single(Span::getName);
+        break;
+      case "sourceName":
+        span = single(Span::getSource);
+        break;
+      default:
+        span = tags(Span::getAnnotations, name);
+    }
+    switch (name) {
+      case "metricName":
+        metric = single(ReportMetric::getMetric);
+        histogram = single(ReportHistogram::getMetric);
+        point = single(ReportPoint::getMetric);
+        break;
+      case "sourceName":
+        metric = single(ReportMetric::getHost);
+        histogram = single(ReportHistogram::getHost);
+        point = single(ReportPoint::getHost);
+        break;
+      default:
+        metric = tags(ReportMetric::getAnnotations, name);
+        histogram = tags(ReportHistogram::getAnnotations, name);
+        point = single(p -> p.getAnnotations().getOrDefault(name, ""));
+    }
+    switch (name) {
+      case "message":
+        log = single(ReportLog::getMessage);
+        break;
+      case "sourceName":
+        log = single(ReportLog::getHost);
+        break;
+      default:
+        log = tags(ReportLog::getAnnotations, name);
+    }
+  }
+
+  /**
+   * Returns the value of the component. For tags that occur more than once, returns the first
+   * value.
+   *
+   * @param entity entity to get the value from.
+   * @return value or null if the entity doesn't have this tag
+   * @throws IllegalArgumentException if the entity type is not supported.
+   */
+  @Nullable
+  String get(Object entity) {
+    if (entity instanceof ReportMetric) {
+      return metric.get((ReportMetric) entity);
+    } else if (entity instanceof ReportHistogram) {
+      return histogram.get((ReportHistogram) entity);
+    } else if (entity instanceof ReportPoint) {
+      return point.get((ReportPoint) entity);
+    } else if (entity instanceof Span) {
+      return span.get((Span) entity);
+    } else if (entity instanceof ReportLog) {
+      return log.get((ReportLog) entity);
+    }
+    throw new IllegalArgumentException(entity.getClass().getCanonicalName() +
+        " is not supported!");
+  }
+
+  /**
+   * Compares all values of the component with an argument.
+   *
+   * @param entity  entity to get values from.
+   * @param matchOp how to aggregate results for multiple values.
+   * @param cmp     comparison to apply to each value and the argument.
+   * @param arg     argument.
+   * @return aggregated comparison result
+   * @throws IllegalArgumentException if the entity type is not supported.
+   */
+  boolean matches(Object entity, PredicateMatchOp matchOp, BiPredicate<String, String> cmp,
+                  String arg) {
+    if (entity instanceof ReportMetric) {
+      return metric.matches((ReportMetric) entity, matchOp, cmp, arg);
+    } else if (entity instanceof ReportHistogram) {
+      return histogram.matches((ReportHistogram) entity, matchOp, cmp, arg);
+    } else if (entity instanceof ReportPoint) {
+      return point.matches((ReportPoint) entity, matchOp, cmp, arg);
+    } else if (entity instanceof Span) {
+      return span.matches((Span) entity, matchOp, cmp, arg);
+    } else if (entity instanceof ReportLog) {
+      return log.matches((ReportLog) entity, matchOp, cmp, arg);
+    }
+    throw new IllegalArgumentException(entity.getClass().getCanonicalName() +
+        " is not supported!");
+  }
+
+  /**
+   * Finds the first value of a tag.
+   *
+   * @param annotations annotations to search.
+   * @param key         tag key.
+   * @return tag value or null if not found
+   */
+  @Nullable
+  static String findTag(List<Annotation> annotations, String key) {
+    for (int i = 0; i < annotations.size(); i++) {
+      Annotation annotation = annotations.get(i);
+      if (key.equals(annotation.getKey())) {
+        return annotation.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static <T> Field<T> single(Function<T, String> getter) {
+    return new Field<T>() {
+      @Override
+      public String get(T entity) {
+        return getter.apply(entity);
+      }
+
+      @Override
+      public boolean matches(T entity, PredicateMatchOp matchOp, BiPredicate<String, String> cmp,
+                             String arg) {
+        return matchOp.test(cmp.test(getter.apply(entity), arg));
+      }
+    };
+  }
+
+  private static <T> Field<T> tags(Function<T, List<Annotation>> getter, String key) {
+    return new Field<T>() {
+      @Override
+      public String get(T entity) {
+        return findTag(getter.apply(entity), key);
+      }
+
+      @Override
+      public boolean matches(T entity, PredicateMatchOp matchOp, BiPredicate<String, String> cmp,
+                             String arg) {
+        List<Annotation> annotations = getter.apply(entity);
+        for (int i = 0; i < annotations.size(); i++) {
+          Annotation annotation = annotations.get(i);
+          if (key.equals(annotation.getKey()) &&
+              matchOp.isDecisive(cmp.test(annotation.getValue(), arg))) {
+            return !matchOp.defaultResult();
+          }
+        }
+        return matchOp.defaultResult();
+      }
+    };
+  }
+}
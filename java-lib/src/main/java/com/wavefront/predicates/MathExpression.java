@@ -1,66 +1,113 @@
 package com.wavefront.predicates;
 
-import static com.wavefront.predicates.PredicateEvalExpression.asDouble;
-import static com.wavefront.predicates.PredicateEvalExpression.isTrue;
-
 /**
  * A math expression
  *
  * @author vasily@wavefront.com.
  */
 public class MathExpression implements PredicateEvalExpression {
-  private final PredicateEvalExpression left;
-  private final PredicateEvalExpression right;
-  private final String op;
+  private final PredicateEvalExpression delegate;
 
   public MathExpression(PredicateEvalExpression left, PredicateEvalExpression right, String op) {
-    this.left = left;
-    this.right = right;
-    this.op = op;
+    this.delegate = compile(left, right, op);
   }
 
   @Override
   public double getValue(Object entity) {
+    return delegate.getValue(entity);
+  }
+
+  @Override
+  public boolean test(Object entity) {
+    return delegate.test(entity);
+  }
+
+  /**
+   * Creates an expression for the operator, resolved once instead of on every evaluation.
+   * Comparisons and logical operators produce {@link BooleanExpression}s, and expressions with
+   * constant operands are folded into constants.
+   *
+   * @param left  left operand.
+   * @param right right operand.
+   * @param op    operator.
+   * @return expression
+   */
+  public static PredicateEvalExpression of(PredicateEvalExpression left,
+                                           PredicateEvalExpression right, String op) {
+    if (left instanceof ConstantExpression) {
+      // short-circuit logical operators with a constant left side
+      boolean leftValue = left.test(null);
+      if (op.equals("and")) {
+        return leftValue ? asBoolean(right) : ConstantExpression.FALSE;
+      } else if (op.equals("or")) {
+        return leftValue ? ConstantExpression.TRUE : asBoolean(right);
+      }
+    }
+    if (right instanceof ConstantExpression && (op.equals("and") || op.equals("or")) &&
+        right.test(null) == op.equals("and")) {
+      // "x and true", "x or false"
+      return asBoolean(left);
+    }
+    PredicateEvalExpression expression = compile(left, right, op);
+    if (left instanceof ConstantExpression && right instanceof ConstantExpression) {
+      return expression instanceof BooleanExpression ?
+          ConstantExpression.of(expression.test(null)) :
+          new ConstantExpression(expression.getValue(null));
+    }
+    return expression;
+  }
+
+  static PredicateEvalExpression asBoolean(PredicateEvalExpression expression) {
+    if (expression instanceof BooleanExpression) {
+      return expression;
+    } else if (expression instanceof ConstantExpression) {
+      return ConstantExpression.of(expression.test(null));
+    }
+    return (BooleanExpression) expression::test;
+  }
+
+  private static PredicateEvalExpression compile(PredicateEvalExpression left,
+                                                 PredicateEvalExpression right, String op) {
     switch (op) {
       case "and":
-        return asDouble(isTrue(left.getValue(entity)) && isTrue(right.getValue(entity)));
+        return (BooleanExpression) entity -> left.test(entity) && right.test(entity);
       case "or":
-        return asDouble(isTrue(left.getValue(entity)) || isTrue(right.getValue(entity)));
+        return (BooleanExpression) entity -> left.test(entity) || right.test(entity);
       case "+":
-        return left.getValue(entity) + right.getValue(entity);
+        return entity -> left.getValue(entity) + right.getValue(entity);
       case "-":
-        return left.getValue(entity) - right.getValue(entity);
+        return entity -> left.getValue(entity) - right.getValue(entity);
       case "*":
-        return left.getValue(entity) * right.getValue(entity);
+        return entity -> left.getValue(entity) * right.getValue(entity);
       case "/":
-        return left.getValue(entity) / right.getValue(entity);
+        return entity -> left.getValue(entity) / right.getValue(entity);
       case "%":
-        return left.getValue(entity) % right.getValue(entity);
+        return entity -> left.getValue(entity) % right.getValue(entity);
       case "=":
-        return asDouble(left.getValue(entity) == right.getValue(entity));
+        return (BooleanExpression) entity -> left.getValue(entity) == right.getValue(entity);
       case ">":
-        return asDouble(left.getValue(entity) > right.getValue(entity));
+        return (BooleanExpression) entity -> left.getValue(entity) > right.getValue(entity);
       case "<":
-        return asDouble(left.getValue(entity) < right.getValue(entity));
+        return (BooleanExpression) entity -> left.getValue(entity) < right.getValue(entity);
       case "<=":
-        return asDouble(left.getValue(entity) <= right.getValue(entity));
+        return (BooleanExpression) entity -> left.getValue(entity) <= right.getValue(entity);
       case ">=":
-        return asDouble(left.getValue(entity) >= right.getValue(entity));
+        return (BooleanExpression) entity -> left.getValue(entity) >= right.getValue(entity);
       case "!=":
-        return asDouble(left.getValue(entity) != right.getValue(entity));
+        return (BooleanExpression) entity -> left.getValue(entity) != right.getValue(entity);
       case "&":
-        return (long) left.getValue(entity) & (long) right.getValue(entity);
+        return entity -> (long) left.getValue(entity) & (long) right.getValue(entity);
       case "|":
-        return (long) left.getValue(entity) | (long) right.getValue(entity);
+        return entity -> (long) left.getValue(entity) | (long) right.getValue(entity);
       case "^":
-        return (long) left.getValue(entity) ^ (long) right.getValue(entity);
+        return entity -> (long) left.getValue(entity) ^ (long) right.getValue(entity);
       case ">>":
-        return (long) left.getValue(entity) >> (long) right.getValue(entity);
+        return entity -> (long) left.getValue(entity) >> (long) right.getValue(entity);
       case ">>>":
-        return (long) left.getValue(entity) >>> (long) right.getValue(entity);
+        return entity -> (long) left.getValue(entity) >>> (long) right.getValue(entity);
       case "<<":
       case "<<<":
-        return (long) left.getValue(entity) << (long) right.getValue(entity);
+        return entity -> (long) left.getValue(entity) << (long) right.getValue(entity);
       default:
         throw new IllegalArgumentException("Unknown operator: " + op);
     }
@@ -15,6 +15,16 @@ public interface PredicateEvalExpression extends BaseExpression {
    */
   double getValue(Object entity);
 
+  /**
+   * Get a boolean value. Boolean expressions override this to avoid converting to a double.
+   *
+   * @param entity entity to get the value from.
+   * @return true if the value is not 0 (within 1e-6)
+   */
+  default boolean test(Object entity) {
+    return isTrue(getValue(entity));
+  }
+
   /**
    * Helper method to convert a double value into a boolean.
    *
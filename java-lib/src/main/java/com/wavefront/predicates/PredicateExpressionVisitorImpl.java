@@ -2,12 +2,16 @@ package com.wavefront.predicates;
 
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.TimeZone;
-import java.util.stream.Collectors;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.lang.StringUtils;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.hash.Hashing;
 import com.wavefront.common.TimeProvider;
 
@@ -18,12 +22,12 @@ import wavefront.report.ReportMetric;
 import wavefront.report.ReportPoint;
 import wavefront.report.Span;
 
-import static com.wavefront.predicates.PredicateEvalExpression.asDouble;
-import static com.wavefront.predicates.PredicateEvalExpression.isTrue;
 import static com.wavefront.ingester.AbstractIngesterFormatter.unquote;
 
 /**
- * Expression parser.
+ * Expression parser. Compiles the parse tree into typed expressions: comparisons and logical
+ * operators evaluate to booleans directly, operators are resolved once, and sub-expressions
+ * with constant inputs are folded into constants.
  *
  * @author vasily@wavefront.com.
  */
@@ -43,17 +47,17 @@ public class PredicateExpressionVisitorImpl extends PredicateExpressionBaseVisit
       return iff(eval(ctx.evalExpression(0)), eval(ctx.evalExpression(1)),
           eval(ctx.evalExpression(2)));
     } else if (ctx.op != null) {
-      return new MathExpression(eval(ctx.evalExpression(0)), eval(ctx.evalExpression(1)),
+      return MathExpression.of(eval(ctx.evalExpression(0)), eval(ctx.evalExpression(1)),
           ctx.op.getText().toLowerCase().replace(" ", ""));
     } else if (ctx.comparisonOperator() != null) { // = > < <= >= !=
-      return new MathExpression(eval(ctx.evalExpression(0)), eval(ctx.evalExpression(1)),
+      return MathExpression.of(eval(ctx.evalExpression(0)), eval(ctx.evalExpression(1)),
           ctx.comparisonOperator().getText().replace(" ", ""));
     } else if (ctx.not != null) {
       PredicateEvalExpression expression = eval(ctx.evalExpression(0));
-      return (PredicateEvalExpression) entity -> asDouble(!isTrue(expression.getValue(entity)));
+      return fold((BooleanExpression) entity -> !expression.test(entity), expression);
     } else if (ctx.complement != null) {
       PredicateEvalExpression expression = eval(ctx.evalExpression(0));
-      return (PredicateEvalExpression) entity -> ~ (long) expression.getValue(entity);
+      return fold(entity -> ~ (long) expression.getValue(entity), expression);
     } else if (ctx.multiModifier != null) {
       String scope = unquote(ctx.placeholder().tagk().getText());
       StringExpression argument = stringExpression(ctx.stringExpression(0));
@@ -66,50 +70,60 @@ public class PredicateExpressionVisitorImpl extends PredicateExpressionBaseVisit
       return StringComparisonExpression.of(left, right, ctx.stringComparisonOp().getText());
     } else if (ctx.in != null && ctx.stringExpression().size() > 1) {
       StringExpression left = stringExpression(ctx.stringExpression(0));
-      List<PredicateEvalExpression> branches = ctx.stringExpression().
-          subList(1, ctx.stringExpression().size()).
-          stream().
-          map(exp -> StringComparisonExpression.of(left, stringExpression(exp), "=")).
-          collect(Collectors.toList());
-      return (PredicateEvalExpression) entity ->
-          asDouble(branches.stream().anyMatch(x -> isTrue(x.getValue(entity))));
+      List<PredicateExpressionParser.StringExpressionContext> args = ctx.stringExpression().
+          subList(1, ctx.stringExpression().size());
+      StringExpression[] branches = new StringExpression[args.size()];
+      ImmutableSet.Builder<String> literals = ImmutableSet.builder();
+      boolean allLiterals = true;
+      for (int i = 0; i < branches.length; i++) {
+        branches[i] = stringExpression(args.get(i));
+        if (branches[i] instanceof ConstantStringExpression) {
+          literals.add(branches[i].getString(null));
+        } else {
+          allLiterals = false;
+        }
+      }
+      if (allLiterals) {
+        Set<String> set = literals.build();
+        return fold((BooleanExpression) entity -> set.contains(left.getString(entity)), left);
+      }
+      return (BooleanExpression) entity -> {
+        String value = left.getString(entity);
+        for (StringExpression branch : branches) {
+          if (value.equals(branch.getString(entity))) return true;
+        }
+        return false;
+      };
     } else if (ctx.stringEvalFunc() != null) {
       StringExpression input = stringExpression(ctx.stringExpression(0));
       if (ctx.stringEvalFunc().strLength() != null) {
-        return (PredicateEvalExpression) entity -> input.getString(entity).length();
+        return fold(entity -> input.getString(entity).length(), input);
       } else if (ctx.stringEvalFunc().strHashCode() != null) {
         //noinspection UnstableApiUsage
-        return (PredicateEvalExpression) entity ->
-            Hashing.murmur3_32().hashString(input.getString(entity), Charsets.UTF_8).asInt();
+        return fold(entity ->
+            Hashing.murmur3_32().hashString(input.getString(entity), Charsets.UTF_8).asInt(),
+            input);
       } else if (ctx.stringEvalFunc().strIsEmpty() != null) {
-        return (PredicateEvalExpression) entity ->
-            asDouble(StringUtils.isEmpty(input.getString(entity)));
+        return fold((BooleanExpression) entity -> StringUtils.isEmpty(input.getString(entity)),
+            input);
       } else if (ctx.stringEvalFunc().strIsNotEmpty() != null) {
-        return (PredicateEvalExpression) entity ->
-            asDouble(StringUtils.isNotEmpty(input.getString(entity)));
+        return fold((BooleanExpression) entity -> StringUtils.isNotEmpty(input.getString(entity)),
+            input);
       } else if (ctx.stringEvalFunc().strIsBlank() != null) {
-        return (PredicateEvalExpression) entity ->
-            asDouble(StringUtils.isBlank(input.getString(entity)));
+        return fold((BooleanExpression) entity -> StringUtils.isBlank(input.getString(entity)),
+            input);
       } else if (ctx.stringEvalFunc().strIsNotBlank() != null) {
-        return (PredicateEvalExpression) entity ->
-            asDouble(StringUtils.isNotBlank(input.getString(entity)));
+        return fold((BooleanExpression) entity -> StringUtils.isNotBlank(input.getString(entity)),
+            input);
       } else if (ctx.stringEvalFunc().strParse() != null) {
-        PredicateEvalExpression def = ctx.stringEvalFunc().strParse().evalExpression() == null ?
-            x -> 0 : eval(ctx.stringEvalFunc().strParse().evalExpression());
-        return (PredicateEvalExpression) entity -> {
-          try {
-            return Double.parseDouble(input.getString(entity));
-          } catch (NumberFormatException e) {
-            return def.getValue(entity);
-          }
-        };
+        return parse(input, ctx.stringEvalFunc().strParse().evalExpression());
       } else {
         throw new ExpressionSyntaxException("Unknown string eval function");
       }
     } else if (ctx.propertyAccessor() != null) {
       return getPropertyAccessor(ctx.propertyAccessor().getText());
     } else if (ctx.number() != null) {
-      return (PredicateEvalExpression) entity -> getNumber(ctx.number());
+      return new ConstantExpression(getNumber(ctx.number()));
     } else if (ctx.evalExpression(0) != null) {
       return eval(ctx.evalExpression(0));
     } else {
@@ -123,7 +137,7 @@ public class PredicateExpressionVisitorImpl extends PredicateExpressionBaseVisit
     if (ctx.concat != null) {
       StringExpression left = stringExpression(ctx.stringExpression(0));
       StringExpression right = stringExpression(ctx.stringExpression(1));
-      return (StringExpression) entity -> left.getString(entity) + right.getString(entity);
+      return foldString(entity -> left.getString(entity) + right.getString(entity), left, right);
     } else if (ctx.stringFunc() != null) {
       StringExpression input = stringExpression(ctx.stringExpression(0));
       if (ctx.stringFunc().strReplace() != null) {
@@ -131,39 +145,46 @@ public class PredicateExpressionVisitorImpl extends PredicateExpressionBaseVisit
             strReplace().stringExpression(0));
         StringExpression replacement = stringExpression(ctx.stringFunc().
             strReplace().stringExpression(1));
-        return (StringExpression) entity -> input.getString(entity).
-            replace(search.getString(entity), replacement.getString(entity));
+        return foldString(entity -> input.getString(entity).
+            replace(search.getString(entity), replacement.getString(entity)),
+            input, search, replacement);
       } else if (ctx.stringFunc().strReplaceAll() != null) {
         StringExpression regex = stringExpression(ctx.stringFunc().
             strReplaceAll().stringExpression(0));
         StringExpression replacement = stringExpression(ctx.stringFunc().
             strReplaceAll().stringExpression(1));
+        if (regex instanceof ConstantStringExpression) {
+          Pattern pattern = Pattern.compile(regex.getString(null));
+          return foldString(entity -> pattern.matcher(input.getString(entity)).
+              replaceAll(replacement.getString(entity)), input, replacement);
+        }
         return (StringExpression) entity -> input.getString(entity).
             replaceAll(regex.getString(entity), replacement.getString(entity));
       } else if (ctx.stringFunc().strSubstring() != null) {
         PredicateEvalExpression fromExp = eval(ctx.stringFunc().strSubstring().evalExpression(0));
         if (ctx.stringFunc().strSubstring().evalExpression().size() > 1) {
           PredicateEvalExpression toExp = eval(ctx.stringFunc().strSubstring().evalExpression(1));
-          return (StringExpression) entity -> input.getString(entity).
-              substring((int) fromExp.getValue(entity), (int) toExp.getValue(entity));
+          return foldString(entity -> input.getString(entity).
+              substring((int) fromExp.getValue(entity), (int) toExp.getValue(entity)),
+              input, fromExp, toExp);
         } else {
-          return (StringExpression) entity -> input.getString(entity).
-              substring((int) fromExp.getValue(entity));
+          return foldString(entity -> input.getString(entity).
+              substring((int) fromExp.getValue(entity)), input, fromExp);
         }
       } else if (ctx.stringFunc().strLeft() != null) {
         PredicateEvalExpression index = eval(ctx.stringFunc().strLeft().evalExpression());
-        return (StringExpression) entity -> input.getString(entity).
-            substring(0, (int) index.getValue(entity));
+        return foldString(entity -> input.getString(entity).
+            substring(0, (int) index.getValue(entity)), input, index);
       } else if (ctx.stringFunc().strRight() != null) {
         PredicateEvalExpression index = eval(ctx.stringFunc().strRight().evalExpression());
-        return (StringExpression) entity -> {
+        return foldString(entity -> {
           String str = input.getString(entity);
           return str.substring(str.length() - (int) index.getValue(entity));
-        };
+        }, input, index);
       } else if (ctx.stringFunc().strToLowerCase() != null) {
-        return (StringExpression) entity -> input.getString(entity).toLowerCase();
+        return foldString(entity -> input.getString(entity).toLowerCase(), input);
       } else if (ctx.stringFunc().strToUpperCase() != null) {
-        return (StringExpression) entity -> input.getString(entity).toUpperCase();
+        return foldString(entity -> input.getString(entity).toUpperCase(), input);
       } else {
         throw new ExpressionSyntaxException("Unknown string function");
       }
@@ -171,7 +192,10 @@ public class PredicateExpressionVisitorImpl extends PredicateExpressionBaseVisit
       return visitAsString(ctx.asString());
     } else if (ctx.string() != null) {
       String text = ctx.string().getText();
-      return new TemplateStringExpression(ctx.string().Quoted() != null ? unquote(text) : text);
+      String template = ctx.string().Quoted() != null ? unquote(text) : text;
+      return template.contains("{{") ?
+          new TemplateStringExpression(template) :
+          new ConstantStringExpression(template);
     } else if (ctx.stringExpression(0) != null) {
       return visitStringExpression(ctx.stringExpression(0));
     }
@@ -189,16 +213,7 @@ public class PredicateExpressionVisitorImpl extends PredicateExpressionBaseVisit
 
   @Override
   public BaseExpression visitParse(PredicateExpressionParser.ParseContext ctx) {
-    StringExpression strExp = stringExpression(ctx.stringExpression());
-    PredicateEvalExpression defaultExp = ctx.evalExpression() == null ?
-        x -> 0 : eval(ctx.evalExpression());
-    return (PredicateEvalExpression) entity -> {
-      try {
-        return Double.parseDouble(strExp.getString(entity));
-      } catch (NumberFormatException e) {
-        return defaultExp.getValue(entity);
-      }
-    };
+    return parse(stringExpression(ctx.stringExpression()), ctx.evalExpression());
   }
 
   @Override
@@ -229,42 +244,43 @@ public class PredicateExpressionVisitorImpl extends PredicateExpressionBaseVisit
   @Override
   public BaseExpression visitEvalLength(PredicateExpressionParser.EvalLengthContext ctx) {
     StringExpression exp = stringExpression(ctx.stringExpression());
-    return (PredicateEvalExpression) entity -> exp.getString(entity).length();
+    return fold(entity -> exp.getString(entity).length(), exp);
   }
 
   @Override
   public BaseExpression visitEvalHashCode(PredicateExpressionParser.EvalHashCodeContext ctx) {
     StringExpression exp = stringExpression(ctx.stringExpression());
     //noinspection UnstableApiUsage
-    return (PredicateEvalExpression) entity ->
-        Hashing.murmur3_32().hashString(exp.getString(entity), Charsets.UTF_8).asInt();
+    return fold(entity ->
+        Hashing.murmur3_32().hashString(exp.getString(entity), Charsets.UTF_8).asInt(), exp);
   }
 
   @Override
   public BaseExpression visitEvalIsEmpty(PredicateExpressionParser.EvalIsEmptyContext ctx) {
     StringExpression exp = stringExpression(ctx.stringExpression());
-    return (PredicateEvalExpression) entity ->
-        asDouble(StringUtils.isEmpty(exp.getString(entity)));
+    return fold((BooleanExpression) entity -> StringUtils.isEmpty(exp.getString(entity)),
+        exp);
   }
 
   @Override
   public BaseExpression visitEvalIsNotEmpty(PredicateExpressionParser.EvalIsNotEmptyContext ctx) {
     StringExpression exp = stringExpression(ctx.stringExpression());
-    return (PredicateEvalExpression) entity ->
-        asDouble(StringUtils.isNotEmpty(exp.getString(entity)));
+    return fold((BooleanExpression) entity -> StringUtils.isNotEmpty(exp.getString(entity)),
+        exp);
   }
 
   @Override
   public BaseExpression visitEvalIsBlank(PredicateExpressionParser.EvalIsBlankContext ctx) {
     StringExpression exp = stringExpression(ctx.stringExpression());
-    return (PredicateEvalExpression) entity -> asDouble(StringUtils.isBlank(exp.getString(entity)));
+    return fold((BooleanExpression) entity -> StringUtils.isBlank(exp.getString(entity)),
+        exp);
   }
 
   @Override
   public BaseExpression visitEvalIsNotBlank(PredicateExpressionParser.EvalIsNotBlankContext ctx) {
     StringExpression exp = stringExpression(ctx.stringExpression());
-    return (PredicateEvalExpression) entity ->
-        asDouble(StringUtils.isNotBlank(exp.getString(entity)));
+    return fold((BooleanExpression) entity -> StringUtils.isNotBlank(exp.getString(entity)),
+        exp);
   }
 
   @Override
@@ -276,11 +292,13 @@ public class PredicateExpressionVisitorImpl extends PredicateExpressionBaseVisit
   public BaseExpression visitAsString(PredicateExpressionParser.AsStringContext ctx) {
     PredicateEvalExpression valueExpression = eval(ctx.evalExpression());
     if (ctx.stringExpression() == null) {
-      return (StringExpression) entity -> String.valueOf(valueExpression.getValue(entity));
+      return foldString(entity -> String.valueOf(valueExpression.getValue(entity)),
+          valueExpression);
     } else {
       StringExpression format = stringExpression(ctx.stringExpression());
-      return (StringExpression) entity ->
-          String.format(format.getString(entity), valueExpression.getValue(entity));
+      return foldString(entity ->
+          String.format(format.getString(entity), valueExpression.getValue(entity)),
+          format, valueExpression);
     }
   }
 
@@ -292,8 +310,11 @@ public class PredicateExpressionVisitorImpl extends PredicateExpressionBaseVisit
     PredicateEvalExpression condition = eval(ctx.evalExpression());
     StringExpression thenExpression = stringExpression(ctx.stringExpression(0));
     StringExpression elseExpression = stringExpression(ctx.stringExpression(1));
+    if (condition instanceof ConstantExpression) {
+      return condition.test(null) ? thenExpression : elseExpression;
+    }
     return (StringExpression) entity ->
-        isTrue(condition.getValue(entity)) ?
+        condition.test(entity) ?
             thenExpression.getString(entity) :
             elseExpression.getString(entity);
   }
@@ -308,7 +329,71 @@ public class PredicateExpressionVisitorImpl extends PredicateExpressionBaseVisit
 
   private PredicateEvalExpression iff(PredicateEvalExpression cond, PredicateEvalExpression thenExp,
                                       PredicateEvalExpression elseExp) {
-    return x -> isTrue(cond.getValue(x)) ? thenExp.getValue(x) : elseExp.getValue(x);
+    if (cond instanceof ConstantExpression) {
+      return cond.test(null) ? thenExp : elseExp;
+    }
+    return x -> cond.test(x) ? thenExp.getValue(x) : elseExp.getValue(x);
+  }
+
+  private PredicateEvalExpression parse(StringExpression input,
+                                        @Nullable PredicateExpressionParser.EvalExpressionContext
+                                            defaultCtx) {
+    PredicateEvalExpression defaultExp = defaultCtx == null ?
+        ConstantExpression.FALSE : eval(defaultCtx);
+    return fold(entity -> {
+      try {
+        return Double.parseDouble(input.getString(entity));
+      } catch (NumberFormatException e) {
+        return defaultExp.getValue(entity);
+      }
+    }, input, defaultExp);
+  }
+
+  /**
+   * Replaces a numeric expression with a constant if all of its inputs are constant.
+   *
+   * @param expression expression to fold.
+   * @param inputs     sub-expressions the expression depends on.
+   * @return constant expression, or the original expression if it can't be folded
+   */
+  private static PredicateEvalExpression fold(PredicateEvalExpression expression,
+                                              BaseExpression... inputs) {
+    if (!isConstant(inputs)) return expression;
+    try {
+      return expression instanceof BooleanExpression ?
+          ConstantExpression.of(expression.test(null)) :
+          new ConstantExpression(expression.getValue(null));
+    } catch (RuntimeException e) {
+      // fails for any input, so keep failing on evaluation rather than when parsing
+      return expression;
+    }
+  }
+
+  /**
+   * Replaces a string expression with a constant if all of its inputs are constant.
+   *
+   * @param expression expression to fold.
+   * @param inputs     sub-expressions the expression depends on.
+   * @return constant expression, or the original expression if it can't be folded
+   */
+  private static StringExpression foldString(StringExpression expression,
+                                             BaseExpression... inputs) {
+    if (!isConstant(inputs)) return expression;
+    try {
+      return new ConstantStringExpression(expression.getString(null));
+    } catch (RuntimeException e) {
+      return expression;
+    }
+  }
+
+  private static boolean isConstant(BaseExpression... expressions) {
+    for (BaseExpression expression : expressions) {
+      if (!(expression instanceof ConstantExpression) &&
+          !(expression instanceof ConstantStringExpression)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   private PredicateEvalExpression getPropertyAccessor(String property) {
@@ -16,4 +16,30 @@ enum PredicateMatchOp {
     }
     throw new IllegalArgumentException(input + " is not a valid match!");
   }
+
+  /**
+   * Checks whether a single comparison result determines the aggregated result, so remaining
+   * values don't need to be compared: a match for ANY and NONE, a mismatch for ALL.
+   *
+   * @param matched comparison result for a value.
+   * @return true if the aggregated result is the opposite of {@link #defaultResult()}
+   */
+  boolean isDecisive(boolean matched) {
+    return matched != (this == ALL);
+  }
+
+  /**
+   * @return aggregated result if no comparison was decisive, including when there are no values.
+   */
+  boolean defaultResult() {
+    return this != ANY;
+  }
+
+  /**
+   * @param matched comparison result for the only value.
+   * @return aggregated result
+   */
+  boolean test(boolean matched) {
+    return isDecisive(matched) != defaultResult();
+  }
 }
@@ -1,6 +1,6 @@
 package com.wavefront.predicates;
 
-import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
@@ -8,34 +8,41 @@ import org.apache.commons.lang.StringUtils;
 
 import com.wavefront.common.PatternMatchPredicate;
 
-import static com.wavefront.predicates.PredicateEvalExpression.asDouble;
-
 /**
  * Adapter that converts two {@link StringExpression} to {@link PredicateEvalExpression}.
  *
  * @author vasily@wavefront.com.
  */
-public class StringComparisonExpression implements PredicateEvalExpression {
+public class StringComparisonExpression implements BooleanExpression {
 
   private final StringExpression left;
   private final StringExpression right;
-  private final BiFunction<String, String, Boolean> func;
+  private final BiPredicate<String, String> func;
 
   private StringComparisonExpression(StringExpression left,
                                      StringExpression right,
-                                     BiFunction<String, String, Boolean> func) {
+                                     BiPredicate<String, String> func) {
     this.left = left;
     this.right = right;
     this.func = func;
   }
 
   @Override
-  public double getValue(Object entity) {
-    return asDouble(func.apply(left.getString(entity), right.getString(entity)));
+  public boolean test(Object entity) {
+    return func.test(left.getString(entity), right.getString(entity));
   }
 
   public static PredicateEvalExpression of(StringExpression left, StringExpression right,
                                            String op) {
+    BooleanExpression expression = compile(left, right, op);
+    if (left instanceof ConstantStringExpression && right instanceof ConstantStringExpression) {
+      return ConstantExpression.of(expression.test(null));
+    }
+    return expression;
+  }
+
+  private static BooleanExpression compile(StringExpression left, StringExpression right,
+                                           String op) {
     switch (op) {
       case "=":
       case "equals":
@@ -48,9 +55,9 @@ public class StringComparisonExpression implements PredicateEvalExpression {
         return new StringComparisonExpression(left, right, String::contains);
       case "matches":
         Predicate<String> patternMatch = PatternMatchPredicate.buildPredicate(right.getString(null), false);
-        return entity -> asDouble(patternMatch.test(left.getString(entity)));
+        return entity -> patternMatch.test(left.getString(entity));
       case "regexMatch":
-        return new StringComparisonExpression(left, right, new CachingRegexMatcher());
+        return regexMatch(left, right, 0);
       case "equalsIgnoreCase":
         return new StringComparisonExpression(left, right, String::equalsIgnoreCase);
       case "startsWithIgnoreCase":
@@ -61,12 +68,22 @@ public class StringComparisonExpression implements PredicateEvalExpression {
         return new StringComparisonExpression(left, right, StringUtils::containsIgnoreCase);
       case "matchesIgnoreCase":
         Predicate<String> patternMatchCI = PatternMatchPredicate.buildPredicate(right.getString(null), true);
-        return entity -> asDouble(patternMatchCI.test(left.getString(entity)));
+        return entity -> patternMatchCI.test(left.getString(entity));
       case "regexMatchIgnoreCase":
-        return new StringComparisonExpression(left, right,
-            new CachingRegexMatcher(Pattern.CASE_INSENSITIVE));
+        return regexMatch(left, right, Pattern.CASE_INSENSITIVE);
       default:
         throw new IllegalArgumentException(op + " is not handled");
     }
   }
+
+  private static BooleanExpression regexMatch(StringExpression left, StringExpression right,
+                                              int flags) {
+    if (right instanceof ConstantStringExpression) {
+      // compile once, no need to look up the pattern in the cache for every evaluation
+      Predicate<String> pattern = CachingRegexMatcher.compile(right.getString(null), flags);
+      return entity -> pattern.test(left.getString(entity));
+    }
+    CachingRegexMatcher matcher = new CachingRegexMatcher(flags);
+    return new StringComparisonExpression(left, right, matcher::apply);
+  }
 }
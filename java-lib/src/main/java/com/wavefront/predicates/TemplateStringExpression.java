@@ -1,45 +1,97 @@
 package com.wavefront.predicates;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-import wavefront.report.ReportHistogram;
-import wavefront.report.ReportMetric;
-import wavefront.report.ReportPoint;
-import wavefront.report.Span;
-import wavefront.report.ReportLog;
-
 /**
  * A string template rendered. Substitutes {{...}} placeholders with corresponding
  * components; string literals are returned as is.
  *
+ * The template is split into literal segments and placeholders once, when the expression is
+ * created, so rendering is a single pass that appends segments and looked up values.
+ *
  * @author vasily@wavefront.com
  */
 public class TemplateStringExpression implements StringExpression {
+  private static final ThreadLocal<StringBuilder> BUFFER =
+      ThreadLocal.withInitial(() -> new StringBuilder(64));
+  /**
+   * Don't hold on to buffers grown by rendering unusually large values.
+   */
+  private static final int MAX_RETAINED_CAPACITY = 4096;
+
   private final String template;
+  /**
+   * Literal segments, one more than placeholders: literals[i] precedes fields[i].
+   */
+  private final String[] literals;
+  private final FieldAccessor[] fields;
 
   public TemplateStringExpression(String template) {
     this.template = template;
+    List<String> literals = new ArrayList<>();
+    List<FieldAccessor> fields = new ArrayList<>();
+    int segmentStart = 0;
+    int from = 0;
+    int start;
+    while ((start = template.indexOf("{{", from)) >= 0) {
+      int end = template.indexOf("}}", start + 2);
+      if (end < 0) break;
+      String name = template.substring(start + 2, end);
+      if (containsLineTerminator(name)) {
+        // not a placeholder, but a placeholder may start within it, i.e. "{{{a}}"
+        from = start + 1;
+        continue;
+      }
+      if (!name.isEmpty()) {
+        // "{{}}" is kept as is
+        literals.add(template.substring(segmentStart, start));
+        fields.add(new FieldAccessor(name));
+        segmentStart = end + 2;
+      }
+      from = end + 2;
+    }
+    literals.add(template.substring(segmentStart));
+    this.literals = literals.toArray(new String[0]);
+    this.fields = fields.toArray(new FieldAccessor[0]);
   }
 
   @Nonnull
   @Override
   public String getString(@Nullable Object entity) {
-    if (entity == null) {
+    if (entity == null || fields.length == 0) {
       return template;
-    } else if (entity instanceof ReportMetric) {
-      return Util.expandPlaceholders(template, (ReportMetric) entity);
-    } else if (entity instanceof ReportHistogram) {
-      return Util.expandPlaceholders(template, (ReportHistogram) entity);
-    } else if (entity instanceof ReportPoint) {
-      return Util.expandPlaceholders(template, (ReportPoint) entity);
-    } else if (entity instanceof Span) {
-      return Util.expandPlaceholders(template, (Span) entity);
-    } else if (entity instanceof ReportLog) {
-      return Util.expandPlaceholders(template, (ReportLog) entity);
-    } else {
-      throw new IllegalArgumentException(entity.getClass().getCanonicalName() +
-          " is not supported!");
     }
+    StringBuilder result = BUFFER.get();
+    if (result.capacity() > MAX_RETAINED_CAPACITY) {
+      result = new StringBuilder(template.length() * 2);
+      BUFFER.set(result);
+    }
+    result.setLength(0);
+    result.append(literals[0]);
+    for (int i = 0; i < fields.length; i++) {
+      String value = fields[i].get(entity);
+      if (value != null) {
+        result.append(value);
+      }
+      result.append(literals[i + 1]);
+    }
+    return result.toString();
+  }
+
+  /**
+   * Placeholders can't span lines, same as {@code .} in regular expressions.
+   */
+  private static boolean containsLineTerminator(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return true;
+      }
+    }
+    return false;
   }
 }
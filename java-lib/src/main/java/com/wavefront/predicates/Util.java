@@ -2,15 +2,15 @@ package com.wavefront.predicates;
 
 import java.util.Calendar;
 import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.mdimension.jchronic.Chronic;
 import com.mdimension.jchronic.Options;
 
 import wavefront.report.*;
 
-import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.wavefront.ingester.AbstractIngesterFormatter.unquote;
 
 /**
@@ -19,7 +19,15 @@ import static com.wavefront.ingester.AbstractIngesterFormatter.unquote;
  * @author vasily@wavefront.com.
  */
 public abstract class Util {
-  private static final Pattern PLACEHOLDERS = Pattern.compile("\\{\\{(.*?)}}");
+  /**
+   * Compiled templates for {@link #expandPlaceholders}, so that each template is only parsed
+   * once.
+   */
+  private static final LoadingCache<String, TemplateStringExpression> templates =
+      Caffeine.newBuilder().
+          expireAfterAccess(30, TimeUnit.MINUTES).
+          maximumSize(10_000).
+          build(TemplateStringExpression::new);
 
   private Util() {
   }
@@ -56,28 +64,7 @@ public abstract class Util {
   @Deprecated
   public static String expandPlaceholders(String input, ReportPoint reportPoint) {
     if (reportPoint != null && input.contains("{{")) {
-      StringBuffer result = new StringBuffer();
-      Matcher placeholders = PLACEHOLDERS.matcher(input);
-      while (placeholders.find()) {
-        if (placeholders.group(1).isEmpty()) {
-          placeholders.appendReplacement(result, placeholders.group(0));
-        } else {
-          String substitution;
-          switch (placeholders.group(1)) {
-            case "metricName":
-              substitution = reportPoint.getMetric();
-              break;
-            case "sourceName":
-              substitution = reportPoint.getHost();
-              break;
-            default:
-              substitution = reportPoint.getAnnotations().get(placeholders.group(1));
-          }
-          placeholders.appendReplacement(result, firstNonNull(substitution, ""));
-        }
-      }
-      placeholders.appendTail(result);
-      return result.toString();
+      return templates.get(input).getString(reportPoint);
     }
     return input;
   }
@@ -93,30 +80,7 @@ public abstract class Util {
    */
   public static String expandPlaceholders(String input, ReportMetric reportMetric) {
     if (reportMetric != null && input.contains("{{")) {
-      StringBuffer result = new StringBuffer();
-      Matcher placeholders = PLACEHOLDERS.matcher(input);
-      while (placeholders.find()) {
-        if (placeholders.group(1).isEmpty()) {
-          placeholders.appendReplacement(result, placeholders.group(0));
-        } else {
-          String substitution;
-          switch (placeholders.group(1)) {
-            case "metricName":
-              substitution = reportMetric.getMetric();
-              break;
-            case "sourceName":
-              substitution = reportMetric.getHost();
-              break;
-            default:
-              substitution = reportMetric.getAnnotations().stream().
-                  filter(a -> a.getKey().equals(placeholders.group(1))).
-                  map(Annotation::getValue).findFirst().orElse(null);
-          }
-          placeholders.appendReplacement(result, firstNonNull(substitution, ""));
-        }
-      }
-      placeholders.appendTail(result);
-      return result.toString();
+      return templates.get(input).getString(reportMetric);
     }
     return input;
   }
@@ -132,30 +96,7 @@ public abstract class Util {
    */
   public static String expandPlaceholders(String input, ReportHistogram reportHistogram) {
     if (reportHistogram != null && input.contains("{{")) {
-      StringBuffer result = new StringBuffer();
-      Matcher placeholders = PLACEHOLDERS.matcher(input);
-      while (placeholders.find()) {
-        if (placeholders.group(1).isEmpty()) {
-          placeholders.appendReplacement(result, placeholders.group(0));
-        } else {
-          String substitution;
-          switch (placeholders.group(1)) {
-            case "metricName":
-              substitution = reportHistogram.getMetric();
-              break;
-            case "sourceName":
-              substitution = reportHistogram.getHost();
-              break;
-            default:
-              substitution = reportHistogram.getAnnotations().stream().
-                  filter(a -> a.getKey().equals(placeholders.group(1))).
-                  map(Annotation::getValue).findFirst().orElse(null);
-          }
-          placeholders.appendReplacement(result, firstNonNull(substitution, ""));
-        }
-      }
-      placeholders.appendTail(result);
-      return result.toString();
+      return templates.get(input).getString(reportHistogram);
     }
     return input;
   }
@@ -171,30 +112,7 @@ public abstract class Util {
    */
   public static String expandPlaceholders(String input, Span span) {
     if (span != null && input.contains("{{")) {
-      StringBuffer result = new StringBuffer();
-      Matcher placeholders = PLACEHOLDERS.matcher(input);
-      while (placeholders.find()) {
-        if (placeholders.group(1).isEmpty()) {
-          placeholders.appendReplacement(result, placeholders.group(0));
-        } else {
-          String substitution;
-          switch (placeholders.group(1)) {
-            case "spanName":
-              substitution = span.getName();
-              break;
-            case "sourceName":
-              substitution = span.getSource();
-              break;
-            default:
-              substitution = span.getAnnotations().stream().
-                  filter(a -> a.getKey().equals(placeholders.group(1))).
-                  map(Annotation::getValue).findFirst().orElse(null);
-          }
-          placeholders.appendReplacement(result, firstNonNull(substitution, ""));
-        }
-      }
-      placeholders.appendTail(result);
-      return result.toString();
+      return templates.get(input).getString(span);
     }
     return input;
   }
@@ -210,30 +128,7 @@ public abstract class Util {
    */
   public static String expandPlaceholders(String input, ReportLog reportLog) {
     if (reportLog != null && input.contains("{{")) {
-      StringBuffer result = new StringBuffer();
-      Matcher placeholders = PLACEHOLDERS.matcher(input);
-      while (placeholders.find()) {
-        if (placeholders.group(1).isEmpty()) {
-          placeholders.appendReplacement(result, placeholders.group(0));
-        } else {
-          String substitution;
-          switch (placeholders.group(1)) {
-            case "message":
-              substitution = reportLog.getMessage();
-              break;
-            case "sourceName":
-              substitution = reportLog.getHost();
-              break;
-            default:
-              substitution = reportLog.getAnnotations().stream().
-                      filter(a -> a.getKey().equals(placeholders.group(1))).
-                      map(Annotation::getValue).findFirst().orElse(null);
-          }
-          placeholders.appendReplacement(result, firstNonNull(substitution, ""));
-        }
-      }
-      placeholders.appendTail(result);
-      return result.toString();
+      return templates.get(input).getString(reportLog);
     }
     return input;
   }
@@ -1,8 +1,7 @@
 package com.yammer.metrics.core;
 
-import com.wavefront.common.EvictingRingBuffer;
+import com.wavefront.common.LongRingBuffer;
 import com.wavefront.common.NamedThreadFactory;
-import com.wavefront.common.SynchronizedEvictingRingBuffer;
 import com.yammer.metrics.Metrics;
 
 import javax.annotation.Nullable;
@@ -30,7 +29,7 @@ public class BurstRateTrackingCounter extends Counter implements Metric {
   private volatile long previousCount = 0;
   private volatile long currentRate = 0;
 
-  private final EvictingRingBuffer<Long> perPeriodStats;
+  private final LongRingBuffer perPeriodStats;
 
   /**
    * @param metricName        metric name for the counter.
@@ -46,8 +45,8 @@ public class BurstRateTrackingCounter extends Counter implements Metric {
     this.delegate = (metricsRegistry == null ? Metrics.defaultRegistry() : metricsRegistry).
         newCounter(metricName);
     this.granularityMillis = granularityMillis;
-    this.perPeriodStats = new SynchronizedEvictingRingBuffer<>(5 * 60 * 1000 / granularityMillis,
-        false, 0L);
+    // only written to by the scheduled task below
+    this.perPeriodStats = new LongRingBuffer(5 * 60 * 1000 / granularityMillis, false, 0L);
     this.burstRateHistogram = LOCAL_REGISTRY.newHistogram(BurstRateTrackingCounter.class,
         metricName.getGroup() + "-max-burst-rate");
     EXECUTOR.scheduleAtFixedRate(() -> {
@@ -115,8 +114,7 @@ public class BurstRateTrackingCounter extends Counter implements Metric {
    * @return 1-minute delta value
    */
   public long getOneMinuteCount() {
-    return perPeriodStats.toList().subList(4 * 60 * 1000 / granularityMillis,
-        5 * 60 * 1000 / granularityMillis).stream().mapToLong(i -> i).sum();
+    return perPeriodStats.sum(60 * 1000 / granularityMillis);
   }
 
   /**
@@ -125,7 +123,7 @@ public class BurstRateTrackingCounter extends Counter implements Metric {
    * @return 5-minute delta value
    */
   public long getFiveMinuteCount() {
-    return perPeriodStats.toList().stream().mapToLong(i -> i).sum();
+    return perPeriodStats.sum();
   }
 
   /**
@@ -1,21 +1,27 @@
 package com.yammer.metrics.core;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.wavefront.common.CompactDigest;
 import com.tdunning.math.stats.AVLTreeDigest;
-import com.tdunning.math.stats.Centroid;
 import com.tdunning.math.stats.TDigest;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.stats.Sample;
 import com.yammer.metrics.stats.Snapshot;
 
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import static java.lang.Double.NaN;
 
@@ -31,7 +37,23 @@ public class WavefrontHistogram extends Histogram implements Metric {
   private final int compression;
   private final Supplier<Long> millis;
 
-  private final ConcurrentMap<Long, LinkedList<MinuteBin>> perThreadHistogramBins = new ConcurrentHashMap<>();
+  /**
+   * All per-thread recorders, including those of threads that are no longer alive, until their
+   * bins are drained.
+   */
+  private final Queue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(() -> {
+    Recorder recorder = new Recorder(Thread.currentThread());
+    recorders.add(recorder);
+    return recorder;
+  });
+  /**
+   * Incremented every time bins are added or removed. Together with the total count of
+   * recorded values, identifies the state of the histogram for snapshot caching purposes.
+   */
+  private final AtomicLong structureVersion = new AtomicLong();
+  @Nullable
+  private volatile CachedSnapshot cachedSnapshot = null;
 
   private WavefrontHistogram(TDigestSample sample, int compression, Supplier<Long> millis) {
     super(sample);
@@ -80,25 +102,20 @@ public class WavefrontHistogram extends Histogram implements Metric {
    */
   public List<MinuteBin> bins(boolean clear) {
     final long cutoffMillis = minMillis();
-    List<MinuteBin> result =
-        new ArrayList<>(perThreadHistogramBins.values().stream().flatMap(List::stream).
-        filter(i -> i.getMinMillis() < cutoffMillis).
-        collect(Collectors.groupingBy(MinuteBin::getMinMillis,
-            Collectors.reducing(null, (a, b) -> {
-              MinuteBin minuteBin = a == null ? new MinuteBin(b.getMinMillis(), compression) : a;
-              minuteBin.getDist().add(b.getDist());
-              return minuteBin;
-            }))).values());
+    Map<Long, MinuteBin> merged = new HashMap<>();
+    for (Recorder recorder : recorders) {
+      for (MinuteBin bin : recorder.bins) {
+        if (bin.getMinMillis() < cutoffMillis) {
+          merged.computeIfAbsent(bin.getMinMillis(), x -> new MinuteBin(x, compression)).merge(bin);
+        }
+      }
+    }
 
     if (clear) {
       clearPriorCurrentMinuteBin(cutoffMillis);
     }
-    result.forEach(bin -> {
-      if (bin.getDist().centroidCount() > compression * RECOMPRESSION_THRESHOLD_FACTOR) {
-        bin.getDist().compress();
-      }
-    });
-
+    List<MinuteBin> result = new ArrayList<>(merged.values());
+    result.forEach(bin -> bin.dist.compress());
     return result;
   }
 
@@ -123,23 +140,19 @@ public class WavefrontHistogram extends Histogram implements Metric {
    * Helper to retrieve the current bin. Will be invoked per thread.
    */
   private MinuteBin getCurrent() {
-    long key = Thread.currentThread().getId();
-    LinkedList<MinuteBin> bins = perThreadHistogramBins.computeIfAbsent(key,
-        x -> new LinkedList<>());
-
+    Recorder recorder = this.recorder.get();
     long currMinMillis = minMillis();
-
-    // bins with clear == true flag will drain (CONSUMER) the list,
-    // so synchronize the access to the respective 'bins' list
-    synchronized (bins) {
-      if (bins.isEmpty() || bins.getLast().minMillis != currMinMillis) {
-        bins.add(new MinuteBin(currMinMillis, compression));
-        if (bins.size() > MAX_BINS) {
-          bins.removeFirst();
-        }
-      }
-      return bins.getLast();
+    MinuteBin current = recorder.current;
+    if (current == null || current.minMillis != currMinMillis) {
+      current = recorder.roll(currMinMillis, compression);
+      structureVersion.incrementAndGet();
     }
+    return current;
+  }
+
+  @VisibleForTesting
+  int recorderCount() {
+    return recorders.size();
   }
 
   /**
@@ -153,13 +166,13 @@ public class WavefrontHistogram extends Histogram implements Metric {
       int n = Math.min(means.size(), counts.size());
       MinuteBin current = getCurrent();
       for (int i = 0; i < n; ++i) {
-        current.dist.add(means.get(i), counts.get(i));
+        current.add(means.get(i), counts.get(i));
       }
     }
   }
 
   public void update(double value) {
-    getCurrent().dist.add(value);
+    getCurrent().add(value);
   }
 
   @Override
@@ -169,25 +182,53 @@ public class WavefrontHistogram extends Histogram implements Metric {
 
   @Override
   public double mean() {
-    Collection<Centroid> centroids = snapshot().centroids();
-    Centroid mean = centroids.stream().
-        reduce((x, y) -> new Centroid(x.mean() + (y.mean() * y.count()), x.count() + y.count())).orElse(null);
-    return mean == null || centroids.size() == 0 ? Double.NaN : mean.mean() / mean.count();
+    long count = 0;
+    double sum = 0;
+    for (Recorder recorder : recorders) {
+      for (MinuteBin bin : recorder.bins) {
+        // count has to be read first, see MinuteBin
+        count += bin.count;
+        sum += bin.sum;
+      }
+    }
+    return count == 0 ? Double.NaN : sum / count;
   }
 
   public double min() {
-    return perThreadHistogramBins.values().stream().flatMap(List::stream).
-        mapToDouble(b -> b.dist.getMin()).min().orElse(NaN);
+    double min = NaN;
+    for (Recorder recorder : recorders) {
+      for (MinuteBin bin : recorder.bins) {
+        if (bin.count > 0) {
+          double binMin = bin.min;
+          if (Double.isNaN(min) || binMin < min) min = binMin;
+        }
+      }
+    }
+    return min;
   }
 
   public double max() {
-    return perThreadHistogramBins.values().stream().flatMap(List::stream).
-        mapToDouble(b -> b.dist.getMax()).max().orElse(NaN);
+    double max = NaN;
+    for (Recorder recorder : recorders) {
+      for (MinuteBin bin : recorder.bins) {
+        if (bin.count > 0) {
+          double binMax = bin.max;
+          if (Double.isNaN(max) || binMax > max) max = binMax;
+        }
+      }
+    }
+    return max;
   }
 
   @Override
   public long count() {
-    return perThreadHistogramBins.values().stream().flatMap(List::stream).mapToLong(bin -> bin.dist.size()).sum();
+    long count = 0;
+    for (Recorder recorder : recorders) {
+      for (MinuteBin bin : recorder.bins) {
+        count += bin.count;
+      }
+    }
+    return count;
   }
 
   @Override
@@ -211,27 +252,48 @@ public class WavefrontHistogram extends Histogram implements Metric {
   }
 
   private void clearPriorCurrentMinuteBin(long cutoffMillis) {
-    if (perThreadHistogramBins == null) {
+    if (recorders == null) {
       // will happen if WavefrontHistogram.super() constructor will be invoked
       // before WavefrontHistogram object is fully instantiated,
       // which will be invoke clear() method
       return;
     }
-    for (LinkedList<MinuteBin> bins : perThreadHistogramBins.values()) {
-      // getCurrent() method will add (PRODUCER) item to the bins list, so synchronize the access
-      synchronized (bins) {
-        bins.removeIf(minuteBin -> minuteBin.getMinMillis() < cutoffMillis);
+    Iterator<Recorder> iterator = recorders.iterator();
+    while (iterator.hasNext()) {
+      Recorder recorder = iterator.next();
+      if (recorder.bins.removeIf(minuteBin -> minuteBin.getMinMillis() < cutoffMillis)) {
+        structureVersion.incrementAndGet();
+      }
+      // reclaim recorders of terminated threads once all of their bins are drained
+      if (!recorder.isAlive() && recorder.bins.isEmpty()) {
+        iterator.remove();
       }
     }
   }
 
-  // TODO - how to ensure thread safety? do we care?
+  /**
+   * Returns a digest of all recorded values. The merged digest is cached until more values
+   * are recorded or bins are added or removed, so polling an idle histogram is cheap.
+   * Values recorded while the digest is being merged may or may not be included.
+   */
   private TDigest snapshot() {
+    // the version has to be read before merging, so that concurrent updates invalidate it
+    long version = structureVersion.get();
+    long count = count();
+    CachedSnapshot cached = cachedSnapshot;
+    if (cached != null && cached.structureVersion == version && cached.count == count) {
+      return cached.digest;
+    }
     final TDigest snapshot = new AVLTreeDigest(compression);
-    perThreadHistogramBins.values().stream().flatMap(List::stream).forEach(bin -> snapshot.add(bin.dist));
+    for (Recorder recorder : recorders) {
+      for (MinuteBin bin : recorder.bins) {
+        bin.dist.forEachCentroid(snapshot::add);
+      }
+    }
     if (snapshot.centroidCount() > compression * RECOMPRESSION_THRESHOLD_FACTOR) {
       snapshot.compress();
     }
+    cachedSnapshot = new CachedSnapshot(version, count, snapshot);
     return snapshot;
   }
 
@@ -293,21 +355,124 @@ public class WavefrontHistogram extends Histogram implements Metric {
   }
 
   public static class MinuteBin {
-    private final TDigest dist;
+    private static final AtomicLongFieldUpdater<MinuteBin> COUNT_UPDATER =
+        AtomicLongFieldUpdater.newUpdater(MinuteBin.class, "count");
+
+    private final CompactDigest dist;
+    private final int accuracy;
     private final long minMillis;
+    // running stats, only updated by the thread that owns the bin. count is updated last, so
+    // readers have to read it before the other stats: those then include at least the values
+    // it counts. the other stats are volatile as well, so that doubles can't be torn.
+    private volatile long count = 0;
+    private volatile double sum = 0;
+    private volatile double min = Double.POSITIVE_INFINITY;
+    private volatile double max = Double.NEGATIVE_INFINITY;
 
     MinuteBin(long minMillis, int accuracy) {
-      dist = new AVLTreeDigest(accuracy);
+      this.dist = new CompactDigest(accuracy);
+      this.accuracy = accuracy;
       this.minMillis = minMillis;
     }
 
+    /**
+     * Returns a copy of the bin's distribution as a {@link TDigest}, not the live digest: values
+     * recorded in the bin afterwards are not reflected in it, and changes made to it are not
+     * reflected in the bin. Prefer {@link #getDigest()}, which provides direct access to the
+     * centroids without copying.
+     *
+     * @return copy of the distribution
+     */
+    @Deprecated
     public TDigest getDist() {
+      return dist.toTDigest();
+    }
+
+    public CompactDigest getDigest() {
       return dist;
     }
 
+    public int getAccuracy() {
+      return accuracy;
+    }
+
     public long getMinMillis() {
       return minMillis;
     }
+
+    private void add(double value) {
+      dist.add(value);
+      record(value, 1, value, value);
+    }
+
+    private void add(double mean, int weight) {
+      if (weight <= 0) return;
+      dist.add(mean, weight);
+      record(mean * weight, weight, mean, mean);
+    }
+
+    private void merge(MinuteBin other) {
+      long count = other.count;
+      dist.add(other.dist);
+      record(other.sum, count, other.min, other.max);
+    }
+
+    private void record(double sum, long count, double min, double max) {
+      //noinspection NonAtomicOperationOnVolatileField
+      this.sum += sum;
+      if (min < this.min) this.min = min;
+      if (max > this.max) this.max = max;
+      COUNT_UPDATER.lazySet(this, this.count + count);
+    }
+  }
+
+  private static final class CachedSnapshot {
+    private final long structureVersion;
+    private final long count;
+    private final TDigest digest;
+
+    private CachedSnapshot(long structureVersion, long count, TDigest digest) {
+      this.structureVersion = structureVersion;
+      this.count = count;
+      this.digest = digest;
+    }
+  }
+
+  /**
+   * Per-thread recording state. Only the owner thread adds bins and updates the current one,
+   * while readers can iterate over the bins and drain old ones concurrently.
+   */
+  private static final class Recorder {
+    private final WeakReference<Thread> owner;
+    private final Deque<MinuteBin> bins = new ConcurrentLinkedDeque<>();
+    private volatile MinuteBin current;
+
+    private Recorder(Thread owner) {
+      this.owner = new WeakReference<>(owner);
+    }
+
+    /**
+     * Starts a new bin for the specified minute. Only called by the owner thread.
+     */
+    private MinuteBin roll(long minMillis, int compression) {
+      MinuteBin previous = current;
+      if (previous != null) {
+        // the previous bin is not going to be updated anymore, release its buffer
+        previous.dist.compress();
+      }
+      MinuteBin bin = new MinuteBin(minMillis, compression);
+      bins.addLast(bin);
+      if (bins.size() > MAX_BINS) {
+        bins.pollFirst();
+      }
+      current = bin;
+      return bin;
+    }
+
+    private boolean isAlive() {
+      Thread thread = owner.get();
+      return thread != null && thread.isAlive();
+    }
   }
 
   private static class TDigestSample implements Sample {
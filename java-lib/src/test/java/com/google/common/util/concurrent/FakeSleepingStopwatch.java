@@ -0,0 +1,27 @@
+package com.google.common.util.concurrent;
+
+/**
+ * A stopwatch for rate limiter tests that only advances when told to, or when sleeping.
+ */
+@SuppressWarnings("UnstableApiUsage")
+class FakeSleepingStopwatch extends RateLimiter.SleepingStopwatch {
+  private volatile long now = 0;
+
+  void advance(long micros) {
+    now += micros;
+  }
+
+  long now() {
+    return now;
+  }
+
+  @Override
+  protected long readMicros() {
+    return now;
+  }
+
+  @Override
+  protected void sleepMicrosUninterruptibly(long micros) {
+    now += micros;
+  }
+}
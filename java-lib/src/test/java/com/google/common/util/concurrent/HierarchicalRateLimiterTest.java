@@ -0,0 +1,161 @@
+package com.google.common.util.concurrent;
+
+import com.google.common.collect.ImmutableMap;
+import com.wavefront.api.agent.AgentConfiguration;
+import com.wavefront.data.ReportableEntityType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link HierarchicalRateLimiter}.
+ */
+public class HierarchicalRateLimiterTest {
+  private FakeSleepingStopwatch stopwatch;
+  private HierarchicalRateLimiter limiter;
+  private RecyclableRateLimiter points;
+  private RecyclableRateLimiter spans;
+
+  @Before
+  public void setup() {
+    stopwatch = new FakeSleepingStopwatch();
+    limiter = new HierarchicalRateLimiter(stopwatch, 100, ImmutableMap.of(
+        ReportableEntityType.POINT, 3.0, ReportableEntityType.TRACE, 1.0), 1);
+    points = limiter.get(ReportableEntityType.POINT);
+    spans = limiter.get(ReportableEntityType.TRACE);
+  }
+
+  @Test
+  public void testWeights() {
+    assertEquals(100, limiter.getRate(), 0.0001);
+    assertEquals(75, points.getRate(), 0.0001);
+    assertEquals(25, spans.getRate(), 0.0001);
+    limiter.setRate(200);
+    assertEquals(150, points.getRate(), 0.0001);
+    assertEquals(50, spans.getRate(), 0.0001);
+  }
+
+  @Test
+  public void testBorrowIdleCapacity() {
+    stopwatch.advance(1_000_000);
+    // 75 stored points permits, 5 more are borrowed from the next request
+    assertTrue(points.tryAcquire(80));
+    // points bucket is exhausted, borrows from idle spans bucket
+    assertTrue(points.tryAcquire(10));
+    assertFalse(points.tryAcquire(20));
+    assertTrue(spans.immediatelyAvailable(10));
+    assertFalse(spans.immediatelyAvailable(20));
+    assertTrue(spans.tryAcquire(15));
+    // nothing left to borrow
+    assertFalse(points.tryAcquire(1));
+    assertFalse(points.immediatelyAvailable(1));
+  }
+
+  @Test
+  public void testParentBudgetIsEnforced() {
+    points.setRate(1000);
+    assertEquals(100, limiter.getRate(), 0.0001);
+    stopwatch.advance(1_000_000);
+    assertTrue(points.tryAcquire(150));
+    // child bucket has plenty of permits left, but the parent budget is exhausted
+    assertFalse(points.tryAcquire(10));
+    assertFalse(points.immediatelyAvailable(10));
+    // blocking acquire waits for the parent budget
+    assertEquals(0.5, points.acquire(10), 0.0001);
+    points.recyclePermits(100);
+    assertTrue(points.immediatelyAvailable(50));
+  }
+
+  @Test
+  public void testAcquireWaitsForBothLevelsAtOnce() {
+    // sleeping doesn't advance the clock, so both waits must be measured at the same instant
+    AtomicLong slept = new AtomicLong();
+    FakeSleepingStopwatch clock = new FakeSleepingStopwatch() {
+      @Override
+      protected void sleepMicrosUninterruptibly(long micros) {
+        slept.addAndGet(micros);
+      }
+    };
+    limiter = new HierarchicalRateLimiter(clock, 100, ImmutableMap.of(
+        ReportableEntityType.POINT, 3.0, ReportableEntityType.TRACE, 1.0), 1);
+    points = limiter.get(ReportableEntityType.POINT);
+    spans = limiter.get(ReportableEntityType.TRACE);
+
+    // points bucket is busy for 0.4s, the parent budget for 0.3s
+    assertTrue(points.tryAcquire(30));
+    // spans push the parent budget to 0.8s
+    spans.acquireAsync(50);
+    // both levels are throttled: the wait is the longer of the two, not their sum
+    assertEquals(0.8, points.acquire(10), 0.0001);
+    assertEquals(800_000, slept.get());
+  }
+
+  @Test
+  public void testCancelAcquireAsync() {
+    AtomicLong nanoTime = new AtomicLong(0);
+    TimerWheel wheel = new TimerWheel(nanoTime::get, TimeUnit.MILLISECONDS.toNanos(1), 64);
+    limiter = new HierarchicalRateLimiter(stopwatch, 100, ImmutableMap.of(
+        ReportableEntityType.POINT, 3.0, ReportableEntityType.TRACE, 1.0), 1, wheel);
+    points = limiter.get(ReportableEntityType.POINT);
+    spans = limiter.get(ReportableEntityType.TRACE);
+
+    // the first request is granted right away and the next one has to wait
+    assertTrue(points.tryAcquire(10));
+    CompletableFuture<Double> cancelled = points.acquireAsync(50);
+    assertFalse(cancelled.isDone());
+    cancelled.cancel(false);
+    stopwatch.advance(1_000_000);
+    nanoTime.set(TimeUnit.SECONDS.toNanos(1));
+    wheel.advance();
+    // 65 permits are stored in the child bucket and 90 in the parent budget, both got the
+    // cancelled reservation back
+    assertTrue(points.immediatelyAvailable(60));
+    assertTrue(points.tryAcquire(60));
+    assertTrue(spans.immediatelyAvailable(20));
+    assertTrue(spans.tryAcquire(20));
+    assertTrue(points.tryAcquire(10));
+
+    // nothing left to borrow, the request waits for both the child bucket and the parent
+    CompletableFuture<Double> pending = points.acquireAsync(10);
+    assertFalse(pending.isDone());
+    stopwatch.advance(500_000);
+    nanoTime.set(TimeUnit.MILLISECONDS.toNanos(1500));
+    wheel.advance();
+    assertTrue(pending.isDone());
+    assertFalse(pending.isCancelled());
+  }
+
+  @Test
+  public void testUpdateFromAgentConfiguration() {
+    AgentConfiguration config = new AgentConfiguration();
+    config.setCollectorRateLimit(200L);
+    config.setSpanRateLimit(50L);
+    limiter.update(config);
+    // backend doesn't set rate limits
+    assertEquals(75, points.getRate(), 0.0001);
+    config.setCollectorSetsRateLimit(true);
+    limiter.update(config);
+    assertEquals(200, points.getRate(), 0.0001);
+    assertEquals(50, spans.getRate(), 0.0001);
+    assertEquals(250, limiter.getRate(), 0.0001);
+    config.setSpanRateLimit(null);
+    config.setCollectorRateLimit(100L);
+    limiter.update(config);
+    assertEquals(100, points.getRate(), 0.0001);
+    assertEquals(50, spans.getRate(), 0.0001);
+    assertEquals(150, limiter.getRate(), 0.0001);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoBucket() {
+    limiter.get(ReportableEntityType.HISTOGRAM);
+  }
+}
@@ -0,0 +1,145 @@
+package com.google.common.util.concurrent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LockFreeRecyclableRateLimiter}.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class LockFreeRecyclableRateLimiterTest {
+  private FakeSleepingStopwatch stopwatch;
+  private LockFreeRecyclableRateLimiter limiter;
+
+  @Before
+  public void setup() {
+    stopwatch = new FakeSleepingStopwatch();
+    limiter = new LockFreeRecyclableRateLimiter(stopwatch, 10, 2);
+  }
+
+  @Test
+  public void testStoredPermits() {
+    assertEquals(0, limiter.getAvailablePermits(), 0.0001);
+    stopwatch.advance(1_000_000);
+    assertEquals(10, limiter.getAvailablePermits(), 0.0001);
+    // capped at burst window
+    stopwatch.advance(5_000_000);
+    assertEquals(20, limiter.getAvailablePermits(), 0.0001);
+    assertTrue(limiter.immediatelyAvailable(20));
+    assertFalse(limiter.immediatelyAvailable(21));
+  }
+
+  @Test
+  public void testNextRequestPaysForBurst() {
+    stopwatch.advance(1_000_000);
+    // 10 stored, 5 more are borrowed
+    assertEquals(0, limiter.acquire(15), 0);
+    assertFalse(limiter.tryAcquire(1));
+    assertEquals(0.5, limiter.acquire(1), 0.0001);
+    assertEquals(0.1, limiter.acquire(1), 0.0001);
+    assertEquals(1_600_000, stopwatch.now());
+  }
+
+  @Test
+  public void testRecyclePermits() {
+    stopwatch.advance(1_000_000);
+    assertTrue(limiter.tryAcquire(15));
+    // pays off the debt first, then adds stored permits
+    limiter.recyclePermits(5);
+    assertTrue(limiter.tryAcquire(1));
+    limiter.recyclePermits(8);
+    assertEquals(7, limiter.getAvailablePermits(), 0.0001);
+    // can't exceed burst window
+    limiter.recyclePermits(100);
+    assertEquals(20, limiter.getAvailablePermits(), 0.0001);
+  }
+
+  @Test
+  public void testSetRate() {
+    stopwatch.advance(1_000_000);
+    assertEquals(10, limiter.getRate(), 0.0001);
+    limiter.setRate(20);
+    assertEquals(20, limiter.getRate(), 0.0001);
+    // stored permits scale with the rate
+    assertEquals(20, limiter.getAvailablePermits(), 0.0001);
+    assertTrue(limiter.tryAcquire(30));
+    assertEquals(0.5, limiter.acquire(), 0.0001);
+  }
+
+  @Test
+  public void testAcquireAsync() {
+    AtomicLong nanoTime = new AtomicLong(0);
+    TimerWheel wheel = new TimerWheel(nanoTime::get, TimeUnit.MILLISECONDS.toNanos(1), 64);
+    limiter = new LockFreeRecyclableRateLimiter(stopwatch, 10, 2, wheel);
+    assertEquals(0, limiter.acquireAsync(1).join(), 0);
+    CompletableFuture<Double> first = limiter.acquireAsync(1);
+    CompletableFuture<Double> second = limiter.acquireAsync(1);
+    assertFalse(first.isDone());
+
+    // cancelled waiters return their permits
+    CompletableFuture<Double> cancelled = limiter.acquireAsync(5);
+    cancelled.cancel(false);
+    CompletableFuture<Double> third = limiter.acquireAsync(1);
+
+    stopwatch.advance(100_000);
+    nanoTime.set(TimeUnit.MILLISECONDS.toNanos(100));
+    wheel.advance();
+    assertEquals(0.1, first.getNow(-1.0), 0.0001);
+    assertFalse(second.isDone());
+    stopwatch.advance(100_000);
+    nanoTime.set(TimeUnit.MILLISECONDS.toNanos(200));
+    wheel.advance();
+    assertEquals(0.2, second.getNow(-1.0), 0.0001);
+    assertFalse(third.isDone());
+    stopwatch.advance(100_000);
+    nanoTime.set(TimeUnit.MILLISECONDS.toNanos(300));
+    wheel.advance();
+    assertEquals(0.3, third.getNow(-1.0), 0.0001);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidRate() {
+    limiter.setRate(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPermits() {
+    limiter.tryAcquire(0);
+  }
+
+  @Test
+  public void testConcurrentTryAcquire() throws Exception {
+    stopwatch.advance(2_000_000);
+    AtomicInteger granted = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      Future<?>[] futures = new Future<?>[8];
+      for (int i = 0; i < futures.length; i++) {
+        futures[i] = executor.submit(() -> {
+          for (int j = 0; j < 1000; j++) {
+            if (limiter.tryAcquire(1)) granted.incrementAndGet();
+          }
+        });
+      }
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    // 20 stored permits, plus the one that is borrowed
+    assertEquals(21, granted.get());
+  }
+}
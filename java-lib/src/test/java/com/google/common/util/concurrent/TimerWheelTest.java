@@ -0,0 +1,132 @@
+package com.google.common.util.concurrent;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TimerWheel}.
+ */
+public class TimerWheelTest {
+  private static final long TICK = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final AtomicLong nanoTime = new AtomicLong(0);
+  private final TimerWheel wheel = new TimerWheel(nanoTime::get, TICK, 8);
+
+  @Test
+  public void testTasksRunInDeadlineOrder() {
+    List<String> order = new ArrayList<>();
+    wheel.schedule(20 * TICK, () -> order.add("c"));
+    wheel.schedule(3 * TICK, () -> order.add("a"));
+    // same slot as "a", one round later
+    wheel.schedule(11 * TICK, () -> order.add("b"));
+    wheel.schedule(20 * TICK, () -> order.add("d"));
+    assertEquals(0, wheel.advance());
+    nanoTime.set(3 * TICK);
+    assertEquals(1, wheel.advance());
+    assertEquals(ImmutableList.of("a"), order);
+    nanoTime.set(19 * TICK);
+    assertEquals(1, wheel.advance());
+    nanoTime.set(50 * TICK);
+    assertEquals(2, wheel.advance());
+    assertEquals(ImmutableList.of("a", "b", "c", "d"), order);
+  }
+
+  @Test
+  public void testOverdueTasksRunOnNextTick() {
+    List<String> order = new ArrayList<>();
+    nanoTime.set(5 * TICK);
+    wheel.advance();
+    wheel.schedule(0, () -> order.add("a"));
+    wheel.schedule(-TICK, () -> order.add("b"));
+    assertEquals(0, wheel.advance());
+    nanoTime.set(6 * TICK);
+    assertEquals(2, wheel.advance());
+    assertEquals(ImmutableList.of("a", "b"), order);
+  }
+
+  @Test
+  public void testCatchUpAfterIdle() {
+    List<String> order = new ArrayList<>();
+    wheel.schedule(2 * TICK, () -> order.add("a"));
+    nanoTime.set(2 * TICK);
+    assertEquals(1, wheel.advance());
+    long visited = wheel.slotsVisited();
+    // idle for hours: the wheel jumps straight to the current tick
+    nanoTime.set(TimeUnit.HOURS.toNanos(10));
+    assertEquals(0, wheel.advance());
+    assertEquals(visited, wheel.slotsVisited());
+    wheel.schedule(3 * TICK, () -> order.add("b"));
+    nanoTime.addAndGet(3 * TICK);
+    assertEquals(1, wheel.advance());
+    assertEquals(ImmutableList.of("a", "b"), order);
+  }
+
+  @Test
+  public void testCatchUpOverManyRevolutions() {
+    List<String> order = new ArrayList<>();
+    wheel.schedule(TimeUnit.HOURS.toNanos(1), () -> order.add("e"));
+    wheel.schedule(20 * TICK, () -> order.add("c"));
+    wheel.schedule(3 * TICK, () -> order.add("a"));
+    // same slot as "a", one round later
+    wheel.schedule(11 * TICK, () -> order.add("b"));
+    wheel.schedule(20 * TICK, () -> order.add("d"));
+    assertEquals(0, wheel.advance());
+    // the timer thread falls hours behind while tasks are scheduled
+    nanoTime.set(TimeUnit.MINUTES.toNanos(30));
+    assertEquals(4, wheel.advance());
+    assertEquals(ImmutableList.of("a", "b", "c", "d"), order);
+    // each slot is visited at most once
+    assertTrue(wheel.slotsVisited() <= 8);
+    nanoTime.set(TimeUnit.HOURS.toNanos(2));
+    assertEquals(1, wheel.advance());
+    assertEquals(ImmutableList.of("a", "b", "c", "d", "e"), order);
+    assertTrue(wheel.slotsVisited() <= 9);
+  }
+
+  @Test
+  public void testWaitersCompleteInFifoOrder() {
+    TimerWheel.Waiters waiters = new TimerWheel.Waiters(wheel);
+    List<Integer> order = new ArrayList<>();
+    assertTrue(waiters.await(0, () -> {}).isDone());
+    CompletableFuture<Double> first = waiters.await(5000, () -> {});
+    first.thenRun(() -> order.add(1));
+    // shorter wait, but still queued behind the first waiter
+    CompletableFuture<Double> second = waiters.await(2000, () -> {});
+    second.thenRun(() -> order.add(2));
+    // nothing is granted immediately while there are waiters ahead
+    assertFalse(waiters.await(0, () -> {}).isDone());
+    nanoTime.set(2 * TICK);
+    wheel.advance();
+    assertFalse(first.isDone());
+    assertFalse(second.isDone());
+    nanoTime.set(5 * TICK);
+    wheel.advance();
+    assertEquals(ImmutableList.of(1, 2), order);
+    assertEquals(0.005, first.join(), 0.000001);
+    assertEquals(0.005, second.join(), 0.000001);
+  }
+
+  @Test
+  public void testCancelledWaiter() {
+    TimerWheel.Waiters waiters = new TimerWheel.Waiters(wheel);
+    AtomicLong cancelled = new AtomicLong();
+    CompletableFuture<Double> future = waiters.await(5000, cancelled::incrementAndGet);
+    future.cancel(false);
+    assertEquals(1, cancelled.get());
+    nanoTime.set(5 * TICK);
+    assertEquals(1, wheel.advance());
+    assertTrue(future.isCancelled());
+    assertEquals(1, cancelled.get());
+  }
+}
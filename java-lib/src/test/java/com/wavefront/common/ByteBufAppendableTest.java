@@ -0,0 +1,45 @@
+package com.wavefront.common;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ByteBufAppendable}.
+ */
+public class ByteBufAppendableTest {
+  private static final String TEXT = "a\u00e9\u20ac\ud83d\ude00z";
+
+  @Test
+  public void testAppendChars() {
+    ByteBuf buf = Unpooled.buffer();
+    ByteBufAppendable out = new ByteBufAppendable(buf);
+    for (int i = 0; i < TEXT.length(); i++) {
+      out.append(TEXT.charAt(i));
+    }
+    assertEquals(TEXT, buf.toString(UTF_8));
+  }
+
+  @Test
+  public void testSurrogatePairSplitAcrossCalls() {
+    ByteBuf buf = Unpooled.buffer();
+    ByteBufAppendable out = new ByteBufAppendable(buf);
+    out.append(TEXT, 0, 4).append(TEXT, 4, TEXT.length());
+    out.append("x\ud83d").append('\ude00');
+    out.append('\ud83d').append("\ude00y", 0, 2);
+    assertEquals(TEXT + "x\ud83d\ude00\ud83d\ude00y", buf.toString(UTF_8));
+  }
+
+  @Test
+  public void testLoneSurrogates() {
+    ByteBuf buf = Unpooled.buffer();
+    ByteBufAppendable out = new ByteBufAppendable(buf);
+    out.append('\ude00').append('\ud83d').append('a').append("\ud83d").append("\ud83d");
+    out.append("b\ud83d").finish();
+    assertEquals("??a??b?", buf.toString(UTF_8));
+  }
+}
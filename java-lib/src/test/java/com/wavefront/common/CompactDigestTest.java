@@ -0,0 +1,115 @@
+package com.wavefront.common;
+
+import com.google.common.collect.ImmutableList;
+import com.tdunning.math.stats.TDigest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CompactDigest}.
+ */
+public class CompactDigestTest {
+
+  @Test
+  public void testFewDistinctValuesAreExact() {
+    CompactDigest digest = new CompactDigest(32);
+    for (int i = 0; i < 1000; i++) {
+      digest.add(i % 3 == 0 ? 10 : 1);
+    }
+    digest.add(100, 5);
+    List<Double> means = new ArrayList<>();
+    List<Integer> counts = new ArrayList<>();
+    digest.appendTo(means, counts);
+    assertEquals(ImmutableList.of(1.0, 10.0, 100.0), means);
+    assertEquals(ImmutableList.of(666, 334, 5), counts);
+    assertEquals(1005, digest.size());
+
+    // same result once the buffer is merged
+    digest.compress();
+    means.clear();
+    counts.clear();
+    digest.appendTo(means, counts);
+    assertEquals(ImmutableList.of(1.0, 10.0, 100.0), means);
+    assertEquals(ImmutableList.of(666, 334, 5), counts);
+  }
+
+  @Test
+  public void testSerializedCentroids() {
+    CompactDigest digest = new CompactDigest(32);
+    digest.add(ImmutableList.of(15d, 30d, 45d, 100d), ImmutableList.of(1, 5, 1));
+    digest.add(ImmutableList.of(1d, 2d, 3d), ImmutableList.of(1, 1, 1, 9));
+    digest.add(Double.MAX_VALUE, 0);
+    List<Double> means = new ArrayList<>();
+    List<Integer> counts = new ArrayList<>();
+    digest.appendTo(means, counts);
+    assertEquals(ImmutableList.of(1.0, 2.0, 3.0, 15.0, 30.0, 45.0), means);
+    assertEquals(ImmutableList.of(1, 1, 1, 1, 5, 1), counts);
+    assertEquals(6, digest.centroidCount());
+
+    CompactDigest copy = new CompactDigest(32);
+    copy.add(digest);
+    assertEquals(10, copy.size());
+    TDigest tDigest = copy.toTDigest();
+    assertEquals(10, tDigest.size());
+    assertEquals(1.0, tDigest.getMin(), 0);
+    assertEquals(45.0, tDigest.getMax(), 0);
+  }
+
+  @Test
+  public void testCompression() {
+    Random random = new Random(42);
+    CompactDigest digest = new CompactDigest(32);
+    double[] values = new double[100_000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextGaussian();
+      digest.add(values[i]);
+    }
+    digest.compress();
+    List<Double> means = new ArrayList<>();
+    List<Integer> counts = new ArrayList<>();
+    digest.appendTo(means, counts);
+    assertTrue(means.size() <= 64);
+    assertEquals(values.length, counts.stream().mapToLong(i -> i).sum());
+    for (int i = 1; i < means.size(); i++) {
+      assertTrue(means.get(i) > means.get(i - 1));
+    }
+    // centroids are smaller at the tails
+    Arrays.sort(values);
+    assertTrue(means.get(0) < values[values.length / 100]);
+    assertTrue(means.get(means.size() - 1) > values[values.length * 99 / 100]);
+  }
+
+  @Test
+  public void testSort() {
+    Random random = new Random(42);
+    for (int n = 0; n < 300; n += 7) {
+      double[] means = new double[n];
+      int[] counts = new int[n];
+      for (int i = 0; i < n; i++) {
+        means[i] = random.nextInt(50);
+        counts[i] = (int) means[i];
+      }
+      double[] expected = means.clone();
+      Arrays.sort(expected);
+      CompactDigest.sort(means, counts, 0, n);
+      assertArrayEquals(expected, means, 0);
+      for (int i = 0; i < n; i++) {
+        assertEquals((int) means[i], counts[i]);
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNaN() {
+    new CompactDigest(32).add(Double.NaN);
+  }
+}
@@ -0,0 +1,273 @@
+package com.wavefront.common;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for ConcurrentEvictingRingBuffer, LongRingBuffer and DoubleRingBuffer.
+ */
+public class ConcurrentEvictingRingBufferTest {
+
+  @Test
+  public void testRingBuffer() {
+    ConcurrentEvictingRingBuffer<Integer> buf = new ConcurrentEvictingRingBuffer<>(3, false);
+    assertEquals(3, buf.capacity());
+    assertEquals(0, buf.size());
+    assertArrayEquals(new Integer[0], buf.toList().toArray());
+    buf.add(1);
+    assertEquals(1, buf.size());
+    assertArrayEquals(new Integer[] {1}, buf.toList().toArray());
+    buf.add(2);
+    buf.add(3);
+    assertEquals(3, buf.size());
+    assertArrayEquals(new Integer[] {1, 2, 3}, buf.toList().toArray());
+    // capacity reached, next append should evict the oldest value
+    buf.add(4);
+    assertEquals(3, buf.size());
+    assertEquals(4, buf.count());
+    assertArrayEquals(new Integer[] {2, 3, 4}, buf.toList().toArray());
+    buf.add(null);
+    assertArrayEquals(new Integer[] {3, 4, null}, buf.toList().toArray());
+  }
+
+  @Test
+  public void testRingBufferWithDefaultValue() {
+    ConcurrentEvictingRingBuffer<Integer> buf = new ConcurrentEvictingRingBuffer<>(3, true, 0);
+    assertEquals(3, buf.size());
+    assertArrayEquals(new Integer[] {0, 0, 0}, buf.toList().toArray());
+    buf.add(1);
+    assertArrayEquals(new Integer[] {0, 0, 1}, buf.toList().toArray());
+  }
+
+  @Test
+  public void testLongRingBuffer() {
+    LongRingBuffer buf = new LongRingBuffer(3, false);
+    assertEquals(0, buf.size());
+    assertArrayEquals(new long[0], buf.toArray());
+    buf.add(1L);
+    buf.add(2L);
+    assertArrayEquals(new long[] {1L, 2L}, buf.toArray());
+    buf.add(3L);
+    buf.add(4L);
+    assertEquals(3, buf.size());
+    assertArrayEquals(new long[] {2L, 3L, 4L}, buf.toArray());
+
+    buf = new LongRingBuffer(3, true, 5L);
+    assertArrayEquals(new long[] {5L, 5L, 5L}, buf.toArray());
+    buf.add(6L);
+    assertArrayEquals(new long[] {5L, 5L, 6L}, buf.toArray());
+  }
+
+  @Test
+  public void testDoubleRingBuffer() {
+    DoubleRingBuffer buf = new DoubleRingBuffer(3, false);
+    assertEquals(0, buf.size());
+    assertArrayEquals(new double[0], buf.toArray(), 0);
+    buf.add(1.5);
+    buf.add(-2.5);
+    assertArrayEquals(new double[] {1.5, -2.5}, buf.toArray(), 0);
+    buf.add(Double.NaN);
+    buf.add(4.0);
+    assertArrayEquals(new double[] {-2.5, Double.NaN, 4.0}, buf.toArray(), 0);
+
+    buf = new DoubleRingBuffer(2, true, 0.5);
+    assertArrayEquals(new double[] {0.5, 0.5}, buf.toArray(), 0);
+  }
+
+  @Test
+  public void testLongRingBufferSums() {
+    LongRingBuffer buf = new LongRingBuffer(4, false);
+    assertEquals(0, buf.sum());
+    assertEquals(0, buf.sum(2));
+    buf.add(1L);
+    assertEquals(1, buf.sum());
+    assertEquals(1, buf.sum(2));
+    buf.add(2L);
+    buf.add(3L);
+    assertEquals(6, buf.sum());
+    assertEquals(5, buf.sum(2));
+    assertEquals(0, buf.sum(0));
+    buf.add(4L);
+    buf.add(5L);
+    buf.add(6L);
+    assertEquals(18, buf.sum());
+    assertEquals(6, buf.sum(1));
+    assertEquals(11, buf.sum(2));
+    for (int i = 0; i < 1000; i++) {
+      buf.add(Long.MAX_VALUE);
+    }
+    buf.add(1L);
+    buf.add(2L);
+    assertEquals(3, buf.sum(2));
+
+    buf = new LongRingBuffer(3, false, 10L);
+    assertEquals(30, buf.sum());
+    buf.add(1L);
+    assertEquals(21, buf.sum());
+    assertEquals(11, buf.sum(2));
+
+    // multi-writer mode computes sums from a snapshot
+    buf = new LongRingBuffer(3, true, 10L);
+    buf.add(1L);
+    assertEquals(21, buf.sum());
+    assertEquals(11, buf.sum(2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLongRingBufferSumWindowTooLarge() {
+    new LongRingBuffer(3, false).sum(4);
+  }
+
+  @Test
+  public void testDoubleRingBufferSums() {
+    DoubleRingBuffer buf = new DoubleRingBuffer(3, false);
+    assertEquals(0, buf.sum(), 0);
+    buf.add(0.5);
+    buf.add(1.5);
+    assertEquals(2.0, buf.sum(), 0);
+    buf.add(2.5);
+    buf.add(3.5);
+    assertEquals(7.5, buf.sum(), 0);
+    assertEquals(3.5, buf.sum(1), 0);
+
+    buf = new DoubleRingBuffer(3, true, 1.0);
+    buf.add(0.5);
+    assertEquals(2.5, buf.sum(), 0);
+  }
+
+  @Test
+  public void testDoubleRingBufferSumsAfterEviction() {
+    DoubleRingBuffer buf = new DoubleRingBuffer(4, false);
+    buf.add(1.0);
+    buf.add(Double.NaN);
+    assertTrue(Double.isNaN(buf.sum()));
+    assertEquals(Double.NaN, buf.sum(1), 0);
+    buf.add(Double.POSITIVE_INFINITY);
+    buf.add(2.0);
+    assertTrue(Double.isNaN(buf.sum()));
+    assertEquals(2.0, buf.sum(1), 0);
+    buf.add(3.0);
+    buf.add(4.0);
+    assertEquals(Double.POSITIVE_INFINITY, buf.sum(), 0);
+    buf.add(5.0);
+    assertEquals(14.0, buf.sum(), 0);
+    assertEquals(9.0, buf.sum(2), 0);
+
+    buf.add(1e20);
+    for (int i = 0; i < 3; i++) {
+      buf.add(0.1);
+    }
+    assertEquals(1e20, buf.sum(), 0);
+    buf.add(0.1);
+    assertEquals(0.4, buf.sum(), 1e-15);
+    assertEquals(0.2, buf.sum(2), 1e-15);
+
+    buf.add(Double.NEGATIVE_INFINITY);
+    buf.add(-1.0);
+    buf.add(-2.0);
+    buf.add(-3.0);
+    assertEquals(-6.0, buf.sum(3), 0);
+    assertEquals(Double.NEGATIVE_INFINITY, buf.sum(), 0);
+    buf.add(-4.0);
+    assertEquals(-10.0, buf.sum(), 0);
+  }
+
+  @Test
+  public void testConcurrentWriters() throws Exception {
+    int threads = 4;
+    int perThread = 100_000;
+    LongRingBuffer buf = new LongRingBuffer(1000);
+    ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.submit(() -> {
+        for (int i = 1; i <= perThread; i++) {
+          buf.add(i);
+        }
+        done.countDown();
+      });
+    }
+    // snapshots taken while writers are active must only contain written values
+    Future<?> reader = executor.submit(() -> {
+      while (done.getCount() > 0) {
+        for (long value : buf.toArray()) {
+          assertTrue(value > 0 && value <= perThread);
+        }
+      }
+    });
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+    reader.get(30, TimeUnit.SECONDS);
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    assertEquals((long) threads * perThread, buf.count());
+    assertEquals(1000, buf.size());
+    long[] values = buf.toArray();
+    assertEquals(1000, values.length);
+    for (long value : values) {
+      assertTrue(value > 0 && value <= perThread);
+    }
+  }
+
+  @Test
+  public void testLappedWriter() throws Exception {
+    LongRingBuffer buf = new LongRingBuffer(2);
+    // a writer that claimed the first slot and got delayed before storing its value
+    long sequence = buf.beginWrite();
+    assertEquals(0, sequence);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<?> writer = executor.submit(() -> {
+      buf.add(2);
+      buf.add(3);
+    });
+    Thread.sleep(100);
+    assertFalse(writer.isDone());
+    buf.endWrite(sequence);
+    writer.get(30, TimeUnit.SECONDS);
+    executor.shutdown();
+    assertArrayEquals(new long[] {2, 3}, buf.toArray());
+  }
+
+  @Test
+  public void testSumsWithConcurrentReader() throws Exception {
+    LongRingBuffer buf = new LongRingBuffer(100, false, 1L);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<?> reader = executor.submit(() -> {
+      for (int i = 0; i < 100_000; i++) {
+        assertEquals(100, buf.sum());
+        assertEquals(10, buf.sum(10));
+      }
+    });
+    while (!reader.isDone()) {
+      buf.add(1L);
+    }
+    reader.get();
+    executor.shutdown();
+  }
+
+  @Test
+  public void testSnapshotIsUnmodifiable() {
+    ConcurrentEvictingRingBuffer<String> buf = new ConcurrentEvictingRingBuffer<>(2);
+    buf.add("a");
+    List<String> snapshot = buf.toList();
+    buf.add("b");
+    assertEquals(1, snapshot.size());
+    try {
+      snapshot.add("c");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+}
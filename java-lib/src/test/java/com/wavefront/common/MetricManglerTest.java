@@ -80,5 +80,26 @@ public class MetricManglerTest {
     }
   }
 
+  @Test
+  public void testDelimitersAndEmptySegments() {
+    MetricMangler mangler = new MetricMangler("3,1", "_-", "2");
+    MetricMangler.MetricComponents c = mangler.extractComponents("us-west.hosts.sjc_123.cpu..1m.");
+    assertEquals("cpu..1m", c.metric);
+    assertEquals("sjc.123.us.west", c.source);
+    assertEquals(null, c.annotations);
+
+    mangler = new MetricMangler(null, null, null);
+    assertEquals("cpu.loadavg", mangler.extractComponents("..cpu.loadavg").metric);
+    assertEquals("", mangler.extractComponents("...").metric);
+    c = mangler.extractComponents("cpu.loadavg;foo=bar;;boo=baz;;");
+    assertEquals("cpu.loadavg", c.metric);
+    assertEquals(3, c.annotations.length);
+    assertEquals("", c.annotations[1]);
+    assertEquals("boo=baz", c.annotations[2]);
+  }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooFewSegments() {
+    new MetricMangler("3", null, null).extractComponents("hosts.sjc123.");
+  }
 }
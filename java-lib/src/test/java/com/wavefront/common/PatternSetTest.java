@@ -0,0 +1,82 @@
+package com.wavefront.common;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PatternSetTest {
+  private static final List<String> PATTERNS = ImmutableList.of("test", "*auth*prod*",
+      "hello*world*hello*world", "cpu.*", "*.count", "Foo*");
+
+  @Test
+  public void testMatches() {
+    PatternSet set = PatternSet.compile(PATTERNS, false);
+    assertEquals(6, set.size());
+    assertEquals(bits(0), set.matches("test"));
+    assertEquals(bits(1), set.matches("auth.2490349prod"));
+    assertEquals(bits(), set.matches("prod.auth.auth"));
+    assertEquals(bits(2), set.matches("helloworworldldhelloworld"));
+    assertEquals(bits(3, 4), set.matches("cpu.count"));
+    assertEquals(bits(4), set.matches("requests.count"));
+    assertEquals(bits(5), set.matches("Foo.bar"));
+    assertEquals(bits(), set.matches("foo.bar"));
+    assertEquals(bits(), set.matches(""));
+    assertTrue(set.matchesAny("cpu.load"));
+    assertFalse(set.matchesAny("tes"));
+  }
+
+  @Test
+  public void testMatchesCaseInsensitive() {
+    PatternSet set = PatternSet.compile(PATTERNS, true);
+    assertEquals(bits(0), set.matches("TEST"));
+    assertEquals(bits(3, 4), set.matches("CPU.Count"));
+    assertEquals(bits(5), set.matches("foo.bar"));
+  }
+
+  @Test
+  public void testSameResultsAsPatternMatchPredicate() {
+    List<String> inputs = ImmutableList.of("test", "authprod", "auth.x.prod.y", "cpu.load",
+        "helloworldhelloworld", "helloworld", "a.count", "cpu.count", "", "x", "Foo");
+    PatternSet set = PatternSet.compile(PATTERNS, false);
+    for (String input : inputs) {
+      BitSet expected = new BitSet();
+      for (int i = 0; i < PATTERNS.size(); i++) {
+        if (PatternMatchPredicate.buildPredicate(PATTERNS.get(i), false).test(input)) {
+          expected.set(i);
+        }
+      }
+      assertEquals(input, expected, set.matches(input));
+    }
+  }
+
+  @Test
+  public void testStateCacheLimit() {
+    PatternSet set = PatternSet.compile(PATTERNS, false, 2);
+    assertEquals(bits(1), set.matches("auth.2490349prod"));
+    assertEquals(bits(3, 4), set.matches("cpu.count"));
+    assertEquals(bits(3, 4), set.matches("cpu.count"));
+    assertEquals(2, set.getCachedStates());
+  }
+
+  @Test
+  public void testEmptySet() {
+    PatternSet set = PatternSet.compile(ImmutableList.of(), false);
+    assertEquals(bits(), set.matches("test"));
+    assertFalse(set.matchesAny(""));
+  }
+
+  private static BitSet bits(int... ids) {
+    BitSet result = new BitSet();
+    for (int id : ids) {
+      result.set(id);
+    }
+    return result;
+  }
+}
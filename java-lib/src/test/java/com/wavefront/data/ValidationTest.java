@@ -26,7 +26,9 @@ import wavefront.report.ReportLog;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assert.assertThrows;
@@ -140,6 +142,24 @@ public class ValidationTest {
 
     input = "as'df";
     Assert.assertFalse(Validation.charactersAreValid(input));
+
+    // non-ASCII characters other than delta prefixes
+    input = "metré";
+    Assert.assertFalse(Validation.charactersAreValid(input));
+
+    input = "~~metric";
+    Assert.assertFalse(Validation.charactersAreValid(input));
+  }
+
+  @Test
+  public void testLogIllegalChars() {
+    Assert.assertTrue(Validation.logCharactersAreValid("log_Key9"));
+    Assert.assertFalse(Validation.logCharactersAreValid("9key"));
+    Assert.assertFalse(Validation.logCharactersAreValid("_key"));
+    Assert.assertFalse(Validation.logCharactersAreValid("key_"));
+    Assert.assertFalse(Validation.logCharactersAreValid("log.key"));
+    Assert.assertFalse(Validation.logCharactersAreValid("logé"));
+    Assert.assertFalse(Validation.logCharactersAreValid(""));
   }
 
   @Test
@@ -167,6 +187,36 @@ public class ValidationTest {
     Validation.validateSpan(span, config);
   }
 
+  @Test
+  public void testValidationConfigChange() {
+    ReportMetric point = getValidPoint();
+    Validation.validateMetric(point, config);
+    // same config instance, updated limit: compiled rules have to be refreshed
+    config.setMetricLengthLimit(10);
+    try {
+      Validation.validateMetric(point, config);
+      fail();
+    } catch (IllegalArgumentException iae) {
+      assertTrue(iae.getMessage().contains("WF-408"));
+    }
+    config.updateFrom(new ValidationConfiguration());
+    Validation.validateMetric(point, config);
+  }
+
+  @Test
+  public void testCompiledPerConfig() {
+    ValidationConfiguration other = new ValidationConfiguration().setMetricLengthLimit(10);
+    CompiledValidator compiled = Validation.compile(config);
+    CompiledValidator otherCompiled = Validation.compile(other);
+    // alternating between configurations doesn't recompile them
+    assertSame(compiled, Validation.compile(config));
+    assertSame(otherCompiled, Validation.compile(other));
+    assertSame(compiled, Validation.compile(config));
+    other.setMetricLengthLimit(20);
+    assertNotSame(otherCompiled, Validation.compile(other));
+    assertSame(compiled, Validation.compile(config));
+  }
+
   @Test
   public void testInvalidPointsWithValidationConfig() {
     ReportMetric point = getValidPoint();
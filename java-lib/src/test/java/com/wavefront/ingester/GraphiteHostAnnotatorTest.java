@@ -8,7 +8,13 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import io.netty.channel.embedded.EmbeddedChannel;
+import wavefront.report.ReportMetric;
+
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * Tests for GraphiteHostAnnotator.
@@ -70,6 +76,56 @@ public class GraphiteHostAnnotatorTest {
     assertEquals("test.metric 1 foo=bar source=\"test.host.com\"", out.get(0));
   }
 
+  @Test
+  public void testSourceTagWithoutValue() throws Exception {
+    GraphiteHostAnnotator handler = new GraphiteHostAnnotator("test.host.com", emptyCustomSourceTags);
+    List<Object> out = new LinkedList<Object>();
+    String msg = "test.metric 1 source= foo=bar";
+    handler.decode(null, msg, out);
+    assertEquals(msg + " source=\"test.host.com\"", out.get(0));
+    out.clear();
+    msg = "test.metric 1 host=";
+    handler.decode(null, msg, out);
+    assertEquals(msg + " source=\"test.host.com\"", out.get(0));
+  }
+
+  @Test
+  public void testOverlappingCustomTags() throws Exception {
+    List<String> customSourceTags = new ArrayList<String>();
+    customSourceTags.add("hostname");
+    customSourceTags.add("name");
+    GraphiteHostAnnotator handler = new GraphiteHostAnnotator("test.host.com", customSourceTags);
+    assertTrue(handler.hasSourceTag("test.metric 1 hostname=foo"));
+    assertTrue(handler.hasSourceTag("test.metric 1 myname=foo"));
+    assertTrue(handler.hasSourceTag("test.metric 1 host= name=foo"));
+    assertFalse(handler.hasSourceTag("test.metric 1 hostname foo=bar"));
+    assertFalse(handler.hasSourceTag("test.metric 1 sourcename"));
+  }
+
+  @Test
+  public void testSourceNotAppended() {
+    EmbeddedChannel channel = new EmbeddedChannel(new GraphiteHostAnnotator("test.host.com",
+        emptyCustomSourceTags, false));
+    ReportMetricDecoder decoder = new ReportMetricDecoder(
+        GraphiteHostAnnotator.defaultHostSupplier(channel), emptyCustomSourceTags);
+    String msg = "test.metric 1 1234567890";
+    assertTrue(channel.writeInbound(msg));
+    String line = channel.readInbound();
+    assertSame(msg, line);
+    List<ReportMetric> out = new ArrayList<>();
+    decoder.decode(line, out, "customer");
+    assertEquals("test.host.com", out.get(0).getHost());
+
+    msg = "test.metric 1 1234567890 source=foo";
+    assertTrue(channel.writeInbound(msg));
+    line = channel.readInbound();
+    assertSame(msg, line);
+    out.clear();
+    decoder.decode(line, out, "customer");
+    assertEquals("foo", out.get(0).getHost());
+    assertFalse(channel.finish());
+  }
+
   @Ignore
   @Test
   public void testBenchmark() throws Exception {
@@ -10,6 +10,7 @@ import com.wavefront.data.AnnotationUtils;
 import wavefront.report.ReportMetric;
 
 import static junit.framework.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 /**
@@ -109,4 +110,13 @@ public class OpenTSDBMetricDecoderTest {
     assertEquals("/vehicle_2554-test/GOOD", point.getHost());
     assertEquals("/vehicle_2554-test/BAD", AnnotationUtils.getValue(point.getAnnotations(), "some_tag"));
   }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testDecodeBatchNotSupported() {
+    OpenTSDBMetricDecoder decoder = new OpenTSDBMetricDecoder("localhost", new ArrayList<>());
+    assertFalse(decoder.supportsBatch());
+    decoder.decodeBatch("put metric.one 1 1 host=a", new ArrayList<>(), "customer", null,
+        parser -> {
+        });
+  }
 }
@@ -0,0 +1,69 @@
+package com.wavefront.ingester;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.io.BaseEncoding;
+import com.wavefront.common.MetricMangler;
+
+import wavefront.report.ReportMetric;
+
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PickleProtocolMetricDecoderTest {
+  // [('hosts.sjc1.cpu.loadavg', (1600000000, 1.5)), ('hosts.sjc2.mem.free', (1600000001.9, 42)),
+  //  ('hosts.sjc3.disk', (1600000002, None))]
+  private static final String PROTOCOL_0 = "286c70300a2856686f7374732e736a63312e6370752e6c6f61" +
+      "646176670a70310a2849313630303030303030300a46312e350a7470320a7470330a612856686f7374732e" +
+      "736a63322e6d656d2e667265650a70340a2846313630303030303030312e390a4934320a7470350a747036" +
+      "0a612856686f7374732e736a63332e6469736b0a70370a2849313630303030303030320a4e7470380a7470" +
+      "390a612e";
+  private static final String PROTOCOL_2 = "80025d7100285816000000686f7374732e736a63312e637075" +
+      "2e6c6f616461766771014a00105e5f473ff80000000000008671028671035813000000686f7374732e736a" +
+      "63322e6d656d2e6672656571044741d7d7840079999a4b2a867105867106580f000000686f7374732e736a" +
+      "63332e6469736b71074a02105e5f4e867108867109652e";
+  private static final String PROTOCOL_4 = "80049571000000000000005d94288c16686f7374732e736a63" +
+      "312e6370752e6c6f6164617667944a00105e5f473ff8000000000000869486948c13686f7374732e736a63" +
+      "322e6d656d2e66726565944741d7d7840079999a4b2a869486948c0f686f7374732e736a63332e6469736b" +
+      "944a02105e5f4e86948694652e";
+
+  private final PickleProtocolMetricDecoder decoder = new PickleProtocolMetricDecoder(
+      "localhost", emptyList(), new MetricMangler("2", "", "1"), 2004);
+
+  @Test
+  public void testDecode() {
+    // protocol 0 is not handled by the streaming reader and falls back to the unpickler
+    for (String payload : new String[] {PROTOCOL_0, PROTOCOL_2, PROTOCOL_4}) {
+      List<ReportMetric> out = new ArrayList<>();
+      decoder.decode(BaseEncoding.base16().lowerCase().decode(payload), out, "customer", null);
+      assertEquals(2, out.size());
+      assertEquals("cpu.loadavg", out.get(0).getMetric());
+      assertEquals("sjc1", out.get(0).getHost());
+      assertEquals("customer", out.get(0).getCustomer());
+      assertEquals(1600000000000L, (long) out.get(0).getTimestamp());
+      assertEquals(1.5, out.get(0).getValue(), 1e-9);
+      assertEquals("mem.free", out.get(1).getMetric());
+      assertEquals("sjc2", out.get(1).getHost());
+      assertEquals(1600000001000L, (long) out.get(1).getTimestamp());
+      assertEquals(42.0, out.get(1).getValue(), 1e-9);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecodeNotAList() {
+    // {'a': 1}, protocol 2
+    decoder.decode(BaseEncoding.base16().lowerCase().decode("80027d710058010000006171014b01732e"),
+        new ArrayList<>(), "customer", null);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testDecodeBatchNotSupported() {
+    assertFalse(decoder.supportsBatch());
+    decoder.decodeBatch("metric 1", new ArrayList<>(), "customer", null, parser -> {
+    });
+  }
+}
@@ -402,4 +402,22 @@ public class ReportHistogramDecoderTest {
     // Verify we have less centroids after compression.
     assertThat(centroidsLimit).isGreaterThan(h.getBins().size());
   }
+
+  @Test
+  public void testDecodeBatch() {
+    ReportHistogramDecoder decoder = new ReportHistogramDecoder();
+    List<ReportHistogram> out = new ArrayList<>();
+    List<String> errors = new ArrayList<>();
+    decoder.decodeBatch("!M 1471988653 #3 123.237 TestMetric source=Test key=value\n" +
+            "!M 1471988653 #3 TestMetric source=Test\n" +
+            "!H 1471988653 #1 1.5 #2 2.5 TestMetric2 source=Test", out, "customer",
+        new IngesterContext.Builder().throwIfTooManyHistogramCentroids(1).build(),
+        parser -> errors.add(parser.getErrorMessage()));
+    assertEquals(1, out.size());
+    assertThat(out.get(0).getMetric()).isEqualTo("TestMetric");
+    assertThat(out.get(0).getTimestamp()).isEqualTo(1471988640000L);
+    assertEquals(2, errors.size());
+    assertThat(errors.get(0)).isEqualTo("Expected: centroid value, got: TestMetric");
+    assertThat(errors.get(1)).isEqualTo("Too many centroids (max: 1)");
+  }
 }
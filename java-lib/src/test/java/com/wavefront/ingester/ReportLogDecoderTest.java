@@ -1,6 +1,7 @@
 package com.wavefront.ingester;
 
 import com.wavefront.common.Clock;
+import com.wavefront.data.ParseException;
 import org.junit.Assert;
 import org.junit.Test;
 import wavefront.report.ReportLog;
@@ -53,10 +54,13 @@ public class ReportLogDecoderTest {
         ReportLogDecoder decoder = new ReportLogDecoder(defaultHostSupplier, null, null, null, null,null);
         List<ReportLog> out = new ArrayList<>();
 
-        decoder.decode("", out, "unitTestCustomer", null);
-        assertEquals(out.size(), 1);
-        ReportLog log = out.get(0);
-        assertNull(log);
+        try {
+            decoder.decode("", out, "unitTestCustomer", null);
+            fail();
+        } catch (ParseException e) {
+            // expected
+        }
+        assertEquals(out.size(), 0);
 
         // The timestamp is not numerical
         decoder = new ReportLogDecoder(defaultHostSupplier, null, null, null, null,null);
@@ -64,10 +68,30 @@ public class ReportLogDecoderTest {
 
         decoder.decode("{\"timestamp\": \"asdf\"}", out, "unitTestCustomer", null);
         assertEquals(out.size(), 1);
-        log = out.get(0);
+        ReportLog log = out.get(0);
         Assert.assertNotEquals(log.getTimestamp(), "asdf");
     }
 
+    // Tests a batch with a malformed line in the middle
+    @Test
+    public void testDecodeBatch() {
+        ReportLogDecoder decoder = new ReportLogDecoder(defaultHostSupplier, null, null, null, null, null);
+        List<ReportLog> out = new ArrayList<>();
+        List<StringParser> errors = new ArrayList<>();
+
+        decoder.decodeBatch("{\"message\": \"first\"}\n" +
+                "{\"message\": \"broken\"\n" +
+                "{\"message\": \"second\"}", out, "unitTestCustomer", null, parser -> {
+            assertEquals(ParseError.INVALID_JSON, parser.getError());
+            assertEquals("{\"message\": \"broken\"", parser.getLine());
+            errors.add(parser);
+        });
+        assertEquals(1, errors.size());
+        assertEquals(2, out.size());
+        assertEquals("first", out.get(0).getMessage());
+        assertEquals("second", out.get(1).getMessage());
+    }
+
     // Tests a basic message with no custom formatting
     @Test
     public void testBasicMessage() {
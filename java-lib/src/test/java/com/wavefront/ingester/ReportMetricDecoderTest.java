@@ -4,14 +4,18 @@ import com.google.common.collect.Lists;
 
 import org.junit.Test;
 
+import io.netty.buffer.Unpooled;
+
 import java.util.ArrayList;
 import java.util.List;
 
 import wavefront.report.ReportMetric;
 
 import static com.wavefront.data.AnnotationUtils.getValue;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.emptyList;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 /**
@@ -287,4 +291,59 @@ public class ReportMetricDecoderTest {
       fail("should not throw");
     }
   }
+
+  @Test
+  public void testDecodeBatch() {
+    ReportMetricDecoder decoder = new ReportMetricDecoder(() -> "localhost", emptyList());
+    List<ReportMetric> out = new ArrayList<>();
+    List<String> errors = new ArrayList<>();
+    List<ParseError> errorCodes = new ArrayList<>();
+    String payload = "metric.one 1 source=a\r\n\n  \nmetric.two invalid source=b\n" +
+        "metric.three 3 1234567890 source=\"c\nmetric.four 4 tag=\"x y\"";
+    decoder.decodeBatch(payload, out, "customer", null, parser -> {
+      errors.add(parser.getLine());
+      errorCodes.add(parser.getError());
+    });
+    assertEquals(2, out.size());
+    assertEquals("metric.one", out.get(0).getMetric());
+    assertEquals("a", out.get(0).getHost());
+    assertEquals("metric.four", out.get(1).getMetric());
+    assertEquals("localhost", out.get(1).getHost());
+    assertEquals("x y", getValue(out.get(1).getAnnotations(), "_tag"));
+    assertEquals(2, errors.size());
+    assertEquals("metric.two invalid source=b", errors.get(0));
+    assertEquals("metric.three 3 1234567890 source=\"c", errors.get(1));
+    assertEquals(ParseError.INVALID_VALUE, errorCodes.get(0));
+    assertEquals(ParseError.UNMATCHED_QUOTE, errorCodes.get(1));
+
+    out.clear();
+    errors.clear();
+    decoder.decodeBatch(Unpooled.copiedBuffer(payload, UTF_8), out, "customer", null,
+        parser -> errors.add(parser.getLine()));
+    assertEquals(2, out.size());
+    assertEquals(2, errors.size());
+  }
+
+  @Test
+  public void testStringInterner() {
+    StringInterner interner = new StringInterner(1024);
+    IngesterContext ctx = new IngesterContext.Builder().withStringInterner(interner).build();
+    ReportMetricDecoder decoder = new ReportMetricDecoder(null, emptyList());
+    List<ReportMetric> out = new ArrayList<>();
+    decoder.decode("metric.name 1 source=host1 env=prod", out, "customer", ctx);
+    decoder.decode("metric.name 2 source=host2 \"env\"=dev", out, "customer", ctx);
+    decoder.decodeBatch(Unpooled.copiedBuffer("metric.name 3 source=host3 env=prod", UTF_8),
+        out, "customer", ctx, parser -> fail(parser.getErrorMessage()));
+    assertEquals(3, out.size());
+    assertSame(out.get(0).getMetric(), out.get(1).getMetric());
+    assertSame(out.get(0).getMetric(), out.get(2).getMetric());
+    assertSame(out.get(0).getAnnotations().get(0).getKey(),
+        out.get(1).getAnnotations().get(0).getKey());
+    assertSame(out.get(0).getAnnotations().get(0).getKey(),
+        out.get(2).getAnnotations().get(0).getKey());
+    assertEquals("dev", getValue(out.get(1).getAnnotations(), "env"));
+    // metric name, "source" and "env" keys are only looked up in the input once
+    assertEquals(3, interner.getMisses());
+    assertEquals(6, interner.getHits());
+  }
 }
@@ -1,5 +1,6 @@
 package com.wavefront.ingester;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.function.Function;
 
@@ -8,9 +9,13 @@ import org.junit.Test;
 
 import com.google.common.collect.ImmutableList;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import wavefront.report.Annotation;
 import wavefront.report.ReportMetric;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * @author Andrew Kao (andrew@wavefront.com), Jason Bau (jbau@wavefront.com), vasily@wavefront.com
  */
@@ -41,4 +46,31 @@ public class ReportMetricSerializerTest {
             ImmutableList.of(new Annotation("foo\"", "\"bar"), new Annotation("bo\"o", "baz"))))
     );
   }
+
+  @Test
+  public void testWriteReportMetric() throws Exception {
+    ReportMetric metric = new ReportMetric("some\"metric", 1469751813000L, -1.5E-5, "hôst",
+        "table", ImmutableList.of(new Annotation("foo\"", "\"bär∆"), new Annotation("boo", "baz")));
+    String expected = ReportMetricSerializer.metricToString(metric);
+    Assert.assertEquals(expected,
+        ReportMetricSerializer.appendMetric(new StringBuilder(), metric).toString());
+
+    ByteBuf buf = Unpooled.buffer(4);
+    buf.writeByte('>');
+    ReportMetricSerializer.writeMetric(buf, metric);
+    Assert.assertEquals(">" + expected, buf.toString(UTF_8));
+
+    ByteBuffer buffer = ByteBuffer.allocate(256);
+    buffer.put((byte) '>');
+    ReportMetricSerializer.writeMetric(buffer, metric);
+    buffer.flip();
+    Assert.assertEquals(">" + expected, UTF_8.decode(buffer).toString());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testWriteReportMetricOverflow() {
+    ReportMetricSerializer.writeMetric(ByteBuffer.allocate(16),
+        new ReportMetric("some metric", 1469751813000L, 10.0, "host", "table",
+            ImmutableList.of()));
+  }
 }
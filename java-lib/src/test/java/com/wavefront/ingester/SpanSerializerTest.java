@@ -6,9 +6,12 @@ import org.junit.Test;
 
 import java.util.function.Function;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import wavefront.report.Annotation;
 import wavefront.report.Span;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -82,4 +85,21 @@ public class SpanSerializerTest {
     assertEquals("\"testSpanName2\" source=\"spanSource\" spanId=\"4217104a-690d-4927-baff-d9aa779414c2\" " +
         "traceId=\"d5355bf7-fc8d-48d1-b761-75b170f396e0\" 1532012145123456 1111111", serializer.apply(span));
   }
+
+  @Test
+  public void testWriteSpan() {
+    Span span = Span.newBuilder()
+        .setCustomer("dummy")
+        .setSpanId("4217104a-690d-4927-baff-d9aa779414c2")
+        .setTraceId("d5355bf7-fc8d-48d1-b761-75b170f396e0")
+        .setName("tëstSpanName")
+        .setSource("spanSource")
+        .setStartMillis(1532012145123456L)
+        .setDuration(1111111L)
+        .setAnnotations(ImmutableList.of(new Annotation("tagk1", "tag\"v\"1")))
+        .build();
+    ByteBuf buf = Unpooled.buffer();
+    SpanSerializer.writeSpan(buf, span);
+    assertEquals(serializer.apply(span), buf.toString(UTF_8));
+  }
 }
@@ -0,0 +1,39 @@
+package com.wavefront.ingester;
+
+import org.junit.Test;
+
+import io.netty.util.AsciiString;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class StringInternerTest {
+
+  @Test
+  public void testIntern() {
+    StringInterner interner = new StringInterner(100);
+    assertEquals(128, interner.getCapacity());
+    String first = interner.intern("metric.name value", 0, 11);
+    assertEquals("metric.name", first);
+    assertSame(first, interner.intern(new AsciiString("x metric.name"), 2, 13));
+    assertSame(first, interner.intern(new String("metric.name")));
+    assertEquals(1, interner.getMisses());
+    assertEquals(2, interner.getHits());
+  }
+
+  @Test
+  public void testBounded() {
+    StringInterner interner = new StringInterner(1, 4);
+    String a = interner.intern("aaa");
+    String b = interner.intern("bbb");
+    // single slot: "bbb" evicts "aaa"
+    assertSame(b, interner.intern(new String("bbb")));
+    assertNotSame(a, interner.intern(new String("aaa")));
+    // too long to be pooled
+    String longString = interner.intern("long string tail", 0, 11);
+    assertNotSame(longString, interner.intern("long string tail", 0, 11));
+    assertEquals(1, interner.getHits());
+    assertEquals(3, interner.getMisses());
+  }
+}
@@ -0,0 +1,197 @@
+package com.wavefront.ingester;
+
+import com.wavefront.data.ParseException;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AsciiString;
+import wavefront.report.ReportMetric;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StringParserTest {
+
+  @Test
+  public void testTokens() {
+    StringParser parser = new StringParser("metric.name 1.5 \"quoted \\\"value\\\"\" " +
+        "key='val' #  ");
+    assertEquals("metric.name", parser.peek());
+    assertEquals("metric.name", parser.next());
+    assertEquals("1.5", parser.next());
+    assertEquals("quoted \"value\"", parser.next());
+    assertEquals("key", parser.next());
+    assertEquals("=", parser.next());
+    assertEquals("val", parser.next());
+    assertEquals("#", parser.next());
+    assertFalse(parser.hasNext());
+    assertNull(parser.next());
+  }
+
+  @Test
+  public void testOffsetsAndNumbers() {
+    StringParser parser = new StringParser("  name -12.250 +7 1e3 0.1 42 12345678901");
+    assertTrue(parser.nextToken());
+    assertEquals(2, parser.tokenStart());
+    assertEquals(6, parser.tokenEnd());
+    assertTrue(parser.tokenEquals("NAME", false));
+    assertFalse(parser.tokenEquals("NAME", true));
+    assertTrue(parser.nextToken());
+    assertEquals(-12.25, parser.tokenAsDouble(), 0);
+    assertTrue(parser.nextToken());
+    assertEquals(7, parser.tokenAsInt());
+    assertTrue(parser.nextToken());
+    assertEquals(1000.0, parser.tokenAsDouble(), 0);
+    assertTrue(parser.nextToken());
+    assertEquals(Double.parseDouble("0.1"), parser.tokenAsDouble(), 0);
+    assertTrue(parser.peekToken());
+    assertTrue(parser.tokenStartsWithDigit());
+    assertTrue(parser.nextToken());
+    assertEquals(42, parser.tokenAsInt());
+    assertTrue(parser.nextToken());
+    try {
+      parser.tokenAsInt();
+      fail();
+    } catch (NumberFormatException expected) {
+      // expected
+    }
+    assertEquals(12345678901d, parser.tokenAsDouble(), 0);
+    assertFalse(parser.nextToken());
+  }
+
+  @Test
+  public void testTokenAsStringInterned() {
+    StringInterner interner = new StringInterner(16);
+    StringParser parser = new StringParser("key=value \"key\"=value");
+    assertTrue(parser.nextToken());
+    String key = parser.tokenAsString(interner);
+    assertEquals("key", key);
+    // the pooled instance is cached for the current token
+    assertSame(key, parser.tokenAsString(interner));
+    assertEquals(1, interner.getMisses());
+    assertEquals(0, interner.getHits());
+    parser.next();
+    parser.next();
+    assertTrue(parser.nextToken());
+    assertSame(key, parser.tokenAsString(interner));
+    assertSame(key, parser.tokenAsString(interner));
+    assertEquals(1, interner.getMisses());
+    assertEquals(1, interner.getHits());
+  }
+
+  @Test
+  public void testUnmatchedQuote() {
+    StringParser parser = new StringParser("metric \"value");
+    parser.next();
+    try {
+      parser.next();
+      fail();
+    } catch (ParseException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testByteBuf() {
+    ByteBuf ascii = Unpooled.copiedBuffer("metric 1 source=\"host\"", UTF_8);
+    CharSequence input = StringParser.asCharSequence(ascii);
+    assertTrue(input instanceof AsciiString);
+    assertEquals(0, ascii.readerIndex());
+    StringParser parser = new StringParser(input);
+    assertEquals("metric", parser.next());
+    assertEquals("1", parser.next());
+    assertEquals("source", parser.next());
+    assertEquals("=", parser.next());
+    assertEquals("host", parser.next());
+
+    ByteBuf direct = Unpooled.directBuffer();
+    direct.writeCharSequence("metric 1", UTF_8);
+    assertEquals("metric 1", StringParser.asCharSequence(direct).toString());
+
+    ByteBuf unicode = Unpooled.copiedBuffer("∆metric 1", UTF_8);
+    parser = new StringParser(StringParser.asCharSequence(unicode));
+    assertEquals("∆metric", parser.next());
+    assertEquals("1", parser.next());
+  }
+
+  @Test
+  public void testDriveFromByteBuf() {
+    ByteBuf buf = Unpooled.copiedBuffer("metric.name 93 1234567890.246 source=host tag=\"a b\"",
+        UTF_8);
+    ReportMetric point = ReportMetricIngesterFormatter.newBuilder().
+        text(ReportMetric::setMetric).
+        value(ReportMetric::setValue).
+        optionalTimestamp(ReportMetric::setTimestamp).
+        annotationList(ReportMetric::setAnnotations).
+        build().
+        drive(StringParser.asCharSequence(buf), null, "customer", null, null, null, null, null,
+            null);
+    assertEquals("metric.name", point.getMetric());
+    assertEquals(93.0, point.getValue(), 0);
+    assertEquals(1234567890246L, (long) point.getTimestamp());
+    assertEquals("host", point.getHost());
+    assertEquals("a b", point.getAnnotations().get(0).getValue());
+  }
+
+  @Test
+  public void testErrors() {
+    StringParser parser = new StringParser("metric 1 \"abc");
+    assertTrue(parser.nextToken());
+    assertTrue(parser.nextToken());
+    assertFalse(parser.nextToken());
+    assertEquals(ParseError.UNMATCHED_QUOTE, parser.getError());
+    assertEquals(9, parser.getErrorOffset());
+    assertEquals("Unmatched quote character: (\")", parser.getErrorMessage());
+
+    parser = new StringParser("metric abc");
+    assertTrue(parser.nextToken());
+    assertTrue(parser.nextToken());
+    assertFalse(parser.tokenIsDouble());
+    parser.fail(ParseError.INVALID_VALUE);
+    parser.fail(ParseError.EXTRA_INPUT);
+    assertFalse(parser.peekToken());
+    assertEquals(ParseError.INVALID_VALUE, parser.getError());
+    assertEquals(7, parser.getErrorOffset());
+    assertEquals("Invalid value: abc", parser.getErrorMessage());
+    try {
+      parser.throwIfFailed();
+      fail();
+    } catch (ParseException e) {
+      assertEquals("Invalid value: abc", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testNumberValidation() {
+    StringParser parser = new StringParser("1e10 -Infinity NaN 0x10 1.5d 2147483648 -2147483648 " +
+        "1e 1.2.3 +");
+    parser.nextToken();
+    assertEquals(1e10, parser.tokenAsDouble(), 0);
+    parser.nextToken();
+    assertEquals(Double.NEGATIVE_INFINITY, parser.tokenAsDouble(), 0);
+    parser.nextToken();
+    assertTrue(Double.isNaN(parser.tokenAsDouble()));
+    parser.nextToken();
+    assertFalse(parser.tokenIsDouble());
+    parser.nextToken();
+    assertEquals(1.5, parser.tokenAsDouble(), 0);
+    parser.nextToken();
+    assertFalse(parser.tokenIsInt());
+    parser.nextToken();
+    assertEquals(Integer.MIN_VALUE, parser.tokenAsInt());
+    parser.nextToken();
+    assertFalse(parser.tokenIsDouble());
+    parser.nextToken();
+    assertFalse(parser.tokenIsDouble());
+    parser.nextToken();
+    assertFalse(parser.tokenIsDouble());
+    assertFalse(parser.tokenIsInt());
+  }
+}
@@ -1,6 +1,8 @@
 package com.wavefront.metrics;
 
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -8,14 +10,18 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 import wavefront.report.Histogram;
+import wavefront.report.ReportHistogram;
+import wavefront.report.ReportMetric;
 import wavefront.report.ReportPoint;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.truth.Truth.assertThat;
 import static com.wavefront.metrics.JsonMetricsParser.report;
+import static com.wavefront.metrics.JsonMetricsParser.reportStreaming;
 
 /**
  * Unit tests around {@link JsonMetricsParser}
@@ -119,4 +125,63 @@ public class JsonMetricsParserTest {
     assertThat(points.get(1).getTable()).isEqualTo("customer");
     assertThat(points.get(1).getTimestamp()).isEqualTo(60000L);
   }
+
+  @Test
+  public void testStreamingMatchesTree() throws IOException {
+    String[] payloads = {
+        "{\"a\":1,\"b\":2.5,\"c\":true,\"d\":false,\"e\":\"text\",\"f\":null,\"g\":[1,2]}",
+        "{\"jvm\":{\"memory\":{\"heap\":100,\"non heap\":20},\"threads$123\":5}}",
+        "{\"cpu\":{\"value\":0.5,\"tags\":{\"core\":1,\"idle\":false,\"name\":\"c 1\"}}}",
+        "{\"cpu\":{\"tags\":{\"core\":1},\"value\":{\"user\":1,\"sys\":2}}}",
+        "{\"cpu\":{\"value\":1,\"other\":2},\"mem\":{\"tags\":{\"a\":\"b\"}}}",
+        "{\"cpu\":{\"value\":1,\"tags\":{},\"other\":2}}",
+        "{\"value\":3,\"tags\":{\"top\":\"level\"}}",
+        "{\"test.metric\":{\"count\":3,\"nested\":{\"x\":1},\"bins\":[{\"count\":2," +
+            "\"startMillis\":0,\"durationMillis\":60000,\"means\":[10.0,100.0]," +
+            "\"counts\":[1,1]}],\"after\":4},\"next\":1}",
+        "{\"bins\":[1,2],\"big\":12345678901234567890,\"long\":1234567890123}",
+        "[1,2,3]"
+    };
+    for (String payload : payloads) {
+      List<ReportMetric> treeMetrics = newArrayList();
+      List<ReportHistogram> treeHistograms = newArrayList();
+      JsonNode node = factory.createParser(payload).readValueAsTree();
+      report("customer", "path", node, treeMetrics, treeHistograms, "host", 100L,
+          Collections.singletonMap("env", "test"));
+      List<ReportMetric> metrics = newArrayList();
+      List<ReportHistogram> histograms = newArrayList();
+      reportStreaming("customer", "path", factory.createParser(payload), metrics, histograms,
+          "host", 100L, Collections.singletonMap("env", "test"));
+      assertThat(metrics).isEqualTo(treeMetrics);
+      assertThat(histograms).isEqualTo(treeHistograms);
+    }
+  }
+
+  @Test
+  public void testStreamingParserPosition() throws IOException {
+    JsonParser parser = factory.createParser("[{\"a\":{\"b\":1}},{\"c\":2}]");
+    List<ReportMetric> metrics = newArrayList();
+    List<ReportHistogram> histograms = newArrayList();
+    assertThat(parser.nextToken()).isEqualTo(JsonToken.START_ARRAY);
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      reportStreaming("customer", null, parser, metrics, histograms, "host", 100L,
+          Collections.emptyMap());
+      assertThat(parser.currentToken()).isEqualTo(JsonToken.END_OBJECT);
+    }
+    assertThat(metrics).hasSize(2);
+    assertThat(metrics.get(0).getMetric()).isEqualTo("a.b");
+    assertThat(metrics.get(1).getMetric()).isEqualTo("c");
+  }
+
+  @Test
+  public void testSanitizeMetricKey() {
+    assertThat(JsonMetricsParser.sanitizeMetricKey("simple.name-1_a")).isEqualTo("simple.name-1_a");
+    assertThat(JsonMetricsParser.sanitizeMetricKey("with space/slash")).isEqualTo("with_space_slash");
+    assertThat(JsonMetricsParser.sanitizeMetricKey("tagged$12-3")).isEqualTo("tagged");
+    assertThat(JsonMetricsParser.sanitizeMetricKey("two$dollars$1")).isEqualTo("two_dollars");
+    assertThat(JsonMetricsParser.sanitizeMetricKey("untagged$")).isEqualTo("untagged_");
+    assertThat(JsonMetricsParser.sanitizeMetricKey("untagged$1a")).isEqualTo("untagged_1a");
+    assertThat(JsonMetricsParser.sanitizeMetricKey("multi\nline$1")).isEqualTo("multi_line_1");
+    assertThat(JsonMetricsParser.sanitizeMetricKey("emoji\uD83D\uDE00")).isEqualTo("emoji_");
+  }
 }
@@ -0,0 +1,112 @@
+package com.wavefront.predicates;
+
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.wavefront.common.TaggedMetricName;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CachingRegexMatcherTest {
+
+  @Test
+  public void testApply() {
+    CachingRegexMatcher matcher = new CachingRegexMatcher();
+    assertTrue(matcher.apply("foo123", "foo[0-9]+"));
+    assertTrue(matcher.apply("foo456", "foo[0-9]+"));
+    assertFalse(matcher.apply("foo", "foo[0-9]+"));
+    assertFalse(matcher.apply("FOO123", "foo[0-9]+"));
+    CachingRegexMatcher matcherCI = new CachingRegexMatcher(Pattern.CASE_INSENSITIVE);
+    assertTrue(matcherCI.apply("FOO123", "foo[0-9]+"));
+  }
+
+  @Test
+  public void testEngineSelection() {
+    Predicate<String> re2 = CachingRegexMatcher.compile("^.*ar.*$", 0);
+    assertTrue(CachingRegexMatcher.isRe2(re2));
+    assertTrue(re2.test("bar1-baz"));
+    assertFalse(re2.test("baz"));
+
+    Predicate<String> backreference = CachingRegexMatcher.compile("(a+)b\\1", 0);
+    assertFalse(CachingRegexMatcher.isRe2(backreference));
+    assertTrue(backreference.test("aabaa"));
+    assertFalse(backreference.test("aaba"));
+
+    Predicate<String> lookahead = CachingRegexMatcher.compile("(?=.*[0-9])[a-z0-9]+", 0);
+    assertFalse(CachingRegexMatcher.isRe2(lookahead));
+    assertTrue(lookahead.test("abc1"));
+    assertFalse(lookahead.test("abc"));
+
+    Predicate<String> intersection = CachingRegexMatcher.compile("[a-z&&[^e]]+", 0);
+    assertFalse(CachingRegexMatcher.isRe2(intersection));
+    assertTrue(intersection.test("abc"));
+    assertFalse(intersection.test("abe"));
+
+    assertTrue(CachingRegexMatcher.isRe2(CachingRegexMatcher.compile("[]a]+", 0)));
+    assertTrue(CachingRegexMatcher.isRe2(CachingRegexMatcher.compile("\\[[a-z]\\]", 0)));
+  }
+
+  @Test
+  public void testCatastrophicBacktrackingIsAborted() {
+    Counter aborted = Metrics.newCounter(new TaggedMetricName("regex-cache", "matches-aborted"));
+    Predicate<String> pattern = CachingRegexMatcher.compile("(.*a){12}\\1", 0);
+    assertFalse(CachingRegexMatcher.isRe2(pattern));
+    long before = aborted.count();
+    assertFalse(pattern.test(Strings.repeat("a", 46) + "b"));
+    assertEquals(before + 1, aborted.count());
+    assertFalse(pattern.test(Strings.repeat("a", 46) + "b"));
+    assertEquals(before + 2, aborted.count());
+    assertTrue(pattern.test(Strings.repeat("a", 13)));
+    assertEquals(before + 2, aborted.count());
+  }
+
+  @Test
+  public void testAbortResult() {
+    String hostile = Strings.repeat("a", 46) + "b";
+    String regex = "(.*a){12}\\1";
+    assertFalse(new CachingRegexMatcher().apply(hostile, regex));
+    // e.g. for block rules, an aborted match counts as a match
+    CachingRegexMatcher blocking = new CachingRegexMatcher(0, true);
+    assertTrue(blocking.apply(hostile, regex));
+    assertFalse(blocking.apply("b", regex));
+    assertTrue(CachingRegexMatcher.compile(regex, 0, true).test(hostile));
+  }
+
+  @Test
+  public void testSameResultsAsJavaRegex() {
+    Predicate<String> dot = CachingRegexMatcher.compile("a.b", 0);
+    assertTrue(CachingRegexMatcher.isRe2(dot));
+    assertTrue(dot.test("a-b"));
+    for (String terminator : new String[] {"\n", "\r", "\u0085", "\u2028", "\u2029"}) {
+      assertFalse(dot.test("a" + terminator + "b"));
+    }
+    assertTrue(CachingRegexMatcher.compile("a.b", Pattern.DOTALL).test("a\rb"));
+    assertTrue(CachingRegexMatcher.compile("a$\\s", 0).test("a\n"));
+
+    Predicate<String> whitespace = CachingRegexMatcher.compile("a\\sb", 0);
+    assertTrue(CachingRegexMatcher.isRe2(whitespace));
+    assertTrue(whitespace.test("a\tb"));
+    assertTrue(whitespace.test("a\u000Bb"));
+
+    Predicate<String> vertical = CachingRegexMatcher.compile("a\\vb", 0);
+    assertFalse(CachingRegexMatcher.isRe2(vertical));
+    assertTrue(vertical.test("a\nb"));
+
+    Predicate<String> kelvin = CachingRegexMatcher.compile("\u212A", Pattern.CASE_INSENSITIVE);
+    assertFalse(CachingRegexMatcher.isRe2(kelvin));
+    assertFalse(kelvin.test("k"));
+    assertFalse(CachingRegexMatcher.isRe2(CachingRegexMatcher.compile("(?i)\\x{212A}", 0)));
+    assertTrue(CachingRegexMatcher.isRe2(CachingRegexMatcher.compile("\u212A", 0)));
+    Predicate<String> caseInsensitive = CachingRegexMatcher.compile("k+", Pattern.CASE_INSENSITIVE);
+    assertTrue(CachingRegexMatcher.isRe2(caseInsensitive));
+    assertTrue(caseInsensitive.test("kK"));
+    assertFalse(caseInsensitive.test("k\u212A"));
+  }
+}
@@ -167,6 +167,33 @@ public class PredicateEvalExpressionTest {
     parseAndAssertEq(1, "random() < 1", null);
   }
 
+  @Test
+  public void testConstantFolding() {
+    assertTrue(parsePredicateEvalExpression("2 + 2 * 2") instanceof ConstantExpression);
+    assertTrue(parsePredicateEvalExpression("'abc' + 'def' = 'abcdef'") instanceof
+        ConstantExpression);
+    assertTrue(parsePredicateEvalExpression("'bc' in ('ab', 'bc', 'cd')") instanceof
+        ConstantExpression);
+    assertTrue(parsePredicateEvalExpression("parse('12' + '3', 5) > 100") instanceof
+        ConstantExpression);
+    assertTrue(parsePredicateEvalExpression("if(1 = 1, 'abc', {{foo}}) = 'abc'") instanceof
+        ConstantExpression);
+    // short-circuits on the constant side, doesn't fail on the property accessor
+    assertTrue(parsePredicateEvalExpression("0 and $value > 0") instanceof ConstantExpression);
+    parseAndAssertEq(1, "1 or $value > 0", span);
+    parseAndAssertEq(0, "0 and $value > 0", span);
+    // constant expressions don't look at the entity
+    parseAndAssertEq(1, "'abc'.length() = 3", event);
+    // random() and time() are never folded
+    assertFalse(parsePredicateEvalExpression("random() < 2") instanceof ConstantExpression);
+    assertFalse(parsePredicateEvalExpression("time('now') > 0") instanceof ConstantExpression);
+    // comparisons evaluate to booleans directly
+    assertTrue(parsePredicateEvalExpression("$value > 1") instanceof BooleanExpression);
+    assertTrue(parsePredicateEvalExpression("{{foo}} in ('a', 'b')") instanceof
+        BooleanExpression);
+    assertTrue(parsePredicateEvalExpression("$value > 1 and {{tagk1}} = 'tagv1'").test(point));
+  }
+
   @Test
   public void testUnits() {
     parseAndAssertEq(0.000000000000000000000005, "5y", null);
@@ -449,6 +476,41 @@ public class PredicateEvalExpressionTest {
         span);
   }
 
+  @Test
+  public void testMultiStringMissingTag() {
+    parseAndAssertEq(1, "{{nope}} all equals 'bar'", span);
+    parseAndAssertEq(0, "{{nope}} any equals 'bar'", span);
+    parseAndAssertEq(1, "{{nope}} none equals 'bar'", span);
+    parseAndAssertEq(0, "{{nope}} any equals 'bar'", metric);
+    parseAndAssertEq(1, "{{nope}} all equals ''", point);
+  }
+
+  @Test
+  public void testMultiStringLogs() {
+    parseAndAssertEq(1, "{{message}} all equals 'oops'", log);
+    parseAndAssertEq(1, "{{sourceName}} any startsWith 'test'", log);
+    parseAndAssertEq(1, "{{env}} any equals 'prod'", log);
+    parseAndAssertEq(0, "{{dc}} any equals 'prod'", log);
+  }
+
+  @Test
+  public void testTemplateExpansion() {
+    TemplateStringExpression template =
+        new TemplateStringExpression("a-{{metricName}}-{{tagk1}}-{{}}-{{nope}}-{{sourceName}}");
+    assertEquals("a-testMetric-tagv1-{{}}--testHost", template.getString(point));
+    assertEquals("a-testMetric-tagv1-{{}}--testHost", template.getString(metric));
+    assertEquals("a-{{metricName}}-{{tagk1}}-{{}}-{{nope}}-{{sourceName}}",
+        template.getString(null));
+    assertEquals("foo=bar1-baz, {{foo", new TemplateStringExpression("foo={{foo}}, {{foo").
+        getString(span));
+    assertEquals("oops at testHost", Util.expandPlaceholders("{{message}} at {{sourceName}}", log));
+    // values are appended literally, not as regex replacements
+    Span dollar = Span.newBuilder(span).
+        setAnnotations(ImmutableList.of(new Annotation("foo", "$1\\"))).
+        build();
+    assertEquals("$1\\", Util.expandPlaceholders("{{foo}}", dollar));
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testTimestampPropertyAccessorThrowsOnSpans() {
     parsePredicateEvalExpression("$timestamp > 0").getValue(span);
@@ -0,0 +1,118 @@
+package com.yammer.metrics.core;
+
+import com.google.common.collect.ImmutableList;
+import com.yammer.metrics.stats.Snapshot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link WavefrontHistogram}.
+ */
+public class WavefrontHistogramTest {
+  private final AtomicLong time = new AtomicLong(0);
+  private WavefrontHistogram histogram;
+
+  @Before
+  public void setup() {
+    time.set(0);
+    histogram = WavefrontHistogram.get(new MetricsRegistry(), new MetricName("test", "", "metric"),
+        time::get);
+  }
+
+  @Test
+  public void testUpdatesFromMultipleThreads() throws Exception {
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          histogram.update(j);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    histogram.update(1000);
+    assertEquals(4001, histogram.count());
+    assertEquals(0, histogram.min(), 0);
+    assertEquals(1000, histogram.max(), 0);
+
+    time.set(60_000);
+    List<WavefrontHistogram.MinuteBin> bins = histogram.bins(false);
+    assertEquals(1, bins.size());
+    assertEquals(4001, bins.get(0).getDigest().size());
+  }
+
+  @Test
+  public void testDeadThreadRecordersAreReclaimed() throws Exception {
+    histogram.update(1);
+    for (int i = 0; i < 10; i++) {
+      Thread thread = new Thread(() -> histogram.update(2));
+      thread.start();
+      thread.join();
+    }
+    assertEquals(11, histogram.recorderCount());
+
+    // bins of terminated threads are still reported before their recorders are reclaimed
+    time.set(60_000);
+    List<WavefrontHistogram.MinuteBin> bins = histogram.bins(true);
+    assertEquals(1, bins.size());
+    assertEquals(11, bins.get(0).getDigest().size());
+    assertEquals(1, histogram.recorderCount());
+    assertEquals(0, histogram.count());
+
+    histogram.update(3);
+    assertEquals(1, histogram.count());
+    assertEquals(1, histogram.recorderCount());
+  }
+
+  @Test
+  public void testSummaryStats() {
+    assertEquals(0, histogram.count());
+    assertTrue(Double.isNaN(histogram.mean()));
+    assertTrue(Double.isNaN(histogram.min()));
+    assertTrue(Double.isNaN(histogram.max()));
+
+    histogram.update(10);
+    histogram.update(20);
+    time.set(60_000);
+    histogram.bulkUpdate(ImmutableList.of(30d, 60d), ImmutableList.of(2, 1));
+    assertEquals(5, histogram.count());
+    assertEquals(30, histogram.mean(), 0.0001);
+    assertEquals(10, histogram.min(), 0);
+    assertEquals(60, histogram.max(), 0);
+
+    // draining old bins resets the stats
+    time.set(120_000);
+    histogram.bins(true);
+    assertEquals(0, histogram.count());
+    assertTrue(Double.isNaN(histogram.mean()));
+  }
+
+  @Test
+  public void testSnapshotReflectsUpdates() {
+    histogram.update(10);
+    Snapshot snapshot = histogram.getSnapshot();
+    assertEquals(1, snapshot.size());
+    assertEquals(10, snapshot.getMedian(), 0);
+    // no changes, cached digest is reused
+    assertEquals(10, histogram.getSnapshot().getMedian(), 0);
+
+    histogram.update(20);
+    histogram.update(20);
+    snapshot = histogram.getSnapshot();
+    assertEquals(3, snapshot.size());
+
+    time.set(60_000);
+    histogram.clear();
+    assertEquals(0, histogram.getSnapshot().size());
+  }
+}
@@ -1,7 +1,6 @@
 package com.wavefront.integrations.metrics;
 
 import com.google.common.collect.Maps;
-import com.tdunning.math.stats.Centroid;
 import com.wavefront.common.TaggedMetricName;
 import com.wavefront.sdk.common.Pair;
 import com.wavefront.sdk.common.WavefrontSender;
@@ -175,22 +174,7 @@ public class HttpMetricsProcessor extends WavefrontMetricsProcessor {
       for (WavefrontHistogram.MinuteBin bin : bins) {
         List<Pair<Double, Integer>> centroids = new ArrayList<>();
         timestamp = bin.getMinMillis() / 1000;
-        Centroid accumulator = null;
-        for (Centroid c : bin.getDist().centroids()) {
-          if (accumulator != null && c.mean() != accumulator.mean()) {
-            centroids.add(new Pair<>(accumulator.mean(), accumulator.count()));
-            accumulator = new Centroid(c.mean(), c.count());
-          } else {
-            if (accumulator == null) {
-              accumulator = new Centroid(c.mean(), c.count());
-            } else {
-              accumulator.add(c.mean(), c.count());
-            }
-          }
-        }
-        if (accumulator != null) {
-          centroids.add(new Pair<>(accumulator.mean(), accumulator.count()));
-        }
+        bin.getDigest().forEachCentroid((mean, count) -> centroids.add(new Pair<>(mean, count)));
         wavefrontSender.sendDistribution(getName(name), centroids, granularities, timestamp, defaultSource, tags);
       }
     } catch (IOException ex) {
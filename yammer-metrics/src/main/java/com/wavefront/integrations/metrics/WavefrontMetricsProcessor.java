@@ -1,6 +1,5 @@
 package com.wavefront.integrations.metrics;
 
-import com.tdunning.math.stats.Centroid;
 import com.wavefront.common.MetricsToTimeseries;
 import com.wavefront.common.SerializerUtils;
 import com.wavefront.common.TaggedMetricName;
@@ -18,7 +17,6 @@ import com.yammer.metrics.core.WavefrontHistogram;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -96,7 +94,8 @@ abstract class WavefrontMetricsProcessor implements MetricProcessor<Void> {
     for (WavefrontHistogram.MinuteBin minuteBin : bins) {
       StringBuilder sb = new StringBuilder();
       sb.append("!M ").append(minuteBin.getMinMillis() / 1000);
-      appendCompactedCentroids(sb, minuteBin.getDist().centroids());
+      minuteBin.getDigest().forEachCentroid((mean, count) ->
+          sb.append(" #").append(count).append(" ").append(mean));
       sb.append(" \"").append(getName(name)).append("\"");
       if (name instanceof TaggedMetricName) {
         SerializerUtils.appendTagMap(sb, ((TaggedMetricName) name).getTags());
@@ -116,25 +115,6 @@ abstract class WavefrontMetricsProcessor implements MetricProcessor<Void> {
     return String.join("\n", toWavefrontHistogramLines(name, histogram));
   }
 
-  private static void appendCompactedCentroids(StringBuilder sb, Collection<Centroid> centroids) {
-    Centroid accumulator = null;
-    for (Centroid c : centroids) {
-      if (accumulator != null && c.mean() != accumulator.mean()) {
-        sb.append(" #").append(accumulator.count()).append(" ").append(accumulator.mean());
-        accumulator = new Centroid(c.mean(), c.count());
-      } else {
-        if (accumulator == null) {
-          accumulator = new Centroid(c.mean(), c.count());
-        } else {
-          accumulator.add(c.mean(), c.count());
-        }
-      }
-    }
-    if (accumulator != null) {
-      sb.append(" #").append(accumulator.count()).append(" ").append(accumulator.mean());
-    }
-  }
-
   private void writeMetered(MetricName name, Metered metered) throws Exception {
     for (Map.Entry<String, Double> entry : MetricsToTimeseries.explodeMetered(metered).entrySet()) {
       writeMetric(name, entry.getKey(), entry.getValue());